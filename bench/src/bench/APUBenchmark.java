@@ -0,0 +1,72 @@
+package bench;
+
+import core.NES;
+import core.apu.APU_2A03;
+import core.apu.channels.components.pulse.Oscillator;
+import headless.NEmuSHeadless;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the APU alone, with the 2 pulse, the triangle and the noise channels playing
+ * one operation is the APU ticks of one audio sample at 44.1kHz (122 ticks) followed by getSample()
+ * the number of harmonics of the pulse Oscillators drives the cost of the sampling
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class APUBenchmark {
+
+    private static final int TICKS_PER_SAMPLE = 122;
+    private static final double TIME_PER_TICK = 1.0 / 5369318.0;
+
+    @Param({"5", "10", "20"})
+    public int harmonics;
+
+    private APU_2A03 apu;
+    private int previous_harmonics;
+
+    @Setup
+    public void setup() throws Exception {
+        NES nes = NEmuSHeadless.boot(BenchmarkROM.create(BenchmarkROM.IDLE_PROGRAM), false);
+        apu = nes.getApu();
+        previous_harmonics = Oscillator.getHarmonics();
+        Oscillator.setHarmonics(harmonics);
+        //Every channel except the DMC plays a long note at full volume
+        apu.cpuWrite(0x4015, 0x0F);
+        apu.cpuWrite(0x4017, 0x40);
+        apu.cpuWrite(0x4000, 0xBF);
+        apu.cpuWrite(0x4002, 0x80);
+        apu.cpuWrite(0x4003, 0x01);
+        apu.cpuWrite(0x4004, 0x7F);
+        apu.cpuWrite(0x4006, 0x40);
+        apu.cpuWrite(0x4007, 0x01);
+        apu.cpuWrite(0x4008, 0xFF);
+        apu.cpuWrite(0x400A, 0x60);
+        apu.cpuWrite(0x400B, 0x01);
+        apu.cpuWrite(0x400C, 0x3F);
+        apu.cpuWrite(0x400E, 0x04);
+        apu.cpuWrite(0x400F, 0x08);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Oscillator.setHarmonics(previous_harmonics);
+    }
+
+    /**
+     * Clock the APU for one audio sample and compute it
+     *
+     * @return the computed sample
+     */
+    @Benchmark
+    public double sample() {
+        for (int i = 0; i < TICKS_PER_SAMPLE; i++)
+            apu.clock(true, TIME_PER_TICK);
+        return apu.getSample();
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * This class builds the synthetic NROM cartridges used by the benchmarks
+ * a program is placed at 0x8000 (mirrored at 0xC000) and every vector points to it
+ * the Character ROM is filled with pseudo random tiles so the PPU has something to render
+ */
+public class BenchmarkROM {
+
+    //LDA #$00 / loop : CLC, ADC, EOR, ASL A, ROR A, AND, ORA, SEC, SBC, TAX, INX, TXA, DEY, CMP / JMP loop
+    public static final int[] ALU_PROGRAM = {
+            0xA9, 0x00,
+            0x18, 0x69, 0x01, 0x49, 0x55, 0x0A, 0x6A, 0x29, 0xF0, 0x09, 0x0F,
+            0x38, 0xE9, 0x03, 0xAA, 0xE8, 0x8A, 0x88, 0xC9, 0x40,
+            0x4C, 0x02, 0x80
+    };
+
+    //LDX #$00 / outer : LDY #$08 / inner : DEX, BNE inner, DEY, BPL inner / CLC, BCC, BMI, BEQ / JMP outer
+    public static final int[] BRANCH_PROGRAM = {
+            0xA2, 0x00,
+            0xA0, 0x08,
+            0xCA, 0xD0, 0xFD, 0x88, 0x10, 0xFA,
+            0x18, 0x90, 0x00, 0x30, 0x00, 0xF0, 0x00,
+            0x4C, 0x02, 0x80
+    };
+
+    //pointer $10 = $0280 / loop : LDA abs,X, STA abs,Y, LDA (zp),Y, STA zp, INC zp, LDA PRG,X, STA abs,X, PHA, PLA, INX, INY / JMP loop
+    public static final int[] MEMORY_PROGRAM = {
+            0xA9, 0x80, 0x85, 0x10, 0xA9, 0x02, 0x85, 0x11,
+            0xBD, 0x00, 0x02, 0x99, 0x00, 0x03, 0xB1, 0x10, 0x85, 0x40, 0xE6, 0x41,
+            0xBD, 0x00, 0x80, 0x9D, 0x00, 0x04, 0x48, 0x68, 0xE8, 0xC8,
+            0x4C, 0x08, 0x80
+    };
+
+    //An idle loop, used when only the PPU or APU is benchmarked : JMP $8000
+    public static final int[] IDLE_PROGRAM = {0x4C, 0x00, 0x80};
+
+    /**
+     * The class only contains static methods
+     */
+    private BenchmarkROM() {}
+
+    /**
+     * Write an iNES file containing a program, deleted when the JVM exits
+     *
+     * @param program the program to place at 0x8000
+     * @return the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public static String create(int[] program) throws IOException {
+        byte[] rom = new byte[16 + 16384 + 8192];
+        rom[0] = 'N';
+        rom[1] = 'E';
+        rom[2] = 'S';
+        rom[3] = 0x1A;
+        rom[4] = 1; //16Kb of PRG ROM
+        rom[5] = 1; //8Kb of CHR ROM
+        for (int i = 0; i < program.length; i++)
+            rom[16 + i] = (byte) program[i];
+        //NMI, Reset and IRQ vectors all point to 0x8000
+        for (int vector = 0x3FFA; vector < 0x4000; vector += 2) {
+            rom[16 + vector] = 0x00;
+            rom[16 + vector + 1] = (byte) 0x80;
+        }
+        Random random = new Random(0x6502);
+        for (int i = 16 + 16384; i < rom.length; i++)
+            rom[i] = (byte) random.nextInt(256);
+        File file = File.createTempFile("nemus-bench", ".nes");
+        file.deleteOnExit();
+        Files.write(file.toPath(), rom);
+        return file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,62 @@
+package bench;
+
+import core.NES;
+import headless.NEmuSHeadless;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures NES.cpuRead() on the 3 kinds of pages of the CPU address space :
+ * the RAM and the PRG ROM (directly mapped) and the I/O registers (PPU status, synchronized on access)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class BusBenchmark {
+
+    private static final int READS = 256;
+
+    @Param({"ram", "prg", "io"})
+    public String page;
+
+    private NES nes;
+    private int base;
+    private int mask;
+
+    @Setup
+    public void setup() throws Exception {
+        nes = NEmuSHeadless.boot(BenchmarkROM.create(BenchmarkROM.IDLE_PROGRAM), false);
+        switch (page) {
+            case "ram":
+                base = 0x0000;
+                mask = 0xFF;
+                break;
+            case "prg":
+                base = 0x8000;
+                mask = 0xFF;
+                break;
+            default:
+                //The 8 PPU registers mirrored over the page, reading $2002 has side effects as on the real Bus
+                base = 0x2000;
+                mask = 0x07;
+        }
+    }
+
+    /**
+     * Read 256 addresses of the page, the result is the time per read
+     *
+     * @return the sum of the read values
+     */
+    @Benchmark
+    @OperationsPerInvocation(READS)
+    public int cpuRead() {
+        int sum = 0;
+        for (int i = 0; i < READS; i++)
+            sum += nes.cpuRead(base | (i & mask), false);
+        return sum;
+    }
+}
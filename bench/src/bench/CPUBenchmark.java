@@ -0,0 +1,98 @@
+package bench;
+
+import core.NES;
+import core.cpu.CPU_6502;
+import headless.NEmuSHeadless;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the Instruction dispatch of the CPU alone (the PPU and APU aren't clocked)
+ * on synthetic programs : ALU heavy, branch heavy and memory heavy
+ * executeCachedInstruction measures the same programs with the instruction cache enabled
+ * executeBlocks measures the same programs with the recompiler enabled
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class CPUBenchmark {
+
+    private static final int INSTRUCTIONS = 1000;
+
+    @Param({"alu", "branch", "memory"})
+    public String program;
+
+    private CPU_6502 cpu;
+    private CPU_6502 cached_cpu;
+    private CPU_6502 jit_cpu;
+
+    @Setup
+    public void setup() throws Exception {
+        int[] code;
+        switch (program) {
+            case "alu":
+                code = BenchmarkROM.ALU_PROGRAM;
+                break;
+            case "branch":
+                code = BenchmarkROM.BRANCH_PROGRAM;
+                break;
+            default:
+                code = BenchmarkROM.MEMORY_PROGRAM;
+        }
+        NES nes = NEmuSHeadless.boot(BenchmarkROM.create(code), false);
+        cpu = nes.getCpu();
+        NES cached_nes = NEmuSHeadless.boot(BenchmarkROM.create(code), false);
+        cached_nes.enableInstructionCache(true);
+        cached_cpu = cached_nes.getCpu();
+        NES jit_nes = NEmuSHeadless.boot(BenchmarkROM.create(code), false);
+        jit_nes.enableRecompiler(true, false);
+        jit_cpu = jit_nes.getCpu();
+    }
+
+    /**
+     * Execute 1000 Instructions, the result is the time per Instruction
+     *
+     * @return the number of cycles taken
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int executeInstruction() {
+        int cycles = 0;
+        for (int i = 0; i < INSTRUCTIONS; i++)
+            cycles += cpu.executeInstruction();
+        return cycles;
+    }
+
+    /**
+     * Execute 1000 Instructions decoded from the instruction cache, the result is the time per Instruction
+     *
+     * @return the number of cycles taken
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int executeCachedInstruction() {
+        int cycles = 0;
+        for (int i = 0; i < INSTRUCTIONS; i++)
+            cycles += cached_cpu.executeInstruction();
+        return cycles;
+    }
+
+    /**
+     * Execute 1000 Instructions with the recompiler (the last block can run a few more), the result is the time per Instruction
+     *
+     * @return the number of cycles taken
+     */
+    @Benchmark
+    @OperationsPerInvocation(INSTRUCTIONS)
+    public int executeBlocks() {
+        int cycles = 0;
+        long end = jit_cpu.getInstructionCount() + INSTRUCTIONS;
+        while (jit_cpu.getInstructionCount() < end)
+            cycles += jit_cpu.executeBlock(Integer.MAX_VALUE);
+        return cycles;
+    }
+}
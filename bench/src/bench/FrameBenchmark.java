@@ -0,0 +1,50 @@
+package bench;
+
+import core.NES;
+import headless.NEmuSHeadless;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the emulation of whole frames of demos from roms/test/others
+ * in tick by tick mode and in instruction mode with catch-up
+ * the ROM directory can be changed with -Dnemus.roms=path
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class FrameBenchmark {
+
+    @Param({"RasterDemo.NES", "SPRITE.NES", "PCM.demo.wgraphics.nes"})
+    public String rom;
+
+    @Param({"tick", "instruction"})
+    public String mode;
+
+    private NES nes;
+
+    @Setup
+    public void setup() throws Exception {
+        String directory = System.getProperty("nemus.roms", "roms/test/others");
+        nes = NEmuSHeadless.boot(new File(directory, rom).getPath(), mode.equals("tick"));
+        //The demos are past their boot sequence
+        for (int i = 0; i < 60; i++)
+            nes.runFrame();
+    }
+
+    /**
+     * Emulate one frame
+     *
+     * @return the number of completed frames
+     */
+    @Benchmark
+    public long runFrame() {
+        nes.runFrame();
+        return nes.getFrameCount();
+    }
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import core.NES;
+import core.ppu.PPU_2C02;
+import core.ppu.registers.ObjectAttribute;
+import headless.NEmuSHeadless;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class measures the rendering of the PPU alone, one scanline (341 dots) per operation
+ * the scanlines are averaged over whole frames (visible, pre-render and vertical blank)
+ * with the background only, the sprites only or both enabled
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(3)
+@State(Scope.Thread)
+public class PPUBenchmark {
+
+    @Param({"background", "sprites", "both"})
+    public String layers;
+
+    private PPU_2C02 ppu;
+
+    @Setup
+    public void setup() throws Exception {
+        NES nes = NEmuSHeadless.boot(BenchmarkROM.create(BenchmarkROM.IDLE_PROGRAM), false);
+        ppu = nes.getPpu();
+        //The first nametable is filled with every tile and the palettes with every color
+        ppu.cpuWrite(0x6, 0x20);
+        ppu.cpuWrite(0x6, 0x00);
+        for (int i = 0; i < 0x400; i++)
+            ppu.cpuWrite(0x7, i);
+        ppu.cpuWrite(0x6, 0x3F);
+        ppu.cpuWrite(0x6, 0x00);
+        for (int i = 0; i < 0x20; i++)
+            ppu.cpuWrite(0x7, i * 2);
+        //64 sprites spread over the screen, at most 8 per scanline are visible
+        ObjectAttribute[] oams = ppu.getOams();
+        for (int i = 0; i < oams.length; i++) {
+            oams[i].setY((i * 29) % 232);
+            oams[i].setX((i * 37) % 248);
+            oams[i].setId(i);
+            oams[i].setAttribute(i & 0xE3);
+        }
+        ppu.cpuWrite(0x5, 0x00);
+        ppu.cpuWrite(0x5, 0x00);
+        //The sprites use the second pattern table
+        ppu.cpuWrite(0x0, 0x08);
+        switch (layers) {
+            case "background":
+                ppu.cpuWrite(0x1, 0x0A);
+                break;
+            case "sprites":
+                ppu.cpuWrite(0x1, 0x14);
+                break;
+            default:
+                ppu.cpuWrite(0x1, 0x1E);
+        }
+    }
+
+    /**
+     * Render one scanline
+     *
+     * @return the number of completed frames
+     */
+    @Benchmark
+    public long scanline() {
+        for (int i = 0; i < 341; i++)
+            ppu.clock();
+        return ppu.getFrameCount();
+    }
+}
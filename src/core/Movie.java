@@ -0,0 +1,206 @@
+package core;
+
+import exceptions.InvalidFileException;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class represent an input movie, the state of both controllers for every frame
+ * a movie starts from a savestate (taken right after power-on or at any time)
+ * so it can be replayed frame accurately as the emulation is deterministic
+ * the file is a header (magic number, version) followed by a deflated body :
+ * ROM checksum, number of frames, start savestate and the inputs as runs of [length][controller 1][controller 2]
+ */
+public class Movie {
+
+    public static final int MAGIC = 0x4E4D534D; //"NMSM" (NEmuS Movie)
+    public static final int VERSION = 1;
+
+    private final long checksum;
+    private final byte[] start_state;
+    private byte[] inputs;
+    private int nb_frames;
+    private int position = 0;
+
+    /**
+     * Create a new empty movie starting from a savestate
+     *
+     * @param checksum   the checksum of the ROM
+     * @param startState the savestate the movie starts from
+     */
+    private Movie(long checksum, byte[] startState) {
+        this.checksum = checksum;
+        this.start_state = startState;
+        this.inputs = new byte[2 * 60 * 60];
+        this.nb_frames = 0;
+    }
+
+    /**
+     * Power on the console and start recording a movie from there
+     *
+     * @param nes the console to record
+     * @return the new movie
+     */
+    public static Movie recordFromPowerOn(NES nes) {
+        nes.startup();
+        return recordFromState(nes);
+    }
+
+    /**
+     * Start recording a movie from the current state of the console
+     *
+     * @param nes the console to record
+     * @return the new movie
+     */
+    public static Movie recordFromState(NES nes) {
+        return new Movie(nes.getCartridge().getChecksum(), SaveState.save(nes));
+    }
+
+    /**
+     * Record the inputs of the frame about to be computed
+     * must be called before every frame while recording
+     *
+     * @param nes the recorded console
+     */
+    public void recordFrame(NES nes) {
+        if (2 * nb_frames + 2 > inputs.length)
+            inputs = Arrays.copyOf(inputs, inputs.length * 2);
+        inputs[2 * nb_frames] = (byte) nes.controller[0];
+        inputs[2 * nb_frames + 1] = (byte) nes.controller[1];
+        nb_frames++;
+        position = nb_frames;
+    }
+
+    /**
+     * Restore the console to the start of the movie and rewind the movie
+     *
+     * @param nes the console to play the movie on
+     * @throws InvalidFileException if the movie is from another game or version
+     */
+    public void startPlayback(NES nes) throws InvalidFileException {
+        SaveState.load(nes, start_state);
+        position = 0;
+    }
+
+    /**
+     * Set the inputs of the frame about to be computed
+     * must be called before every frame while playing
+     *
+     * @param nes the console playing the movie
+     * @return false if the movie is over
+     */
+    public boolean playFrame(NES nes) {
+        if (position >= nb_frames)
+            return false;
+        nes.controller[0] = inputs[2 * position] & 0xFF;
+        nes.controller[1] = inputs[2 * position + 1] & 0xFF;
+        position++;
+        return true;
+    }
+
+    /**
+     * Return the number of frames of the movie
+     *
+     * @return the number of recorded frames
+     */
+    public int getFrameCount() {
+        return nb_frames;
+    }
+
+    /**
+     * Return the current frame of the movie
+     *
+     * @return the number of frames played or recorded
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Return the checksum of the ROM the movie was recorded on
+     *
+     * @return the checksum of the ROM
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Write the movie to a file
+     *
+     * @param filename the path of the file
+     * @throws IOException if the file can't be written
+     */
+    public void save(String filename) throws IOException {
+        try (DataOutputStream header = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)))) {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            DeflaterOutputStream deflater = new DeflaterOutputStream(header);
+            DataOutputStream body = new DataOutputStream(deflater);
+            body.writeLong(checksum);
+            body.writeInt(nb_frames);
+            body.writeInt(start_state.length);
+            body.write(start_state);
+            //The inputs rarely change from one frame to the next, so they are stored as runs
+            int frame = 0;
+            while (frame < nb_frames) {
+                int length = 1;
+                while (frame + length < nb_frames && inputs[2 * (frame + length)] == inputs[2 * frame] && inputs[2 * (frame + length) + 1] == inputs[2 * frame + 1])
+                    length++;
+                body.writeInt(length);
+                body.writeByte(inputs[2 * frame]);
+                body.writeByte(inputs[2 * frame + 1]);
+                frame += length;
+            }
+            body.flush();
+            deflater.finish();
+        }
+    }
+
+    /**
+     * Read a movie from a file
+     *
+     * @param filename the path of the file
+     * @return the loaded movie, ready to be played
+     * @throws IOException          if the file can't be read
+     * @throws InvalidFileException if the file isn't a valid movie
+     */
+    public static Movie load(String filename) throws IOException, InvalidFileException {
+        try (DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)))) {
+            if (header.readInt() != MAGIC)
+                throw new InvalidFileException("Not a movie");
+            int version = header.readInt();
+            if (version != VERSION)
+                throw new InvalidFileException("Unsupported movie version " + version + " (expected " + VERSION + ")");
+            DataInputStream body = new DataInputStream(new InflaterInputStream(header));
+            long checksum = body.readLong();
+            int nb_frames = body.readInt();
+            int state_size = body.readInt();
+            if (nb_frames < 0 || state_size < 0 || state_size > SaveState.MAX_SIZE)
+                throw new InvalidFileException("Corrupted movie");
+            byte[] state = new byte[state_size];
+            body.readFully(state);
+            Movie movie = new Movie(checksum, state);
+            movie.inputs = new byte[Math.max(2 * nb_frames, 2)];
+            int frame = 0;
+            while (frame < nb_frames) {
+                int length = body.readInt();
+                byte controller_1 = body.readByte();
+                byte controller_2 = body.readByte();
+                if (length <= 0 || frame + length > nb_frames)
+                    throw new InvalidFileException("Corrupted movie");
+                for (int end = frame + length; frame < end; frame++) {
+                    movie.inputs[2 * frame] = controller_1;
+                    movie.inputs[2 * frame + 1] = controller_2;
+                }
+            }
+            movie.nb_frames = nb_frames;
+            return movie;
+        } catch (EOFException e) {
+            throw new InvalidFileException("The movie is truncated");
+        }
+    }
+}
@@ -2,30 +2,49 @@ package core;
 
 import core.apu.APU_2A03;
 import core.cartridge.Cartridge;
+import core.cartridge.mappers.Mapper;
 import core.cpu.CPU_6502;
 import core.ppu.PPU_2C02;
-import utils.IntegerWrapper;
+
+import java.nio.ByteBuffer;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleConsumer;
 
 /**
  * This class represent the Bus of the NES
  * it is the Core of the system and control everything
  */
-public class NES {
+public class NES implements Saveable {
+
+    private static final long SAVE_INTERVAL = 20L * 5369318L;
 
-    private static final long SAVE_INTERVAL = 20000;
+    private static final int EVENT_PPU = 0;
+    private static final int EVENT_APU = 1;
+    private static final int EVENT_AUDIO_SAMPLE = 2;
+    private static final int EVENT_SAVE = 3;
 
     public final int[] controller;
     public double final_audio_sample = 0.0;
 
     private final byte[] ram;
+    private final PageTable cpu_pages;
     private final CPU_6502 cpu;
     private final PPU_2C02 ppu;
     private final APU_2A03 apu;
     private final int[] controller_state;
+    private final Scheduler scheduler;
 
-    private long next_save = 0;
     private long system_ticks = 0;
+    private long ppu_ticks = 0;
+    private long apu_ticks = 0;
+    private long cpu_next_tick = 0;
+    private long io_access_count = 0L;
+    private int suspended_cycles = 0;
+    private boolean catch_up = false;
+    private boolean instruction_stepping = false;
+    private boolean audio_sample_ready = false;
     private Cartridge cartridge;
+    private DoubleConsumer audio_listener;
     private int dma_page = 0x00;
     private int dma_addr = 0x00;
     private int dma_data = 0x00;
@@ -35,6 +54,7 @@ public class NES {
     private double time_per_NES_cycle = 0.0;
     private double time_per_system_sample = 0.0;
     private boolean sound_rendering = true;
+    private boolean battery_save = true;
     private int dummy_cycle_left = 0;
 
 
@@ -45,17 +65,42 @@ public class NES {
         ram = new byte[2048];
         for (int i = 0; i < 2048; i++)
             ram[i] = 0x0000;
+        //The CPU address space is split in 64 pages of 1Kb, the RAM is mapped 4 times (mirrored)
+        cpu_pages = new PageTable(64, 10);
+        for (int addr = 0x0000; addr <= 0x1FFF; addr += 0x0800)
+            cpu_pages.map(addr, 0x0800, ram, 0, true);
         cpu = new CPU_6502();
         ppu = new PPU_2C02();
         apu = new APU_2A03(this);
         controller = new int[2];
         controller_state = new int[2];
         cpu.connectBus(this);
+        scheduler = new Scheduler(4);
+        scheduleEvents();
     }
 
-    public void setSampleFreq(int sampleRate) {
-        time_per_system_sample = 1.0 / (double) sampleRate;
+    /**
+     * Set the audio sample rate and schedule the next audio sample accordingly
+     *
+     * @param sampleRate the number of samples per second
+     */
+    public void setSampleFreq(double sampleRate) {
+        time_per_system_sample = 1.0 / sampleRate;
         time_per_NES_cycle = 1.0 / 5369318.0;
+        audio_time = 0.0;
+        scheduleAudioSample(system_ticks);
+    }
+
+    /**
+     * Change the audio sample rate without restarting the sampling
+     * the sample already scheduled is kept and the fractional audio time is carried over,
+     * so the rate can be adjusted every frame without any irregularity in the samples
+     * must not be called concurrently with the emulation
+     *
+     * @param sampleRate the number of samples per second
+     */
+    public void adjustSampleFreq(double sampleRate) {
+        time_per_system_sample = 1.0 / sampleRate;
     }
 
     /**
@@ -80,6 +125,15 @@ public class NES {
         return apu;
     }
 
+    /**
+     * Return the Page Table of the CPU address space
+     *
+     * @return the CPU Page Table
+     */
+    public PageTable getCpuPages() {
+        return cpu_pages;
+    }
+
     /**
      * Write a value to the CPU Addressable range
      *
@@ -89,6 +143,11 @@ public class NES {
     public void cpuWrite(int addr, int data) {
         data &= 0xFF;
         addr &= 0xFFFF;
+        //If the page is directly mapped (RAM) we write to it
+        if (cpu_pages.write(addr, data))
+            return;
+        //Any other write can alter the PPU or APU state, they must be up to date
+        syncOnAccess();
         //If the Cartridge is interested we write the value and directly return
         if (!cartridge.cpuWrite(addr, data)) {
             if (addr <= 0x1FFF) { //Write to RAM (8Kb addressable, mirror in 4 2Kb chunks)
@@ -116,23 +175,30 @@ public class NES {
      */
     public int cpuRead(int addr, boolean readOnly) {
         addr &= 0xFFFF;
-        //The wrapper that will contain the Cartridge data if read from it
-        IntegerWrapper data = new IntegerWrapper();
+        //If the page is directly mapped (RAM, PRG ROM) we return the value
+        int data = cpu_pages.read(addr);
+        if (data != PageTable.UNMAPPED)
+            return data;
+        //Any other read can depend on the PPU or APU state, they must be up to date
+        if (!readOnly)
+            syncOnAccess();
         //If the Cartridge is interested we return the value
-        if (!cartridge.cpuRead(addr, data)) {
+        data = cartridge.cpuRead(addr);
+        if (data == Mapper.UNMAPPED) {
+            data = 0x00;
             if (addr <= 0x1FFF) //Read from RAM (8Kb addressable, mirror in 4 2Kb chunks)
-                data.value = ram[addr & 0x07FF];
+                data = ram[addr & 0x07FF];
             else if (addr <= 0x3FFF)  //Read PPU Register (8 values mirrored over the range)
-                data.value = ppu.cpuRead(addr & 0x0007, readOnly);
+                data = ppu.cpuRead(addr & 0x0007, readOnly);
             else if (addr == 0x4015)
-                data.value = apu.cpuRead(addr, readOnly);
+                data = apu.cpuRead(addr, readOnly);
             else if (addr >= 0x4016 && addr <= 0x4017 && !readOnly) { //Read the controllers
                 //Controller read is Serial, when read from, the value is shifted left
-                data.value = ((controller_state[addr & 0x0001] & 0x80) > 0) ? 0x1 : 0x0;
+                data = ((controller_state[addr & 0x0001] & 0x80) > 0) ? 0x1 : 0x0;
                 controller_state[addr & 0x0001] <<= 1;
             }
         }
-        return data.value & 0xFF;
+        return data & 0xFF;
     }
 
     /**
@@ -142,6 +208,9 @@ public class NES {
      */
     public void insertCartridge(Cartridge cart) {
         this.cartridge = cart;
+        //The Cartridge range is cleared and then mapped by the new Cartridge
+        cpu_pages.unmap(0x4000, 0xC000);
+        cartridge.connectCPUPages(cpu_pages);
         ppu.connectCartridge(cartridge);
     }
 
@@ -149,10 +218,16 @@ public class NES {
      * Reset the console by resetting the CPU, the PPU and set the systemTicks to 0
      */
     public void reset() {
+        syncComponents(system_ticks);
         cpu.reset();
         ppu.reset();
         cartridge.reset();
         system_ticks = 0;
+        ppu_ticks = 0;
+        apu_ticks = 0;
+        cpu_next_tick = 0;
+        suspended_cycles = 0;
+        scheduleEvents();
         dma_page = 0x00;
         dma_addr = 0x00;
         dma_data = 0x00;
@@ -164,93 +239,545 @@ public class NES {
      * Set the console to its default boot up state
      */
     public void startup() {
+        syncComponents(system_ticks);
         cpu.startup();
         apu.startup();
         ppu.reset();
         cartridge.reset();
         system_ticks = 0;
+        ppu_ticks = 0;
+        apu_ticks = 0;
+        cpu_next_tick = 0;
+        suspended_cycles = 0;
+        scheduleEvents();
     }
 
     /**
      * Compute one console tick
      * the PPU is clocked every times
      * the CPU is clocked one every 3 times
+     * in catch-up mode the PPU and APU are only clocked when they need to be up to date
+     *
+     * @return has an audio sample been computed during this tick
      */
     public boolean clock() {
-        //The PPU and APU are clocked every tick
-        ppu.clock();
-        apu.clock(sound_rendering, time_per_NES_cycle);
+        tick();
+        return audio_sample_ready;
+    }
+
+    /**
+     * Compute one console tick (see clock())
+     */
+    private void tick() {
+        //In tick by tick mode the PPU and APU are clocked every tick
+        if (!catch_up)
+            syncComponents(system_ticks + 1);
         //The CPU clock is 3 time slower than the PPU clock, so it is clocked every 3 ticks
-        if (system_ticks % 3 == 0) {
-            //If a Direct Memory Access is occurring
-            if (dma_transfer) {
-                if (dma_dummy) { //Wait for the write clock cycle (DMA chip busy)
-                    //When at the write cycle, the DMA chip is ready and wait the next cycle to start transferring
-                    if (system_ticks % 2 == 1)
-                        dma_dummy = false;
-                } else { //If the transfer is occurring
-                    if (system_ticks % 2 == 0) //On even cycles, we read from the selected CPU Memory Page
-                        dma_data = cpuRead(dma_page << 8 | dma_addr, false);
-                    else { //On odd cycles, we write the read data to the PPU Memory (OAM Memory)
-                        //One Object Attribute is represented as 4 8bit values [0x(x)FF (attr)FF  (tileId)FF (y)FF]
-                        //We select which attribute is actually being written by taking the 2 lsb of the current DMA Address
-                        //We select the OAM Entry index using the 5 lsb of the current DMA Address
-                        switch ((dma_addr) & 0x03) {
-                            case 0x0:
-                                ppu.getOams()[dma_addr >> 2].setY(dma_data);
-                            case 0x1:
-                                ppu.getOams()[dma_addr >> 2].setId(dma_data);
-                            case 0x2:
-                                ppu.getOams()[dma_addr >> 2].setAttribute(dma_data);
-                            case 0x3:
-                                ppu.getOams()[dma_addr >> 2].setX(dma_data);
-                        }
-                        //The DMA address is automatically incremented
-                        dma_addr++;
-                        dma_addr &= 0xFF;
-                        //At the end of the page (aka 512 cycles) the DMA transfer is complete and the CPU can start again
-                        if (dma_addr == 0x00) {
-                            dma_transfer = false;
-                            dma_dummy = true;
-                        }
+        //(unless it is still busy with an Instruction executed at once by step())
+        if (system_ticks % 3 == 0 && system_ticks >= cpu_next_tick)
+            clockCPU(false);
+
+        //If an event is due at this tick, we process it
+        audio_sample_ready = false;
+        if (system_ticks >= scheduler.nextEventTick())
+            processEvents();
+        system_ticks++;
+    }
+
+    /**
+     * Advance the emulation by one step
+     * in tick by tick mode, a step is a single console tick (see clock())
+     * in instruction mode, a whole CPU Instruction is executed at once
+     * and the PPU and APU are clocked 3 times per CPU cycle in a tight loop
+     * the step ends early when an audio sample is ready, the rest of the Instruction is computed by the next step
+     *
+     * @return has an audio sample been computed during this step
+     */
+    public boolean step() {
+        if (instruction_stepping)
+            stepInstruction();
+        else
+            tick();
+        return audio_sample_ready;
+    }
+
+    /**
+     * Execute a whole CPU Instruction, or the rest of the current one (see step())
+     */
+    private void stepInstruction() {
+        audio_sample_ready = false;
+        //When the CPU is done with its last Instruction, it executes the next one
+        if (system_ticks >= cpu_next_tick) {
+            if (system_ticks % 3 != 0) //The CPU is only clocked every 3 ticks
+                cpu_next_tick = system_ticks + 3 - system_ticks % 3;
+            else {
+                boolean dma = dma_transfer;
+                int cycles = clockCPU(true);
+                //An OAM DMA started by the Instruction suspends it from its next cycle, like in tick by tick mode
+                //the remaining cycles are computed after the transfer
+                if (dma_transfer && !dma) {
+                    suspended_cycles = cycles - 1;
+                    cycles = 1;
+                }
+                cpu_next_tick = system_ticks + 3L * cycles;
+            }
+        }
+        //The events due before the end of the Instruction are processed in order
+        while (scheduler.nextEventTick() < cpu_next_tick) {
+            system_ticks = Math.max(system_ticks, scheduler.nextEventTick());
+            processEvents();
+            system_ticks++;
+            if (audio_sample_ready)
+                return;
+        }
+        system_ticks = cpu_next_tick;
+        //Unless in catch-up mode, the PPU and APU are kept up to date with the CPU
+        if (!catch_up)
+            syncComponents(system_ticks);
+    }
+
+    /**
+     * Run the emulation until the PPU completes the current frame
+     * the mode is selected once, the loop drives the Instructions or the ticks directly
+     */
+    public void runFrame() {
+        long frame = ppu.getFrameCount();
+        if (instruction_stepping) {
+            while (ppu.getFrameCount() == frame)
+                stepInstruction();
+        } else {
+            while (ppu.getFrameCount() == frame)
+                tick();
+        }
+    }
+
+    /**
+     * Run the emulation for the provided number of CPU cycles
+     * in instruction mode the run stops at the first Instruction boundary after them
+     *
+     * @param cycles the number of CPU cycles to run
+     */
+    public void runCycles(long cycles) {
+        long end = system_ticks + 3 * cycles;
+        if (instruction_stepping) {
+            while (system_ticks < end)
+                stepInstruction();
+        } else {
+            while (system_ticks < end)
+                tick();
+        }
+    }
+
+    /**
+     * Run the emulation until the provided condition is met
+     * the condition is evaluated after every step, so at least one step is computed
+     *
+     * @param condition the condition ending the run
+     */
+    public void runUntil(BooleanSupplier condition) {
+        if (instruction_stepping) {
+            do {
+                stepInstruction();
+            } while (!condition.getAsBoolean());
+        } else {
+            do {
+                tick();
+            } while (!condition.getAsBoolean());
+        }
+    }
+
+    /**
+     * Compute one cycle of the CPU side of the Bus
+     * either a DMA cycle, a halted cycle or a CPU cycle
+     *
+     * @param instruction should a whole CPU Instruction be executed at once
+     * @return the number of CPU cycles consumed
+     */
+    private int clockCPU(boolean instruction) {
+        //If a Direct Memory Access is occurring
+        if (dma_transfer) {
+            if (dma_dummy) { //Wait for the write clock cycle (DMA chip busy)
+                //When at the write cycle, the DMA chip is ready and wait the next cycle to start transferring
+                if (system_ticks % 2 == 1)
+                    dma_dummy = false;
+            } else { //If the transfer is occurring
+                if (system_ticks % 2 == 0) //On even cycles, we read from the selected CPU Memory Page
+                    dma_data = cpuRead(dma_page << 8 | dma_addr, false);
+                else { //On odd cycles, we write the read data to the PPU Memory (OAM Memory)
+                    syncOnAccess();
+                    //One Object Attribute is represented as 4 8bit values [0x(x)FF (attr)FF  (tileId)FF (y)FF]
+                    //We select which attribute is actually being written by taking the 2 lsb of the current DMA Address
+                    //We select the OAM Entry index using the 5 lsb of the current DMA Address
+                    switch ((dma_addr) & 0x03) {
+                        case 0x0:
+                            ppu.getOams()[dma_addr >> 2].setY(dma_data);
+                        case 0x1:
+                            ppu.getOams()[dma_addr >> 2].setId(dma_data);
+                        case 0x2:
+                            ppu.getOams()[dma_addr >> 2].setAttribute(dma_data);
+                        case 0x3:
+                            ppu.getOams()[dma_addr >> 2].setX(dma_data);
+                    }
+                    //The DMA address is automatically incremented
+                    dma_addr++;
+                    dma_addr &= 0xFF;
+                    //At the end of the page (aka 512 cycles) the DMA transfer is complete and the CPU can start again
+                    if (dma_addr == 0x00) {
+                        dma_transfer = false;
+                        dma_dummy = true;
                     }
                 }
-                //If no Direct Memory Access is occurring, the CPU is clocked
-            } else if (dummy_cycle_left == 0)
-                cpu.clock();
-            else
-                dummy_cycle_left--;
+            }
+            //If the CPU is halted (DMC memory fetch) it waits
+        } else if (dummy_cycle_left > 0) {
+            dummy_cycle_left--;
+            //If an Instruction was suspended by a DMA, its remaining cycles are computed
+        } else if (suspended_cycles > 0) {
+            if (!instruction) {
+                suspended_cycles--;
+                return 1;
+            }
+            int cycles = suspended_cycles;
+            suspended_cycles = 0;
+            return cycles;
+            //If no Direct Memory Access is occurring, the CPU is clocked
+        } else if (instruction) {
+            //A recompiled block can't start an Instruction after the next event, its interrupts would be taken too late
+            long budget = (scheduler.nextEventTick() - system_ticks) / 3;
+            return cpu.executeBlock((int) Math.min(budget, Integer.MAX_VALUE));
+        } else {
+            cpu.clock();
         }
+        return 1;
+    }
 
-        boolean audioSampleReady = false;
-        audio_time += time_per_NES_cycle;
-        //We verify if it is time to calculate an audio sample
-        if (audio_time >= time_per_system_sample) {
-            //If so we set the time for the next audio sample and compute the current one
-            audio_time -= time_per_system_sample;
-            final_audio_sample = apu.getSample();
-            audioSampleReady = true;
+    /**
+     * Process every event due at the current tick
+     * PPU and APU events are the moments they could trigger an interrupt (or finish a frame),
+     * they are caught up and their interrupt lines are forwarded to the CPU
+     */
+    private void processEvents() {
+        while (scheduler.nextEventTick() <= system_ticks) {
+            switch (scheduler.poll()) {
+                case EVENT_AUDIO_SAMPLE:
+                    syncAPU(system_ticks + 1);
+                    final_audio_sample = apu.getSample();
+                    audio_sample_ready = true;
+                    if (audio_listener != null)
+                        audio_listener.accept(final_audio_sample);
+                    scheduleAudioSample(system_ticks + 1);
+                    break;
+                case EVENT_PPU:
+                    syncPPU(system_ticks + 1);
+                    //If the PPU triggers an Non Maskable Interrupt, it is propagated to the CPU (Vertical Blank)
+                    if (ppu.nmi())
+                        triggerNMI();
+                    //The Mapper can trigger an IRQ when notified of a scanline
+                    cpu.setIRQLine(CPU_6502.IRQ_MAPPER, cartridge.getMapper().irqState());
+                    scheduler.schedule(EVENT_PPU, system_ticks + 1 + ppu.ticksBeforeNextEvent());
+                    break;
+                case EVENT_APU:
+                    syncAPU(system_ticks + 1);
+                    cpu.setIRQLine(CPU_6502.IRQ_APU, apu.irq());
+                    scheduler.schedule(EVENT_APU, system_ticks + 1 + apu.ticksBeforeNextEvent());
+                    break;
+                case EVENT_SAVE:
+                    if (battery_save)
+                        cartridge.save();
+                    scheduler.schedule(EVENT_SAVE, system_ticks + SAVE_INTERVAL);
+                    break;
+            }
         }
+    }
 
-        //If the PPU triggers an Non Maskable Interrupt, it is propagated to the CPU (Vertical Blank)
-        if (ppu.nmi())
-            cpu.nmi();
-        //If the APU or Cartridge need to trigger an IRQ, we propagate it
-        if (apu.irq())
-            cpu.irq();
-        if (cartridge.getMapper().irqState()) {
-            cartridge.getMapper().irqClear();
-            cpu.irq();
+    /**
+     * Trigger a Non Maskable Interrupt on the CPU at the current tick
+     * like in tick by tick mode, the NMI doesn't wait for the end of the current Instruction :
+     * its remaining cycles (and those suspended by a DMA) are dropped and the NMI starts at the next CPU cycle
+     */
+    private void triggerNMI() {
+        if (!cpu.nmi())
+            return;
+        suspended_cycles = 0;
+        //In instruction mode the whole Instruction has been accounted, it now ends at the next CPU cycle
+        if (cpu_next_tick > system_ticks)
+            cpu_next_tick = system_ticks + 3 - system_ticks % 3;
+    }
+
+    /**
+     * Schedule the PPU, APU, audio and save events relatively to the current tick
+     * the PPU and APU events are set at the current tick to be reevaluated immediately
+     */
+    private void scheduleEvents() {
+        scheduler.schedule(EVENT_PPU, system_ticks);
+        scheduler.schedule(EVENT_APU, system_ticks);
+        audio_time = 0.0;
+        scheduleAudioSample(system_ticks);
+        scheduler.schedule(EVENT_SAVE, system_ticks + SAVE_INTERVAL);
+    }
+
+    /**
+     * Schedule the next audio sample
+     * the audio time is accumulated tick by tick to sample at the exact same ticks as a real time accumulation
+     *
+     * @param from the first tick that can produce the sample
+     */
+    private void scheduleAudioSample(long from) {
+        long ticks = 0;
+        do {
+            audio_time += time_per_NES_cycle;
+            ticks++;
+        } while (audio_time < time_per_system_sample);
+        audio_time -= time_per_system_sample;
+        scheduler.schedule(EVENT_AUDIO_SAMPLE, from + ticks - 1);
+    }
+
+    /**
+     * Clock the PPU until it has caught up with the provided tick count
+     *
+     * @param ticks the number of ticks the PPU must have executed
+     */
+    private void syncPPU(long ticks) {
+        while (ppu_ticks < ticks) {
+            ppu.clock();
+            ppu_ticks++;
         }
+    }
 
-        //If it is time to save the Cartridge, we trigger that event
-        if (System.currentTimeMillis() >= next_save) {
-            cartridge.save();
-            next_save = System.currentTimeMillis() + SAVE_INTERVAL;
+    /**
+     * Clock the APU until it has caught up with the provided tick count
+     *
+     * @param ticks the number of ticks the APU must have executed
+     */
+    private void syncAPU(long ticks) {
+        while (apu_ticks < ticks) {
+            apu.clock(sound_rendering, time_per_NES_cycle);
+            apu_ticks++;
         }
-        system_ticks++;
+    }
 
-        return audioSampleReady;
+    /**
+     * Clock the PPU and APU until they have caught up with the provided tick count
+     *
+     * @param ticks the number of ticks the PPU and APU must have executed
+     */
+    private void syncComponents(long ticks) {
+        syncPPU(ticks);
+        syncAPU(ticks);
+    }
+
+    /**
+     * Called when the CPU access a register of the PPU, APU or Mapper
+     * the components are caught up to the current tick (they are clocked before the CPU)
+     * their events are scheduled on the next tick as the access can alter their timings or interrupt lines
+     */
+    private void syncOnAccess() {
+        io_access_count++;
+        syncComponents(system_ticks + 1);
+        scheduler.scheduleBefore(EVENT_PPU, system_ticks + 1);
+        scheduler.scheduleBefore(EVENT_APU, system_ticks + 1);
+    }
+
+    /**
+     * Write the state of the console to the buffer (Bus, CPU, PPU, APU and Cartridge)
+     * the PPU and APU aren't caught up, their own tick count is saved instead
+     * so a state can be saved at any step without altering the emulation
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put(ram);
+        buffer.putInt(controller_state[0]);
+        buffer.putInt(controller_state[1]);
+        buffer.putDouble(final_audio_sample);
+        buffer.putLong(system_ticks);
+        buffer.putLong(ppu_ticks);
+        buffer.putLong(apu_ticks);
+        buffer.putLong(cpu_next_tick);
+        buffer.putInt(suspended_cycles);
+        buffer.put((byte) (audio_sample_ready ? 1 : 0));
+        buffer.putInt(dma_page);
+        buffer.putInt(dma_addr);
+        buffer.putInt(dma_data);
+        buffer.put((byte) (dma_transfer ? 1 : 0));
+        buffer.put((byte) (dma_dummy ? 1 : 0));
+        buffer.putDouble(audio_time);
+        buffer.putInt(dummy_cycle_left);
+        scheduler.saveState(buffer);
+        cpu.saveState(buffer);
+        ppu.saveState(buffer);
+        apu.saveState(buffer);
+        cartridge.saveState(buffer);
+    }
+
+    /**
+     * Restore the state of the console from the buffer
+     * the state must have been saved with the same Cartridge inserted
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        buffer.get(ram);
+        controller_state[0] = buffer.getInt();
+        controller_state[1] = buffer.getInt();
+        final_audio_sample = buffer.getDouble();
+        system_ticks = buffer.getLong();
+        ppu_ticks = buffer.getLong();
+        apu_ticks = buffer.getLong();
+        cpu_next_tick = buffer.getLong();
+        suspended_cycles = buffer.getInt();
+        audio_sample_ready = buffer.get() != 0;
+        dma_page = buffer.getInt();
+        dma_addr = buffer.getInt();
+        dma_data = buffer.getInt();
+        dma_transfer = buffer.get() != 0;
+        dma_dummy = buffer.get() != 0;
+        audio_time = buffer.getDouble();
+        dummy_cycle_left = buffer.getInt();
+        scheduler.loadState(buffer);
+        cpu.loadState(buffer);
+        ppu.loadState(buffer);
+        apu.loadState(buffer);
+        cartridge.loadState(buffer);
+    }
+
+    /**
+     * Enable or disable the recompiler of the CPU, only used in instruction mode
+     * the hot blocks of PRG ROM are translated to JVM bytecode, the emulation result is the same as with the interpreter
+     *
+     * @param enabled      should the recompiler be enabled
+     * @param differential should every block be checked against the interpreter
+     */
+    public void enableRecompiler(boolean enabled, boolean differential) {
+        cpu.enableRecompiler(enabled, differential);
+    }
+
+    /**
+     * Enable or disable the cache of the Instructions decoded from PRG ROM
+     * the Instructions are decoded once per physical offset of the PRG ROM, the emulation result is the same
+     *
+     * @param enabled should the Instructions of PRG ROM be decoded once
+     */
+    public void enableInstructionCache(boolean enabled) {
+        cpu.enableInstructionCache(enabled);
+    }
+
+    /**
+     * Enable or disable the skipping of idle loops, only used in instruction mode
+     * a loop that only reads memory it doesn't write (waiting for the NMI to change a variable)
+     * is skipped until the next event, the emulation result is the same
+     *
+     * @param enabled should the idle loops be skipped
+     */
+    public void enableIdleSkipping(boolean enabled) {
+        cpu.enableIdleSkipping(enabled);
+    }
+
+    /**
+     * Return the number of CPU accesses to the PPU, APU, controllers or Mapper since the console was created
+     * (used by the CPU to detect loops without side effects)
+     *
+     * @return the number of accesses that weren't to directly mapped memory
+     */
+    public long getIOAccessCount() {
+        return io_access_count;
+    }
+
+    /**
+     * Enable or disable the catch-up mode
+     * in this mode the CPU runs ahead and the PPU and APU are only clocked
+     * when the CPU access them, when they could trigger an interrupt or at the end of a frame
+     * the emulation result is the same as in the tick by tick mode
+     *
+     * @param enabled should the catch-up mode be enabled
+     */
+    public void enableCatchUp(boolean enabled) {
+        catch_up = enabled;
+    }
+
+    /**
+     * Return whether or not the catch-up mode is enabled
+     *
+     * @return is the catch-up mode enabled
+     */
+    public boolean isCatchUpEnabled() {
+        return catch_up;
+    }
+
+    /**
+     * Return whether or not an audio sample has been computed during the last step
+     *
+     * @return has an audio sample been computed
+     */
+    public boolean isAudioSampleReady() {
+        return audio_sample_ready;
+    }
+
+    /**
+     * Set the listener notified of every computed audio sample
+     *
+     * @param listener the listener to notify, null to remove it
+     */
+    public void setAudioListener(DoubleConsumer listener) {
+        audio_listener = listener;
+    }
+
+    /**
+     * Enable or disable the periodic save of the Cartridge RAM to its file
+     * it must be disabled while playing a movie or running frames ahead to keep the real save of the game untouched
+     *
+     * @param enabled should the Cartridge RAM be saved periodically
+     */
+    public void setBatterySaveEnabled(boolean enabled) {
+        battery_save = enabled;
+    }
+
+    /**
+     * Return whether the Cartridge RAM is saved periodically to its file
+     *
+     * @return is the periodic save of the Cartridge RAM enabled
+     */
+    public boolean isBatterySaveEnabled() {
+        return battery_save;
+    }
+
+    /**
+     * Return the listener notified of every computed audio sample
+     *
+     * @return the current listener, null if none
+     */
+    public DoubleConsumer getAudioListener() {
+        return audio_listener;
+    }
+
+    /**
+     * Return the number of frames completed since the console was created
+     *
+     * @return the number of completed frames
+     */
+    public long getFrameCount() {
+        return ppu.getFrameCount();
+    }
+
+    /**
+     * Enable or disable the instruction mode used by step()
+     * in this mode a whole CPU Instruction is executed at once instead of cycle by cycle
+     *
+     * @param enabled should the instruction mode be enabled
+     */
+    public void enableInstructionStepping(boolean enabled) {
+        instruction_stepping = enabled;
+    }
+
+    /**
+     * Return whether or not the instruction mode is enabled
+     *
+     * @return is the instruction mode enabled
+     */
+    public boolean isInstructionSteppingEnabled() {
+        return instruction_stepping;
     }
 
     /**
@@ -0,0 +1,152 @@
+package core;
+
+/**
+ * This class represent a Page Table of an address space
+ * each page point to a backing array and an offset inside of it
+ * this way a memory access to a mapped page is a single array index
+ * and only the unmapped pages (I/O, Mapper registers...) need a handler
+ */
+public class PageTable {
+
+    public static final int UNMAPPED = -1;
+
+    private final int page_shift;
+    private final int page_mask;
+
+    private final byte[][] read_pages;
+    private final int[] read_offsets;
+    private final byte[][] write_pages;
+    private final int[] write_offsets;
+
+    /**
+     * Create a new empty Page Table
+     *
+     * @param nbPages   the number of pages of the address space
+     * @param pageShift the size of a page as a power of 2 (10 for 1Kb pages)
+     */
+    public PageTable(int nbPages, int pageShift) {
+        page_shift = pageShift;
+        page_mask = (1 << pageShift) - 1;
+        read_pages = new byte[nbPages][];
+        read_offsets = new int[nbPages];
+        write_pages = new byte[nbPages][];
+        write_offsets = new int[nbPages];
+    }
+
+    /**
+     * Return the size of a page in bytes
+     *
+     * @return the size of a page
+     */
+    public int getPageSize() {
+        return page_mask + 1;
+    }
+
+    /**
+     * Return the backing array of a page mapped as read only (ROM)
+     *
+     * @param addr an address inside the page
+     * @return the backing array, null if the page is unmapped or writable
+     */
+    public byte[] getReadOnlyMemory(int addr) {
+        int page = addr >> page_shift;
+        return write_pages[page] == null ? read_pages[page] : null;
+    }
+
+    /**
+     * Return the backing array of a page mapped as writable (RAM, PRG RAM)
+     *
+     * @param addr an address inside the page
+     * @return the backing array, null if the page is unmapped or read only
+     */
+    public byte[] getWritableMemory(int addr) {
+        return write_pages[addr >> page_shift];
+    }
+
+    /**
+     * Return whether or not an address is directly mapped to a backing array
+     *
+     * @param addr     the address
+     * @param writable must the page also be mapped as writable
+     * @return is the address mapped
+     */
+    public boolean isMapped(int addr, boolean writable) {
+        int page = addr >> page_shift;
+        return (writable ? write_pages[page] : read_pages[page]) != null;
+    }
+
+    /**
+     * Return the offset of an address inside the backing array of its page
+     *
+     * @param addr the address
+     * @return the offset inside the backing array
+     */
+    public int getOffset(int addr) {
+        return read_offsets[addr >> page_shift] + (addr & page_mask);
+    }
+
+    /**
+     * Map a range of the address space to a backing array
+     * the range must be aligned on pages
+     *
+     * @param addr     the start of the range
+     * @param size     the size of the range
+     * @param memory   the backing array
+     * @param offset   the offset of the start of the range inside the array
+     * @param writable can the range be directly written to
+     */
+    public void map(int addr, int size, byte[] memory, int offset, boolean writable) {
+        for (int page = addr >> page_shift; page < (addr + size) >> page_shift; page++) {
+            read_pages[page] = memory;
+            read_offsets[page] = offset;
+            write_pages[page] = writable ? memory : null;
+            write_offsets[page] = offset;
+            offset += page_mask + 1;
+        }
+    }
+
+    /**
+     * Unmap a range of the address space, accesses to this range
+     * will have to be handled by the owner of the Page Table
+     * the range must be aligned on pages
+     *
+     * @param addr the start of the range
+     * @param size the size of the range
+     */
+    public void unmap(int addr, int size) {
+        for (int page = addr >> page_shift; page < (addr + size) >> page_shift; page++) {
+            read_pages[page] = null;
+            write_pages[page] = null;
+        }
+    }
+
+    /**
+     * Read a value from the mapped address space
+     *
+     * @param addr the address to read from
+     * @return the read data as an 8bit unsigned value, UNMAPPED if the page isn't mapped
+     */
+    public int read(int addr) {
+        int page = addr >> page_shift;
+        byte[] memory = read_pages[page];
+        if (memory == null)
+            return UNMAPPED;
+        return memory[read_offsets[page] + (addr & page_mask)] & 0xFF;
+    }
+
+    /**
+     * Write a value to the mapped address space
+     *
+     * @param addr the address to write to
+     * @param data the data to write
+     * @return was the page mapped as writable
+     */
+    public boolean write(int addr, int data) {
+        int page = addr >> page_shift;
+        byte[] memory = write_pages[page];
+        if (memory == null)
+            return false;
+        memory[write_offsets[page] + (addr & page_mask)] = (byte) data;
+        return true;
+    }
+}
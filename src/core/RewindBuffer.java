@@ -0,0 +1,499 @@
+package core;
+
+import exceptions.InvalidFileException;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class represent a rewind buffer of savestates
+ * the emulation thread only copies the state of the console into a preallocated buffer,
+ * a background thread then compresses it as an XOR delta against the next snapshot
+ * only the latest snapshot is kept uncompressed, the older ones are rebuilt by applying the deltas backward
+ * the oldest snapshots are dropped when the memory budget is exceeded
+ * a delta is stored as a sequence of [zero run length][literal run length][literal bytes] (lengths as varints)
+ * the deltas are kept in a ring of the size of the budget, allocated once the size of the snapshots is known,
+ * each one between two copies of its length so the newest can be removed from the head and the oldest from the tail
+ * once the buffers are allocated, taking, compressing and restoring a snapshot doesn't allocate anything
+ */
+public class RewindBuffer {
+
+    private static final int NB_CAPTURE_BUFFERS = 4;
+
+    private final long memory_budget;
+    private final int interval;
+    private final BlockingQueue<ByteBuffer> free_buffers;
+    private final BlockingQueue<ByteBuffer> pending_buffers;
+
+    private byte[] latest = null;
+    private ByteBuffer latest_buffer = null;
+    private int state_size = 0;
+    private byte[] encoding_buffer = new byte[0];
+    private byte[] delta_ring = new byte[0];
+    private int ring_head = 0;
+    private int ring_tail = 0;
+    private int delta_count = 0;
+    private int varint_value = 0;
+    private long deltas_size = 0;
+    private int frame_counter = 0;
+    private long processed_count = 0;
+
+    private volatile long snapshot_count = 0;
+    private volatile long dropped_count = 0;
+    private volatile long compressed_count = 0;
+    private volatile long compressed_bytes = 0;
+    private volatile long capture_time = 0;
+    private volatile long compression_time = 0;
+    private volatile double snapshot_rate = 0;
+    private long last_capture = 0;
+
+    /**
+     * Create a new rewind buffer and start its compression thread
+     *
+     * @param memoryBudget the maximum memory used by the snapshots in bytes
+     * @param interval     the number of frames between two snapshots
+     */
+    public RewindBuffer(long memoryBudget, int interval) {
+        this.memory_budget = memoryBudget;
+        this.interval = Math.max(interval, 1);
+        free_buffers = new ArrayBlockingQueue<>(NB_CAPTURE_BUFFERS);
+        pending_buffers = new ArrayBlockingQueue<>(NB_CAPTURE_BUFFERS);
+        for (int i = 0; i < NB_CAPTURE_BUFFERS; i++)
+            free_buffers.offer(ByteBuffer.allocate(SaveState.MAX_SIZE));
+        Thread compression_thread = new Thread(this::compressionLoop, "Rewind Compression Thread");
+        compression_thread.setDaemon(true);
+        compression_thread.start();
+    }
+
+    /**
+     * Called by the emulation thread after every frame
+     * a snapshot is taken every interval frames, it is only copied and handed to the compression thread
+     * if the compression thread is late the snapshot is dropped
+     *
+     * @param nes the console to snapshot
+     */
+    public void frameCompleted(NES nes) {
+        if (++frame_counter < interval)
+            return;
+        frame_counter = 0;
+        long start = System.nanoTime();
+        ByteBuffer buffer = free_buffers.poll();
+        if (buffer == null) {
+            dropped_count++;
+            return;
+        }
+        buffer.clear();
+        SaveState.write(nes, buffer);
+        snapshot_count++;
+        pending_buffers.offer(buffer);
+        long end = System.nanoTime();
+        //The statistics are smoothed over the last snapshots
+        capture_time += ((end - start) - capture_time) / 16;
+        if (last_capture != 0)
+            snapshot_rate += (1e9 / (end - last_capture) - snapshot_rate) / 16;
+        last_capture = end;
+    }
+
+    /**
+     * Restore the console to the latest snapshot and remove it from the buffer
+     * must be called from the emulation thread, it waits for the pending snapshots to be compressed
+     *
+     * @param nes the console to restore
+     * @return was a snapshot available
+     */
+    public boolean rewind(NES nes) {
+        synchronized (this) {
+            waitPendingSnapshots();
+            if (latest == null)
+                return false;
+            try {
+                latest_buffer.clear();
+                SaveState.read(nes, latest_buffer);
+            } catch (InvalidFileException e) {
+                clear();
+                return false;
+            }
+            //The previous snapshot is rebuilt from the latest one
+            if (delta_count == 0) {
+                latest = null;
+            } else {
+                int length = removeNewestDelta(encoding_buffer);
+                applyDelta(encoding_buffer, length, latest);
+            }
+            //The next snapshot is taken one interval after the restored one
+            frame_counter = 0;
+            last_capture = 0;
+            return true;
+        }
+    }
+
+    /**
+     * Drop every snapshot, must be called when the Cartridge changes
+     * the emulation thread must not be taking snapshots at the same time
+     */
+    public void clear() {
+        synchronized (this) {
+            waitPendingSnapshots();
+            clearDeltas();
+            latest = null;
+            frame_counter = 0;
+            last_capture = 0;
+        }
+    }
+
+    /**
+     * Wait until every captured snapshot has been compressed
+     * the snapshots must be compressed in the order they were captured,
+     * so the compression thread is left to finish its work
+     */
+    private void waitPendingSnapshots() {
+        try {
+            while (processed_count < snapshot_count)
+                wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The compression loop, waiting for captured snapshots
+     */
+    private void compressionLoop() {
+        while (true) {
+            try {
+                ByteBuffer buffer = pending_buffers.take();
+                synchronized (this) {
+                    compress(buffer);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make a captured snapshot the latest one and store the previous latest as a delta against it
+     * the capture buffer is then given back to the emulation thread
+     *
+     * @param buffer the captured snapshot
+     */
+    private void compress(ByteBuffer buffer) {
+        long start = System.nanoTime();
+        byte[] snapshot = buffer.array();
+        int size = buffer.getInt(SaveState.HEADER_SIZE - 4) + SaveState.HEADER_SIZE;
+        if (latest == null || size != state_size) {
+            clearDeltas();
+            if (latest == null || latest.length != size) {
+                latest = new byte[size];
+                latest_buffer = ByteBuffer.wrap(latest);
+            }
+            state_size = size;
+            //The deltas share the budget with the latest snapshot
+            int ring_size = (int) Math.max(0, Math.min(memory_budget - size, Integer.MAX_VALUE - 8));
+            if (delta_ring.length != ring_size)
+                delta_ring = new byte[ring_size];
+        } else {
+            int length = encodeDelta(latest, snapshot, size);
+            addNewestDelta(encoding_buffer, length);
+            compressed_count++;
+            compressed_bytes += length;
+        }
+        System.arraycopy(snapshot, 0, latest, 0, size);
+        free_buffers.offer(buffer);
+        compression_time += ((System.nanoTime() - start) - compression_time) / 16;
+        processed_count++;
+        notifyAll();
+    }
+
+    /**
+     * Store a delta as the newest one, the oldest ones are dropped to stay within the memory budget
+     * a delta larger than the whole ring is dropped with all the others
+     *
+     * @param delta  the buffer containing the encoded delta
+     * @param length the length of the delta
+     */
+    private void addNewestDelta(byte[] delta, int length) {
+        int record = length + 8;
+        while (delta_count > 0 && deltas_size + record > delta_ring.length)
+            removeOldestDelta();
+        if (record > delta_ring.length)
+            return;
+        writeRingInt(ring_head, length);
+        copyToRing(delta, (ring_head + 4) % delta_ring.length, length);
+        writeRingInt((ring_head + 4 + length) % delta_ring.length, length);
+        ring_head = (ring_head + record) % delta_ring.length;
+        deltas_size += record;
+        delta_count++;
+    }
+
+    /**
+     * Remove the newest delta from the ring
+     *
+     * @param delta the buffer receiving the encoded delta
+     * @return the length of the delta
+     */
+    private int removeNewestDelta(byte[] delta) {
+        int length = readRingInt((ring_head - 4 + delta_ring.length) % delta_ring.length);
+        int record = length + 8;
+        ring_head = (ring_head - record + delta_ring.length) % delta_ring.length;
+        copyFromRing((ring_head + 4) % delta_ring.length, delta, length);
+        deltas_size -= record;
+        delta_count--;
+        return length;
+    }
+
+    /**
+     * Drop the oldest delta of the ring
+     */
+    private void removeOldestDelta() {
+        int record = readRingInt(ring_tail) + 8;
+        ring_tail = (ring_tail + record) % delta_ring.length;
+        deltas_size -= record;
+        delta_count--;
+    }
+
+    /**
+     * Drop every delta, the ring is kept
+     */
+    private void clearDeltas() {
+        ring_head = 0;
+        ring_tail = 0;
+        delta_count = 0;
+        deltas_size = 0;
+    }
+
+    /**
+     * Copy bytes to the ring, wrapping at its end
+     *
+     * @param source the bytes to copy
+     * @param offset the position in the ring to copy to
+     * @param length the number of bytes to copy
+     */
+    private void copyToRing(byte[] source, int offset, int length) {
+        int first = Math.min(length, delta_ring.length - offset);
+        System.arraycopy(source, 0, delta_ring, offset, first);
+        System.arraycopy(source, first, delta_ring, 0, length - first);
+    }
+
+    /**
+     * Copy bytes from the ring, wrapping at its end
+     *
+     * @param offset      the position in the ring to copy from
+     * @param destination the buffer receiving the bytes
+     * @param length      the number of bytes to copy
+     */
+    private void copyFromRing(int offset, byte[] destination, int length) {
+        int first = Math.min(length, delta_ring.length - offset);
+        System.arraycopy(delta_ring, offset, destination, 0, first);
+        System.arraycopy(delta_ring, 0, destination, first, length - first);
+    }
+
+    /**
+     * Write an integer to the ring (msb first), wrapping at its end
+     *
+     * @param offset the position in the ring to write at
+     * @param value  the value to write
+     */
+    private void writeRingInt(int offset, int value) {
+        for (int i = 0; i < 4; i++)
+            delta_ring[(offset + i) % delta_ring.length] = (byte) (value >>> (24 - 8 * i));
+    }
+
+    /**
+     * Read an integer written by writeRingInt
+     *
+     * @param offset the position in the ring to read at
+     * @return the read value
+     */
+    private int readRingInt(int offset) {
+        int value = 0;
+        for (int i = 0; i < 4; i++)
+            value = (value << 8) | (delta_ring[(offset + i) % delta_ring.length] & 0xFF);
+        return value;
+    }
+
+    /**
+     * Encode the XOR delta between two snapshots into the encoding buffer
+     * applying the delta to the target snapshot gives back the source snapshot
+     *
+     * @param source the snapshot to encode
+     * @param target the snapshot the delta is relative to
+     * @param size   the size of the snapshots
+     * @return the length of the encoded delta
+     */
+    private int encodeDelta(byte[] source, byte[] target, int size) {
+        //Worst case : a literal run for every byte with 2 varints of 3 bytes
+        if (encoding_buffer.length < size + size / 64 + 16)
+            encoding_buffer = new byte[size + size / 64 + 16];
+        int out = 0;
+        int i = 0;
+        while (i < size) {
+            int zeros_start = i;
+            while (i < size && source[i] == target[i])
+                i++;
+            int literals_start = i;
+            //A literal run ends when at least 4 bytes are identical, shorter zero runs aren't worth a new pair
+            int same = 0;
+            while (i < size && same < 4) {
+                same = source[i] == target[i] ? same + 1 : 0;
+                i++;
+            }
+            int literals_end = same == 4 ? i - 4 : i;
+            i = literals_end;
+            out = writeVarint(encoding_buffer, out, literals_start - zeros_start);
+            out = writeVarint(encoding_buffer, out, literals_end - literals_start);
+            for (int j = literals_start; j < literals_end; j++)
+                encoding_buffer[out++] = (byte) (source[j] ^ target[j]);
+        }
+        return out;
+    }
+
+    /**
+     * Apply a delta in place to a snapshot
+     *
+     * @param delta    the buffer containing the encoded delta
+     * @param length   the length of the delta
+     * @param snapshot the snapshot to modify
+     */
+    private void applyDelta(byte[] delta, int length, byte[] snapshot) {
+        int in = 0;
+        int i = 0;
+        while (in < length) {
+            in = readVarint(delta, in);
+            i += varint_value;
+            in = readVarint(delta, in);
+            for (int end = i + varint_value; i < end; i++)
+                snapshot[i] ^= delta[in++];
+        }
+    }
+
+    /**
+     * Write a positive integer using 7 bits per byte, the msb indicates that another byte follows
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param value  the value to write
+     * @return the offset after the written value
+     */
+    private static int writeVarint(byte[] buffer, int offset, int value) {
+        while (value >= 0x80) {
+            buffer[offset++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Read a positive integer written by writeVarint, the value is left in varint_value
+     *
+     * @param buffer the buffer to read from
+     * @param offset the offset to read at
+     * @return the offset after the read value
+     */
+    private int readVarint(byte[] buffer, int offset) {
+        int result = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer[offset++];
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        varint_value = result;
+        return offset;
+    }
+
+    /**
+     * Return the number of snapshots that can currently be restored
+     *
+     * @return the number of stored snapshots
+     */
+    public synchronized int getSnapshotCount() {
+        return latest == null ? 0 : delta_count + 1;
+    }
+
+    /**
+     * Return the number of frames that can currently be rewound
+     *
+     * @return the number of frames covered by the stored snapshots
+     */
+    public synchronized int getBufferedFrames() {
+        return getSnapshotCount() * interval;
+    }
+
+    /**
+     * Return the memory currently used by the stored snapshots
+     *
+     * @return the used memory in bytes
+     */
+    public synchronized long getMemoryUsage() {
+        return latest == null ? 0 : deltas_size + state_size;
+    }
+
+    /**
+     * Return the number of snapshots taken per second of emulation
+     *
+     * @return the smoothed snapshot rate
+     */
+    public double getSnapshotRate() {
+        return snapshot_rate;
+    }
+
+    /**
+     * Return the average size of a compressed snapshot
+     *
+     * @return the average compressed size in bytes
+     */
+    public long getAverageCompressedSize() {
+        return compressed_count == 0 ? 0 : compressed_bytes / compressed_count;
+    }
+
+    /**
+     * Return the time spent by the emulation thread to capture a snapshot
+     *
+     * @return the smoothed capture time in nanoseconds
+     */
+    public long getCaptureTime() {
+        return capture_time;
+    }
+
+    /**
+     * Return the time spent by the compression thread to compress a snapshot
+     *
+     * @return the smoothed compression time in nanoseconds
+     */
+    public long getCompressionTime() {
+        return compression_time;
+    }
+
+    /**
+     * Return the number of snapshots dropped because the compression thread was late
+     *
+     * @return the number of dropped snapshots
+     */
+    public long getDroppedCount() {
+        return dropped_count;
+    }
+
+    /**
+     * Return the number of snapshots taken since the buffer was created
+     *
+     * @return the number of taken snapshots
+     */
+    public long getTakenCount() {
+        return snapshot_count;
+    }
+
+    /**
+     * Return a one line summary of the rewind buffer statistics
+     *
+     * @return the statistics of the rewind buffer
+     */
+    public String getStatistics() {
+        return String.format("%.1fs buffered, %.1f/s, %.1fKb/snapshot, %.1fMb, capture %dus, compression %dus",
+                getBufferedFrames() / 60.0988, snapshot_rate, getAverageCompressedSize() / 1024.0,
+                getMemoryUsage() / (1024.0 * 1024.0), capture_time / 1000, compression_time / 1000);
+    }
+}
@@ -0,0 +1,137 @@
+package core;
+
+import exceptions.InvalidFileException;
+
+import java.nio.ByteBuffer;
+import java.util.function.DoubleConsumer;
+
+/**
+ * This class implements run-ahead to hide the input lag of the games
+ * the real frame is computed, then the console is saved and run N frames ahead
+ * without audio, without battery save and with pixel output only for the last one, which is presented,
+ * before being restored to the real frame
+ * the real frame is drawn too, so the state of the console (savestates, rewind) is the same as without run-ahead
+ * the games polling the inputs during a frame but reacting to it several frames later
+ * will then seem to react N frames earlier
+ */
+public class RunAhead {
+
+    public static final int MAX_FRAMES = 3;
+
+    private final ByteBuffer state;
+    private ByteBuffer screen;
+    private volatile int frames = 0;
+
+    private volatile long frame_time = 0;
+    private volatile long overhead = 0;
+
+    /**
+     * Create a new run-ahead with its preallocated buffers
+     */
+    public RunAhead() {
+        state = ByteBuffer.allocate(SaveState.MAX_SIZE);
+    }
+
+    /**
+     * Set the number of frames to run ahead
+     *
+     * @param frames the number of frames to run ahead (0 to disable, at most MAX_FRAMES)
+     */
+    public void setFrames(int frames) {
+        this.frames = Math.max(0, Math.min(frames, MAX_FRAMES));
+        overhead = 0;
+    }
+
+    /**
+     * Return the number of frames to run ahead
+     *
+     * @return the number of frames to run ahead (0 if disabled)
+     */
+    public int getFrames() {
+        return frames;
+    }
+
+    /**
+     * Compute one frame of the console
+     * if run-ahead is enabled and the frame is presented, the presented pixels are the ones N frames ahead
+     * when the method returns the console is in the state of the real frame
+     *
+     * @param nes     the console to run
+     * @param present will the frame be presented
+     */
+    public void runFrame(NES nes, boolean present) {
+        long start = System.nanoTime();
+        int frames = this.frames;
+        //The frames that won't be presented doesn't need to run ahead
+        if (frames == 0 || !present) {
+            nes.getPpu().setOutputEnabled(present);
+            nes.runFrame();
+            return;
+        }
+        //The frame saved in the state must be the real one
+        nes.getPpu().setOutputEnabled(true);
+        nes.runFrame();
+        long real_frame = System.nanoTime();
+
+        state.clear();
+        SaveState.write(nes, state);
+        //The audio of the frames ahead mustn't be heard
+        DoubleConsumer listener = nes.getAudioListener();
+        nes.setAudioListener(null);
+        //The frames ahead are rolled back, their Cartridge RAM mustn't be written to the save file
+        boolean battery_save = nes.isBatterySaveEnabled();
+        nes.setBatterySaveEnabled(false);
+        try {
+            for (int i = 1; i <= frames; i++) {
+                nes.getPpu().setOutputEnabled(i == frames);
+                nes.runFrame();
+            }
+        } finally {
+            nes.setAudioListener(listener);
+            nes.setBatterySaveEnabled(battery_save);
+        }
+
+        //The presented frame is kept while the console is restored
+        ByteBuffer screen_buffer = nes.getPpu().getScreenBuffer();
+        if (screen == null || screen.capacity() != screen_buffer.capacity())
+            screen = ByteBuffer.allocate(screen_buffer.capacity());
+        ByteBuffer frame = screen_buffer.duplicate();
+        frame.rewind();
+        screen.clear();
+        screen.put(frame);
+        state.flip();
+        try {
+            SaveState.read(nes, state);
+        } catch (InvalidFileException e) {
+            //The state has just been written by the same console
+            throw new IllegalStateException("Run-ahead state corrupted", e);
+        }
+        screen.flip();
+        screen_buffer.clear();
+        screen_buffer.put(screen);
+        screen_buffer.flip();
+
+        //The timings are smoothed over the last frames
+        long end = System.nanoTime();
+        frame_time += ((real_frame - start) - frame_time) / 16;
+        overhead += ((end - real_frame) - overhead) / 16;
+    }
+
+    /**
+     * Return the time spent computing the real frame
+     *
+     * @return the smoothed time of a real frame in nanoseconds
+     */
+    public long getFrameTime() {
+        return frame_time;
+    }
+
+    /**
+     * Return the extra time spent running ahead (save, frames ahead and restore)
+     *
+     * @return the smoothed extra time per frame in nanoseconds
+     */
+    public long getOverhead() {
+        return overhead;
+    }
+}
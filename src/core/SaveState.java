@@ -0,0 +1,132 @@
+package core;
+
+import exceptions.InvalidFileException;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * This class handle the savestate format and the savestate slots
+ * a savestate is a header (magic number, version, ROM checksum, size) followed by the state of the console
+ * the state is written through a ByteBuffer without any allocation so it can be saved every frame
+ */
+public class SaveState {
+
+    public static final int MAGIC = 0x4E4D5353; //"NMSS" (NEmuS SaveState)
+    public static final int VERSION = 4;
+    public static final int HEADER_SIZE = 20;
+    public static final int MAX_SIZE = 512 * 1024;
+    public static final int NB_SLOTS = 10;
+
+    /**
+     * The class only contains static methods
+     */
+    private SaveState() {}
+
+    /**
+     * Write a savestate of the console to the buffer
+     * the buffer must have at least MAX_SIZE bytes remaining
+     *
+     * @param nes    the console to save
+     * @param buffer the buffer to write to
+     * @return the size of the savestate in bytes
+     */
+    public static int write(NES nes, ByteBuffer buffer) {
+        int start = buffer.position();
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(nes.getCartridge().getChecksum());
+        buffer.putInt(0);
+        nes.saveState(buffer);
+        //The size is written once the state is known
+        int size = buffer.position() - start;
+        buffer.putInt(start + HEADER_SIZE - 4, size - HEADER_SIZE);
+        return size;
+    }
+
+    /**
+     * Restore the console from a savestate read from the buffer
+     * the header is checked before anything is loaded
+     *
+     * @param nes    the console to restore
+     * @param buffer the buffer to read from
+     * @throws InvalidFileException if the savestate is invalid, from another version or from another game
+     */
+    public static void read(NES nes, ByteBuffer buffer) throws InvalidFileException {
+        try {
+            if (buffer.getInt() != MAGIC)
+                throw new InvalidFileException("Not a savestate");
+            int version = buffer.getInt();
+            if (version != VERSION)
+                throw new InvalidFileException("Unsupported savestate version " + version + " (expected " + VERSION + ")");
+            if (buffer.getLong() != nes.getCartridge().getChecksum())
+                throw new InvalidFileException("The savestate is from another game");
+            if (buffer.getInt() > buffer.remaining())
+                throw new InvalidFileException("The savestate is truncated");
+        } catch (BufferUnderflowException e) {
+            throw new InvalidFileException("The savestate is truncated");
+        }
+        nes.loadState(buffer);
+    }
+
+    /**
+     * Create a savestate of the console
+     *
+     * @param nes the console to save
+     * @return the savestate
+     */
+    public static byte[] save(NES nes) {
+        ByteBuffer buffer = ByteBuffer.allocate(MAX_SIZE);
+        int size = write(nes, buffer);
+        return Arrays.copyOf(buffer.array(), size);
+    }
+
+    /**
+     * Restore the console from a savestate
+     *
+     * @param nes   the console to restore
+     * @param state the savestate
+     * @throws InvalidFileException if the savestate is invalid, from another version or from another game
+     */
+    public static void load(NES nes, byte[] state) throws InvalidFileException {
+        read(nes, ByteBuffer.wrap(state));
+    }
+
+    /**
+     * Return the file of a savestate slot (filename.st0 to filename.st9)
+     *
+     * @param romFile the path to the ROM
+     * @param slot    the slot number
+     * @return the path to the savestate of the slot
+     */
+    public static String getSlotFile(String romFile, int slot) {
+        return romFile + ".st" + slot;
+    }
+
+    /**
+     * Save the console to a savestate slot
+     *
+     * @param nes  the console to save
+     * @param slot the slot number
+     * @throws IOException if the slot file can't be written
+     */
+    public static void saveSlot(NES nes, int slot) throws IOException {
+        Files.write(Paths.get(getSlotFile(nes.getCartridge().getFilename(), slot)), save(nes));
+    }
+
+    /**
+     * Restore the console from a savestate slot
+     *
+     * @param nes  the console to restore
+     * @param slot the slot number
+     * @throws IOException          if the slot file can't be read
+     * @throws InvalidFileException if the savestate is invalid, from another version or from another game
+     */
+    public static void loadSlot(NES nes, int slot) throws IOException, InvalidFileException {
+        load(nes, Files.readAllBytes(Paths.get(getSlotFile(nes.getCartridge().getFilename(), slot))));
+    }
+}
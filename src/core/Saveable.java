@@ -0,0 +1,25 @@
+package core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This interface represent a component of the console that can be saved into a savestate
+ * the state must be read back in the exact same order as it was written
+ * any change to the written data must increase SaveState.VERSION
+ */
+public interface Saveable {
+
+    /**
+     * Write the state of the component to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    void saveState(ByteBuffer buffer);
+
+    /**
+     * Restore the state of the component from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    void loadState(ByteBuffer buffer);
+}
@@ -0,0 +1,190 @@
+package core;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class represent a scheduler of timed events
+ * each event is identified by an index and stamped with the tick at which it must occur
+ * the events are kept in a min-heap so the next one is always known without polling every component
+ */
+public class Scheduler implements Saveable {
+
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private final long[] event_ticks;
+    private final int[] heap;
+    private final int[] heap_index;
+    private int size = 0;
+
+    /**
+     * Create a new Scheduler with no event scheduled
+     *
+     * @param nbEvents the number of different events
+     */
+    public Scheduler(int nbEvents) {
+        event_ticks = new long[nbEvents];
+        heap = new int[nbEvents];
+        heap_index = new int[nbEvents];
+        Arrays.fill(event_ticks, NEVER);
+        Arrays.fill(heap_index, -1);
+    }
+
+    /**
+     * Schedule an event at the provided tick
+     * if the event is already scheduled, it is moved to the new tick
+     *
+     * @param event the event to schedule
+     * @param tick  the tick at which the event must occur
+     */
+    public void schedule(int event, long tick) {
+        event_ticks[event] = tick;
+        if (heap_index[event] == -1) {
+            heap[size] = event;
+            heap_index[event] = size;
+            size++;
+            siftUp(size - 1);
+        } else {
+            siftUp(heap_index[event]);
+            siftDown(heap_index[event]);
+        }
+    }
+
+    /**
+     * Schedule an event at the provided tick only if it isn't scheduled earlier
+     *
+     * @param event the event to schedule
+     * @param tick  the latest tick at which the event must occur
+     */
+    public void scheduleBefore(int event, long tick) {
+        if (heap_index[event] == -1 || event_ticks[event] > tick)
+            schedule(event, tick);
+    }
+
+    /**
+     * Remove an event from the Scheduler
+     *
+     * @param event the event to cancel
+     */
+    public void cancel(int event) {
+        int index = heap_index[event];
+        if (index == -1)
+            return;
+        size--;
+        heap_index[event] = -1;
+        event_ticks[event] = NEVER;
+        if (index != size) {
+            //The last element of the heap takes the place of the removed one
+            int moved = heap[size];
+            heap[index] = moved;
+            heap_index[moved] = index;
+            siftUp(index);
+            siftDown(heap_index[moved]);
+        }
+    }
+
+    /**
+     * Remove every event from the Scheduler
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            heap_index[heap[i]] = -1;
+            event_ticks[heap[i]] = NEVER;
+        }
+        size = 0;
+    }
+
+    /**
+     * Return the tick of the next event
+     *
+     * @return the tick of the next event, NEVER if nothing is scheduled
+     */
+    public long nextEventTick() {
+        return size == 0 ? NEVER : event_ticks[heap[0]];
+    }
+
+    /**
+     * Remove the next event from the Scheduler and return it
+     *
+     * @return the next event
+     */
+    public int poll() {
+        int event = heap[0];
+        cancel(event);
+        return event;
+    }
+
+    /**
+     * Write the scheduled events to the buffer
+     * the heap is saved as is, so events scheduled at the same tick are polled in the same order after a load
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(size);
+        for (int i = 0; i < size; i++)
+            buffer.putInt(heap[i]);
+        for (long tick : event_ticks)
+            buffer.putLong(tick);
+    }
+
+    /**
+     * Restore the scheduled events from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        Arrays.fill(heap_index, -1);
+        size = buffer.getInt();
+        for (int i = 0; i < size; i++) {
+            heap[i] = buffer.getInt();
+            heap_index[heap[i]] = i;
+        }
+        for (int i = 0; i < event_ticks.length; i++)
+            event_ticks[i] = buffer.getLong();
+    }
+
+    /**
+     * Move an element of the heap up until its parent is earlier
+     *
+     * @param index the index of the element in the heap
+     */
+    private void siftUp(int index) {
+        int event = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >> 1;
+            if (event_ticks[heap[parent]] <= event_ticks[event])
+                break;
+            heap[index] = heap[parent];
+            heap_index[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = event;
+        heap_index[event] = index;
+    }
+
+    /**
+     * Move an element of the heap down until its children are later
+     *
+     * @param index the index of the element in the heap
+     */
+    private void siftDown(int index) {
+        int event = heap[index];
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && event_ticks[heap[child + 1]] < event_ticks[heap[child]])
+                child++;
+            if (event_ticks[event] <= event_ticks[heap[child]])
+                break;
+            heap[index] = heap[child];
+            heap_index[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = event;
+        heap_index[event] = index;
+    }
+}
@@ -1,12 +1,14 @@
 package core.apu;
 
 import core.NES;
+import core.Saveable;
 import core.apu.channels.DMCChannel;
 import core.apu.channels.NoiseChannel;
 import core.apu.channels.PulseChannel;
 import core.apu.channels.TriangleChannel;
 import utils.AudioSampleCollection;
 
+import java.nio.ByteBuffer;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -14,7 +16,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * This class represent the APU of the NES
  * it handle everything sound related
  */
-public class APU_2A03 {
+public class APU_2A03 implements Saveable {
 
     private static final int VISUALIZER_SAMPLE_SIZE = 256;
     private static final double CLOCK_TIME = .333333333 / 1789773.0;
@@ -48,6 +50,7 @@ public class APU_2A03 {
     private boolean linear_out = false;
 
     private int cycles_until_visualizer_sample = 0;
+    private volatile boolean visualizer_enabled = false;
 
     /**
      * Create a new instance of an APU
@@ -98,23 +101,25 @@ public class APU_2A03 {
             double tnd = (t == 0 && n == 0 && d == 0) ? 0 : 159.79 / (1.0 / (t/8227.0 + n/12241.0 + d/22638.0) + 100);
             sample = pulse + tnd;
         }
-        if (cycles_until_visualizer_sample == 0) {
-            if (audio_visualizer_queue.size() >= VISUALIZER_SAMPLE_SIZE)
-                audio_visualizer_queue.poll();
-
-            AudioSampleCollection sampleCollection = new AudioSampleCollection();
-            sampleCollection.pulse1 = pulse_1_rendered ? pulse_1.sample : 0;
-            sampleCollection.pulse2 = pulse_2_rendered ? pulse_2.sample : 0;
-            sampleCollection.triangle = triangle_rendered ? triangle.sample : 0;
-            sampleCollection.noise = noise_rendered ? noise.sample : 0;
-            sampleCollection.dmc = dmc_rendered ? dmc.output : 0;
-            sampleCollection.mixer = sample * 1.5;
-            audio_visualizer_queue.offer(sampleCollection);
-
-            cycles_until_visualizer_sample = 1280 / VISUALIZER_SAMPLE_SIZE;
+        //The visualizer samples are only allocated while the visualizer is shown
+        if (visualizer_enabled) {
+            if (cycles_until_visualizer_sample == 0) {
+                if (audio_visualizer_queue.size() >= VISUALIZER_SAMPLE_SIZE)
+                    audio_visualizer_queue.poll();
+
+                AudioSampleCollection sampleCollection = new AudioSampleCollection();
+                sampleCollection.pulse1 = pulse_1_rendered ? pulse_1.sample : 0;
+                sampleCollection.pulse2 = pulse_2_rendered ? pulse_2.sample : 0;
+                sampleCollection.triangle = triangle_rendered ? triangle.sample : 0;
+                sampleCollection.noise = noise_rendered ? noise.sample : 0;
+                sampleCollection.dmc = dmc_rendered ? dmc.output : 0;
+                sampleCollection.mixer = sample * 1.5;
+                audio_visualizer_queue.offer(sampleCollection);
+
+                cycles_until_visualizer_sample = 1280 / VISUALIZER_SAMPLE_SIZE;
+            }
+            cycles_until_visualizer_sample--;
         }
-
-        cycles_until_visualizer_sample--;
         return sample * 2 * volume;
     }
 
@@ -122,6 +127,18 @@ public class APU_2A03 {
         return audio_visualizer_queue;
     }
 
+    /**
+     * Enable or disable the collection of the samples shown by the audio visualizer (APU Viewer)
+     * when disabled, computing a sample doesn't allocate anything
+     *
+     * @param enabled should the visualizer samples be collected
+     */
+    public void enableVisualizer(boolean enabled) {
+        visualizer_enabled = enabled;
+        if (!enabled)
+            audio_visualizer_queue.clear();
+    }
+
     /**
      * Enable or Disable the first pulse channel rendering
      * (only inhibit the output of the channel to the Mixer)
@@ -424,6 +441,30 @@ public class APU_2A03 {
         clock_counter++;
     }
 
+    /**
+     * Return the minimal number of ticks before the APU can trigger an IRQ
+     * or access the memory on its own (DMC sample fetch, which also raises the DMC IRQ)
+     * used to know how far the APU can lag behind the CPU
+     *
+     * @return the minimal number of ticks before the next event
+     */
+    public int ticksBeforeNextEvent() {
+        //While the frame counter is being reset, the APU need to be clocked with the CPU
+        if (cycle_remaining_since_4017_write >= 0 || clock_counter < 0)
+            return 0;
+        //The frame counter and the DMC sample computations are updated every 6 ticks
+        int next_step = (6 - clock_counter % 6) % 6;
+        int dmc_steps = dmc.computationsBeforeNextFetch();
+        int dmc_ticks = dmc_steps == Integer.MAX_VALUE ? Integer.MAX_VALUE : next_step + 6 * (dmc_steps - 1);
+        //Only the 4 step mode can trigger a frame IRQ
+        if (flag_5_step_mode || flag_IRQ_inhibit || frame_IRQ)
+            return dmc_ticks;
+        int steps = 14916 - frame_counter;
+        if (steps <= 0)
+            return 0;
+        return Math.min(dmc_ticks, next_step + 6 * (steps - 1));
+    }
+
     /**
      * Enable or Disable RAW Audio mode
      *
@@ -509,4 +550,47 @@ public class APU_2A03 {
     public void setLinear(boolean linear) {
         linear_out = linear;
     }
+
+    /**
+     * Write the state of the APU to the buffer
+     * the rendering settings and the visualizer aren't part of the emulation state
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        pulse_1.saveState(buffer);
+        pulse_2.saveState(buffer);
+        triangle.saveState(buffer);
+        noise.saveState(buffer);
+        dmc.saveState(buffer);
+        buffer.putInt(clock_counter);
+        buffer.putDouble(total_time);
+        buffer.putInt(frame_counter);
+        buffer.putInt(cycle_remaining_since_4017_write);
+        buffer.put((byte) (frame_IRQ ? 1 : 0));
+        buffer.put((byte) (flag_IRQ_inhibit ? 1 : 0));
+        buffer.put((byte) (flag_5_step_mode ? 1 : 0));
+    }
+
+    /**
+     * Restore the state of the APU from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        pulse_1.loadState(buffer);
+        pulse_2.loadState(buffer);
+        triangle.loadState(buffer);
+        noise.loadState(buffer);
+        dmc.loadState(buffer);
+        clock_counter = buffer.getInt();
+        total_time = buffer.getDouble();
+        frame_counter = buffer.getInt();
+        cycle_remaining_since_4017_write = buffer.getInt();
+        frame_IRQ = buffer.get() != 0;
+        flag_IRQ_inhibit = buffer.get() != 0;
+        flag_5_step_mode = buffer.get() != 0;
+    }
 }
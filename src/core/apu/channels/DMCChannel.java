@@ -1,12 +1,15 @@
 package core.apu.channels;
 
 import core.NES;
+import core.Saveable;
 import core.apu.channels.components.dmc.MemoryReader;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class represent a DMC Channel of the APU
  */
-public class DMCChannel {
+public class DMCChannel implements Saveable {
 
     private static final int[] rate_table = {428, 380, 340, 320, 286, 254, 226, 214, 190, 160, 142, 128, 106, 84, 72, 54};
 
@@ -160,6 +163,28 @@ public class DMCChannel {
         return memoryReader.bytes_remaining > 0;
     }
 
+    /**
+     * Return the minimal number of sample computations before the next memory fetch
+     * (which also triggers the IRQ at the end of a sample), the timer is assumed to be clocked twice between computations
+     *
+     * @return the number of computations until the one fetching the next byte, Integer.MAX_VALUE if the sample is finished
+     */
+    public int computationsBeforeNextFetch() {
+        if (memoryReader.bytes_remaining == 0)
+            return Integer.MAX_VALUE;
+        //An empty buffer is filled by the next computation
+        if (sample_buffer == 0x00)
+            return 1;
+        //The buffer is emptied when the output register is reloaded, the fetch follows at the next computation
+        if (outputUnit.bits_remaining == 0)
+            return 2;
+        if (outputUnit.bits_remaining < 0)
+            return 1;
+        int first_shift = Math.max(1, (counter + 1) / 2);
+        int shift_interval = Math.max(1, rate / 2);
+        return first_shift + (outputUnit.bits_remaining - 1) * shift_interval + 1;
+    }
+
     /**
      * Return whether or not the channel has its IRQ pulled high
      *
@@ -168,15 +193,81 @@ public class DMCChannel {
     public boolean hasInterruptTriggered() {
         return interrupt;
     }
+
+    /**
+     * Write the state of the DMC Channel to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        memoryReader.saveState(buffer);
+        outputUnit.saveState(buffer);
+        buffer.putDouble(output);
+        buffer.put((byte) (interrupt ? 1 : 0));
+        buffer.put((byte) (irqEnabled ? 1 : 0));
+        buffer.put((byte) (loop ? 1 : 0));
+        buffer.putInt(sample_address);
+        buffer.putInt(sample_length);
+        buffer.putInt(sample_buffer);
+        buffer.putInt(rate);
+        buffer.putInt(counter);
+    }
+
+    /**
+     * Restore the state of the DMC Channel from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        memoryReader.loadState(buffer);
+        outputUnit.loadState(buffer);
+        output = buffer.getDouble();
+        interrupt = buffer.get() != 0;
+        irqEnabled = buffer.get() != 0;
+        loop = buffer.get() != 0;
+        sample_address = buffer.getInt();
+        sample_length = buffer.getInt();
+        sample_buffer = buffer.getInt();
+        rate = buffer.getInt();
+        counter = buffer.getInt();
+    }
 }
 
 /**
  * This class is just a wrapper for the OutputUnit
  */
-class OutputUnit {
+class OutputUnit implements Saveable {
 
     int shift_register = 0x00;
     int bits_remaining = 0x00;
     int output = 0x00;
     boolean silence = false;
+
+    /**
+     * Write the state of the Output Unit to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(shift_register);
+        buffer.putInt(bits_remaining);
+        buffer.putInt(output);
+        buffer.put((byte) (silence ? 1 : 0));
+    }
+
+    /**
+     * Restore the state of the Output Unit from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        shift_register = buffer.getInt();
+        bits_remaining = buffer.getInt();
+        output = buffer.getInt();
+        silence = buffer.get() != 0;
+    }
 }
@@ -1,14 +1,17 @@
 package core.apu.channels;
 
+import core.Saveable;
 import core.apu.APU_2A03;
 import core.apu.channels.components.Envelope;
 import core.apu.channels.components.LengthCounter;
 import core.apu.channels.components.Sequencer;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class represent a Noise Channel of the APU
  */
-public class NoiseChannel {
+public class NoiseChannel implements Saveable {
 
     public double sample = 0;
 
@@ -174,4 +177,35 @@ public class NoiseChannel {
         sequencer.sequence = seq;
     }
 
+    /**
+     * Write the state of the Noise Channel to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        envelope.saveState(buffer);
+        length_counter.saveState(buffer);
+        sequencer.saveState(buffer);
+        buffer.putDouble(sample);
+        buffer.put((byte) (enabled ? 1 : 0));
+        buffer.put((byte) (halted ? 1 : 0));
+        buffer.put((byte) (mode ? 1 : 0));
+    }
+
+    /**
+     * Restore the state of the Noise Channel from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        envelope.loadState(buffer);
+        length_counter.loadState(buffer);
+        sequencer.loadState(buffer);
+        sample = buffer.getDouble();
+        enabled = buffer.get() != 0;
+        halted = buffer.get() != 0;
+        mode = buffer.get() != 0;
+    }
 }
@@ -1,5 +1,6 @@
 package core.apu.channels;
 
+import core.Saveable;
 import core.apu.APU_2A03;
 import core.apu.channels.components.Envelope;
 import core.apu.channels.components.LengthCounter;
@@ -7,10 +8,12 @@ import core.apu.channels.components.Sequencer;
 import core.apu.channels.components.pulse.Oscillator;
 import core.apu.channels.components.pulse.Sweeper;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class represent a Pulse Channel of the APU
  */
-public class PulseChannel {
+public class PulseChannel implements Saveable {
 
     private final Sequencer sequencer;
     private final Envelope envelope;
@@ -116,7 +119,6 @@ public class PulseChannel {
             sequencer.clock(true, s -> (((s & 0x01) << 7) | ((s & 0xFE) >> 1)));
             if (sequencer.timer >= 8) {
                 if (raw) {
-                    if (sample >= 1) System.out.println(sample);
                     sample = sequencer.output * ((envelope.output - 1) / 22.0);
                 } else {
                     oscillator.frequency = 1789773.0f / (16.0f * (sequencer.reload + 1));
@@ -180,4 +182,38 @@ public class PulseChannel {
     public void trackSweeper() {
         sweeper.track(sequencer.reload);
     }
+
+    /**
+     * Write the state of the Pulse Channel to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        sequencer.saveState(buffer);
+        envelope.saveState(buffer);
+        length_counter.saveState(buffer);
+        sweeper.saveState(buffer);
+        oscillator.saveState(buffer);
+        buffer.putDouble(sample);
+        buffer.put((byte) (enabled ? 1 : 0));
+        buffer.put((byte) (halted ? 1 : 0));
+    }
+
+    /**
+     * Restore the state of the Pulse Channel from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        sequencer.loadState(buffer);
+        envelope.loadState(buffer);
+        length_counter.loadState(buffer);
+        sweeper.loadState(buffer);
+        oscillator.loadState(buffer);
+        sample = buffer.getDouble();
+        enabled = buffer.get() != 0;
+        halted = buffer.get() != 0;
+    }
 }
\ No newline at end of file
@@ -1,14 +1,17 @@
 package core.apu.channels;
 
+import core.Saveable;
 import core.apu.APU_2A03;
 import core.apu.channels.components.LengthCounter;
 import core.apu.channels.components.triangle.LinearCounter;
 import core.apu.channels.components.triangle.TriangleSequencer;
 
+import java.nio.ByteBuffer;
+
 /**
  * This class represent the Triangle Channel of the APU
  */
-public class TriangleChannel {
+public class TriangleChannel implements Saveable {
 
     private final TriangleSequencer sequencer;
     private final LinearCounter linear_counter;
@@ -178,4 +181,38 @@ public class TriangleChannel {
     public int getLengthCounter() {
         return length_counter.counter;
     }
+
+    /**
+     * Write the state of the Triangle Channel to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        sequencer.saveState(buffer);
+        linear_counter.saveState(buffer);
+        length_counter.saveState(buffer);
+        buffer.putDouble(sample);
+        buffer.put((byte) (enabled ? 1 : 0));
+        buffer.put((byte) (halted ? 1 : 0));
+        buffer.putDouble(last_period);
+        buffer.putDouble(last_sequencer_output);
+    }
+
+    /**
+     * Restore the state of the Triangle Channel from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        sequencer.loadState(buffer);
+        linear_counter.loadState(buffer);
+        length_counter.loadState(buffer);
+        sample = buffer.getDouble();
+        enabled = buffer.get() != 0;
+        halted = buffer.get() != 0;
+        last_period = buffer.getDouble();
+        last_sequencer_output = buffer.getDouble();
+    }
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package core.apu.channels.components;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents an Envelope that can be used to control the volume of an Audio Channel
  */
-public class Envelope {
+public class Envelope implements Saveable {
 
     public boolean started = false;
     public boolean disabled = false;
@@ -41,4 +45,34 @@ public class Envelope {
         else
             output = decay_count;
     }
+
+    /**
+     * Write the state of the Envelope to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (started ? 1 : 0));
+        buffer.put((byte) (disabled ? 1 : 0));
+        buffer.putInt(volume);
+        buffer.putInt(output);
+        buffer.putInt(divider_count);
+        buffer.putInt(decay_count);
+    }
+
+    /**
+     * Restore the state of the Envelope from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        started = buffer.get() != 0;
+        disabled = buffer.get() != 0;
+        volume = buffer.getInt();
+        output = buffer.getInt();
+        divider_count = buffer.getInt();
+        decay_count = buffer.getInt();
+    }
 }
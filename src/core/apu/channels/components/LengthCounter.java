@@ -1,9 +1,13 @@
 package core.apu.channels.components;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents a Length Counter that will be used to count the number of steps left for a note
  */
-public class LengthCounter {
+public class LengthCounter implements Saveable {
 
     public int counter = 0x00;
 
@@ -21,4 +25,24 @@ public class LengthCounter {
                 counter--;
         }
     }
+
+    /**
+     * Write the state of the Length Counter to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(counter);
+    }
+
+    /**
+     * Restore the state of the Length Counter from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        counter = buffer.getInt();
+    }
 }
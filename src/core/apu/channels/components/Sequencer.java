@@ -1,11 +1,14 @@
 package core.apu.channels.components;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
 import java.util.function.Function;
 
 /**
  * This class represents a sequencer used to store information about the Audio Channel and how it should behave
  */
-public class Sequencer {
+public class Sequencer implements Saveable {
 
     public int sequence = 0;
     public int timer = 0;
@@ -28,4 +31,30 @@ public class Sequencer {
             }
         }
     }
+
+    /**
+     * Write the state of the Sequencer to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(sequence);
+        buffer.putInt(timer);
+        buffer.putInt(output);
+        buffer.putInt(reload);
+    }
+
+    /**
+     * Restore the state of the Sequencer from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        sequence = buffer.getInt();
+        timer = buffer.getInt();
+        output = buffer.getInt();
+        reload = buffer.getInt();
+    }
 }
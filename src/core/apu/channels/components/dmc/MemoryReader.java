@@ -1,11 +1,14 @@
 package core.apu.channels.components.dmc;
 
 import core.NES;
+import core.Saveable;
+
+import java.nio.ByteBuffer;
 
 /**
  * This class represents the interface between the DMC Channel and the RAM
  */
-public class MemoryReader {
+public class MemoryReader implements Saveable {
 
     private final NES bus;
 
@@ -36,4 +39,25 @@ public class MemoryReader {
         return 0;
     }
 
+    /**
+     * Write the state of the Memory Reader to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(current_address);
+        buffer.putInt(bytes_remaining);
+    }
+
+    /**
+     * Restore the state of the Memory Reader from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        current_address = buffer.getInt();
+        bytes_remaining = buffer.getInt();
+    }
 }
@@ -1,9 +1,13 @@
 package core.apu.channels.components.pulse;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents an Oscillator and is used to generate a Square Wave of a known frequency, amplitude and duty cycle
  */
-public class Oscillator {
+public class Oscillator implements Saveable {
 
     private static int harmonics = 10;
 
@@ -59,4 +63,28 @@ public class Oscillator {
         j = j - (int) j;
         return 20.785f * j * (j - 0.5f) * (j - 1.0f);
     }
+
+    /**
+     * Write the state of the Oscillator to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putFloat(frequency);
+        buffer.putFloat(duty_cycle);
+        buffer.putFloat(amplitude);
+    }
+
+    /**
+     * Restore the state of the Oscillator from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        frequency = buffer.getFloat();
+        duty_cycle = buffer.getFloat();
+        amplitude = buffer.getFloat();
+    }
 }
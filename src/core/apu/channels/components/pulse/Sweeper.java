@@ -1,9 +1,13 @@
 package core.apu.channels.components.pulse;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents a sweeper used to change the frequency of the audio signal
  */
-public class Sweeper {
+public class Sweeper implements Saveable {
 
     public boolean enabled = false;
     public boolean down = false;
@@ -53,4 +57,38 @@ public class Sweeper {
         }
         return reload;
     }
+
+    /**
+     * Write the state of the Sweeper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) (enabled ? 1 : 0));
+        buffer.put((byte) (down ? 1 : 0));
+        buffer.put((byte) (reload ? 1 : 0));
+        buffer.put((byte) (muted ? 1 : 0));
+        buffer.putInt(shift);
+        buffer.putInt(period);
+        buffer.putInt(change);
+        buffer.putInt(timer);
+    }
+
+    /**
+     * Restore the state of the Sweeper from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        enabled = buffer.get() != 0;
+        down = buffer.get() != 0;
+        reload = buffer.get() != 0;
+        muted = buffer.get() != 0;
+        shift = buffer.getInt();
+        period = buffer.getInt();
+        change = buffer.getInt();
+        timer = buffer.getInt();
+    }
 }
@@ -1,10 +1,14 @@
 package core.apu.channels.components.triangle;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents a Linear Counter that will be used to count the number of steps left for a note
  * It is similar to a Length Counter but is clock twice as frequently
  */
-public class LinearCounter {
+public class LinearCounter implements Saveable {
 
     public int counter = 0x00;
     public boolean reload = false;
@@ -28,4 +32,28 @@ public class LinearCounter {
                 reload = false;
         }
     }
+
+    /**
+     * Write the state of the Linear Counter to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(counter);
+        buffer.put((byte) (reload ? 1 : 0));
+        buffer.putInt(reloadValue);
+    }
+
+    /**
+     * Restore the state of the Linear Counter from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        counter = buffer.getInt();
+        reload = buffer.get() != 0;
+        reloadValue = buffer.getInt();
+    }
 }
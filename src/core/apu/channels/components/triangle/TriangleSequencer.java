@@ -1,9 +1,13 @@
 package core.apu.channels.components.triangle;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represents a sequencer used to store information about the Audio Channel and how it should behave
  */
-public class TriangleSequencer {
+public class TriangleSequencer implements Saveable {
 
     public final int[] sequence = {15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15};
 
@@ -27,4 +31,30 @@ public class TriangleSequencer {
             }
         }
     }
+
+    /**
+     * Write the state of the Sequencer to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(sequenceIndex);
+        buffer.putInt(timer);
+        buffer.putInt(output);
+        buffer.putInt(reload);
+    }
+
+    /**
+     * Restore the state of the Sequencer from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        sequenceIndex = buffer.getInt();
+        timer = buffer.getInt();
+        output = buffer.getInt();
+        reload = buffer.getInt();
+    }
 }
@@ -1,25 +1,26 @@
 package core.cartridge;
 
+import core.PageTable;
+import core.Saveable;
 import core.cartridge.mappers.*;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import exceptions.UnsupportedMapperException;
-import javafx.application.Platform;
-import utils.Dialogs;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
-import javax.swing.*;
 import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 /**
  * This class represent a physical Cartridge
  */
-public class Cartridge {
+public class Cartridge implements Saveable {
 
     private final String filename;
 
@@ -27,9 +28,12 @@ public class Cartridge {
     private int nb_CHR_banks;
     private byte[] prg_memory;
     private byte[] chr_memory;
+    private final long checksum;
 
     private Mapper mapper;
     private Mirror mirror;
+    //The errors are ignored until the front end sets a listener
+    private Consumer<IOException> error_listener = e -> {};
 
     /**
      * Create a Cartridge and load a ROM into the emulator
@@ -48,6 +52,8 @@ public class Cartridge {
         //Extract the Mapper ID and Mirroring mode
         int mapperId = ((header.flag_7 >> 4) << 4) | (header.flag_6 >> 4);
         mirror = (header.flag_6 & 0x01) == 0x01 ? Mirror.VERTICAL : Mirror.HORIZONTAL;
+        if ((header.flag_6 & 0x08) == 0x08)
+            mirror = Mirror.FOUR_SCREEN;
 
         //Discard padding if necessary
         if ((header.flag_6 & 0x04) == 0x04)
@@ -104,23 +110,25 @@ public class Cartridge {
             default:
                 throw new UnsupportedMapperException("Mapper " + (mapperId & 0xFF) + " not implemented yet");
         }
+        //The checksum of the ROM identifies the game in the savestates
+        CRC32 crc = new CRC32();
+        crc.update(prg_memory);
+        if (nb_CHR_banks > 0)
+            crc.update(chr_memory);
+        checksum = crc.getValue();
     }
 
     /**
      * Will read a value from Program Memory if the Mapper allow it
      *
      * @param addr the address to read from
-     * @param data the Wrapper where to store the read data
-     * @return was the data searched in the Cartridge
-     */
-    public boolean cpuRead(int addr, IntegerWrapper data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.cpuMapRead(addr, mapped, data)) {
-            if (mapped.value == -1) return true;
-            data.value = prg_memory[mapped.value] & 0xFF;
-            return true;
-        }
-        return false;
+     * @return the read data as an 8bit unsigned value, Mapper.UNMAPPED if the data isn't in the Cartridge
+     */
+    public int cpuRead(int addr) {
+        int mapped = mapper.cpuMapRead(addr);
+        if (mapped == Mapper.UNMAPPED) return Mapper.UNMAPPED;
+        if ((mapped & Mapper.DATA_FLAG) == Mapper.DATA_FLAG) return mapped & 0xFF;
+        return prg_memory[mapped] & 0xFF;
     }
 
     /**
@@ -132,30 +140,23 @@ public class Cartridge {
      * @return was the data for the Cartridge
      */
     public boolean cpuWrite(int addr, int data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.cpuMapWrite(addr, mapped, data)) {
-            if (mapped.value == -1) return true;
-            prg_memory[mapped.value] = (byte) data;
-            return true;
-        }
-        return false;
+        int mapped = mapper.cpuMapWrite(addr, data);
+        if (mapped == Mapper.UNMAPPED) return false;
+        if (mapped != Mapper.HANDLED)
+            prg_memory[mapped] = (byte) data;
+        return true;
     }
 
     /**
      * Will read a value from Character Memory if the Mapper allow it
      *
      * @param addr the address to read from
-     * @param data the Wrapper where to store the read data
-     * @return was the data searched in the Cartridge
-     */
-    public boolean ppuRead(int addr, IntegerWrapper data) {
-        addr &= 0xFFFF;
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.ppuMapRead(addr, mapped, data)) {
-            data.value = chr_memory[mapped.value] & 0xFF;
-            return true;
-        }
-        return false;
+     * @return the read data as an 8bit unsigned value, Mapper.UNMAPPED if the data isn't in the Cartridge
+     */
+    public int ppuRead(int addr) {
+        int mapped = mapper.ppuMapRead(addr & 0xFFFF);
+        if (mapped == Mapper.UNMAPPED) return Mapper.UNMAPPED;
+        return chr_memory[mapped] & 0xFF;
     }
 
     /**
@@ -167,12 +168,32 @@ public class Cartridge {
      * @return was the data for the Cartridge
      */
     public boolean ppuWrite(int addr, int data) {
-        IntegerWrapper mapped = new IntegerWrapper();
-        if (mapper.ppuMapWrite(addr, mapped, data)) {
-            chr_memory[mapped.value] = (byte) data;
-            return true;
-        }
-        return false;
+        int mapped = mapper.ppuMapWrite(addr, data);
+        if (mapped == Mapper.UNMAPPED) return false;
+        if (mapped != Mapper.HANDLED)
+            chr_memory[mapped] = (byte) data;
+        return true;
+    }
+
+    /**
+     * Let the Mapper map the Program Memory and internal RAM
+     * directly into the CPU Page Table
+     *
+     * @param pages the CPU Page Table
+     */
+    public void connectCPUPages(PageTable pages) {
+        mapper.connectCPUPages(pages, prg_memory);
+    }
+
+    /**
+     * Let the Mapper map the Character Memory and the nametables
+     * directly into the PPU Page Table
+     *
+     * @param pages      the PPU Page Table
+     * @param nametables the 4 nametables of the PPU
+     */
+    public void connectPPUPages(PageTable pages, byte[][] nametables) {
+        mapper.connectPPUPages(pages, chr_memory, nametables, mirror);
     }
 
     /**
@@ -206,17 +227,70 @@ public class Cartridge {
 
     /**
      * Save the current Cartridge RAM to a file (filename.sav)
+     * the errors are reported to the error listener
      */
     public void save() {
         if (mapper.hasRAM()) {
             try {
                 Files.write(Paths.get(filename + ".sav"), mapper.getRAM(), new StandardOpenOption[]{StandardOpenOption.CREATE});
             } catch (IOException e) {
-                if (Platform.isAccessibilityActive())
-                    Dialogs.showException("ROM Save Error", "An error occur during ROM Saving", e);
-                else
-                    JOptionPane.showMessageDialog(null, "An Error occur while saving\n" + e.getMessage(), "ROM Save Error", JOptionPane.ERROR_MESSAGE);
+                error_listener.accept(e);
             }
         }
     }
+
+    /**
+     * Set the listener notified when the Cartridge RAM can't be saved
+     * the listener is called from the emulation thread
+     *
+     * @param listener the listener to notify, e -> {} to ignore the errors
+     */
+    public void setErrorListener(Consumer<IOException> listener) {
+        if (listener == null)
+            throw new IllegalArgumentException("The error listener can't be null");
+        error_listener = listener;
+    }
+
+    /**
+     * Return the path of the ROM
+     *
+     * @return the path of the ROM
+     */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * Return the checksum of the ROM (Program and Character ROM)
+     *
+     * @return the CRC32 of the ROM
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Write the state of the Cartridge to the buffer
+     * the Character Memory is only saved if it is RAM
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        if (nb_CHR_banks == 0)
+            buffer.put(chr_memory);
+        mapper.saveState(buffer);
+    }
+
+    /**
+     * Restore the state of the Cartridge from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (nb_CHR_banks == 0)
+            buffer.get(chr_memory);
+        mapper.loadState(buffer);
+    }
 }
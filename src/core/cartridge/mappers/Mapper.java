@@ -1,16 +1,36 @@
 package core.cartridge.mappers;
 
+import core.PageTable;
+import core.Saveable;
 import core.ppu.Mirror;
-import utils.IntegerWrapper;
+
+import java.nio.ByteBuffer;
 
 /**
  * This class is an abstraction of the Mapper circuit present on the Cartridge
+ * The mapping methods return a packed int instead of filling a Wrapper
+ * to avoid allocating objects on every Bus access :
+ * - UNMAPPED : the Cartridge isn't interested in the address
+ * - HANDLED : the Mapper has handled the access itself, no memory access required
+ * - DATA_FLAG | data : the Mapper has read the data itself (8 lsb)
+ * - any other positive value : the mapped address inside the Cartridge memory
  */
-public abstract class Mapper {
+public abstract class Mapper implements Saveable {
+
+    public static final int UNMAPPED = -1;
+    public static final int HANDLED = -2;
+    public static final int DATA_FLAG = 0x40000000;
 
     final int nb_PRG_banks;
     final int nb_CHR_banks;
 
+    private PageTable cpu_pages;
+    private byte[] prg_memory;
+    private PageTable ppu_pages;
+    private byte[] chr_memory;
+    private byte[][] nametables;
+    private Mirror hardware_mirror;
+
     /**
      * Create a new instance of Mapper
      *
@@ -26,43 +46,138 @@ public abstract class Mapper {
      * Map an Address the CPU want to read from to a Program Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address, DATA_FLAG | data if the Mapper read it or UNMAPPED
      */
-    public abstract boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data);
+    public abstract int cpuMapRead(int addr);
 
     /**
      * Map an Address the CPU want to write to to a Program Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped Address, HANDLED if the Mapper consumed the data or UNMAPPED
      */
-    public abstract boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data);
+    public abstract int cpuMapWrite(int addr, int data);
 
     /**
      * Map an Address the PPU want to read from to a Character Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
-    public abstract boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data);
+    public abstract int ppuMapRead(int addr);
 
     /**
      * Map an Address the PPU want to write to to a Character Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped Address, HANDLED if the Mapper consumed the data or UNMAPPED
+     */
+    public abstract int ppuMapWrite(int addr, int data);
+
+    /**
+     * Link the Mapper to the CPU Page Table so it can map
+     * the selected PRG Banks and the internal RAM directly
+     *
+     * @param pages     the CPU Page Table
+     * @param prgMemory the Program Memory of the Cartridge
+     */
+    public void connectCPUPages(PageTable pages, byte[] prgMemory) {
+        this.cpu_pages = pages;
+        this.prg_memory = prgMemory;
+        updateCPUPages();
+    }
+
+    /**
+     * Rebuild the Cartridge range of the CPU Page Table
+     * must be called every time the selected PRG Banks change
+     * 0x6000 - 0x7FFF : internal RAM (read/write) if present
+     * 0x8000 - 0xFFFF : PRG Memory (read only, writes go to the Mapper registers)
+     */
+    void updateCPUPages() {
+        if (cpu_pages == null)
+            return;
+        int pageSize = cpu_pages.getPageSize();
+        byte[] ram = getRAM();
+        if (ram != null)
+            cpu_pages.map(0x6000, 0x2000, ram, 0, true);
+        else
+            cpu_pages.unmap(0x6000, 0x2000);
+        //The mapping is queried once per page, every Mapper use banks of at least one page
+        for (int addr = 0x8000; addr <= 0xFFFF; addr += pageSize) {
+            int mapped = cpuMapRead(addr);
+            if (mapped >= 0 && (mapped & DATA_FLAG) == 0 && mapped + pageSize <= prg_memory.length)
+                cpu_pages.map(addr, pageSize, prg_memory, mapped, false);
+            else
+                cpu_pages.unmap(addr, pageSize);
+        }
+    }
+
+    /**
+     * Link the Mapper to the PPU Page Table so it can map
+     * the selected CHR Banks and the nametables directly
+     *
+     * @param pages          the PPU Page Table
+     * @param chrMemory      the Character Memory of the Cartridge
+     * @param nametables     the 4 nametables of the PPU
+     * @param hardwareMirror the mirroring mode hardwired on the Cartridge
+     */
+    public void connectPPUPages(PageTable pages, byte[] chrMemory, byte[][] nametables, Mirror hardwareMirror) {
+        this.ppu_pages = pages;
+        this.chr_memory = chrMemory;
+        this.nametables = nametables;
+        this.hardware_mirror = hardwareMirror;
+        updatePPUPages();
+    }
+
+    /**
+     * Rebuild the PPU Page Table
+     * must be called every time the selected CHR Banks or the mirroring mode change
+     * 0x0000 - 0x1FFF : 8 windows of 1Kb of CHR Memory (writable if CHR RAM)
+     * 0x2000 - 0x3FFF : 4 nametable windows (mirrored once, palette is handled by the PPU)
      */
-    public abstract boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data);
+    void updatePPUPages() {
+        if (ppu_pages == null)
+            return;
+        int pageSize = ppu_pages.getPageSize();
+        //The mapping is queried once per page, every Mapper use banks of at least one page
+        for (int addr = 0x0000; addr <= 0x1FFF; addr += pageSize) {
+            int mapped = ppuMapRead(addr);
+            if (mapped >= 0 && mapped + pageSize <= chr_memory.length)
+                ppu_pages.map(addr, pageSize, chr_memory, mapped, nb_CHR_banks == 0);
+            else
+                ppu_pages.unmap(addr, pageSize);
+        }
+        Mirror mirroring_mode = mirror();
+        if (mirroring_mode == Mirror.HARDWARE)
+            mirroring_mode = hardware_mirror;
+        for (int i = 0; i < 8; i++) {
+            int nametable = 0;
+            switch (mirroring_mode) {
+                case VERTICAL:
+                    nametable = i & 0x1;
+                    break;
+                case HORIZONTAL:
+                    nametable = (i >> 1) & 0x1;
+                    break;
+                case ONE_SCREEN_LOW:
+                    nametable = 0;
+                    break;
+                case ONE_SCREEN_HIGH:
+                    nametable = 1;
+                    break;
+                case FOUR_SCREEN:
+                    nametable = i & 0x3;
+                    break;
+            }
+            ppu_pages.map(0x2000 + i * 0x0400, 0x0400, nametables[nametable], 0, true);
+        }
+    }
 
     /**
      * Interrogate the Mapper circuit for the mirroring mode
@@ -74,27 +189,30 @@ public abstract class Mapper {
     }
 
     /**
-     * Return whether or not the Mapper want to trigger an IRQ
+     * Return whether or not the Mapper pulls its IRQ line high
      * can be used to switch CHR banks mid-frame
+     * the line stays high until the Mapper is acknowledged by the CPU
      *
      * @return false if not overridden
      */
     public boolean irqState() { return false; }
 
     /**
-     * Notify the Mapper that the IRQ has been relayed to the CPU
+     * Notify the Mapper that one scanline has occurred
      * Do nothing if not overridden
      */
-    public void irqClear() {}
+    public void notifyScanline() {}
 
     /**
-     * Notify the Mapper that one scanline has occurred
-     * Do nothing if not overridden
+     * Return whether or not the Mapper has latches updated by the PPU reads
+     * the PPU only calls updateLatch() on the Mappers returning true
+     *
+     * @return false if not overridden
      */
-    public void notifyScanline() {}
+    public boolean hasLatch() { return false; }
 
     /**
-     * Update the latch if the mapper has some
+     * Update the latch if the mapper has some (see hasLatch())
      * used in Mapper 009
      *
      * @param addr the address the PPU has read from
@@ -123,4 +241,28 @@ public abstract class Mapper {
     public byte[] getRAM() {
         return null;
     }
+
+    /**
+     * Write the state of the Mapper to the buffer (the internal RAM if present)
+     * Mappers with registers must override it and call super first
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        if (hasRAM())
+            buffer.put(getRAM());
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer
+     * Mappers with registers must override it, call super first and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        if (hasRAM())
+            buffer.get(getRAM());
+    }
 }
@@ -1,12 +1,16 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 000 (NROM)
+ * the Cartridge RAM isn't battery backed, it is used by some boards (Family Basic)
+ * and by the test ROMs to report their results at 0x6000
  */
 public class Mapper000 extends Mapper {
 
+    private final byte[] internal_ram = new byte[8192];
+
     /**
      * Create a new instance of Mapper000
      *
@@ -19,71 +23,96 @@ public class Mapper000 extends Mapper {
 
     /**
      * No mapping occur, the address is directly returned
+     * 0x6000 - 0x7FFF : Cartridge RAM
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address, DATA_FLAG | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000) {
-            mapped.value = addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
-            return true;
-        }
-        return false;
+    public int cpuMapRead(int addr) {
+        if (addr >= 0x6000 && addr <= 0x7FFF)
+            return DATA_FLAG | (internal_ram[addr & 0x1FFF] & 0xFF);
+        if (addr >= 0x8000)
+            return addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
+        return UNMAPPED;
     }
 
     /**
      * No mapping occur, the address is directly returned
+     * 0x6000 - 0x7FFF : Cartridge RAM
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return the mapped Address, HANDLED if written to internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        if (addr >= 0x8000) {
-            mapped.value = addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
-            return true;
+    public int cpuMapWrite(int addr, int data) {
+        if (addr >= 0x6000 && addr <= 0x7FFF) {
+            internal_ram[addr & 0x1FFF] = (byte) data;
+            return HANDLED;
         }
-        return false;
+        if (addr >= 0x8000)
+            return addr & (nb_PRG_banks > 1 ? 0x7FFF : 0x3FFF);
+        return UNMAPPED;
     }
 
     /**
      * No mapping occur, the address is directly returned
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = addr;
-            return true;
-        }
-        return false;
+    public int ppuMapRead(int addr) {
+        if (addr <= 0x1FFF)
+            return addr;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 000 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        if (addr <= 0x1FFF) {
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
-            }
-        }
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        if (addr <= 0x1FFF && nb_CHR_banks == 0)
+            return addr;
+        return UNMAPPED;
+    }
+
+    /**
+     * Return the internal RAM, it is mapped but never saved to a file (no battery)
+     *
+     * @return the internal RAM
+     */
+    @Override
+    public byte[] getRAM() {
+        return internal_ram;
+    }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     * the internal RAM is written here as hasRAM() is false (no battery save file)
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.put(internal_ram);
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        buffer.get(internal_ram);
     }
 }
@@ -3,9 +3,9 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 001 (MMC1)
@@ -52,53 +52,42 @@ public class Mapper001 extends Mapper {
      * 0x6000 - 0x7FFF : Cartridge RAM
      * 0x8000 - 0xFFFF : The selected 32Kb (or 2 16Kb) PRG Bank(s)
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address, DATA_FLAG | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
-        if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
-        }
+        if (addr >= 0x6000 && addr <= 0x7FFF)
+            return DATA_FLAG | (internal_ram[addr & 0x1FFF] & 0xFF);
         //The CPU load from PRG Memory
         if (addr >= 0x8000) {
             //We select the right Bank by reading the control register
             if ((control_register & 0b01000) == 0b01000) {
-                if (addr <= 0xBFFF) {
-                    mapped.value = (selected_PRG_bank_low_16K * 0x4000) + (addr & 0x3FFF);
-                    return true;
-                }
-                mapped.value = (selected_PRG_bank_high_16K * 0x4000) + (addr & 0x3FFF);
-                return true;
+                if (addr <= 0xBFFF)
+                    return (selected_PRG_bank_low_16K * 0x4000) + (addr & 0x3FFF);
+                return (selected_PRG_bank_high_16K * 0x4000) + (addr & 0x3FFF);
             } else {
-                mapped.value = (selected_PRG_bank_32K * 0x8000) + (addr & 0x7FFF);
-                return true;
+                return (selected_PRG_bank_32K * 0x8000) + (addr & 0x7FFF);
             }
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * Map the provided address from CPU space to the Cartridge Memory space if relevant
      * Here the address is never mapped, a write only change the Mapper state
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return HANDLED if written to internal RAM, UNMAPPED otherwise
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         //The CPU try to write to internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return HANDLED;
         }
         //The CPU try to configure the Mapper circuit
         if (addr >= 0x8000) {
@@ -135,14 +124,19 @@ public class Mapper001 extends Mapper {
                                 mirroring_mode = Mirror.HORIZONTAL;
                                 break;
                         }
+                        //The PRG and CHR modes may have changed
+                        updateCPUPages();
+                        updatePPUPages();
                     } else if (targetRegister == 1) { // 0xA000 - 0xBFFF
                         if ((control_register & 0b10000) == 0b10000) //We change the lower half of the CHR Memory range
                             selected_CHR_bank_low_4K = load_register & 0x1F;
                         else //We change the entire CHR Memory range
                             selected_CHR_bank_8K = (load_register & 0x1E) >> 1;
+                        updatePPUPages();
                     } else if (targetRegister == 2) { // 0xC000 - 0xDFFF
                         if ((control_register & 0b10000) == 0b10000) //We change the lower half of the CHR Memory range
                             selected_CHR_bank_high_4K = load_register & 0x1F;
+                        updatePPUPages();
                     } else { // 0xE000 - 0xFFFF
                         //We extract the PRG Mode (2 16K Banks or 1 32K Bank
                         int prgMode = (control_register >> 2) & 0x03;
@@ -155,6 +149,7 @@ public class Mapper001 extends Mapper {
                             selected_PRG_bank_low_16K = load_register & 0x0F;
                             selected_PRG_bank_high_16K = nb_PRG_banks - 1;
                         }
+                        updateCPUPages();
                     }
                     //The shift register is cleared
                     load_register = 0x00;
@@ -162,61 +157,48 @@ public class Mapper001 extends Mapper {
                 }
             }
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * The address is mapped as follows
      * 0x0000 - 0x1FFF : The selected 8Kb (or 2 4Kb) CHR Bank(s)
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int ppuMapRead(int addr) {
         if (addr <= 0x1FFF) {
             //If their is not banks we simply return the provided address
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
-            } else {
-                //We select the right Bank by reading the control register
-                if ((control_register & 0b10000) == 0b10000) {
-                    if (addr <= 0x0FFF) {
-                        mapped.value = (selected_CHR_bank_low_4K * 0x1000) + (addr & 0x0FFF);
-                        return true;
-                    }
-                    mapped.value = (selected_CHR_bank_high_4K * 0x1000) + (addr & 0x0FFF);
-                    return true;
-                } else {
-                    mapped.value = (selected_CHR_bank_8K * 0x2000) + (addr & 0x1FFF);
-                    return true;
-                }
+            if (nb_CHR_banks == 0)
+                return addr;
+            //We select the right Bank by reading the control register
+            if ((control_register & 0b10000) == 0b10000) {
+                if (addr <= 0x0FFF)
+                    return (selected_CHR_bank_low_4K * 0x1000) + (addr & 0x0FFF);
+                return (selected_CHR_bank_high_4K * 0x1000) + (addr & 0x0FFF);
             }
+            return (selected_CHR_bank_8K * 0x2000) + (addr & 0x1FFF);
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 001 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped Address if the Cartridge has CHR RAM, HANDLED if it has CHR ROM, UNMAPPED otherwise
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int ppuMapWrite(int addr, int data) {
         if (addr <= 0x1FFF) {
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
-            }
-            return true;
+            if (nb_CHR_banks == 0)
+                return addr;
+            return HANDLED;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -246,6 +228,8 @@ public class Mapper001 extends Mapper {
         selected_PRG_bank_low_16K = 0;
         selected_PRG_bank_high_16K = nb_PRG_banks - 1;
         selected_PRG_bank_32K = 0;
+        updateCPUPages();
+        updatePPUPages();
     }
 
     /**
@@ -267,4 +251,46 @@ public class Mapper001 extends Mapper {
     public byte[] getRAM() {
         return internal_ram;
     }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(selected_CHR_bank_low_4K);
+        buffer.putInt(selected_CHR_bank_high_4K);
+        buffer.putInt(selected_CHR_bank_8K);
+        buffer.putInt(selected_PRG_bank_low_16K);
+        buffer.putInt(selected_PRG_bank_high_16K);
+        buffer.putInt(selected_PRG_bank_32K);
+        buffer.putInt(load_register);
+        buffer.putInt(load_register_count);
+        buffer.putInt(control_register);
+        buffer.putInt(mirroring_mode.ordinal());
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        selected_CHR_bank_low_4K = buffer.getInt();
+        selected_CHR_bank_high_4K = buffer.getInt();
+        selected_CHR_bank_8K = buffer.getInt();
+        selected_PRG_bank_low_16K = buffer.getInt();
+        selected_PRG_bank_high_16K = buffer.getInt();
+        selected_PRG_bank_32K = buffer.getInt();
+        load_register = buffer.getInt();
+        load_register_count = buffer.getInt();
+        control_register = buffer.getInt();
+        mirroring_mode = Mirror.fromOrdinal(buffer.getInt());
+        updateCPUPages();
+        updatePPUPages();
+    }
 }
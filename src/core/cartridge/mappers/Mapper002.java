@@ -1,6 +1,6 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 002 (UxROM)
@@ -25,74 +25,59 @@ public class Mapper002 extends Mapper {
      * The Mapper map the lower 16Kb to the Bank selected by the PRGBankLow Register
      * and the upper 16Kb to the last PRG Bank
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr >= 0x8000 && addr <= 0xBFFF) {
-            mapped.value = (selected_PRG_bank_low * 0x4000) + (addr & 0x3FFF);
-            return true;
-        }
-        if (addr >= 0xC000) {
-            mapped.value = (selected_PRG_bank_high * 0x4000) + (addr & 0x3FFF);
-            return true;
-        }
-        return false;
+    public int cpuMapRead(int addr) {
+        if (addr >= 0x8000 && addr <= 0xBFFF)
+            return (selected_PRG_bank_low * 0x4000) + (addr & 0x3FFF);
+        if (addr >= 0xC000)
+            return (selected_PRG_bank_high * 0x4000) + (addr & 0x3FFF);
+        return UNMAPPED;
     }
 
     /**
      * If the address is in the upper 16Kb, the data is written to the Mapper Register
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return UNMAPPED, the address is never mapped
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
             selected_PRG_bank_low = data & 0x0F;
+            updateCPUPages();
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * No mapping occur, the address is directly returned
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = addr;
-            return true;
-        }
-        return false;
+    public int ppuMapRead(int addr) {
+        if (addr <= 0x1FFF)
+            return addr;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 002 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        if (addr <= 0x1FFF) {
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
-            }
-        }
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        if (addr <= 0x1FFF && nb_CHR_banks == 0)
+            return addr;
+        return UNMAPPED;
     }
 
     /**
@@ -102,5 +87,32 @@ public class Mapper002 extends Mapper {
     public void reset() {
         selected_PRG_bank_low = 0;
         selected_PRG_bank_high = nb_PRG_banks - 1;
+        updateCPUPages();
+    }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(selected_PRG_bank_low);
+        buffer.putInt(selected_PRG_bank_high);
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        selected_PRG_bank_low = buffer.getInt();
+        selected_PRG_bank_high = buffer.getInt();
+        updateCPUPages();
+        updatePPUPages();
     }
 }
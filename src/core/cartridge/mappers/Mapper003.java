@@ -1,6 +1,6 @@
 package core.cartridge.mappers;
 
-import utils.IntegerWrapper;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 003 (CNROM)
@@ -24,21 +24,17 @@ public class Mapper003 extends Mapper {
      * Map an Address the CPU want to read from to a Program Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         if (addr >= 0x8000) {
             if (nb_PRG_banks == 1)
-                mapped.value = addr & 0x3FFF;
-            if (nb_PRG_banks == 2)
-                mapped.value = addr & 0x7FFF;
-            return true;
+                return addr & 0x3FFF;
+            return addr & 0x7FFF;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -46,49 +42,43 @@ public class Mapper003 extends Mapper {
      * if the Cartridge need to map it
      * if the address is in the upper 16Kb, the data is written to the Mapper Register
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return UNMAPPED, the address is never mapped
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         if (addr >= 0x8000) {
             selected_CHR_bank = data & 0x03;
-            mapped.value = addr;
+            updatePPUPages();
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * Map an Address the PPU want to read from to a Character Memory Address
      * if the Cartridge need to map it
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        if (addr <= 0x1FFF) {
-            mapped.value = (selected_CHR_bank * 0x2000) + addr;
-            return true;
-        }
-        return false;
+    public int ppuMapRead(int addr) {
+        if (addr <= 0x1FFF)
+            return (selected_CHR_bank * 0x2000) + addr;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 003 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return UNMAPPED, the address is never mapped
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        return UNMAPPED;
     }
 
 
@@ -98,6 +88,30 @@ public class Mapper003 extends Mapper {
     @Override
     public void reset() {
         selected_CHR_bank = 0x00;
+        updatePPUPages();
+    }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(selected_CHR_bank);
     }
 
+    /**
+     * Restore the state of the Mapper from the buffer and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        selected_CHR_bank = buffer.getInt();
+        updateCPUPages();
+        updatePPUPages();
+    }
 }
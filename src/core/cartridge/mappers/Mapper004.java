@@ -3,9 +3,9 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 004 (MMC3)
@@ -54,55 +54,40 @@ public class Mapper004 extends Mapper {
     /**
      * Map the provided address from CPU space to the Cartridge Memory space if relevant
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address, DATA_FLAG | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
-        if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
-        }
+        if (addr >= 0x6000 && addr <= 0x7FFF)
+            return DATA_FLAG | (internal_ram[addr & 0x1FFF] & 0xFF);
         //Otherwise we select the appropriate PRG bank using the provided address
-        if (addr >= 0x8000 && addr <= 0x9FFF) {
-            mapped.value = prg_banks[0] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xA000 && addr <= 0xBFFF) {
-            mapped.value = prg_banks[1] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xC000 && addr <= 0xDFFF) {
-            mapped.value = prg_banks[2] + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xE000) {
-            mapped.value = prg_banks[3] + (addr & 0x1FFF);
-            return true;
-        }
-        return false;
+        if (addr >= 0x8000 && addr <= 0x9FFF)
+            return prg_banks[0] + (addr & 0x1FFF);
+        if (addr >= 0xA000 && addr <= 0xBFFF)
+            return prg_banks[1] + (addr & 0x1FFF);
+        if (addr >= 0xC000 && addr <= 0xDFFF)
+            return prg_banks[2] + (addr & 0x1FFF);
+        if (addr >= 0xE000)
+            return prg_banks[3] + (addr & 0x1FFF);
+        return UNMAPPED;
     }
 
     /**
      * Map the provided address from CPU space to the Cartridge Memory space if relevant
      * Here the address is never mapped, a write only change the Mapper state
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return HANDLED if written to internal RAM, UNMAPPED otherwise
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         //The CPU try to write to internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return HANDLED;
         }
 
         //The CPU try to configure the Mapper circuit
@@ -144,8 +129,10 @@ public class Mapper004 extends Mapper {
                 }
                 prg_banks[1] = (register[7] & 0x3F) * 0x2000;
                 prg_banks[3] = (nb_PRG_banks * 2 - 1) * 0x2000;
+                updateCPUPages();
+                updatePPUPages();
             }
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to set the mirroring mode
@@ -155,8 +142,9 @@ public class Mapper004 extends Mapper {
                     mirror = Mirror.HORIZONTAL;
                 else
                     mirror = Mirror.VERTICAL;
+                updatePPUPages();
             }
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to set the scanline that should trigger an IRQ
@@ -165,7 +153,7 @@ public class Mapper004 extends Mapper {
                 irq_reload = data;
             else
                 irq_counter = 0;
-            return false;
+            return UNMAPPED;
         }
 
         //The CPU try to activate/deactivate the IRQ triggering
@@ -176,68 +164,35 @@ public class Mapper004 extends Mapper {
             } else {
                 flag_IRQ_enabled = true;
             }
-            return false;
+            return UNMAPPED;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * Map the provided address from PPU space to the Cartridge Memory space if relevant
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
-        //We select the appropriate CHR bank using the provided address
-        if (addr <= 0x03FF) {
-            mapped.value = chr_banks[0] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x07FF) {
-            mapped.value = chr_banks[1] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x0BFF) {
-            mapped.value = chr_banks[2] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x0FFF) {
-            mapped.value = chr_banks[3] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x13FF) {
-            mapped.value = chr_banks[4] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x17FF) {
-            mapped.value = chr_banks[5] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x1BFF) {
-            mapped.value = chr_banks[6] + (addr & 0x03FF);
-            return true;
-        }
-        if (addr <= 0x1FFF) {
-            mapped.value = chr_banks[7] + (addr & 0x03FF);
-            return true;
-        }
-        return false;
+    public int ppuMapRead(int addr) {
+        //We select the appropriate 1Kb CHR bank using the provided address
+        if (addr <= 0x1FFF)
+            return chr_banks[addr >> 10] + (addr & 0x03FF);
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 004 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return UNMAPPED, the address is never mapped
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        return UNMAPPED;
     }
 
     /**
@@ -261,14 +216,6 @@ public class Mapper004 extends Mapper {
         return flag_IRQ_active;
     }
 
-    /**
-     * Notify the Mapper that the IRQ has been relayed to the CPU
-     */
-    @Override
-    public void irqClear() {
-        flag_IRQ_active = false;
-    }
-
     /**
      * Notify the Mapper that one scanline has occurred
      */
@@ -308,6 +255,8 @@ public class Mapper004 extends Mapper {
         prg_banks[1] = 0x2000;
         prg_banks[2] = (nb_PRG_banks * 2 - 2) * 0x2000;
         prg_banks[3] = (nb_PRG_banks * 2 - 1) * 0x2000;
+        updateCPUPages();
+        updatePPUPages();
     }
 
     /**
@@ -329,4 +278,54 @@ public class Mapper004 extends Mapper {
     public byte[] getRAM() {
         return internal_ram;
     }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(target_register);
+        buffer.put((byte) (flag_PRG_bank_mode ? 1 : 0));
+        buffer.put((byte) (flag_CHR_inversion ? 1 : 0));
+        for (int value : register)
+            buffer.putInt(value);
+        for (int value : chr_banks)
+            buffer.putInt(value);
+        for (int value : prg_banks)
+            buffer.putInt(value);
+        buffer.put((byte) (flag_IRQ_active ? 1 : 0));
+        buffer.put((byte) (flag_IRQ_enabled ? 1 : 0));
+        buffer.putInt(irq_counter);
+        buffer.putInt(irq_reload);
+        buffer.putInt(mirror.ordinal());
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        target_register = buffer.getInt();
+        flag_PRG_bank_mode = buffer.get() != 0;
+        flag_CHR_inversion = buffer.get() != 0;
+        for (int i = 0; i < register.length; i++)
+            register[i] = buffer.getInt();
+        for (int i = 0; i < chr_banks.length; i++)
+            chr_banks[i] = buffer.getInt();
+        for (int i = 0; i < prg_banks.length; i++)
+            prg_banks[i] = buffer.getInt();
+        flag_IRQ_active = buffer.get() != 0;
+        flag_IRQ_enabled = buffer.get() != 0;
+        irq_counter = buffer.getInt();
+        irq_reload = buffer.getInt();
+        mirror = Mirror.fromOrdinal(buffer.getInt());
+        updateCPUPages();
+        updatePPUPages();
+    }
 }
@@ -3,9 +3,9 @@ package core.cartridge.mappers;
 import core.ppu.Mirror;
 import exceptions.InvalidFileException;
 import utils.FileReader;
-import utils.IntegerWrapper;
 
 import java.io.EOFException;
+import java.nio.ByteBuffer;
 
 /**
  * This class implements the iNES Mapper 009 (MMC2) used by Mike Tyson's Ounch Out!!!
@@ -50,68 +50,62 @@ public class Mapper009 extends Mapper {
      * 0x8000 - 0x9FFF : The selected 8Kb PRG Bank
      * 0xA000 - 0xFFFF : The last 3 PRG Banks of the Cartridge
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @return the mapped Address, DATA_FLAG | data if read from internal RAM or UNMAPPED
      */
     @Override
-    public boolean cpuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int cpuMapRead(int addr) {
         //The CPU try to read from internal RAM
-        if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
-            data.value = internal_ram[addr & 0x1FFF] & 0xFF;
-            return true;
-        }
+        if (addr >= 0x6000 && addr <= 0x7FFF)
+            return DATA_FLAG | (internal_ram[addr & 0x1FFF] & 0xFF);
         //The CPU load from PRG Memory
-        if (addr >= 0x8000 && addr <= 0x9FFF) {
-            mapped.value = (selected_PRG_bank * 0x2000) + (addr & 0x1FFF);
-            return true;
-        }
-        if (addr >= 0xA000 && addr <= 0xFFFF) {
-            mapped.value = 0x10000 | addr;
-            return true;
-        }
-        return false;
+        if (addr >= 0x8000 && addr <= 0x9FFF)
+            return (selected_PRG_bank * 0x2000) + (addr & 0x1FFF);
+        if (addr >= 0xA000 && addr <= 0xFFFF)
+            return 0x10000 | addr;
+        return UNMAPPED;
     }
 
     /**
      * No mapping occur, the address is directly returned
      * But the Mapper's state is updated
      *
-     * @param addr   the CPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the CPU Address to map
+     * @param data the data to write
+     * @return HANDLED if the Mapper consumed the data, UNMAPPED otherwise
      */
     @Override
-    public boolean cpuMapWrite(int addr, IntegerWrapper mapped, int data) {
+    public int cpuMapWrite(int addr, int data) {
         //The CPU try to write to internal RAM
         if (addr >= 0x6000 && addr <= 0x7FFF) {
-            mapped.value = -1;
             internal_ram[addr & 0x1FFF] = (byte) data;
-            return true;
+            return HANDLED;
         }
         //The CPU try to configure the Mapper circuit
         if (addr >= 0xA000 && addr <= 0xAFFF) {
             selected_PRG_bank = data & 0x0F;
-            return true;
+            updateCPUPages();
+            return HANDLED;
         }
         if (addr >= 0xB000 && addr <= 0xBFFF) {
             selected_CHR_bank_l0_FD = data & 0x1F;
-            return true;
+            updatePPUPages();
+            return HANDLED;
         }
         if (addr >= 0xC000 && addr <= 0xCFFF) {
             selected_CHR_bank_l0_FE = data & 0x1F;
-            return true;
+            updatePPUPages();
+            return HANDLED;
         }
         if (addr >= 0xD000 && addr <= 0xDFFF) {
             selected_CHR_bank_l1_FD = data & 0x1F;
-            return true;
+            updatePPUPages();
+            return HANDLED;
         }
         if (addr >= 0xE000 && addr <= 0xEFFF) {
             selected_CHR_bank_l1_FE = data & 0x1F;
-            return true;
+            updatePPUPages();
+            return HANDLED;
         }
         if (addr >= 0xF000 && addr <= 0xFFFF) {
             switch (data & 0x01) {
@@ -122,9 +116,10 @@ public class Mapper009 extends Mapper {
                     mirroring_mode = Mirror.HORIZONTAL;
                     break;
             }
-            return true;
+            updatePPUPages();
+            return HANDLED;
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
@@ -132,51 +127,48 @@ public class Mapper009 extends Mapper {
      * 0x0000 - 0x0FFF : CHR Bank selected according to latch 0
      * 0x1000 - 0x1FFF : CHR Bank selected according to latch 1
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   if there is data to be read, it will be written there
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapRead(int addr, IntegerWrapper mapped, IntegerWrapper data) {
+    public int ppuMapRead(int addr) {
         if (addr <= 0x0FFF) {
-            if (latch_0 == 0xFD) {
-                mapped.value = (selected_CHR_bank_l0_FD * 0x1000) + (addr & 0x0FFF);
-                return true;
-            } else if (latch_0 == 0xFE) {
-                mapped.value = (selected_CHR_bank_l0_FE * 0x1000) + (addr & 0x0FFF);
-                return true;
-            }
+            if (latch_0 == 0xFD)
+                return (selected_CHR_bank_l0_FD * 0x1000) + (addr & 0x0FFF);
+            else if (latch_0 == 0xFE)
+                return (selected_CHR_bank_l0_FE * 0x1000) + (addr & 0x0FFF);
         } else if (addr <= 0x1FFF) {
-            if (latch_1 == 0xFD) {
-                mapped.value = (selected_CHR_bank_l1_FD * 0x1000) + (addr & 0x0FFF);
-                return true;
-            } else if (latch_1 == 0xFE) {
-                mapped.value = (selected_CHR_bank_l1_FE * 0x1000) + (addr & 0x0FFF);
-                return true;
-            }
+            if (latch_1 == 0xFD)
+                return (selected_CHR_bank_l1_FD * 0x1000) + (addr & 0x0FFF);
+            else if (latch_1 == 0xFE)
+                return (selected_CHR_bank_l1_FE * 0x1000) + (addr & 0x0FFF);
         }
-        return false;
+        return UNMAPPED;
     }
 
     /**
      * The PPU never write, for Mapper 009 the Character Memory is ROM
      *
-     * @param addr   the PPU Address to map
-     * @param mapped the Wrapper where to store the Mapped Address
-     * @param data   the data to write
-     * @return Whether or not the Address was mapped
+     * @param addr the PPU Address to map
+     * @param data the data to write
+     * @return the mapped Address or UNMAPPED
      */
     @Override
-    public boolean ppuMapWrite(int addr, IntegerWrapper mapped, int data) {
-        if (addr <= 0x1FFF) {
-            if (nb_CHR_banks == 0) {
-                mapped.value = addr;
-                return true;
-            }
-        }
-        return false;
+    public int ppuMapWrite(int addr, int data) {
+        if (addr <= 0x1FFF && nb_CHR_banks == 0)
+            return addr;
+        return UNMAPPED;
+    }
+    /**
+     * The CHR Banks are selected by latches flipped by the PPU reads
+     *
+     * @return true
+     */
+    @Override
+    public boolean hasLatch() {
+        return true;
     }
+
     /**
      * Update the latch if the mapper has some
      *
@@ -184,6 +176,7 @@ public class Mapper009 extends Mapper {
      */
     @Override
     public void updateLatch(int addr) {
+        int previous_latches = (latch_0 << 8) | latch_1;
         if (addr == 0x0FD8)
             latch_0 = 0xFD;
         else if (addr == 0x0FE8)
@@ -192,7 +185,9 @@ public class Mapper009 extends Mapper {
             latch_1 = 0xFD;
         else if (addr >= 0x1FE8 && addr <= 0x1FEF)
             latch_1 = 0xFE;
-
+        //The selected CHR Banks change only if a latch has been flipped
+        if (((latch_0 << 8) | latch_1) != previous_latches)
+            updatePPUPages();
     }
 
     /**
@@ -217,6 +212,8 @@ public class Mapper009 extends Mapper {
         selected_CHR_bank_l1_FE = 0x00;
         latch_0 = 0x00;
         latch_1 = 0x00;
+        updateCPUPages();
+        updatePPUPages();
     }
 
     /**
@@ -238,4 +235,42 @@ public class Mapper009 extends Mapper {
     public byte[] getRAM() {
         return internal_ram;
     }
+
+    /**
+     * Write the state of the Mapper to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        super.saveState(buffer);
+        buffer.putInt(selected_PRG_bank);
+        buffer.putInt(selected_CHR_bank_l0_FD);
+        buffer.putInt(selected_CHR_bank_l0_FE);
+        buffer.putInt(selected_CHR_bank_l1_FD);
+        buffer.putInt(selected_CHR_bank_l1_FE);
+        buffer.putInt(latch_0);
+        buffer.putInt(latch_1);
+        buffer.putInt(mirroring_mode.ordinal());
+    }
+
+    /**
+     * Restore the state of the Mapper from the buffer and rebuild the Page Tables
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        super.loadState(buffer);
+        selected_PRG_bank = buffer.getInt();
+        selected_CHR_bank_l0_FD = buffer.getInt();
+        selected_CHR_bank_l0_FE = buffer.getInt();
+        selected_CHR_bank_l1_FD = buffer.getInt();
+        selected_CHR_bank_l1_FE = buffer.getInt();
+        latch_0 = buffer.getInt();
+        latch_1 = buffer.getInt();
+        mirroring_mode = Mirror.fromOrdinal(buffer.getInt());
+        updateCPUPages();
+        updatePPUPages();
+    }
 }
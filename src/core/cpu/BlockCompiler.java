@@ -0,0 +1,518 @@
+package core.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class translates a basic block of Instructions into a hidden class implementing CompiledBlock
+ * every Instruction becomes a straight sequence of calls to the addressing mode and the Opcode of the CPU
+ * with the Opcode, the Program Counter, the operand and the base cycles as constants,
+ * the dispatch, the operand fetch and the per Instruction bookkeeping of the interpreter disappear
+ * and the JVM is free to inline the whole block
+ * the class file is written by hand (version 49, so no stack map frames are needed) and defined
+ * as a nestmate of the CPU, which lets it access the private registers and methods
+ */
+final class BlockCompiler {
+
+    static final int GUARD_NONE = 0;
+    static final int GUARD_READ = 1;
+    static final int GUARD_WRITE = 2;
+
+    private static final String CPU = "core/cpu/CPU_6502";
+    private static final int UNUSED_FLAG = Flags.U.value;
+
+    //Access flags
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    //Opcodes of the JVM
+    private static final int ICONST_0 = 0x03;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC_W = 0x13;
+    private static final int ILOAD_2 = 0x1C;
+    private static final int ILOAD_3 = 0x1D;
+    private static final int ALOAD_0 = 0x2A;
+    private static final int ALOAD_1 = 0x2B;
+    private static final int ISTORE_3 = 0x3E;
+    private static final int POP = 0x57;
+    private static final int IADD = 0x60;
+    private static final int IOR = 0x80;
+    private static final int IFNE = 0x9A;
+    private static final int IF_ICMPEQ = 0x9F;
+    private static final int IF_ICMPLE = 0xA4;
+    private static final int IRETURN = 0xAC;
+    private static final int RETURN = 0xB1;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+
+    private final MethodHandles.Lookup lookup;
+    private final List<Instruction> instructions;
+
+    private final Map<String, Integer> constants = new HashMap<>();
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream pool_out = new DataOutputStream(pool);
+    private int pool_size;
+    private byte[] code = new byte[4096];
+    private int code_length;
+
+    /**
+     * Create a new compiler for the Instructions of a CPU
+     *
+     * @param lookup       a lookup of the CPU class with full privileges, used to define the blocks
+     * @param instructions the Instructions of the CPU indexed by Opcode
+     */
+    BlockCompiler(MethodHandles.Lookup lookup, List<Instruction> instructions) {
+        this.lookup = lookup;
+        this.instructions = instructions;
+    }
+
+    /**
+     * Translate a basic block and load it
+     *
+     * @param addresses the address of each Instruction
+     * @param opcodes   the Opcode of each Instruction
+     * @param operands  the operand of each Instruction (low byte first)
+     * @param guards    the memory check needed before each Instruction (GUARD_NONE, GUARD_READ, GUARD_WRITE)
+     * @param length    the number of Instructions of the block
+     * @return an instance of the block
+     * @throws IllegalStateException if the generated class can't be loaded
+     */
+    CompiledBlock compile(int[] addresses, int[] opcodes, int[] operands, int[] guards, int length) {
+        constants.clear();
+        pool.reset();
+        pool_size = 1;
+
+        byte[] run = generateRun(addresses, opcodes, operands, guards, length);
+        byte[] init = generateConstructor();
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            int this_class = classRef(String.format("core/cpu/Block_%04X", addresses[0]));
+            int super_class = classRef("java/lang/Object");
+            int interface_class = classRef("core/cpu/CompiledBlock");
+            int init_name = utf8("<init>");
+            int init_descriptor = utf8("()V");
+            int run_name = utf8("run");
+            int run_descriptor = utf8("(L" + CPU + ";I)I");
+            int code_name = utf8("Code");
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(pool_size);
+            pool.writeTo(out);
+            out.writeShort(ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC);
+            out.writeShort(this_class);
+            out.writeShort(super_class);
+            out.writeShort(1);
+            out.writeShort(interface_class);
+            out.writeShort(0);
+            out.writeShort(2);
+            writeMethod(out, init_name, init_descriptor, code_name, init, 1, 1);
+            writeMethod(out, run_name, run_descriptor, code_name, run, 4, 4);
+            out.writeShort(0);
+
+            MethodHandles.Lookup block = lookup.defineHiddenClass(bytes.toByteArray(), true, MethodHandles.Lookup.ClassOption.NESTMATE);
+            return (CompiledBlock) block.lookupClass().getDeclaredConstructor().newInstance();
+        } catch (IOException | ReflectiveOperationException e) {
+            throw new IllegalStateException(String.format("The block at $%04X can't be loaded", addresses[0]), e);
+        }
+    }
+
+    /**
+     * Generate the body of the run method
+     * cpu is local 1, budget is local 2 and the page cross result of the current Instruction is local 3
+     *
+     * @param addresses the address of each Instruction
+     * @param opcodes   the Opcode of each Instruction
+     * @param operands  the operand of each Instruction
+     * @param guards    the memory check needed before each Instruction
+     * @param length    the number of Instructions of the block
+     * @return the bytecode of the method
+     */
+    private byte[] generateRun(int[] addresses, int[] opcodes, int[] operands, int[] guards, int length) {
+        code_length = 0;
+        for (int i = 0; i < length; i++) {
+            int opcode = opcodes[i];
+            Instruction instruction = instructions.get(opcode);
+            boolean page_cross = CPU_6502.PAGE_CROSS[opcode] != 0;
+            //No Instruction can start after the budget, an event could have raised an interrupt before it
+            //the previous Instructions already left the Program Counter on this one
+            if (i > 0) {
+                emit(ALOAD_1);
+                emitField(GETFIELD, "cycles", "I");
+                emit(ILOAD_2);
+                int branch = emitBranch(IF_ICMPLE);
+                emitExit(i);
+                patchBranch(branch);
+            }
+            //The memory accessed must be directly mapped, anything else is left to the interpreter
+            if (guards[i] != GUARD_NONE) {
+                emit(ALOAD_1);
+                emitInt(opcode);
+                emitInt(operands[i]);
+                emitInt(guards[i] == GUARD_WRITE ? 1 : 0);
+                emitMethod("isDirect", "(IIZ)Z");
+                int branch = emitBranch(IFNE);
+                emitExit(i);
+                patchBranch(branch);
+            }
+            //Same steps as the interpreter with the decoded Instruction
+            emitSetField("opcode", "I", opcode);
+            emitSetField("program_counter", "I", (addresses[i] + 1) & 0xFFFF);
+            emitSetField("operand", "I", operands[i]);
+            emitSetField("operand_decoded", "Z", 1);
+            emitAddCycles(CPU_6502.CYCLES[opcode]);
+            emitSetUnused();
+            emit(ALOAD_1);
+            emitMethod(instruction.addr_mode.name().toLowerCase(), "()I");
+            emit(page_cross ? ISTORE_3 : POP);
+            emit(ALOAD_1);
+            emitMethod(instruction.assembly.name().toLowerCase(), "()V");
+            if (page_cross) {
+                emit(ALOAD_1);
+                emit(ALOAD_1);
+                emitField(GETFIELD, "cycles", "I");
+                emit(ILOAD_3);
+                emit(IADD);
+                emitField(PUTFIELD, "cycles", "I");
+            }
+            emitSetUnused();
+            //A taken branch in the middle of the block leaves it
+            if (i < length - 1 && instruction.addr_mode == AddressingMode.REL) {
+                emit(ALOAD_1);
+                emitField(GETFIELD, "program_counter", "I");
+                emitInt(addresses[i + 1]);
+                int branch = emitBranch(IF_ICMPEQ);
+                emitExit(i + 1);
+                patchBranch(branch);
+            }
+        }
+        emitExit(length);
+        return Arrays.copyOf(code, code_length);
+    }
+
+    /**
+     * Generate the body of the constructor (call to the Object constructor)
+     *
+     * @return the bytecode of the method
+     */
+    private byte[] generateConstructor() {
+        code_length = 0;
+        emit(ALOAD_0);
+        emit(INVOKESPECIAL);
+        emitShort(methodRef("java/lang/Object", "<init>", "()V"));
+        emit(RETURN);
+        return Arrays.copyOf(code, code_length);
+    }
+
+    /**
+     * Write a method with a single Code attribute
+     *
+     * @param out        the stream to write to
+     * @param name       the constant of the name
+     * @param descriptor the constant of the descriptor
+     * @param code_name  the constant of the Code attribute name
+     * @param body       the bytecode of the method
+     * @param max_stack  the maximum depth of the operand stack
+     * @param max_locals the number of local variables (parameters included)
+     * @throws IOException never, the stream is in memory
+     */
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int code_name, byte[] body, int max_stack, int max_locals) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(code_name);
+        out.writeInt(12 + body.length);
+        out.writeShort(max_stack);
+        out.writeShort(max_locals);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    // ============================================== Code emission ============================================== //
+
+    /**
+     * Append a byte to the code
+     *
+     * @param value the byte to append
+     */
+    private void emit(int value) {
+        if (code_length == code.length)
+            code = Arrays.copyOf(code, code.length * 2);
+        code[code_length++] = (byte) value;
+    }
+
+    /**
+     * Append a 16bit value to the code (MSB first)
+     *
+     * @param value the value to append
+     */
+    private void emitShort(int value) {
+        emit(value >> 8);
+        emit(value);
+    }
+
+    /**
+     * Push an integer constant with the shortest instruction
+     *
+     * @param value the constant to push
+     */
+    private void emitInt(int value) {
+        if (value >= -1 && value <= 5) {
+            emit(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            emit(BIPUSH);
+            emit(value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            emit(SIPUSH);
+            emitShort(value);
+        } else {
+            emit(LDC_W);
+            emitShort(integer(value));
+        }
+    }
+
+    /**
+     * Access a field of the CPU, the CPU must be on the stack (and the value for a put)
+     *
+     * @param instruction GETFIELD or PUTFIELD
+     * @param name        the name of the field
+     * @param descriptor  the type of the field
+     */
+    private void emitField(int instruction, String name, String descriptor) {
+        emit(instruction);
+        emitShort(fieldRef(name, descriptor));
+    }
+
+    /**
+     * Set a field of the CPU to a constant
+     *
+     * @param name       the name of the field
+     * @param descriptor the type of the field
+     * @param value      the constant
+     */
+    private void emitSetField(String name, String descriptor, int value) {
+        emit(ALOAD_1);
+        emitInt(value);
+        emitField(PUTFIELD, name, descriptor);
+    }
+
+    /**
+     * Add a constant to the cycles of the CPU
+     *
+     * @param value the number of cycles to add
+     */
+    private void emitAddCycles(int value) {
+        emit(ALOAD_1);
+        emit(ALOAD_1);
+        emitField(GETFIELD, "cycles", "I");
+        emitInt(value);
+        emit(IADD);
+        emitField(PUTFIELD, "cycles", "I");
+    }
+
+    /**
+     * Set the unused Flag of the Status Register, like the interpreter around every Instruction
+     */
+    private void emitSetUnused() {
+        emit(ALOAD_1);
+        emit(ALOAD_1);
+        emitField(GETFIELD, "status", "I");
+        emitInt(UNUSED_FLAG);
+        emit(IOR);
+        emitField(PUTFIELD, "status", "I");
+    }
+
+    /**
+     * Call a method of the CPU, the CPU and the arguments must be on the stack
+     *
+     * @param name       the name of the method
+     * @param descriptor the descriptor of the method
+     */
+    private void emitMethod(String name, String descriptor) {
+        emit(INVOKEVIRTUAL);
+        emitShort(methodRef(CPU, name, descriptor));
+    }
+
+    /**
+     * Return the number of executed Instructions
+     *
+     * @param executed the number of Instructions executed before this point
+     */
+    private void emitExit(int executed) {
+        emitInt(executed);
+        emit(IRETURN);
+    }
+
+    /**
+     * Append a forward branch, its offset is set by patchBranch()
+     *
+     * @param instruction the branch instruction
+     * @return the position of the branch
+     */
+    private int emitBranch(int instruction) {
+        int position = code_length;
+        emit(instruction);
+        emitShort(0);
+        return position;
+    }
+
+    /**
+     * Set the target of a forward branch to the current position
+     *
+     * @param position the position of the branch
+     */
+    private void patchBranch(int position) {
+        int offset = code_length - position;
+        code[position + 1] = (byte) (offset >> 8);
+        code[position + 2] = (byte) offset;
+    }
+
+    // ============================================== Constant Pool ============================================== //
+
+    /**
+     * Return the index of an UTF8 constant, added if needed
+     *
+     * @param value the string
+     * @return the index of the constant
+     */
+    private int utf8(String value) {
+        Integer index = constants.get("U" + value);
+        if (index != null)
+            return index;
+        try {
+            pool_out.writeByte(1);
+            pool_out.writeUTF(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return addConstant("U" + value);
+    }
+
+    /**
+     * Return the index of a Class constant, added if needed
+     *
+     * @param name the internal name of the class
+     * @return the index of the constant
+     */
+    private int classRef(String name) {
+        Integer index = constants.get("C" + name);
+        if (index != null)
+            return index;
+        int name_index = utf8(name);
+        writeConstant(7, name_index, -1);
+        return addConstant("C" + name);
+    }
+
+    /**
+     * Return the index of a field of the CPU, added if needed
+     *
+     * @param name       the name of the field
+     * @param descriptor the type of the field
+     * @return the index of the constant
+     */
+    private int fieldRef(String name, String descriptor) {
+        return memberRef(9, CPU, name, descriptor);
+    }
+
+    /**
+     * Return the index of a method, added if needed
+     *
+     * @param owner      the internal name of the class of the method
+     * @param name       the name of the method
+     * @param descriptor the descriptor of the method
+     * @return the index of the constant
+     */
+    private int methodRef(String owner, String name, String descriptor) {
+        return memberRef(10, owner, name, descriptor);
+    }
+
+    /**
+     * Return the index of a Fieldref or Methodref constant, added if needed
+     *
+     * @param tag        the tag of the constant
+     * @param owner      the internal name of the class of the member
+     * @param name       the name of the member
+     * @param descriptor the descriptor of the member
+     * @return the index of the constant
+     */
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        String key = "M" + tag + owner + "." + name + descriptor;
+        Integer index = constants.get(key);
+        if (index != null)
+            return index;
+        int class_index = classRef(owner);
+        Integer name_and_type = constants.get("N" + name + descriptor);
+        if (name_and_type == null) {
+            int name_index = utf8(name);
+            int descriptor_index = utf8(descriptor);
+            writeConstant(12, name_index, descriptor_index);
+            name_and_type = addConstant("N" + name + descriptor);
+        }
+        writeConstant(tag, class_index, name_and_type);
+        return addConstant(key);
+    }
+
+    /**
+     * Return the index of an Integer constant, added if needed
+     *
+     * @param value the integer
+     * @return the index of the constant
+     */
+    private int integer(int value) {
+        Integer index = constants.get("I" + value);
+        if (index != null)
+            return index;
+        try {
+            pool_out.writeByte(3);
+            pool_out.writeInt(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return addConstant("I" + value);
+    }
+
+    /**
+     * Write a constant made of one or two indexes
+     *
+     * @param tag    the tag of the constant
+     * @param first  the first index
+     * @param second the second index, -1 if there is none
+     */
+    private void writeConstant(int tag, int first, int second) {
+        try {
+            pool_out.writeByte(tag);
+            pool_out.writeShort(first);
+            if (second >= 0)
+                pool_out.writeShort(second);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Register the last written constant
+     *
+     * @param key the key of the constant
+     * @return the index of the constant
+     */
+    private int addConstant(String key) {
+        constants.put(key, pool_size);
+        return pool_size++;
+    }
+}
@@ -1,15 +1,108 @@
 package core.cpu;
 
 import core.NES;
+import core.PageTable;
+import core.Saveable;
 import utils.IntegerWrapper;
 
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * This class represent the CPU of the NES
  */
-public class CPU_6502 {
+public class CPU_6502 implements Saveable {
+
+    public static final int IRQ_APU = 0x01;
+    public static final int IRQ_MAPPER = 0x02;
+    //Maximum distance of the backward jump closing an idle loop
+    public static final int IDLE_LOOP_SIZE = 32;
+
+    //Addressing modes of the Opcodes (MODES table)
+    private static final byte IMP = 0, IMM = 1, ZP0 = 2, ZPX = 3, ZPY = 4, IZX = 5, IZY = 6, ABS = 7, ABX = 8, ABY = 9, IND = 10, REL = 11;
+
+    //Base number of cycles of each Opcode
+    static final byte[] CYCLES = {
+            7, 6, 2, 8, 3, 3, 5, 5, 3, 2, 2, 2, 4, 4, 6, 6, //00 - 0F
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7, //10 - 1F
+            6, 6, 2, 8, 3, 3, 5, 5, 4, 2, 2, 2, 4, 4, 6, 6, //20 - 2F
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7, //30 - 3F
+            6, 6, 2, 8, 3, 3, 5, 5, 3, 2, 2, 2, 3, 4, 6, 6, //40 - 4F
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7, //50 - 5F
+            6, 6, 2, 8, 3, 3, 5, 5, 4, 2, 2, 2, 5, 4, 6, 6, //60 - 6F
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7, //70 - 7F
+            2, 6, 2, 6, 3, 3, 3, 3, 2, 2, 2, 2, 4, 4, 4, 4, //80 - 8F
+            2, 6, 2, 6, 4, 4, 4, 4, 2, 5, 2, 5, 5, 5, 5, 5, //90 - 9F
+            2, 6, 2, 6, 3, 3, 3, 3, 2, 2, 2, 2, 4, 4, 4, 4, //A0 - AF
+            2, 5, 2, 5, 4, 4, 4, 4, 2, 4, 2, 4, 4, 4, 4, 4, //B0 - BF
+            2, 6, 2, 8, 3, 3, 5, 5, 2, 2, 2, 2, 4, 4, 6, 6, //C0 - CF
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7, //D0 - DF
+            2, 6, 2, 8, 3, 3, 5, 5, 2, 2, 2, 2, 4, 4, 6, 6, //E0 - EF
+            2, 5, 2, 8, 4, 4, 6, 6, 2, 4, 2, 7, 4, 4, 7, 7  //F0 - FF
+    };
+
+    //1 if the Opcode takes an extra cycle when its addressing mode crosses a page
+    static final byte[] PAGE_CROSS = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //00 - 0F
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, //10 - 1F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //20 - 2F
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, //30 - 3F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //40 - 4F
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, //50 - 5F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //60 - 6F
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, //70 - 7F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //80 - 8F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //90 - 9F
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //A0 - AF
+            0, 1, 0, 1, 0, 0, 0, 0, 0, 1, 0, 0, 1, 1, 1, 1, //B0 - BF
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //C0 - CF
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, //D0 - DF
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, //E0 - EF
+            0, 1, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0  //F0 - FF
+    };
+
+    //Addressing mode of each Opcode, used when the treatment depends on it (Accumulator or memory operand)
+    private static final byte[] MODES = {
+            IMM, IZX, IMP, IZX, IMP, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, IMP, ABS, ABS, ABS, //00 - 0F
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX, //10 - 1F
+            ABS, IZX, IMP, IZX, ZP0, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, ABS, ABS, ABS, ABS, //20 - 2F
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX, //30 - 3F
+            IMP, IZX, IMP, IZX, IMP, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, ABS, ABS, ABS, ABS, //40 - 4F
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX, //50 - 5F
+            IMP, IZX, IMP, IZX, IMP, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, IND, ABS, ABS, ABS, //60 - 6F
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX, //70 - 7F
+            IMP, IZX, IMP, IZX, ZP0, ZP0, ZP0, ZP0, IMP, IMP, IMP, IMM, ABS, ABS, ABS, ABS, //80 - 8F
+            REL, IZY, IMP, IZY, ZPX, ZPX, ZPY, ZPY, IMP, ABY, IMP, ABY, ABX, ABX, ABY, ABY, //90 - 9F
+            IMM, IZX, IMM, IZX, ZP0, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, ABS, ABS, ABS, ABS, //A0 - AF
+            REL, IZY, IMP, IZY, ZPX, ZPX, ZPY, ZPY, IMP, ABY, IMP, ABY, ABX, ABX, ABY, ABY, //B0 - BF
+            IMM, IZX, IMP, IZX, ZP0, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMP, ABS, ABS, ABS, ABS, //C0 - CF
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX, //D0 - DF
+            IMM, IZX, IMP, IZX, ZP0, ZP0, ZP0, ZP0, IMP, IMM, IMP, IMM, ABS, ABS, ABS, ABS, //E0 - EF
+            REL, IZY, IMP, IZY, IMP, ZPX, ZPX, ZPX, IMP, ABY, IMP, ABY, IMP, ABX, ABX, ABX  //F0 - FF
+    };
+
+    //Size in bytes of each Opcode and its operand, derived from the addressing mode
+    static final byte[] LENGTHS = new byte[256];
+
+    static {
+        for (int opcode = 0; opcode < 256; opcode++) {
+            switch (MODES[opcode]) {
+                case IMP:
+                    LENGTHS[opcode] = 1;
+                    break;
+                case ABS:
+                case ABX:
+                case ABY:
+                case IND:
+                    LENGTHS[opcode] = 3;
+                    break;
+                default:
+                    LENGTHS[opcode] = 2;
+            }
+        }
+    }
 
     private final List<Instruction> opcodes;
     private NES nes;
@@ -18,6 +111,7 @@ public class CPU_6502 {
     private int y_register = 0x00;
     private int stack_pointer = 0x00;
     private int status = 0x00;
+    private int nz_result = 0x01;
     private int program_counter = 0x0000;
     private int tmp = 0x0000;
     private int fetched = 0x00;
@@ -26,269 +120,288 @@ public class CPU_6502 {
     private int addr_abs = 0x0000;
     private int addr_rel = 0x00;
     private long cpu_clock = 0L;
+    private long instruction_count = 0L;
     private boolean halted;
+    private int irq_lines = 0x00;
+    private Runnable instruction_listener;
+    private PageTable cpu_pages;
+    private InstructionCache instruction_cache;
+    private int operand = 0x0000;
+    private boolean operand_decoded = false;
+    private Recompiler recompiler;
+    private boolean recompiler_check = false;
+    private boolean idle_skipping = false;
+    private long write_count = 0L;
+    private long skipped_cycles = 0L;
+    private int idle_head = -1;
+    private final int[] idle_state = new int[11];
+    private final int[] current_state = new int[11];
+    private long idle_clock;
+    private long idle_instructions;
+    private long idle_writes;
+    private long idle_accesses;
 
     /**
      * Create a new CPU and populate the opcode list
      */
     public CPU_6502() {
         opcodes = new ArrayList<>();
-        opcodes.add(new Instruction(OPCode.BRK, AddressingMode.IMM, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.PHP, AddressingMode.IMP, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ANC, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BPL, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.CLC, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.JSR, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.BIT, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.PLP, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ANC, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.BIT, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BMI, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SEC, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.RTI, AddressingMode.IMP, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.PHA, AddressingMode.IMP, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ALR, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.JMP, AddressingMode.ABS, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BVC, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.CLI, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.RTS, AddressingMode.IMP, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.PLA, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ARR, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.JMP, AddressingMode.IND, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BVS, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SEI, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.DEY, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.TXA, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.XAA, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.BCC, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.IZY, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.AXA, AddressingMode.IZY, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ZPY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ZPY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.TYA, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.TXS, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.TAS, AddressingMode.ABY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.SAY, AddressingMode.ABX, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABX, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.XAS, AddressingMode.ABY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.AXA, AddressingMode.ABY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.TAY, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.TAX, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.OAL, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.BCS, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ZPY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ZPY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.CLV, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.TSX, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.LAS, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.INY, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.DEX, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SAX, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BNE, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.CLD, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IZX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.IZX, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ZP0, opcodes.size(), 3, this));
-        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ZP0, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.INX, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IMM, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABS, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABS, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.BEQ, AddressingMode.REL, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IZY, opcodes.size(), 5, this));
-        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.IZY, opcodes.size(), 8, this));
-        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ZPX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ZPX, opcodes.size(), 6, this));
-        opcodes.add(new Instruction(OPCode.SED, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABY, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABY, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABX, opcodes.size(), 4, this));
-        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ABX, opcodes.size(), 7, this));
-        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABX, opcodes.size(), 7, this));
+        opcodes.add(new Instruction(OPCode.BRK, AddressingMode.IMM, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.PHP, AddressingMode.IMP, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ANC, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BPL, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.CLC, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ORA, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ASL, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.ASO, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.JSR, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.BIT, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.PLP, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ANC, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.BIT, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BMI, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SEC, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AND, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROL, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.RLA, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.RTI, AddressingMode.IMP, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.PHA, AddressingMode.IMP, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ALR, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.JMP, AddressingMode.ABS, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BVC, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.CLI, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.EOR, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LSR, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.LSE, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.RTS, AddressingMode.IMP, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.PLA, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ARR, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.JMP, AddressingMode.IND, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BVS, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SEI, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ADC, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.ROR, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.RRA, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.DEY, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.TXA, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.XAA, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.BCC, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.IZY, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.AXA, AddressingMode.IZY, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.STY, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.STX, AddressingMode.ZPY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.AXS, AddressingMode.ZPY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.TYA, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.TXS, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.TAS, AddressingMode.ABY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.SAY, AddressingMode.ABX, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.STA, AddressingMode.ABX, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.XAS, AddressingMode.ABY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.AXA, AddressingMode.ABY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.TAY, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.TAX, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.OAL, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.BCS, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ZPY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ZPY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.CLV, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.TSX, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.LAS, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDY, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDA, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LDX, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.LAX, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.INY, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.DEX, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SAX, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CPY, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BNE, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.CLD, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.CMP, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.DEC, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.DCM, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IZX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.IZX, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ZP0, opcodes.size(), 3));
+        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ZP0, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.INX, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IMM, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.CPX, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABS, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABS, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.BEQ, AddressingMode.REL, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.IZY, opcodes.size(), 5));
+        opcodes.add(new Instruction(OPCode.HLT, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.IZY, opcodes.size(), 8));
+        opcodes.add(new Instruction(OPCode.SKB, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ZPX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ZPX, opcodes.size(), 6));
+        opcodes.add(new Instruction(OPCode.SED, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABY, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.NOP, AddressingMode.IMP, opcodes.size(), 2));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABY, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.SKW, AddressingMode.IMP, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.SBC, AddressingMode.ABX, opcodes.size(), 4));
+        opcodes.add(new Instruction(OPCode.INC, AddressingMode.ABX, opcodes.size(), 7));
+        opcodes.add(new Instruction(OPCode.INS, AddressingMode.ABX, opcodes.size(), 7));
     }
 
     /**
@@ -298,6 +411,7 @@ public class CPU_6502 {
      */
     public void connectBus(NES NES) {
         this.nes = NES;
+        this.cpu_pages = NES.getCpuPages();
     }
 
     /**
@@ -306,6 +420,7 @@ public class CPU_6502 {
      * @param addr the address to write to
      */
     private void write(int addr, int data) {
+        write_count++;
         nes.cpuWrite(addr, data);
     }
 
@@ -319,6 +434,24 @@ public class CPU_6502 {
         return nes.cpuRead(addr, false) & 0xFF;
     }
 
+    /**
+     * Read the next operand byte of the current Instruction and increment the Program Counter
+     * if the Instruction was decoded from the instruction cache or by the recompiler, the byte is taken from the decoded operand
+     *
+     * @return the operand byte
+     */
+    private int readOperand() {
+        int data;
+        if (operand_decoded) {
+            data = operand & 0xFF;
+            operand >>= 8;
+        } else {
+            data = read(program_counter);
+        }
+        program_counter = (program_counter + 1) & 0xFFFF;
+        return data;
+    }
+
     /**
      * Get a Flag value
      *
@@ -342,6 +475,45 @@ public class CPU_6502 {
             status &= ~flag.value;
     }
 
+    /**
+     * Store the result the N and Z Flags are derived from
+     * the Flags are only computed when they are read (branches, Status Register pushed or inspected)
+     *
+     * @param value the result of the Instruction (only the 8 LSB are used)
+     */
+    private void setNZ(int value) {
+        nz_result = value & 0xFF;
+    }
+
+    /**
+     * Return the Z Flag derived from the last result
+     *
+     * @return is the Z Flag set
+     */
+    private boolean isZero() {
+        return (nz_result & 0xFF) == 0;
+    }
+
+    /**
+     * Return the N Flag derived from the last result
+     * the N Flag can also be stored in the high byte (BIT, Status Register restored)
+     *
+     * @return is the N Flag set
+     */
+    private boolean isNegative() {
+        return ((nz_result | nz_result >> 8) & 0x80) != 0;
+    }
+
+    /**
+     * Set the whole Status Register, the N and Z Flags are converted to a result deriving them
+     *
+     * @param value the new Status Register value
+     */
+    private void setStatus(int value) {
+        status = value & ~(Flags.N.value | Flags.Z.value);
+        nz_result = ((value & Flags.Z.value) != 0 ? 0x00 : 0x01) | ((value & Flags.N.value) << 8);
+    }
+
     // =========================================== Addressing Modes ===========================================
 
     /**
@@ -350,7 +522,7 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int imp() {
+    private int imp() {
         fetched = accumulator & 0xFF;
 
         return 0;
@@ -365,9 +537,8 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int zp0() {
-        addr_abs = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int zp0() {
+        addr_abs = readOperand();
 
         return 0;
     }
@@ -383,10 +554,9 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int zpy() {
-        addr_abs = read(program_counter++) + y_register;
+    private int zpy() {
+        addr_abs = readOperand() + y_register;
         addr_abs &= 0x00FF;
-        program_counter &= 0xFFFF;
 
         return 0;
     }
@@ -397,11 +567,9 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int abs() {
-        int low = read(program_counter++);
-        program_counter &= 0xFFFF;
-        int high = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int abs() {
+        int low = readOperand();
+        int high = readOperand();
 
         addr_abs = (high << 8) | low;
 
@@ -415,11 +583,9 @@ public class CPU_6502 {
      *
      * @return 1 if a page Boundary is crossed when adding Y Register, 0 otherwise
      */
-    int aby() {
-        int low = read(program_counter++);
-        program_counter &= 0xFFFF;
-        int high = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int aby() {
+        int low = readOperand();
+        int high = readOperand();
 
         addr_abs = (high << 8 | low) + y_register;
         addr_abs &= 0xFFFF;
@@ -442,9 +608,8 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int izx() {
-        int ptr = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int izx() {
+        int ptr = readOperand();
 
         int low = read((ptr + (x_register & 0xFF) & 0xFFFF) & 0x00FF);
         int high = read(((ptr + (x_register & 0xFF) + 1) & 0xFFFF) & 0x00FF);
@@ -461,7 +626,7 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int imm() {
+    private int imm() {
         addr_abs = program_counter++;
         program_counter &= 0xFFFF;
 
@@ -479,10 +644,9 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int zpx() {
-        addr_abs = read(program_counter++) + x_register;
+    private int zpx() {
+        addr_abs = readOperand() + x_register;
         addr_abs &= 0x00FF;
-        program_counter &= 0xFFFF;
 
         return 0;
     }
@@ -494,9 +658,8 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required
      */
-    int rel() {
-        addr_rel = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int rel() {
+        addr_rel = readOperand();
 
         if ((addr_rel & 0x80) == 0x80) addr_rel |= 0xFFFFFF00;
 
@@ -510,17 +673,15 @@ public class CPU_6502 {
      *
      * @return 1 if a page boundary is crossed when adding X Register, 0 otherwise
      */
-    int abx() {
-        int low = read(program_counter++);
-        program_counter &= 0xFFFF;
-        int high = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int abx() {
+        int low = readOperand();
+        int high = readOperand();
 
         addr_abs = ((high << 8) | low) + x_register;
         addr_abs &= 0xFFFF;
 
-        //Dummy read
-        if (low + x_register > 0xFF || opcodes.get(opcode).assembly == OPCode.ROL)
+        //Dummy read (always done by ROL abs, X : 0x3E)
+        if (low + x_register > 0xFF || opcode == 0x3E)
             read(((high << 8) & 0xFF00) | (addr_abs & 0xFF));
         if ((addr_abs & 0xFF00) != (high << 8)) return 1;
 
@@ -546,11 +707,9 @@ public class CPU_6502 {
      *
      * @return 0 No extra cycle required (because no page boundary cross can occur)
      */
-    int ind() {
-        int low = read(program_counter++);
-        program_counter &= 0xFFFF;
-        int high = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int ind() {
+        int low = readOperand();
+        int high = readOperand();
 
         int ptr = (high << 8) | low;
 
@@ -575,9 +734,8 @@ public class CPU_6502 {
      *
      * @return 1 If when adding Y we cross a page boundary 0 otherwise
      */
-    int izy() {
-        int ptr = read(program_counter++);
-        program_counter &= 0xFFFF;
+    private int izy() {
+        int ptr = readOperand();
 
         int low = read(ptr);
         int high = read((ptr + 1) & 0x00FF);
@@ -606,21 +764,16 @@ public class CPU_6502 {
      * V Flag set if (When considering data as signed) :
      * Positive + Positive = Negative (MSB set)
      * Negative + Negative = Positive (MSB not set)
-     *
-     * @return 1 An extra cycle can be required depending on the addressing mode
      */
-    int adc() {
+    private void adc() {
         fetch();
         tmp = (accumulator + fetched + (getFlag(Flags.C) ? 0x1 : 0x0)) & 0x01FF;
 
         setFlag(Flags.V, ((tmp ^ accumulator) & (tmp ^ fetched) & 0x80) == 0x80);
         setFlag(Flags.C, tmp > 0xFF);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
         accumulator = tmp & 0x00FF;
-
-        return 1;
     }
 
     /**
@@ -628,18 +781,13 @@ public class CPU_6502 {
      * stores it into the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 1 Extra cycle may be required
      */
-    int and() {
+    private void and() {
         fetch();
         accumulator = accumulator & fetched;
         accumulator &= 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) != 0x00);
-
-        return 1;
+        setNZ(accumulator);
     }
 
     /**
@@ -647,30 +795,23 @@ public class CPU_6502 {
      * C Flag set if Fetched data has MSB set
      * Z Flag set if Computed data = 0
      * N Flag set if Computed data has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int asl() {
+    private void asl() {
         fetch();
         tmp = fetched << 1;
 
         setFlag(Flags.C, (tmp & 0xFF00) > 0);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (MODES[opcode] == IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
-
-        return 0;
     }
 
     /**
      * Branch on Carry Clear
      * Jump to Fetched Address if C Flag isn't set
-     *
-     * @return 0 No extra cycle required
      */
-    int bcc() {
+    private void bcc() {
         if (!getFlag(Flags.C)) {
             cycles++;
             addr_abs = program_counter + addr_rel;
@@ -679,16 +820,13 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Branch on Carry Set
      * Jump to Fetched Address if C Flag is set
-     *
-     * @return 0 No extra cycle required
      */
-    int bcs() {
+    private void bcs() {
         if (getFlag(Flags.C)) {
             cycles++;
             addr_abs = program_counter + addr_rel;
@@ -697,17 +835,14 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Branch on Equal
      * Jump to Fetched Address if Z Flag is set
-     *
-     * @return 0 No extra cycle required
      */
-    int beq() {
-        if (getFlag(Flags.Z)) {
+    private void beq() {
+        if (isZero()) {
             cycles++;
             addr_abs = program_counter + addr_rel;
             addr_abs &= 0xFFFF;
@@ -715,7 +850,6 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
@@ -723,28 +857,22 @@ public class CPU_6502 {
      * Z Flag set if the Accumulator and the Fetched data have no common bits
      * N Flag set if Fetched data has 7th bit set
      * V Flag set if Fetched data has 6th bit set
-     *
-     * @return 0 No extra cycle required
      */
-    int bit() {
+    private void bit() {
         fetch();
         tmp = (accumulator & fetched);
 
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x0000);
-        setFlag(Flags.N, (fetched & 0x80) == 0x80);
+        //N comes from the fetched value, it is stored in the high byte so Z and N can both be set
+        nz_result = (tmp & 0xFF) | ((fetched & 0x80) << 8);
         setFlag(Flags.V, (fetched & 0x40) == 0x40);
-
-        return 0;
     }
 
     /**
      * Branch on Negative
      * Jump to Fetched Address if N Flag is set
-     *
-     * @return 0 No extra cycle required
      */
-    int bmi() {
-        if (getFlag(Flags.N)) {
+    private void bmi() {
+        if (isNegative()) {
             cycles++;
             addr_abs = program_counter + addr_rel;
             addr_abs &= 0xFFFF;
@@ -752,17 +880,14 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Branch on Not Equal
      * Jump to Fetched Address if Z Flag isn't set
-     *
-     * @return 0 No extra cycle required
      */
-    int bne() {
-        if (!getFlag(Flags.Z)) {
+    private void bne() {
+        if (!isZero()) {
             cycles++;
             addr_abs = program_counter + addr_rel;
             addr_abs &= 0xFFFF;
@@ -770,17 +895,14 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Branch on Positive
      * Jump to Fetched Address if N Flag isn't set
-     *
-     * @return 0 No extra cycle required
      */
-    int bpl() {
-        if (!getFlag(Flags.N)) {
+    private void bpl() {
+        if (!isNegative()) {
             cycles++;
             addr_abs = program_counter + addr_rel;
             addr_abs &= 0xFFFF;
@@ -788,36 +910,29 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Fire an Interrupt
      * Push the Program Counter and Status Register (Set the B Flag before) to the Stack
      * Jump to the Address Specified at Location 0xFFFF and 0xFFFE
-     *
-     * @return 0 No extra cycle required
      */
-    int brk() {
+    private void brk() {
         //Dummy Read
         read((program_counter - 1) & 0xFFFF);
         pushStack((program_counter >> 8) & 0xFF);
         pushStack(program_counter & 0xFF);
-        pushStack((status | Flags.B.value) & 0xFF);
+        pushStack((getStatus() | Flags.B.value) & 0xFF);
         program_counter = irqVector();
 
         setFlag(Flags.I, true);
-
-        return 0;
     }
 
     /**
      * Branch on Not Overflow
      * Jump to Fetched Address if V Flag isn't set
-     *
-     * @return 0 No extra cycle required
      */
-    int bvc() {
+    private void bvc() {
         if (!getFlag(Flags.V)) {
             cycles++;
             addr_abs = program_counter + addr_rel;
@@ -826,16 +941,13 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Branch on Overflow
      * Jump to Fetched Address if V Flag is set
-     *
-     * @return 0 No extra cycle required
      */
-    int bvs() {
+    private void bvs() {
         if (getFlag(Flags.V)) {
             cycles++;
             addr_abs = program_counter + addr_rel;
@@ -844,51 +956,38 @@ public class CPU_6502 {
                 cycles++;
             program_counter = addr_abs;
         }
-        return 0;
     }
 
     /**
      * Set the Carry Flag of the Status Register to 0
      * C Flag not set
-     *
-     * @return 0 No extra cycle required
      */
-    int clc() {
+    private void clc() {
         setFlag(Flags.C, false);
-        return 0;
     }
 
     /**
      * Set the Decimal Flag of the Status Register to 0
      * D Flag not set
-     *
-     * @return 0 No extra cycle required
      */
-    int cld() {
+    private void cld() {
         setFlag(Flags.D, false);
-        return 0;
     }
 
     /**
      * Set the Interrupt Flag of the Status Register to 0
      * I Flag not set
-     *
-     * @return 0 No extra cycle required
      */
-    int cli() {
+    private void cli() {
         setFlag(Flags.I, false);
-        return 0;
     }
 
     /**
      * Set the Overflow Flag of the Status Register to 0
      * V Flag not set
-     *
-     * @return 0 No extra cycle required
      */
-    int clv() {
+    private void clv() {
         setFlag(Flags.V, false);
-        return 0;
     }
 
     /**
@@ -896,18 +995,13 @@ public class CPU_6502 {
      * C Flag set if Accumulator > Fetched data
      * Z Flag set if Accumulator = Fetched data
      * N Flag set if Accumulator < Fetched data
-     *
-     * @return 0 No extra cycle required
      */
-    int cmp() {
+    private void cmp() {
         fetch();
         tmp = accumulator - fetched;
 
         setFlag(Flags.C, accumulator >= fetched);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
-
-        return 1;
+        setNZ(tmp);
     }
 
     /**
@@ -915,18 +1009,13 @@ public class CPU_6502 {
      * C Flag set if X Register > Fetched data
      * Z Flag set if X Register = Fetched data
      * N Flag set if X Register < Fetched data
-     *
-     * @return 0 No extra cycle required
      */
-    int cpx() {
+    private void cpx() {
         fetch();
         tmp = x_register - fetched;
 
         setFlag(Flags.C, x_register >= fetched);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
-
-        return 0;
+        setNZ(tmp);
     }
 
     /**
@@ -934,18 +1023,13 @@ public class CPU_6502 {
      * C Flag set if Y Register > Fetched data
      * Z Flag set if Y Register = Fetched data
      * N Flag set if Y Register < Fetched data
-     *
-     * @return 0 No extra cycle required
      */
-    int cpy() {
+    private void cpy() {
         fetch();
         tmp = y_register - fetched;
 
         setFlag(Flags.C, y_register >= fetched);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
-
-        return 0;
+        setNZ(tmp);
     }
 
     /**
@@ -953,18 +1037,13 @@ public class CPU_6502 {
      * If Accumulator = 0x00 => wrap to 0xFF
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int dec() {
+    private void dec() {
         fetch();
         tmp = (fetched - 1) & 0xFF;
         write(addr_abs, tmp);
 
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
-
-        return 0;
+        setNZ(tmp);
     }
 
     /**
@@ -972,17 +1051,12 @@ public class CPU_6502 {
      * If X Register = 0x00 => wrap to 0xFF
      * Z Flag set if X Register = 0
      * N Flag set if X Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int dex() {
+    private void dex() {
         x_register--;
         x_register &= 0xFF;
 
-        setFlag(Flags.Z, (x_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (x_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(x_register);
     }
 
     /**
@@ -990,17 +1064,12 @@ public class CPU_6502 {
      * If Y Register = 0x00 => wrap to 0xFF
      * Z Flag set if Y Register = 0
      * N Flag set if Y Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int dey() {
+    private void dey() {
         y_register--;
         y_register &= 0xFF;
 
-        setFlag(Flags.Z, (y_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (y_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(y_register);
     }
 
     /**
@@ -1008,17 +1077,12 @@ public class CPU_6502 {
      * stores it into the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 1 Extra cycle may be required
      */
-    int eor() {
+    private void eor() {
         fetch();
         accumulator = (accumulator ^ fetched) & 0x00FF;
 
-        setFlag(Flags.Z, (accumulator & 0xFF) == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 1;
+        setNZ(accumulator);
     }
 
     /**
@@ -1026,18 +1090,13 @@ public class CPU_6502 {
      * If Accumulator = 0xFF => wrap to 0x00
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int inc() {
+    private void inc() {
         fetch();
         tmp = (fetched + 1) & 0xFF;
         write(addr_abs, tmp);
 
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
-
-        return 0;
+        setNZ(tmp);
     }
 
     /**
@@ -1045,17 +1104,12 @@ public class CPU_6502 {
      * If X Register = 0xFF => wrap to 0x00
      * Z Flag set if X Register = 0
      * N Flag set if X Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int inx() {
+    private void inx() {
         x_register++;
         x_register &= 0xFF;
 
-        setFlag(Flags.Z, (x_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (x_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(x_register);
     }
 
     /**
@@ -1063,136 +1117,92 @@ public class CPU_6502 {
      * If Y Register = 0xFF => wrap to 0x00
      * Z Flag set if Y Register = 0
      * N Flag set if Y Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int iny() {
+    private void iny() {
         y_register++;
         y_register &= 0xFF;
 
-        setFlag(Flags.Z, (y_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (y_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(y_register);
     }
 
     /**
      * Jump to Fetched Address
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int jmp() {
+    private void jmp() {
         program_counter = addr_abs & 0xFFFF;
-        return 0;
     }
 
     /**
      * Jump to Subroutine
      * Push Program Counter to the Stack and Jump to Fetched Address
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int jsr() {
+    private void jsr() {
         program_counter--;
         program_counter &= 0xFFFF;
 
         pushStack((program_counter >> 8) & 0xFF);
         pushStack(program_counter & 0xFF);
         program_counter = addr_abs & 0xFFFF;
-
-        return 0;
     }
 
     /**
      * Store the Fetched data into the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 1 Extra cycle may be required depending on the addressing mode
      */
-    int lda() {
+    private void lda() {
         fetch();
         accumulator = fetched & 0xFF;
 
-        setFlag(Flags.Z, (accumulator & 0xFF) == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 1;
+        setNZ(accumulator);
     }
 
     /**
      * Store the Fetched data into the X Register
      * Z Flag set if X Register = 0
      * N Flag set if X Register has MSB set
-     *
-     * @return 1 Extra cycle may be required depending on the addressing mode
      */
-    int ldx() {
+    private void ldx() {
         fetch();
         x_register = fetched & 0xFF;
 
-        setFlag(Flags.Z, (x_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (x_register & 0x80) == 0x80);
-
-        return 1;
+        setNZ(x_register);
     }
 
     /**
      * Store the Fetched data into the Y Register
      * Z Flag set if Y Register = 0
      * N Flag set if Y Register has MSB set
-     *
-     * @return 1 Extra cycle may be required depending on the addressing mode
      */
-    int ldy() {
+    private void ldy() {
         fetch();
         y_register = fetched & 0xFF;
 
-        setFlag(Flags.Z, (y_register & 0xFF) == 0x00);
-        setFlag(Flags.N, (y_register & 0x80) == 0x80);
-
-        return 1;
+        setNZ(y_register);
     }
 
     /**
      * Shift Right the Fetched data and store it depending on the addressing mode
      * Z Flag set if Computed data = 0
      * N Flag set if Computed data has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int lsr() {
+    private void lsr() {
         fetch();
         setFlag(Flags.C, (fetched & 0x01) == 0x01);
         tmp = (fetched >> 1);
 
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (MODES[opcode] == IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
-
-        return 0;
     }
 
     /**
      * Do nothing
-     *
-     * @return 1 if OPCode in { 0x1C; Ox3C; 0x5C, 0x7C, 0xDC, 0xFC} 0 otherwise
      */
-    int nop() {
-        switch (opcode) {
-            case 0x1C:
-            case 0x3C:
-            case 0x5C:
-            case 0x7C:
-            case 0xDC:
-            case 0xFC:
-                return 1;
-        }
-        return 0;
+    private void nop() {
     }
 
     /**
@@ -1200,75 +1210,54 @@ public class CPU_6502 {
      * stores it into the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 1 Extra cycle may be required
      */
-    int ora() {
+    private void ora() {
         fetch();
         accumulator = (accumulator | fetched) & 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 1;
+        setNZ(accumulator);
     }
 
     /**
      * Push the Accumulator to the Stack
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int pha() {
+    private void pha() {
         pushStack(accumulator);
-        return 0;
     }
 
     /**
      * Push the Status Register to the Stack
      * B Flag set
      * U Flag set
-     *
-     * @return 0 No extra cycle required
      */
-    int php() {
-        pushStack((status | Flags.U.value | Flags.B.value) & 0xFF);
+    private void php() {
+        pushStack((getStatus() | Flags.U.value | Flags.B.value) & 0xFF);
 
         setFlag(Flags.B, false);
         setFlag(Flags.U, false);
-
-        return 0;
     }
 
     /**
      * Pool the Accumulator from the Stack
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int pla() {
+    private void pla() {
         accumulator = popStack();
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 0;
+        setNZ(accumulator);
     }
 
     /**
      * Pool the Status Register from the Stack
      * U Flag set
      * All Flags set to the pulled Status Register value
-     *
-     * @return 0 No extra cycle required
      */
-    int plp() {
-        status = popStack();
+    private void plp() {
+        setStatus(popStack());
 
         setFlag(Flags.U, true);
-
-        return 0;
     }
 
     /**
@@ -1277,21 +1266,16 @@ public class CPU_6502 {
      * C Flag set if Fetched has MSB set
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int rol() {
+    private void rol() {
         fetch();
         tmp = (getFlag(Flags.C) ? 1 : 0) | (fetched << 1);
 
         setFlag(Flags.C, (tmp & 0xFF00) != 0x0000);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (MODES[opcode] == IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
-
-        return 0;
     }
 
     /**
@@ -1300,21 +1284,16 @@ public class CPU_6502 {
      * C Flag set if Fetched has LSB set
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set (if C Flag was set)
-     *
-     * @return 0 No extra cycle required
      */
-    int ror() {
+    private void ror() {
         fetch();
         tmp = ((getFlag(Flags.C) ? 1 << 7 : 0) | fetched >> 1);
 
         setFlag(Flags.C, (fetched & 0x01) == 0x01);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
-        if (opcodes.get(opcode).addr_mode == AddressingMode.IMP) accumulator = tmp & 0xFF;
+        if (MODES[opcode] == IMP) accumulator = tmp & 0xFF;
         else write(addr_abs, tmp & 0xFF);
-
-        return 0;
     }
 
     /**
@@ -1322,38 +1301,30 @@ public class CPU_6502 {
      * B Flag unset
      * U Flag unset
      * All Flags set to the pulled Status Register value
-     *
-     * @return 0 No extra cycle required
      */
-    int rti() {
+    private void rti() {
         //Dummy read
         read(program_counter);
-        status = popStack();
+        setStatus(popStack());
         program_counter = popStack();
         program_counter |= popStack() << 8;
         program_counter &= 0xFFFF;
 
         status &= ~Flags.B.value & 0x00FF;
         status &= ~Flags.U.value & 0x00FF;
-
-        return 0;
     }
 
     /**
      * Return from Subroutine by pulling the Program Counter from the Stack
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int rts() {
+    private void rts() {
         //Dummy read
         read(program_counter);
         program_counter = popStack();
         program_counter |= popStack() << 8;
         program_counter++;
         program_counter &= 0xFFFF;
-
-        return 0;
     }
 
     /**
@@ -1362,376 +1333,276 @@ public class CPU_6502 {
      * Z Flag set if Accumulator = Fetched
      * N Flag set if the final Accumulator has MSB set
      * V Flag set the same way as ADC
-     *
-     * @return 1 An extra cycle can be required depending on the addressing mode
      */
-    int sbc() {
+    private void sbc() {
         fetch();
         int complement = (fetched ^ 0xFF);
         tmp = ((accumulator + complement + (getFlag(Flags.C) ? 0x1 : 0x0)) & 0x01FF);
 
         setFlag(Flags.C, tmp > 0xFF);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
         setFlag(Flags.V, ((tmp ^ accumulator) & (tmp ^ complement) & 0x80) == 0x80);
 
         accumulator = (tmp & 0xFF);
-
-        return 1;
     }
 
     /**
      * Set the Carry Flag of the Status Register to 1
      * C Flag set
-     *
-     * @return 0 No extra cycle required
      */
-    int sec() {
+    private void sec() {
         setFlag(Flags.C, true);
-        return 0;
     }
 
     /**
      * Set the Decimal Flag of the Status Register to 1
      * D Flag set
-     *
-     * @return 0 No extra cycle required
      */
-    int sed() {
+    private void sed() {
         setFlag(Flags.D, true);
-        return 0;
     }
 
     /**
      * Set the Interrupt Flag of the Status Register to 1
      * I Flag set
-     *
-     * @return 0 No extra cycle required
      */
-    int sei() {
+    private void sei() {
         setFlag(Flags.I, true);
-        return 0;
     }
 
     /**
      * Store the Accumulator to the fetched Address
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int sta() {
+    private void sta() {
         write(addr_abs, accumulator);
-        return 0;
     }
 
     /**
      * Store the X Register to the fetched Address
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int stx() {
+    private void stx() {
         write(addr_abs, x_register);
-        return 0;
     }
 
     /**
      * Store the Y Register to the fetched Address
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int sty() {
+    private void sty() {
         write(addr_abs, y_register);
-        return 0;
     }
 
     /**
      * Copy the Accumulator to the X Register
      * Z Flag set if X Register = 0
      * N Flag set if X Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int tax() {
+    private void tax() {
         x_register = accumulator;
         x_register &= 0xFF;
 
-        setFlag(Flags.Z, x_register == 0x00);
-        setFlag(Flags.N, (x_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(x_register);
     }
 
     /**
      * Copy the Accumulator to the Y Register
      * Z Flag set if y Register = 0
      * N Flag set if Y Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int tay() {
+    private void tay() {
         y_register = accumulator;
         y_register &= 0xFF;
 
-        setFlag(Flags.Z, y_register == 0x00);
-        setFlag(Flags.N, (y_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(y_register);
     }
 
     /**
      * Copy the Stack Pointer to the X Register
      * Z Flag set if X Register = 0
      * N Flag set if X Register has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int tsx() {
+    private void tsx() {
         x_register = stack_pointer;
         x_register &= 0xFF;
 
-        setFlag(Flags.Z, x_register == 0x00);
-        setFlag(Flags.N, (x_register & 0x80) == 0x80);
-
-        return 0;
+        setNZ(x_register);
     }
 
     /**
      * Copy the X Register to the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int txa() {
+    private void txa() {
         accumulator = x_register;
         accumulator &= 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 0;
+        setNZ(accumulator);
     }
 
     /**
      * Copy the X Register to the Stack Pointer
      * No Flag Update
-     *
-     * @return 0 No extra cycle required
      */
-    int txs() {
+    private void txs() {
         stack_pointer = x_register;
         stack_pointer &= 0xFF;
-
-        return 0;
     }
 
     /**
      * Copy the Y Register to the Accumulator
      * Z Flag set if Accumulator = 0
      * N Flag set if Accumulator has MSB set
-     *
-     * @return 0 No extra cycle required
      */
-    int tya() {
+    private void tya() {
         accumulator = y_register;
         accumulator &= 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
-
-        return 0;
+        setNZ(accumulator);
     }
 
-    int aso() {
+    private void aso() {
         asl();
         ora();
-        return 0;
     }
 
-    int rla() {
+    private void rla() {
         rol();
         and();
-
-        return 0;
     }
 
-    int lse() {
+    private void lse() {
         lsr();
         eor();
-
-        return 0;
     }
 
-    int rra() {
+    private void rra() {
         ror();
         adc();
-
-        return 0;
     }
 
-    int axs() {
+    private void axs() {
         write(addr_abs, accumulator & x_register);
-
-        return 0;
     }
 
-    int lax() {
+    private void lax() {
         lda();
         ldx();
-
-        return 1;
     }
 
-    int dcm() {
+    private void dcm() {
         dec();
         cmp();
-
-        return 0;
     }
 
-    int ins() {
+    private void ins() {
         inc();
         sbc();
-
-        return 0;
     }
 
-    int alr() {
+    private void alr() {
         and();
         tmp = (accumulator >> 1);
 
         setFlag(Flags.C, (accumulator & 0x01) == 0x01);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
         accumulator = tmp & 0xFF;
-        return 0;
     }
 
-    int arr() {
+    private void arr() {
         and();
         fetch();
         tmp = ((getFlag(Flags.C) ? 1 << 7 : 0) | accumulator >> 1);
 
         setFlag(Flags.C, (accumulator & 0x01) == 0x01);
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
         accumulator = tmp & 0xFF;
-
-        return 0;
     }
 
-    int xaa() {
+    private void xaa() {
         txa();
         and();
-
-        return 0;
     }
 
-    int oal() {
+    private void oal() {
         accumulator = (accumulator | read(0x00EE)) & 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) == 0x80);
+        setNZ(accumulator);
 
         and();
         tax();
-
-        return 0;
     }
 
-    int sax() {
+    private void sax() {
         fetch();
         tmp = (accumulator & x_register) & 0xFF;
 
         setFlag(Flags.C, tmp >= fetched);
         tmp -= fetched;
-        setFlag(Flags.Z, (tmp & 0xFF) == 0x00);
-        setFlag(Flags.N, (tmp & 0x80) == 0x80);
+        setNZ(tmp);
 
         x_register = tmp & 0xFF;
-
-        return 0;
     }
 
-    int skb() {
+    private void skb() {
         program_counter++;
         program_counter &= 0xFFFF;
-
-        return 0;
     }
 
-    int skw() {
+    private void skw() {
         fetch();
         skb();
         fetch();
         skb();
-
-        return 1;
     }
 
-    int hlt() {
+    private void hlt() {
         halted = true;
-
-        return 0;
     }
 
-    int tas() {
+    private void tas() {
         tmp = (accumulator & x_register) & 0xFF;
         pushStack(tmp);
         tmp = (tmp & (read(program_counter-1) + 1)) & 0xFF;
 
         write(addr_abs, tmp);
-
-        return 0;
     }
 
-    int say() {
+    private void say() {
         tmp = (y_register & (read(program_counter-1) + 1)) & 0xFF;
 
         write(addr_abs, tmp);
-
-        return 0;
     }
 
-    int xas() {
+    private void xas() {
         tmp = (x_register & (read(program_counter-1) + 1)) & 0xFF;
 
         write(addr_abs, tmp);
-
-        return 0;
     }
 
-    int axa() {
+    private void axa() {
         tmp = (accumulator & x_register & (read(program_counter-1) + 1)) & 0xFF;
 
         write(addr_abs, tmp);
-
-        return 0;
     }
 
-    int anc() {
+    private void anc() {
         fetch();
         accumulator = (accumulator & fetched) & 0xFF;
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) != 0x00);
+        setNZ(accumulator);
         setFlag(Flags.C, (accumulator & 0x80) != 0x00);
-
-        return 0;
     }
 
-    int las() {
+    private void las() {
         fetch();
         accumulator = (fetched & stack_pointer);
 
-        setFlag(Flags.Z, accumulator == 0x00);
-        setFlag(Flags.N, (accumulator & 0x80) != 0x00);
-
-        return 0;
+        setNZ(accumulator);
     }
 
 
@@ -1743,36 +1614,1342 @@ public class CPU_6502 {
     public void clock() {
         if (!halted) {
             //If the CPU has finished the last Instruction
-            if (cycles <= 0) {
-
-                //Fetch the Operation Code
-                opcode = read(program_counter);
-                setFlag(Flags.U, true);
-                //Increment the Program Counter
-                program_counter++;
-                program_counter &= 0xFFFF;
-                //Get the Instruction
-                Instruction instr = opcodes.get(opcode);
-                //Set the required number of cycle for this instruction
-                cycles = instr.cycles;
-                //Execute the Instruction (Fetch data + treatment)
-                int additional_cycle_1 = instr.addrmode();
-                int additional_cycle_2 = instr.operate();
-                //If the Instruction is susceptible of requiring an extra cycle and the addressing mode require one, the the Instruction require an extra cycle
-                cycles += (additional_cycle_1 & additional_cycle_2);
-                setFlag(Flags.U, true);
-            }
+            if (cycles <= 0)
+                startInstruction();
             //Decrement the remaining busy cycle index
             cpu_clock++;
             cycles--;
         }
     }
 
+    /**
+     * Execute the whole current Instruction at once
+     * if an Instruction is already in progress, its remaining cycles are completed
+     *
+     * @return the number of cycles taken by the Instruction (page cross and branch penalties included)
+     */
+    public int executeInstruction() {
+        //A halted CPU still consumes time
+        if (halted)
+            return 1;
+        if (cycles <= 0)
+            startInstruction();
+        int executed = cycles;
+        cpu_clock += executed;
+        cycles = 0;
+        return executed;
+    }
+
+    /**
+     * Execute a whole recompiled block at once if one starts at the Program Counter, or a single Instruction otherwise
+     * the block doesn't start any Instruction after the budget, so the interrupts raised by the next event
+     * are taken at the same Instruction boundary as with the interpreter
+     * if idle loop skipping is enabled and the executed Instructions closed an idle loop,
+     * the whole iterations of the loop fitting in the rest of the budget are skipped
+     *
+     * @param budget the number of cycles after which no Instruction of a block can start
+     * @return the number of cycles taken by the executed Instructions (and the skipped iterations)
+     */
+    public int executeBlock(int budget) {
+        int start = program_counter;
+        int executed = executeBlockOrInstruction(budget);
+        //Only a short jump backward can close an idle loop
+        if (idle_skipping && !halted && instruction_listener == null && program_counter <= start && start - program_counter <= IDLE_LOOP_SIZE)
+            executed += skipIdleLoop(budget - executed);
+        return executed;
+    }
+
+    /**
+     * Skip the iterations of an idle loop, the Program Counter is at the start of a loop
+     * a loop is idle if two consecutive visits of its start have the same CPU state, without any write
+     * and without any access to the PPU, APU or Mapper between them : it only reads memory that can't change
+     * until the next event, so every following iteration is identical and can be skipped
+     * the first visit is recorded, and the iterations are skipped from the second one
+     *
+     * @param budget the number of cycles before the next event
+     * @return the number of skipped cycles
+     */
+    private int skipIdleLoop(int budget) {
+        long accesses = nes.getIOAccessCount();
+        captureState(current_state);
+        if (program_counter == idle_head && write_count == idle_writes && accesses == idle_accesses && Arrays.equals(current_state, idle_state)) {
+            long period = cpu_clock - idle_clock;
+            long iterations = budget / period;
+            if (iterations > 0) {
+                int skipped = (int) (iterations * period);
+                instruction_count += iterations * (instruction_count - idle_instructions);
+                cpu_clock += skipped;
+                skipped_cycles += skipped;
+                idle_clock = cpu_clock;
+                idle_instructions = instruction_count;
+                return skipped;
+            }
+        }
+        //The loop start is recorded, it is checked at the next visit
+        idle_head = program_counter;
+        System.arraycopy(current_state, 0, idle_state, 0, idle_state.length);
+        idle_clock = cpu_clock;
+        idle_instructions = instruction_count;
+        idle_writes = write_count;
+        idle_accesses = accesses;
+        return 0;
+    }
+
+    /**
+     * Copy the registers and the internal state an Instruction can depend on
+     *
+     * @param state the array to copy the state to
+     */
+    private void captureState(int[] state) {
+        state[0] = accumulator;
+        state[1] = x_register;
+        state[2] = y_register;
+        state[3] = stack_pointer;
+        state[4] = status;
+        state[5] = nz_result;
+        state[6] = tmp;
+        state[7] = fetched;
+        state[8] = opcode;
+        state[9] = addr_abs;
+        state[10] = addr_rel;
+    }
+
+    /**
+     * Execute a whole recompiled block at once if one starts at the Program Counter, or a single Instruction otherwise
+     *
+     * @param budget the number of cycles after which no Instruction of a block can start
+     * @return the number of cycles taken by the executed Instructions
+     */
+    private int executeBlockOrInstruction(int budget) {
+        //Interrupts and traced Instructions are handled by the interpreter
+        if (recompiler == null || halted || cycles > 0 || (irq_lines != 0x00 && !getFlag(Flags.I)) || instruction_listener != null)
+            return executeInstruction();
+        CompiledBlock block = recompiler.lookup(cpu_pages, program_counter);
+        if (block == null)
+            return executeInstruction();
+        if (recompiler_check)
+            return executeCheckedBlock(block, budget);
+        return executeCompiledBlock(block, budget);
+    }
+
+    /**
+     * Execute a recompiled block
+     *
+     * @param block  the block to execute
+     * @param budget the number of cycles after which no Instruction can start
+     * @return the number of cycles taken by the executed Instructions
+     */
+    private int executeCompiledBlock(CompiledBlock block, int budget) {
+        cycles = 0;
+        int executed = block.run(this, budget);
+        //The first Instruction accesses memory that isn't directly mapped, it is interpreted
+        if (executed == 0)
+            return executeInstruction();
+        return completeBlock(executed);
+    }
+
+    /**
+     * Account for the Instructions executed by a recompiled block
+     *
+     * @param executed the number of Instructions executed by the block
+     * @return the number of cycles taken by the executed Instructions
+     */
+    private int completeBlock(int executed) {
+        recompiler.countExecution(executed);
+        instruction_count += executed;
+        int total = cycles;
+        cpu_clock += total;
+        cycles = 0;
+        return total;
+    }
+
+    /**
+     * Execute a recompiled block, then execute the same Instructions with the interpreter from the same state
+     * and compare the registers and the writable memory
+     * the state computed by the interpreter is kept
+     * if the block exits before its first Instruction (an access to I/O or a Mapper), the Instruction is only
+     * interpreted once, replaying it would repeat its side effects outside of the CPU and the writable memory
+     *
+     * @param block  the block to execute
+     * @param budget the number of cycles after which no Instruction can start
+     * @return the number of cycles taken by the executed Instructions
+     * @throws IllegalStateException if the block and the interpreter diverge
+     */
+    private int executeCheckedBlock(CompiledBlock block, int budget) {
+        int start = program_counter;
+        List<byte[]> memories = getWritableMemories();
+        ByteBuffer initial = checkpoint(memories);
+        cycles = 0;
+        int executed = block.run(this, budget);
+        if (executed == 0)
+            return executeInstruction();
+        int compiled_cycles = completeBlock(executed);
+        ByteBuffer compiled = checkpoint(memories);
+
+        loadState(initial);
+        for (byte[] memory : memories)
+            initial.get(memory);
+        int interpreted_cycles = 0;
+        for (int i = 0; i < executed; i++)
+            interpreted_cycles += executeInstruction();
+        ByteBuffer interpreted = checkpoint(memories);
+        if (interpreted_cycles != compiled_cycles || !interpreted.equals(compiled))
+            throw new IllegalStateException(String.format("The block at $%04X diverges from the interpreter after %d Instructions", start, executed));
+        return interpreted_cycles;
+    }
+
+    /**
+     * Return every distinct array mapped as writable in the CPU address space (RAM, PRG RAM)
+     *
+     * @return the writable memories
+     */
+    private List<byte[]> getWritableMemories() {
+        List<byte[]> memories = new ArrayList<>();
+        for (int addr = 0; addr < 0x10000; addr += cpu_pages.getPageSize()) {
+            byte[] memory = cpu_pages.getWritableMemory(addr);
+            if (memory != null && memories.stream().noneMatch(m -> m == memory))
+                memories.add(memory);
+        }
+        return memories;
+    }
+
+    /**
+     * Save the state of the CPU followed by the writable memories into a new buffer
+     *
+     * @param memories the writable memories
+     * @return the buffer, ready to be read
+     */
+    private ByteBuffer checkpoint(List<byte[]> memories) {
+        int size = 128;
+        for (byte[] memory : memories)
+            size += memory.length;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        saveState(buffer);
+        for (byte[] memory : memories)
+            buffer.put(memory);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Check that the memory accessed by an Instruction of a recompiled block is directly mapped
+     * the effective address and the dummy read address are computed without touching the Bus
+     *
+     * @param opcode  the Opcode of the Instruction
+     * @param operand the operand of the Instruction
+     * @param write   does the Instruction write to the effective address
+     * @return can the Instruction be executed inside the block
+     */
+    private boolean isDirect(int opcode, int operand, boolean write) {
+        int addr;
+        int dummy;
+        switch (MODES[opcode]) {
+            case ABX:
+                addr = (operand + x_register) & 0xFFFF;
+                dummy = (operand & 0xFF00) | (addr & 0xFF);
+                break;
+            case ABY:
+                addr = (operand + y_register) & 0xFFFF;
+                dummy = addr;
+                break;
+            case IZX:
+                addr = cpu_pages.read((operand + x_register + 1) & 0xFF) << 8 | cpu_pages.read((operand + x_register) & 0xFF);
+                dummy = addr;
+                break;
+            case IZY:
+                int base = cpu_pages.read((operand + 1) & 0xFF) << 8 | cpu_pages.read(operand);
+                addr = (base + y_register) & 0xFFFF;
+                dummy = (base & 0xFF00) | (addr & 0xFF);
+                break;
+            default:
+                addr = operand;
+                dummy = operand;
+        }
+        return cpu_pages.isMapped(dummy, false) && cpu_pages.isMapped(addr, write);
+    }
+
+    /**
+     * Start a new Instruction or Interrupt and set the number of cycles it requires
+     */
+    private void startInstruction() {
+        //The IRQ lines are sampled between Instructions
+        if (irq_lines != 0x00 && !getFlag(Flags.I)) {
+            irq();
+        } else {
+            //The listener sees the state of the CPU before the Instruction (used for traces)
+            if (instruction_listener != null)
+                instruction_listener.run();
+            //Fetch the Operation Code
+            instruction_count++;
+            //If the cache is enabled, Instructions in PRG ROM are decoded once, the others are read from the Bus
+            int decoded = instruction_cache != null ? instruction_cache.lookup(cpu_pages, program_counter) : InstructionCache.BYPASS;
+            operand_decoded = decoded != InstructionCache.BYPASS;
+            if (operand_decoded) {
+                opcode = decoded & 0xFF;
+                operand = (decoded >> 8) & 0xFFFF;
+                //Set the required number of cycle for this instruction
+                cycles = decoded >>> 24;
+            } else {
+                opcode = read(program_counter);
+                cycles = CYCLES[opcode];
+            }
+            setFlag(Flags.U, true);
+            //Increment the Program Counter
+            program_counter++;
+            program_counter &= 0xFFFF;
+            //Execute the Instruction (Fetch data + treatment)
+            //The branches add their own cycles, so the result is kept before updating the count
+            int crossed = execute(opcode);
+            //If the Instruction is susceptible of requiring an extra cycle and the addressing mode crossed a page, the Instruction require an extra cycle
+            cycles += crossed & PAGE_CROSS[opcode];
+            setFlag(Flags.U, true);
+        }
+    }
+
+    /**
+     * Execute an Instruction, the addressing mode and the treatment of each Opcode are called directly
+     *
+     * @param opcode the Opcode of the Instruction
+     * @return 1 if the addressing mode crossed a page, 0 otherwise
+     */
+    private int execute(int opcode) {
+        int crossed = 0;
+        switch (opcode) {
+            case 0x00: //BRK {IMM}
+                imm();
+                brk();
+                break;
+            case 0x01: //ORA {IZX}
+                izx();
+                ora();
+                break;
+            case 0x02: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x03: //ASO {IZX}
+                izx();
+                aso();
+                break;
+            case 0x04: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x05: //ORA {ZP0}
+                zp0();
+                ora();
+                break;
+            case 0x06: //ASL {ZP0}
+                zp0();
+                asl();
+                break;
+            case 0x07: //ASO {ZP0}
+                zp0();
+                aso();
+                break;
+            case 0x08: //PHP {IMP}
+                imp();
+                php();
+                break;
+            case 0x09: //ORA {IMM}
+                imm();
+                ora();
+                break;
+            case 0x0A: //ASL {IMP}
+                imp();
+                asl();
+                break;
+            case 0x0B: //ANC {IMM}
+                imm();
+                anc();
+                break;
+            case 0x0C: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0x0D: //ORA {ABS}
+                abs();
+                ora();
+                break;
+            case 0x0E: //ASL {ABS}
+                abs();
+                asl();
+                break;
+            case 0x0F: //ASO {ABS}
+                abs();
+                aso();
+                break;
+            case 0x10: //BPL {REL}
+                rel();
+                bpl();
+                break;
+            case 0x11: //ORA {IZY}
+                crossed = izy();
+                ora();
+                break;
+            case 0x12: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x13: //ASO {IZY}
+                crossed = izy();
+                aso();
+                break;
+            case 0x14: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x15: //ORA {ZPX}
+                zpx();
+                ora();
+                break;
+            case 0x16: //ASL {ZPX}
+                zpx();
+                asl();
+                break;
+            case 0x17: //ASO {ZPX}
+                zpx();
+                aso();
+                break;
+            case 0x18: //CLC {IMP}
+                imp();
+                clc();
+                break;
+            case 0x19: //ORA {ABY}
+                crossed = aby();
+                ora();
+                break;
+            case 0x1A: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0x1B: //ASO {ABY}
+                crossed = aby();
+                aso();
+                break;
+            case 0x1C: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0x1D: //ORA {ABX}
+                crossed = abx();
+                ora();
+                break;
+            case 0x1E: //ASL {ABX}
+                crossed = abx();
+                asl();
+                break;
+            case 0x1F: //ASO {ABX}
+                crossed = abx();
+                aso();
+                break;
+            case 0x20: //JSR {ABS}
+                abs();
+                jsr();
+                break;
+            case 0x21: //AND {IZX}
+                izx();
+                and();
+                break;
+            case 0x22: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x23: //RLA {IZX}
+                izx();
+                rla();
+                break;
+            case 0x24: //BIT {ZP0}
+                zp0();
+                bit();
+                break;
+            case 0x25: //AND {ZP0}
+                zp0();
+                and();
+                break;
+            case 0x26: //ROL {ZP0}
+                zp0();
+                rol();
+                break;
+            case 0x27: //RLA {ZP0}
+                zp0();
+                rla();
+                break;
+            case 0x28: //PLP {IMP}
+                imp();
+                plp();
+                break;
+            case 0x29: //AND {IMM}
+                imm();
+                and();
+                break;
+            case 0x2A: //ROL {IMP}
+                imp();
+                rol();
+                break;
+            case 0x2B: //ANC {IMM}
+                imm();
+                anc();
+                break;
+            case 0x2C: //BIT {ABS}
+                abs();
+                bit();
+                break;
+            case 0x2D: //AND {ABS}
+                abs();
+                and();
+                break;
+            case 0x2E: //ROL {ABS}
+                abs();
+                rol();
+                break;
+            case 0x2F: //RLA {ABS}
+                abs();
+                rla();
+                break;
+            case 0x30: //BMI {REL}
+                rel();
+                bmi();
+                break;
+            case 0x31: //AND {IZY}
+                crossed = izy();
+                and();
+                break;
+            case 0x32: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x33: //RLA {IZY}
+                crossed = izy();
+                rla();
+                break;
+            case 0x34: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x35: //AND {ZPX}
+                zpx();
+                and();
+                break;
+            case 0x36: //ROL {ZPX}
+                zpx();
+                rol();
+                break;
+            case 0x37: //RLA {ZPX}
+                zpx();
+                rla();
+                break;
+            case 0x38: //SEC {IMP}
+                imp();
+                sec();
+                break;
+            case 0x39: //AND {ABY}
+                crossed = aby();
+                and();
+                break;
+            case 0x3A: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0x3B: //RLA {ABY}
+                crossed = aby();
+                rla();
+                break;
+            case 0x3C: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0x3D: //AND {ABX}
+                crossed = abx();
+                and();
+                break;
+            case 0x3E: //ROL {ABX}
+                crossed = abx();
+                rol();
+                break;
+            case 0x3F: //RLA {ABX}
+                crossed = abx();
+                rla();
+                break;
+            case 0x40: //RTI {IMP}
+                imp();
+                rti();
+                break;
+            case 0x41: //EOR {IZX}
+                izx();
+                eor();
+                break;
+            case 0x42: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x43: //LSE {IZX}
+                izx();
+                lse();
+                break;
+            case 0x44: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x45: //EOR {ZP0}
+                zp0();
+                eor();
+                break;
+            case 0x46: //LSR {ZP0}
+                zp0();
+                lsr();
+                break;
+            case 0x47: //LSE {ZP0}
+                zp0();
+                lse();
+                break;
+            case 0x48: //PHA {IMP}
+                imp();
+                pha();
+                break;
+            case 0x49: //EOR {IMM}
+                imm();
+                eor();
+                break;
+            case 0x4A: //LSR {IMP}
+                imp();
+                lsr();
+                break;
+            case 0x4B: //ALR {IMM}
+                imm();
+                alr();
+                break;
+            case 0x4C: //JMP {ABS}
+                abs();
+                jmp();
+                break;
+            case 0x4D: //EOR {ABS}
+                abs();
+                eor();
+                break;
+            case 0x4E: //LSR {ABS}
+                abs();
+                lsr();
+                break;
+            case 0x4F: //LSE {ABS}
+                abs();
+                lse();
+                break;
+            case 0x50: //BVC {REL}
+                rel();
+                bvc();
+                break;
+            case 0x51: //EOR {IZY}
+                crossed = izy();
+                eor();
+                break;
+            case 0x52: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x53: //LSE {IZY}
+                crossed = izy();
+                lse();
+                break;
+            case 0x54: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x55: //EOR {ZPX}
+                zpx();
+                eor();
+                break;
+            case 0x56: //LSR {ZPX}
+                zpx();
+                lsr();
+                break;
+            case 0x57: //LSE {ZPX}
+                zpx();
+                lse();
+                break;
+            case 0x58: //CLI {IMP}
+                imp();
+                cli();
+                break;
+            case 0x59: //EOR {ABY}
+                crossed = aby();
+                eor();
+                break;
+            case 0x5A: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0x5B: //LSE {ABY}
+                crossed = aby();
+                lse();
+                break;
+            case 0x5C: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0x5D: //EOR {ABX}
+                crossed = abx();
+                eor();
+                break;
+            case 0x5E: //LSR {ABX}
+                crossed = abx();
+                lsr();
+                break;
+            case 0x5F: //LSE {ABX}
+                crossed = abx();
+                lse();
+                break;
+            case 0x60: //RTS {IMP}
+                imp();
+                rts();
+                break;
+            case 0x61: //ADC {IZX}
+                izx();
+                adc();
+                break;
+            case 0x62: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x63: //RRA {IZX}
+                izx();
+                rra();
+                break;
+            case 0x64: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x65: //ADC {ZP0}
+                zp0();
+                adc();
+                break;
+            case 0x66: //ROR {ZP0}
+                zp0();
+                ror();
+                break;
+            case 0x67: //RRA {ZP0}
+                zp0();
+                rra();
+                break;
+            case 0x68: //PLA {IMP}
+                imp();
+                pla();
+                break;
+            case 0x69: //ADC {IMM}
+                imm();
+                adc();
+                break;
+            case 0x6A: //ROR {IMP}
+                imp();
+                ror();
+                break;
+            case 0x6B: //ARR {IMM}
+                imm();
+                arr();
+                break;
+            case 0x6C: //JMP {IND}
+                ind();
+                jmp();
+                break;
+            case 0x6D: //ADC {ABS}
+                abs();
+                adc();
+                break;
+            case 0x6E: //ROR {ABS}
+                abs();
+                ror();
+                break;
+            case 0x6F: //RRA {ABS}
+                abs();
+                rra();
+                break;
+            case 0x70: //BVS {REL}
+                rel();
+                bvs();
+                break;
+            case 0x71: //ADC {IZY}
+                crossed = izy();
+                adc();
+                break;
+            case 0x72: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x73: //RRA {IZY}
+                crossed = izy();
+                rra();
+                break;
+            case 0x74: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x75: //ADC {ZPX}
+                zpx();
+                adc();
+                break;
+            case 0x76: //ROR {ZPX}
+                zpx();
+                ror();
+                break;
+            case 0x77: //RRA {ZPX}
+                zpx();
+                rra();
+                break;
+            case 0x78: //SEI {IMP}
+                imp();
+                sei();
+                break;
+            case 0x79: //ADC {ABY}
+                crossed = aby();
+                adc();
+                break;
+            case 0x7A: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0x7B: //RRA {ABY}
+                crossed = aby();
+                rra();
+                break;
+            case 0x7C: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0x7D: //ADC {ABX}
+                crossed = abx();
+                adc();
+                break;
+            case 0x7E: //ROR {ABX}
+                crossed = abx();
+                ror();
+                break;
+            case 0x7F: //RRA {ABX}
+                crossed = abx();
+                rra();
+                break;
+            case 0x80: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x81: //STA {IZX}
+                izx();
+                sta();
+                break;
+            case 0x82: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x83: //AXS {IZX}
+                izx();
+                axs();
+                break;
+            case 0x84: //STY {ZP0}
+                zp0();
+                sty();
+                break;
+            case 0x85: //STA {ZP0}
+                zp0();
+                sta();
+                break;
+            case 0x86: //STX {ZP0}
+                zp0();
+                stx();
+                break;
+            case 0x87: //AXS {ZP0}
+                zp0();
+                axs();
+                break;
+            case 0x88: //DEY {IMP}
+                imp();
+                dey();
+                break;
+            case 0x89: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0x8A: //TXA {IMP}
+                imp();
+                txa();
+                break;
+            case 0x8B: //XAA {IMM}
+                imm();
+                xaa();
+                break;
+            case 0x8C: //STY {ABS}
+                abs();
+                sty();
+                break;
+            case 0x8D: //STA {ABS}
+                abs();
+                sta();
+                break;
+            case 0x8E: //STX {ABS}
+                abs();
+                stx();
+                break;
+            case 0x8F: //AXS {ABS}
+                abs();
+                axs();
+                break;
+            case 0x90: //BCC {REL}
+                rel();
+                bcc();
+                break;
+            case 0x91: //STA {IZY}
+                crossed = izy();
+                sta();
+                break;
+            case 0x92: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0x93: //AXA {IZY}
+                crossed = izy();
+                axa();
+                break;
+            case 0x94: //STY {ZPX}
+                zpx();
+                sty();
+                break;
+            case 0x95: //STA {ZPX}
+                zpx();
+                sta();
+                break;
+            case 0x96: //STX {ZPY}
+                zpy();
+                stx();
+                break;
+            case 0x97: //AXS {ZPY}
+                zpy();
+                axs();
+                break;
+            case 0x98: //TYA {IMP}
+                imp();
+                tya();
+                break;
+            case 0x99: //STA {ABY}
+                crossed = aby();
+                sta();
+                break;
+            case 0x9A: //TXS {IMP}
+                imp();
+                txs();
+                break;
+            case 0x9B: //TAS {ABY}
+                crossed = aby();
+                tas();
+                break;
+            case 0x9C: //SAY {ABX}
+                crossed = abx();
+                say();
+                break;
+            case 0x9D: //STA {ABX}
+                crossed = abx();
+                sta();
+                break;
+            case 0x9E: //XAS {ABY}
+                crossed = aby();
+                xas();
+                break;
+            case 0x9F: //AXA {ABY}
+                crossed = aby();
+                axa();
+                break;
+            case 0xA0: //LDY {IMM}
+                imm();
+                ldy();
+                break;
+            case 0xA1: //LDA {IZX}
+                izx();
+                lda();
+                break;
+            case 0xA2: //LDX {IMM}
+                imm();
+                ldx();
+                break;
+            case 0xA3: //LAX {IZX}
+                izx();
+                lax();
+                break;
+            case 0xA4: //LDY {ZP0}
+                zp0();
+                ldy();
+                break;
+            case 0xA5: //LDA {ZP0}
+                zp0();
+                lda();
+                break;
+            case 0xA6: //LDX {ZP0}
+                zp0();
+                ldx();
+                break;
+            case 0xA7: //LAX {ZP0}
+                zp0();
+                lax();
+                break;
+            case 0xA8: //TAY {IMP}
+                imp();
+                tay();
+                break;
+            case 0xA9: //LDA {IMM}
+                imm();
+                lda();
+                break;
+            case 0xAA: //TAX {IMP}
+                imp();
+                tax();
+                break;
+            case 0xAB: //OAL {IMM}
+                imm();
+                oal();
+                break;
+            case 0xAC: //LDY {ABS}
+                abs();
+                ldy();
+                break;
+            case 0xAD: //LDA {ABS}
+                abs();
+                lda();
+                break;
+            case 0xAE: //LDX {ABS}
+                abs();
+                ldx();
+                break;
+            case 0xAF: //LAX {ABS}
+                abs();
+                lax();
+                break;
+            case 0xB0: //BCS {REL}
+                rel();
+                bcs();
+                break;
+            case 0xB1: //LDA {IZY}
+                crossed = izy();
+                lda();
+                break;
+            case 0xB2: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0xB3: //LAX {IZY}
+                crossed = izy();
+                lax();
+                break;
+            case 0xB4: //LDY {ZPX}
+                zpx();
+                ldy();
+                break;
+            case 0xB5: //LDA {ZPX}
+                zpx();
+                lda();
+                break;
+            case 0xB6: //LDX {ZPY}
+                zpy();
+                ldx();
+                break;
+            case 0xB7: //LAX {ZPY}
+                zpy();
+                lax();
+                break;
+            case 0xB8: //CLV {IMP}
+                imp();
+                clv();
+                break;
+            case 0xB9: //LDA {ABY}
+                crossed = aby();
+                lda();
+                break;
+            case 0xBA: //TSX {IMP}
+                imp();
+                tsx();
+                break;
+            case 0xBB: //LAS {ABY}
+                crossed = aby();
+                las();
+                break;
+            case 0xBC: //LDY {ABX}
+                crossed = abx();
+                ldy();
+                break;
+            case 0xBD: //LDA {ABX}
+                crossed = abx();
+                lda();
+                break;
+            case 0xBE: //LDX {ABY}
+                crossed = aby();
+                ldx();
+                break;
+            case 0xBF: //LAX {ABY}
+                crossed = aby();
+                lax();
+                break;
+            case 0xC0: //CPY {IMM}
+                imm();
+                cpy();
+                break;
+            case 0xC1: //CMP {IZX}
+                izx();
+                cmp();
+                break;
+            case 0xC2: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0xC3: //DCM {IZX}
+                izx();
+                dcm();
+                break;
+            case 0xC4: //CPY {ZP0}
+                zp0();
+                cpy();
+                break;
+            case 0xC5: //CMP {ZP0}
+                zp0();
+                cmp();
+                break;
+            case 0xC6: //DEC {ZP0}
+                zp0();
+                dec();
+                break;
+            case 0xC7: //DCM {ZP0}
+                zp0();
+                dcm();
+                break;
+            case 0xC8: //INY {IMP}
+                imp();
+                iny();
+                break;
+            case 0xC9: //CMP {IMM}
+                imm();
+                cmp();
+                break;
+            case 0xCA: //DEX {IMP}
+                imp();
+                dex();
+                break;
+            case 0xCB: //SAX {IMP}
+                imp();
+                sax();
+                break;
+            case 0xCC: //CPY {ABS}
+                abs();
+                cpy();
+                break;
+            case 0xCD: //CMP {ABS}
+                abs();
+                cmp();
+                break;
+            case 0xCE: //DEC {ABS}
+                abs();
+                dec();
+                break;
+            case 0xCF: //DCM {ABS}
+                abs();
+                dcm();
+                break;
+            case 0xD0: //BNE {REL}
+                rel();
+                bne();
+                break;
+            case 0xD1: //CMP {IZY}
+                crossed = izy();
+                cmp();
+                break;
+            case 0xD2: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0xD3: //DCM {IZY}
+                crossed = izy();
+                dcm();
+                break;
+            case 0xD4: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0xD5: //CMP {ZPX}
+                zpx();
+                cmp();
+                break;
+            case 0xD6: //DEC {ZPX}
+                zpx();
+                dec();
+                break;
+            case 0xD7: //DCM {ZPX}
+                zpx();
+                dcm();
+                break;
+            case 0xD8: //CLD {IMP}
+                imp();
+                cld();
+                break;
+            case 0xD9: //CMP {ABY}
+                crossed = aby();
+                cmp();
+                break;
+            case 0xDA: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0xDB: //DCM {ABY}
+                crossed = aby();
+                dcm();
+                break;
+            case 0xDC: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0xDD: //CMP {ABX}
+                crossed = abx();
+                cmp();
+                break;
+            case 0xDE: //DEC {ABX}
+                crossed = abx();
+                dec();
+                break;
+            case 0xDF: //DCM {ABX}
+                crossed = abx();
+                dcm();
+                break;
+            case 0xE0: //CPX {IMM}
+                imm();
+                cpx();
+                break;
+            case 0xE1: //SBC {IZX}
+                izx();
+                sbc();
+                break;
+            case 0xE2: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0xE3: //INS {IZX}
+                izx();
+                ins();
+                break;
+            case 0xE4: //CPX {ZP0}
+                zp0();
+                cpx();
+                break;
+            case 0xE5: //SBC {ZP0}
+                zp0();
+                sbc();
+                break;
+            case 0xE6: //INC {ZP0}
+                zp0();
+                inc();
+                break;
+            case 0xE7: //INS {ZP0}
+                zp0();
+                ins();
+                break;
+            case 0xE8: //INX {IMP}
+                imp();
+                inx();
+                break;
+            case 0xE9: //SBC {IMM}
+                imm();
+                sbc();
+                break;
+            case 0xEA: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0xEB: //SBC {IMM}
+                imm();
+                sbc();
+                break;
+            case 0xEC: //CPX {ABS}
+                abs();
+                cpx();
+                break;
+            case 0xED: //SBC {ABS}
+                abs();
+                sbc();
+                break;
+            case 0xEE: //INC {ABS}
+                abs();
+                inc();
+                break;
+            case 0xEF: //INS {ABS}
+                abs();
+                ins();
+                break;
+            case 0xF0: //BEQ {REL}
+                rel();
+                beq();
+                break;
+            case 0xF1: //SBC {IZY}
+                crossed = izy();
+                sbc();
+                break;
+            case 0xF2: //HLT {IMP}
+                imp();
+                hlt();
+                break;
+            case 0xF3: //INS {IZY}
+                crossed = izy();
+                ins();
+                break;
+            case 0xF4: //SKB {IMP}
+                imp();
+                skb();
+                break;
+            case 0xF5: //SBC {ZPX}
+                zpx();
+                sbc();
+                break;
+            case 0xF6: //INC {ZPX}
+                zpx();
+                inc();
+                break;
+            case 0xF7: //INS {ZPX}
+                zpx();
+                ins();
+                break;
+            case 0xF8: //SED {IMP}
+                imp();
+                sed();
+                break;
+            case 0xF9: //SBC {ABY}
+                crossed = aby();
+                sbc();
+                break;
+            case 0xFA: //NOP {IMP}
+                imp();
+                nop();
+                break;
+            case 0xFB: //INS {ABY}
+                crossed = aby();
+                ins();
+                break;
+            case 0xFC: //SKW {IMP}
+                imp();
+                skw();
+                break;
+            case 0xFD: //SBC {ABX}
+                crossed = abx();
+                sbc();
+                break;
+            case 0xFE: //INC {ABX}
+                crossed = abx();
+                inc();
+                break;
+            case 0xFF: //INS {ABX}
+                crossed = abx();
+                ins();
+                break;
+        }
+        return crossed;
+    }
+
     /**
      * Reset the CPU to the default state
      */
     public void reset() {
         halted = false;
+        idle_head = -1;
+        irq_lines = 0x00;
         stack_pointer -= 3;
         status |= Flags.I.value;
 
@@ -1787,11 +2964,13 @@ public class CPU_6502 {
 
     public void startup() {
         halted = false;
+        idle_head = -1;
+        irq_lines = 0x00;
         accumulator = 0x00;
         x_register = 0x00;
         y_register = 0x00;
         stack_pointer = 0xFD;
-        status = Flags.I.value | Flags.B.value | Flags.U.value;
+        setStatus(Flags.I.value | Flags.B.value | Flags.U.value);
 
         program_counter = resetVector();
 
@@ -1800,6 +2979,20 @@ public class CPU_6502 {
         fetched = 0x00;
     }
 
+    /**
+     * Pull an IRQ line high or low, the lines are sampled at the end of each Instruction
+     * and an Interrupt is triggered if at least one is high
+     *
+     * @param line   the line (IRQ_APU, IRQ_MAPPER)
+     * @param active is the line pulled high
+     */
+    public void setIRQLine(int line, boolean active) {
+        if (active)
+            irq_lines |= line;
+        else
+            irq_lines &= ~line;
+    }
+
     /**
      * Trigger an Interrupt
      */
@@ -1814,7 +3007,7 @@ public class CPU_6502 {
             setFlag(Flags.B, false);
             setFlag(Flags.U, true);
             setFlag(Flags.I, true);
-            pushStack(status);
+            pushStack(getStatus());
 
             //Jump to the NMI Routine specified at 0xFFFA
             program_counter = irqVector();
@@ -1826,8 +3019,11 @@ public class CPU_6502 {
 
     /**
      * Trigger a Non Maskable Interrupt
+     * it is taken immediately, the remaining cycles of the current Instruction are replaced by those of the Interrupt
+     *
+     * @return has the Interrupt been taken (a halted CPU ignores it)
      */
-    public void nmi() {
+    public boolean nmi() {
         if (!halted) {
             //Push the current Program Counter to the Stack LSB first
             pushStack((program_counter >> 8) & 0xFF);
@@ -1837,21 +3033,23 @@ public class CPU_6502 {
             setFlag(Flags.B, false);
             setFlag(Flags.U, true);
             setFlag(Flags.I, true);
-            pushStack(status);
+            pushStack(getStatus());
 
             //Jump to the NMI Routine specified at 0xFFFA
             program_counter = nmiVector();
 
             //An NMI take 8 cycles
             cycles = 8;
+            return true;
         }
+        return false;
     }
 
     /**
      * Update the fetched data used according to the current Instruction addressing mode
      */
     private void fetch() {
-        if (opcodes.get(opcode).addr_mode != AddressingMode.IMP)
+        if (MODES[opcode] != IMP)
             fetched = read(addr_abs);
     }
 
@@ -1912,6 +3110,58 @@ public class CPU_6502 {
         return (high << 8 | low);
     }
 
+    /**
+     * Write the state of the CPU to the buffer (registers, current Instruction and interrupt lines)
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(accumulator);
+        buffer.putInt(x_register);
+        buffer.putInt(y_register);
+        buffer.putInt(stack_pointer);
+        buffer.putInt(getStatus());
+        buffer.putInt(program_counter);
+        buffer.putInt(tmp);
+        buffer.putInt(fetched);
+        buffer.putInt(opcode);
+        buffer.putInt(cycles);
+        buffer.putInt(addr_abs);
+        buffer.putInt(addr_rel);
+        buffer.putLong(cpu_clock);
+        buffer.putLong(instruction_count);
+        buffer.put((byte) (halted ? 1 : 0));
+        buffer.putInt(irq_lines);
+    }
+
+    /**
+     * Restore the state of the CPU from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        accumulator = buffer.getInt();
+        x_register = buffer.getInt();
+        y_register = buffer.getInt();
+        stack_pointer = buffer.getInt();
+        setStatus(buffer.getInt());
+        program_counter = buffer.getInt();
+        tmp = buffer.getInt();
+        fetched = buffer.getInt();
+        opcode = buffer.getInt();
+        cycles = buffer.getInt();
+        addr_abs = buffer.getInt();
+        addr_rel = buffer.getInt();
+        cpu_clock = buffer.getLong();
+        instruction_count = buffer.getLong();
+        halted = buffer.get() != 0;
+        irq_lines = buffer.getInt();
+        //The recorded idle loop start belongs to another timeline
+        idle_head = -1;
+    }
+
     // ========================================================== Debug Methods ========================================================== //
 
     /**
@@ -2025,6 +3275,15 @@ public class CPU_6502 {
         return cycles == 0;
     }
 
+    /**
+     * Return the number of Instructions started since the CPU was created
+     *
+     * @return the number of started Instructions
+     */
+    public long getInstructionCount() {
+        return instruction_count;
+    }
+
     /**
      * Return the current Accumulator value as an 8bit unsigned value
      *
@@ -2062,12 +3321,17 @@ public class CPU_6502 {
     }
 
     /**
-     * Return the current Program Counter
+     * Return the current Status Register, the N and Z Flags are derived from the last result
      *
-     * @return the current Program Counter
+     * @return the current Status Register
      */
     public int getStatus() {
-        return status;
+        int value = status;
+        if (isZero())
+            value |= Flags.Z.value;
+        if (isNegative())
+            value |= Flags.N.value;
+        return value;
     }
 
     /**
@@ -2078,4 +3342,97 @@ public class CPU_6502 {
     public int getProgramCounter() {
         return program_counter;
     }
+
+    /**
+     * Jump to an address, used to start a test ROM at a specific entry point
+     *
+     * @param addr the new Program Counter
+     */
+    public void setProgramCounter(int addr) {
+        program_counter = addr & 0xFFFF;
+    }
+
+    /**
+     * Return the number of cycles executed since the CPU was created
+     *
+     * @return the number of executed cycles
+     */
+    public long getClockCount() {
+        return cpu_clock;
+    }
+
+    /**
+     * Enable or disable the recompiler, the blocks are only used when whole Instructions are executed at once
+     * in differential mode every block is also executed by the interpreter and the results are compared
+     *
+     * @param enabled      should hot blocks of PRG ROM be recompiled
+     * @param differential should every block be checked against the interpreter
+     */
+    public void enableRecompiler(boolean enabled, boolean differential) {
+        if (!enabled)
+            recompiler = null;
+        else if (recompiler == null)
+            recompiler = new Recompiler(opcodes, MethodHandles.lookup());
+        recompiler_check = differential;
+    }
+
+    /**
+     * Enable or disable the cache of the Instructions decoded from PRG ROM
+     * the cache is cleared when it is disabled
+     *
+     * @param enabled should the Instructions of PRG ROM be decoded once
+     */
+    public void enableInstructionCache(boolean enabled) {
+        if (!enabled)
+            instruction_cache = null;
+        else if (instruction_cache == null)
+            instruction_cache = new InstructionCache();
+    }
+
+    /**
+     * Return the cache of the Instructions decoded from PRG ROM (used to read its hit rate)
+     *
+     * @return the instruction cache, null if it is disabled
+     */
+    public InstructionCache getInstructionCache() {
+        return instruction_cache;
+    }
+
+    /**
+     * Enable or disable the skipping of idle loops, only used when whole Instructions are executed at once
+     *
+     * @param enabled should the idle loops be skipped until the next event
+     */
+    public void enableIdleSkipping(boolean enabled) {
+        idle_skipping = enabled;
+        idle_head = -1;
+    }
+
+    /**
+     * Return the number of cycles skipped in idle loops
+     *
+     * @return the number of skipped cycles
+     */
+    public long getSkippedCycles() {
+        return skipped_cycles;
+    }
+
+    /**
+     * Return the recompiler (used to read its statistics)
+     *
+     * @return the recompiler, null if it is disabled
+     */
+    public Recompiler getRecompiler() {
+        return recompiler;
+    }
+
+    /**
+     * Set the listener notified before the CPU fetches each Instruction
+     * the registers and the Program Counter are those of the Instruction about to be executed
+     *
+     * @param listener the listener to notify, null to remove it
+     */
+    public void setInstructionListener(Runnable listener) {
+        instruction_listener = listener;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package core.cpu;
+
+/**
+ * This interface represents a basic block of PRG ROM translated into JVM bytecode by the BlockCompiler
+ * the generated classes are hidden nestmates of the CPU, they update its registers directly
+ */
+interface CompiledBlock {
+
+    /**
+     * Execute the Instructions of the block, the cycles taken are added to the CPU cycles
+     * the block stops before an Instruction starting after the budget or accessing memory that isn't directly mapped
+     *
+     * @param cpu    the CPU to execute the block on
+     * @param budget the number of cycles after which no Instruction can start
+     * @return the number of Instructions executed
+     */
+    int run(CPU_6502 cpu, int budget);
+}
@@ -0,0 +1,113 @@
+package core.cpu;
+
+import core.PageTable;
+
+/**
+ * This class is a cache of the Instructions decoded from PRG ROM
+ * an entry is kept for every physical offset of the PRG ROM and packs :
+ * - bits 0-7 : the Opcode (index of the handler in the CPU dispatch)
+ * - bits 8-23 : the operand (low byte first)
+ * - bits 24-31 : the base number of cycles (0 if the offset isn't decoded yet)
+ * as the PRG ROM never changes, an entry stays valid whatever the selected banks are,
+ * a bank switch only changes which physical offsets the CPU addresses, so it needs no invalidation
+ * the entries are cleared when the CPU addresses another PRG ROM (new Cartridge)
+ * Instructions in RAM or PRG RAM (writable pages) and Instructions crossing a page bypass the cache
+ * it is disabled by default, as it gives no measurable gain over reading PRG ROM through the Page Table
+ */
+public class InstructionCache {
+
+    public static final int BYPASS = -1;
+
+    private byte[] memory;
+    private int[] entries;
+    private long hits = 0L;
+    private long decodes = 0L;
+    private long bypasses = 0L;
+
+    /**
+     * Return the decoded Instruction at an address of the CPU address space
+     * the Instruction is decoded and stored if it isn't already
+     *
+     * @param pages the CPU Page Table
+     * @param addr  the address of the Instruction
+     * @return the packed decoded Instruction or BYPASS if the Instruction must be read from the Bus
+     */
+    public int lookup(PageTable pages, int addr) {
+        byte[] rom = pages.getReadOnlyMemory(addr);
+        if (rom == null) {
+            bypasses++;
+            return BYPASS;
+        }
+        //A new Cartridge has been inserted
+        if (rom != memory)
+            invalidate(rom);
+        int offset = pages.getOffset(addr);
+        int entry = entries[offset];
+        if (entry != 0) {
+            hits++;
+            return entry;
+        }
+        int opcode = rom[offset] & 0xFF;
+        int length = CPU_6502.LENGTHS[opcode];
+        //The operand could be in another bank, it is read from the Bus every time
+        int page_size = pages.getPageSize();
+        if ((addr & (page_size - 1)) + length > page_size) {
+            bypasses++;
+            return BYPASS;
+        }
+        int operand = 0;
+        for (int i = length - 1; i > 0; i--)
+            operand = (operand << 8) | (rom[offset + i] & 0xFF);
+        entry = (CPU_6502.CYCLES[opcode] << 24) | (operand << 8) | opcode;
+        entries[offset] = entry;
+        decodes++;
+        return entry;
+    }
+
+    /**
+     * Clear every entry and start caching the Instructions of a new PRG ROM
+     *
+     * @param rom the PRG ROM to cache
+     */
+    public void invalidate(byte[] rom) {
+        memory = rom;
+        entries = new int[rom.length];
+    }
+
+    /**
+     * Return the number of Instructions found already decoded
+     *
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Return the number of Instructions decoded and stored
+     *
+     * @return the number of decodes
+     */
+    public long getDecodes() {
+        return decodes;
+    }
+
+    /**
+     * Return the number of Instructions read from the Bus (RAM, PRG RAM or crossing a page)
+     *
+     * @return the number of bypasses
+     */
+    public long getBypasses() {
+        return bypasses;
+    }
+
+    /**
+     * Return the ratio of the Instructions found already decoded over every executed Instruction
+     *
+     * @return the hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits + decodes + bypasses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -0,0 +1,248 @@
+package core.cpu;
+
+import core.PageTable;
+
+import java.lang.invoke.MethodHandles;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * This class is the optional recompiler tier of the CPU
+ * the entry points executed often enough in PRG ROM are translated into blocks of JVM bytecode (see BlockCompiler)
+ * a block is a run of Instructions in a single page, ending at the first jump, return or change of the I Flag
+ * (a taken branch leaves the block, a branch not taken continues it)
+ * it never contains an Instruction accessing I/O registers or a Mapper (those are left to the interpreter
+ * so every access still happens at the right time), and the Instructions whose address depends on the registers
+ * are checked at run time and exit the block if they don't access directly mapped memory
+ * as in the instruction cache, the blocks are stored by physical offset of the PRG ROM,
+ * so they survive bank switches, and RAM or PRG RAM code (possibly self-modifying) is never compiled
+ */
+public class Recompiler {
+
+    public static final int HOT_THRESHOLD = 1024;
+    public static final int MAX_BLOCK_LENGTH = 32;
+
+    //Placeholder of an entry point that can't start a block
+    private static final CompiledBlock UNCOMPILABLE = (cpu, budget) -> 0;
+
+    private static final Set<OPCode> READS = EnumSet.of(OPCode.ADC, OPCode.AND, OPCode.BIT, OPCode.CMP, OPCode.CPX, OPCode.CPY,
+            OPCode.EOR, OPCode.LDA, OPCode.LDX, OPCode.LDY, OPCode.ORA, OPCode.SBC);
+    private static final Set<OPCode> WRITES = EnumSet.of(OPCode.STA, OPCode.STX, OPCode.STY,
+            OPCode.ASL, OPCode.LSR, OPCode.ROL, OPCode.ROR, OPCode.DEC, OPCode.INC);
+    private static final Set<OPCode> INTERNALS = EnumSet.of(OPCode.CLC, OPCode.CLD, OPCode.CLV, OPCode.SEC, OPCode.SED, OPCode.SEI,
+            OPCode.DEX, OPCode.DEY, OPCode.INX, OPCode.INY, OPCode.TAX, OPCode.TAY, OPCode.TSX, OPCode.TXA, OPCode.TXS, OPCode.TYA,
+            OPCode.PHA, OPCode.PHP, OPCode.PLA, OPCode.NOP);
+    //The branches leave the block only when taken
+    private static final Set<OPCode> BRANCHES = EnumSet.of(OPCode.BCC, OPCode.BCS, OPCode.BEQ, OPCode.BMI, OPCode.BNE, OPCode.BPL,
+            OPCode.BVC, OPCode.BVS);
+    //The Instructions changing the Program Counter or allowing an IRQ end the block
+    private static final Set<OPCode> TERMINATORS = EnumSet.of(OPCode.JMP, OPCode.JSR, OPCode.RTS, OPCode.CLI, OPCode.PLP);
+
+    private static final int EXCLUDED = -1;
+
+    private final List<Instruction> instructions;
+    private final BlockCompiler compiler;
+
+    private byte[] memory;
+    private CompiledBlock[] blocks;
+    private int[] block_addresses;
+    private int[] counters;
+
+    private final int[] addresses = new int[MAX_BLOCK_LENGTH];
+    private final int[] opcodes = new int[MAX_BLOCK_LENGTH];
+    private final int[] operands = new int[MAX_BLOCK_LENGTH];
+    private final int[] guards = new int[MAX_BLOCK_LENGTH];
+
+    private long compiled_blocks = 0L;
+    private long compiled_instructions = 0L;
+    private long executed_blocks = 0L;
+    private long executed_instructions = 0L;
+
+    /**
+     * Create a new recompiler for the Instructions of a CPU
+     *
+     * @param instructions the Instructions of the CPU indexed by Opcode
+     * @param lookup       a lookup of the CPU class with full privileges
+     */
+    Recompiler(List<Instruction> instructions, MethodHandles.Lookup lookup) {
+        this.instructions = instructions;
+        this.compiler = new BlockCompiler(lookup, instructions);
+    }
+
+    /**
+     * Return the block starting at an address of the CPU address space
+     * the entry point is counted and compiled once it becomes hot
+     *
+     * @param pages the CPU Page Table
+     * @param addr  the address of the entry point
+     * @return the block, null if the Instruction must be interpreted
+     */
+    CompiledBlock lookup(PageTable pages, int addr) {
+        byte[] rom = pages.getReadOnlyMemory(addr);
+        if (rom == null)
+            return null;
+        //A new Cartridge has been inserted
+        if (rom != memory)
+            invalidate(rom);
+        int offset = pages.getOffset(addr);
+        CompiledBlock block = blocks[offset];
+        //The same bank can be mapped at another address, the addresses are constants of the block
+        if (block == null || block_addresses[offset] != addr) {
+            if (++counters[offset] < HOT_THRESHOLD)
+                return null;
+            counters[offset] = 0;
+            block = compile(pages, rom, offset, addr);
+            blocks[offset] = block;
+            block_addresses[offset] = addr;
+        }
+        return block == UNCOMPILABLE ? null : block;
+    }
+
+    /**
+     * Find the basic block starting at an entry point and compile it
+     *
+     * @param pages  the CPU Page Table
+     * @param rom    the PRG ROM
+     * @param offset the offset of the entry point in the PRG ROM
+     * @param addr   the address of the entry point
+     * @return the compiled block, UNCOMPILABLE if the first Instruction must be interpreted
+     */
+    private CompiledBlock compile(PageTable pages, byte[] rom, int offset, int addr) {
+        //The block stays in the page of the entry point, whose physical bytes are checked by lookup()
+        int page_end = offset + pages.getPageSize() - (addr & (pages.getPageSize() - 1));
+        int length = 0;
+        boolean terminated = false;
+        while (length < MAX_BLOCK_LENGTH && !terminated) {
+            int opcode = rom[offset] & 0xFF;
+            int size = CPU_6502.LENGTHS[opcode];
+            //RTS reads the byte following it
+            int end = offset + size + (instructions.get(opcode).assembly == OPCode.RTS ? 1 : 0);
+            if (end > page_end)
+                break;
+            int operand = 0;
+            for (int i = size - 1; i > 0; i--)
+                operand = (operand << 8) | (rom[offset + i] & 0xFF);
+            int guard = classify(instructions.get(opcode), operand);
+            if (guard == EXCLUDED)
+                break;
+            addresses[length] = addr;
+            opcodes[length] = opcode;
+            operands[length] = operand;
+            guards[length] = guard;
+            terminated = TERMINATORS.contains(instructions.get(opcode).assembly);
+            length++;
+            offset += size;
+            addr = (addr + size) & 0xFFFF;
+        }
+        if (length == 0)
+            return UNCOMPILABLE;
+        compiled_blocks++;
+        compiled_instructions += length;
+        return compiler.compile(addresses, opcodes, operands, guards, length);
+    }
+
+    /**
+     * Determine if an Instruction can be part of a block and the memory check it needs
+     *
+     * @param instruction the Instruction
+     * @param operand     the operand of the Instruction
+     * @return the guard of the Instruction (see BlockCompiler) or EXCLUDED
+     */
+    private static int classify(Instruction instruction, int operand) {
+        OPCode op = instruction.assembly;
+        AddressingMode mode = instruction.addr_mode;
+        //Illegal Opcodes, interrupts and indirect jumps are left to the interpreter
+        if (op == OPCode.JMP)
+            return mode == AddressingMode.ABS ? BlockCompiler.GUARD_NONE : EXCLUDED;
+        if (op == OPCode.NOP)
+            return mode == AddressingMode.IMP ? BlockCompiler.GUARD_NONE : EXCLUDED;
+        if (INTERNALS.contains(op) || BRANCHES.contains(op) || TERMINATORS.contains(op))
+            return BlockCompiler.GUARD_NONE;
+        boolean write = WRITES.contains(op);
+        if (!write && !READS.contains(op))
+            return EXCLUDED;
+        switch (mode) {
+            case IMP:
+            case IMM:
+            case ZP0:
+            case ZPX:
+            case ZPY:
+                //Only the Accumulator, the Instruction bytes or the RAM are accessed
+                return BlockCompiler.GUARD_NONE;
+            case ABS:
+                if (operand < 0x2000)
+                    return BlockCompiler.GUARD_NONE;
+                //I/O registers and Mapper registers
+                if (operand < 0x4020 || (write && operand >= 0x8000))
+                    return EXCLUDED;
+                break;
+            case ABX:
+            case ABY:
+            case IZX:
+            case IZY:
+                break;
+            default:
+                return EXCLUDED;
+        }
+        return write ? BlockCompiler.GUARD_WRITE : BlockCompiler.GUARD_READ;
+    }
+
+    /**
+     * Record the execution of a block
+     *
+     * @param executed the number of Instructions executed by the block
+     */
+    void countExecution(int executed) {
+        executed_blocks++;
+        executed_instructions += executed;
+    }
+
+    /**
+     * Drop every block and start compiling a new PRG ROM
+     *
+     * @param rom the PRG ROM to compile
+     */
+    public void invalidate(byte[] rom) {
+        memory = rom;
+        blocks = new CompiledBlock[rom.length];
+        block_addresses = new int[rom.length];
+        counters = new int[rom.length];
+    }
+
+    /**
+     * Return the number of blocks compiled
+     *
+     * @return the number of compiled blocks
+     */
+    public long getCompiledBlocks() {
+        return compiled_blocks;
+    }
+
+    /**
+     * Return the average number of Instructions of the compiled blocks
+     *
+     * @return the average length of the blocks
+     */
+    public double getAverageBlockLength() {
+        return compiled_blocks == 0 ? 0 : (double) compiled_instructions / compiled_blocks;
+    }
+
+    /**
+     * Return the number of blocks executed
+     *
+     * @return the number of executed blocks
+     */
+    public long getExecutedBlocks() {
+        return executed_blocks;
+    }
+
+    /**
+     * Return the number of Instructions executed inside blocks
+     *
+     * @return the number of Instructions executed by blocks
+     */
+    public long getExecutedInstructions() {
+        return executed_instructions;
+    }
+}
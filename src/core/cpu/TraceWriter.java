@@ -0,0 +1,331 @@
+package core.cpu;
+
+import core.NES;
+
+/**
+ * This class formats the state of the CPU as a line of the nestest log (Nintendulator format) :
+ * C000  4C F5 C5  JMP $C5F5                       A:00 X:00 Y:00 P:24 SP:FD PPU:  0, 21 CYC:7
+ * the line is written into a preallocated byte buffer without any String formatting
+ * so a trace can be produced or compared at full speed
+ * the disassembly uses its own opcode table as the illegal opcodes of the CPU don't all carry their real addressing mode
+ */
+public class TraceWriter {
+
+    public static final int REGISTERS_COLUMN = 48;
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes();
+
+    //The mnemonics, a '*' marks an illegal opcode
+    private static final String[] MNEMONICS = (
+            "BRK ORA *KIL *SLO *NOP ORA ASL *SLO PHP ORA ASL *ANC *NOP ORA ASL *SLO " +
+            "BPL ORA *KIL *SLO *NOP ORA ASL *SLO CLC ORA *NOP *SLO *NOP ORA ASL *SLO " +
+            "JSR AND *KIL *RLA BIT AND ROL *RLA PLP AND ROL *ANC BIT AND ROL *RLA " +
+            "BMI AND *KIL *RLA *NOP AND ROL *RLA SEC AND *NOP *RLA *NOP AND ROL *RLA " +
+            "RTI EOR *KIL *SRE *NOP EOR LSR *SRE PHA EOR LSR *ALR JMP EOR LSR *SRE " +
+            "BVC EOR *KIL *SRE *NOP EOR LSR *SRE CLI EOR *NOP *SRE *NOP EOR LSR *SRE " +
+            "RTS ADC *KIL *RRA *NOP ADC ROR *RRA PLA ADC ROR *ARR JMP ADC ROR *RRA " +
+            "BVS ADC *KIL *RRA *NOP ADC ROR *RRA SEI ADC *NOP *RRA *NOP ADC ROR *RRA " +
+            "*NOP STA *NOP *SAX STY STA STX *SAX DEY *NOP TXA *XAA STY STA STX *SAX " +
+            "BCC STA *KIL *AHX STY STA STX *SAX TYA STA TXS *TAS *SHY STA *SHX *AHX " +
+            "LDY LDA LDX *LAX LDY LDA LDX *LAX TAY LDA TAX *LAX LDY LDA LDX *LAX " +
+            "BCS LDA *KIL *LAX LDY LDA LDX *LAX CLV LDA TSX *LAS LDY LDA LDX *LAX " +
+            "CPY CMP *NOP *DCP CPY CMP DEC *DCP INY CMP DEX *AXS CPY CMP DEC *DCP " +
+            "BNE CMP *KIL *DCP *NOP CMP DEC *DCP CLD CMP *NOP *DCP *NOP CMP DEC *DCP " +
+            "CPX SBC *NOP *ISB CPX SBC INC *ISB INX SBC NOP *SBC CPX SBC INC *ISB " +
+            "BEQ SBC *KIL *ISB *NOP SBC INC *ISB SED SBC *NOP *ISB *NOP SBC INC *ISB").split(" ");
+
+    //The addressing modes : i implied, a accumulator, # immediate, z zero page, x zero page X, y zero page Y,
+    //X indirect X, Y indirect Y, A absolute, b absolute X, c absolute Y, n indirect, r relative
+    private static final String MODES =
+            "iXiXzzzzi#a#AAAA" +
+            "rYiYxxxxicicbbbb" +
+            "AXiXzzzzi#a#AAAA" +
+            "rYiYxxxxicicbbbb" +
+            "iXiXzzzzi#a#AAAA" +
+            "rYiYxxxxicicbbbb" +
+            "iXiXzzzzi#a#nAAA" +
+            "rYiYxxxxicicbbbb" +
+            "#X#Xzzzzi#i#AAAA" +
+            "rYiYxxyyicicbbcc" +
+            "#X#Xzzzzi#i#AAAA" +
+            "rYiYxxyyicicbbcc" +
+            "#X#Xzzzzi#i#AAAA" +
+            "rYiYxxxxicicbbbb" +
+            "#X#Xzzzzi#i#AAAA" +
+            "rYiYxxxxicicbbbb";
+
+    private final NES nes;
+    private final CPU_6502 cpu;
+    private final byte[] line = new byte[128];
+    private int length = 0;
+
+    /**
+     * Create a new trace writer for the CPU of a console
+     *
+     * @param nes the console to trace
+     */
+    public TraceWriter(NES nes) {
+        this.nes = nes;
+        this.cpu = nes.getCpu();
+    }
+
+    /**
+     * Format the Instruction about to be executed and the state of the CPU
+     * the memory is read without side effects to annotate the operands
+     *
+     * @param scanline the PPU scanline to print
+     * @param dot      the PPU dot to print
+     * @param cycle    the CPU cycle to print
+     * @return the length of the line (without line terminator)
+     */
+    public int format(int scanline, int dot, long cycle) {
+        int pc = cpu.getProgramCounter();
+        int opcode = read(pc);
+        char mode = MODES.charAt(opcode);
+        int size = size(mode);
+        int low = size > 1 ? read(pc + 1) : 0;
+        int high = size > 2 ? read(pc + 2) : 0;
+        length = 0;
+
+        hex16(pc);
+        space(2);
+        for (int i = 0; i < 3; i++) {
+            if (i < size)
+                hex8(i == 0 ? opcode : i == 1 ? low : high);
+            else
+                space(2);
+            space(1);
+        }
+        String mnemonic = MNEMONICS[opcode];
+        if (mnemonic.charAt(0) != '*')
+            space(1);
+        text(mnemonic);
+        operand(opcode, mode, pc, low, high);
+        while (length < REGISTERS_COLUMN)
+            space(1);
+
+        text("A:");
+        hex8(cpu.getAccumulator());
+        text(" X:");
+        hex8(cpu.getXRegister());
+        text(" Y:");
+        hex8(cpu.getYRegister());
+        //The B flag doesn't exist in the status register, only in the pushed copies
+        text(" P:");
+        hex8((cpu.getStatus() | Flags.U.value) & ~Flags.B.value);
+        text(" SP:");
+        hex8(cpu.getStackPointer());
+        text(" PPU:");
+        decimal(scanline, 3);
+        line[length++] = ',';
+        decimal(dot, 3);
+        text(" CYC:");
+        decimal(cycle, 0);
+        return length;
+    }
+
+    /**
+     * Return the buffer containing the last formatted line
+     * only the first format() bytes are valid
+     *
+     * @return the line buffer
+     */
+    public byte[] getLine() {
+        return line;
+    }
+
+    /**
+     * Return the length of the last formatted line
+     *
+     * @return the length of the line
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Write the operand of the Instruction and the memory it targets
+     *
+     * @param opcode the opcode of the Instruction
+     * @param mode   the addressing mode
+     * @param pc     the address of the Instruction
+     * @param low    the first operand byte
+     * @param high   the second operand byte
+     */
+    private void operand(int opcode, char mode, int pc, int low, int high) {
+        int addr;
+        switch (mode) {
+            case 'a':
+                text(" A");
+                break;
+            case '#':
+                text(" #$");
+                hex8(low);
+                break;
+            case 'z':
+                text(" $");
+                hex8(low);
+                value(low);
+                break;
+            case 'x':
+            case 'y':
+                addr = (low + (mode == 'x' ? cpu.getXRegister() : cpu.getYRegister())) & 0xFF;
+                text(" $");
+                hex8(low);
+                text(mode == 'x' ? ",X @ " : ",Y @ ");
+                hex8(addr);
+                value(addr);
+                break;
+            case 'X':
+                int pointer = (low + cpu.getXRegister()) & 0xFF;
+                addr = read(pointer) | read((pointer + 1) & 0xFF) << 8;
+                text(" ($");
+                hex8(low);
+                text(",X) @ ");
+                hex8(pointer);
+                text(" = ");
+                hex16(addr);
+                value(addr);
+                break;
+            case 'Y':
+                int base = read(low) | read((low + 1) & 0xFF) << 8;
+                addr = (base + cpu.getYRegister()) & 0xFFFF;
+                text(" ($");
+                hex8(low);
+                text("),Y = ");
+                hex16(base);
+                text(" @ ");
+                hex16(addr);
+                value(addr);
+                break;
+            case 'A':
+                text(" $");
+                hex16(high << 8 | low);
+                //Jumps don't access the memory at their target
+                if (opcode != 0x4C && opcode != 0x20)
+                    value(high << 8 | low);
+                break;
+            case 'b':
+            case 'c':
+                addr = ((high << 8 | low) + (mode == 'b' ? cpu.getXRegister() : cpu.getYRegister())) & 0xFFFF;
+                text(" $");
+                hex16(high << 8 | low);
+                text(mode == 'b' ? ",X @ " : ",Y @ ");
+                hex16(addr);
+                value(addr);
+                break;
+            case 'n':
+                //The indirect jump doesn't cross pages when reading its target
+                addr = high << 8 | low;
+                text(" ($");
+                hex16(addr);
+                text(") = ");
+                hex16(read(addr) | read((addr & 0xFF00) | ((addr + 1) & 0x00FF)) << 8);
+                break;
+            case 'r':
+                text(" $");
+                hex16((pc + 2 + (byte) low) & 0xFFFF);
+                break;
+        }
+    }
+
+    /**
+     * Return the size of an Instruction from its addressing mode
+     *
+     * @param mode the addressing mode
+     * @return the size of the Instruction in bytes
+     */
+    private static int size(char mode) {
+        switch (mode) {
+            case 'i':
+            case 'a':
+                return 1;
+            case 'A':
+            case 'b':
+            case 'c':
+            case 'n':
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    /**
+     * Read from the CPU addressable range without side effects
+     *
+     * @param addr the address to read from
+     * @return the read value
+     */
+    private int read(int addr) {
+        return nes.cpuRead(addr & 0xFFFF, true);
+    }
+
+    /**
+     * Write " = " followed by the value stored at an address
+     *
+     * @param addr the address of the value
+     */
+    private void value(int addr) {
+        text(" = ");
+        hex8(read(addr));
+    }
+
+    /**
+     * Write an 8bit value as 2 hexadecimal digits
+     *
+     * @param value the value to write
+     */
+    private void hex8(int value) {
+        line[length++] = HEX[(value >> 4) & 0xF];
+        line[length++] = HEX[value & 0xF];
+    }
+
+    /**
+     * Write a 16bit value as 4 hexadecimal digits
+     *
+     * @param value the value to write
+     */
+    private void hex16(int value) {
+        hex8(value >> 8);
+        hex8(value);
+    }
+
+    /**
+     * Write a positive value in decimal, right aligned
+     *
+     * @param value the value to write
+     * @param width the minimal width, padded with spaces
+     */
+    private void decimal(long value, int width) {
+        int digits = 1;
+        for (long v = value / 10; v > 0; v /= 10)
+            digits++;
+        for (int i = digits; i < width; i++)
+            line[length++] = ' ';
+        for (int i = length + digits - 1; i >= length; i--) {
+            line[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    /**
+     * Write ASCII text
+     *
+     * @param text the text to write
+     */
+    private void text(String text) {
+        for (int i = 0; i < text.length(); i++)
+            line[length++] = (byte) text.charAt(i);
+    }
+
+    /**
+     * Write spaces
+     *
+     * @param count the number of spaces
+     */
+    private void space(int count) {
+        for (int i = 0; i < count; i++)
+            line[length++] = ' ';
+    }
+}
@@ -9,4 +9,18 @@ public enum Mirror {
     VERTICAL,
     ONE_SCREEN_LOW,
     ONE_SCREEN_HIGH,
+    FOUR_SCREEN;
+
+    //values() returns a new array on every call
+    private static final Mirror[] MODES = values();
+
+    /**
+     * Return the mirroring mode of an ordinal, without allocating (used when restoring a state)
+     *
+     * @param ordinal the ordinal of the mode
+     * @return the mirroring mode
+     */
+    public static Mirror fromOrdinal(int ordinal) {
+        return MODES[ordinal];
+    }
 }
@@ -1,32 +1,36 @@
 package core.ppu;
 
+import core.PageTable;
+import core.Saveable;
 import core.cartridge.Cartridge;
+import core.cartridge.mappers.Mapper;
 import core.ppu.registers.*;
-import gui.lwjgui.windows.Tile;
-import javafx.scene.image.WritableImage;
-import javafx.scene.paint.Color;
-import org.lwjgl.BufferUtils;
-import utils.IntegerWrapper;
 import utils.NumberUtils;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 /**
  * This class represent the PPU of the NES
  * it handle everything graphics related
  */
-public class PPU_2C02 {
+public class PPU_2C02 implements Saveable {
 
     public static final int SCREEN_WIDTH = 256;
     public static final int SCREEN_HEIGHT = 240;
 
-    private final Color[] system_palette;
+    private final int[] system_palette;
     private final ByteBuffer screen_buffer;
     private final ByteBuffer screen_buffer_tmp;
+    private final IntBuffer screen_pixels_tmp;
+    private final byte[] frame_indices;
 
     private final byte[][] nametable_memory;
     private final byte[] palette_memory;
     private final byte[][] patterntable_memory;
+    private final PageTable ppu_pages;
 
     private final MaskRegister mask_register;
     private final ControlRegister control_register;
@@ -41,7 +45,10 @@ public class PPU_2C02 {
     private final int[] sprite_shift_pattern_high;
 
     public boolean frame_complete;
+    private boolean output_enabled = true;
+    private long frame_count = 0;
     private Cartridge cartridge;
+    private Mapper latch_mapper;
 
     private int sprite_count;
     private int address_latch = 0x00;
@@ -78,12 +85,19 @@ public class PPU_2C02 {
      * Create a new PPU, instantiate its components and fill up the palettes
      */
     public PPU_2C02() {
-        nametable_memory = new byte[2][1024];
+        nametable_memory = new byte[4][1024];
         patterntable_memory = new byte[2][4096];
+        //The PPU address space is split in 16 pages of 1Kb (8 CHR windows, 4 nametables and their mirror)
+        ppu_pages = new PageTable(16, 10);
         palette_memory = new byte[32];
-        system_palette = new Color[0x40];
-        screen_buffer = BufferUtils.createByteBuffer(SCREEN_HEIGHT * SCREEN_WIDTH * 4);
-        screen_buffer_tmp = BufferUtils.createByteBuffer(SCREEN_HEIGHT * SCREEN_WIDTH * 4);
+        system_palette = new int[0x40];
+        screen_buffer = ByteBuffer.allocateDirect(SCREEN_HEIGHT * SCREEN_WIDTH * 4).order(ByteOrder.nativeOrder());
+        screen_buffer_tmp = ByteBuffer.allocateDirect(SCREEN_HEIGHT * SCREEN_WIDTH * 4).order(ByteOrder.nativeOrder());
+        //The pixels are written as RGBA ints, whatever the native byte order
+        screen_pixels_tmp = screen_buffer_tmp.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+        //The palette index of every pixel of the frame being rendered, -1 for the pixels never drawn (black and transparent)
+        frame_indices = new byte[SCREEN_HEIGHT * SCREEN_WIDTH];
+        Arrays.fill(frame_indices, (byte) -1);
         frame_complete = false;
         scanline = 0;
         cycle = 0;
@@ -101,70 +115,71 @@ public class PPU_2C02 {
         sprite_shift_pattern_low = new int[8];
         sprite_shift_pattern_high = new int[8];
 
-        system_palette[0x00] = new Color(84 / 255.0, 84 / 255.0, 84 / 255.0, 1);
-        system_palette[0x01] = new Color(0 / 255.0, 30 / 255.0, 116 / 255.0, 1);
-        system_palette[0x02] = new Color(8 / 255.0, 16 / 255.0, 144 / 255.0, 1);
-        system_palette[0x03] = new Color(48 / 255.0, 0 / 255.0, 136 / 255.0, 1);
-        system_palette[0x04] = new Color(68 / 255.0, 0 / 255.0, 100 / 255.0, 1);
-        system_palette[0x05] = new Color(92 / 255.0, 0 / 255.0, 48 / 255.0, 1);
-        system_palette[0x06] = new Color(84 / 255.0, 4 / 255.0, 0 / 255.0, 1);
-        system_palette[0x07] = new Color(60 / 255.0, 24 / 255.0, 0 / 255.0, 1);
-        system_palette[0x08] = new Color(32 / 255.0, 42 / 255.0, 0 / 255.0, 1);
-        system_palette[0x09] = new Color(8 / 255.0, 58 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0A] = new Color(0 / 255.0, 64 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0B] = new Color(0 / 255.0, 60 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0C] = new Color(0 / 255.0, 50 / 255.0, 60 / 255.0, 1);
-        system_palette[0x0D] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x0F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x10] = new Color(152 / 255.0, 150 / 255.0, 152 / 255.0, 1);
-        system_palette[0x11] = new Color(8 / 255.0, 76 / 255.0, 196 / 255.0, 1);
-        system_palette[0x12] = new Color(48 / 255.0, 50 / 255.0, 236 / 255.0, 1);
-        system_palette[0x13] = new Color(92 / 255.0, 30 / 255.0, 228 / 255.0, 1);
-        system_palette[0x14] = new Color(136 / 255.0, 20 / 255.0, 176 / 255.0, 1);
-        system_palette[0x15] = new Color(160 / 255.0, 20 / 255.0, 100 / 255.0, 1);
-        system_palette[0x16] = new Color(152 / 255.0, 34 / 255.0, 32 / 255.0, 1);
-        system_palette[0x17] = new Color(120 / 255.0, 60 / 255.0, 0 / 255.0, 1);
-        system_palette[0x18] = new Color(84 / 255.0, 90 / 255.0, 0 / 255.0, 1);
-        system_palette[0x19] = new Color(40 / 255.0, 114 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1A] = new Color(8 / 255.0, 124 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1B] = new Color(0 / 255.0, 118 / 255.0, 40 / 255.0, 1);
-        system_palette[0x1C] = new Color(0 / 255.0, 102 / 255.0, 120 / 255.0, 1);
-        system_palette[0x1D] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x1F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x20] = new Color(236 / 255.0, 238 / 255.0, 236 / 255.0, 1);
-        system_palette[0x21] = new Color(76 / 255.0, 154 / 255.0, 236 / 255.0, 1);
-        system_palette[0x22] = new Color(120 / 255.0, 124 / 255.0, 236 / 255.0, 1);
-        system_palette[0x23] = new Color(176 / 255.0, 98 / 255.0, 236 / 255.0, 1);
-        system_palette[0x24] = new Color(228 / 255.0, 84 / 255.0, 236 / 255.0, 1);
-        system_palette[0x25] = new Color(236 / 255.0, 88 / 255.0, 180 / 255.0, 1);
-        system_palette[0x26] = new Color(236 / 255.0, 106 / 255.0, 100 / 255.0, 1);
-        system_palette[0x27] = new Color(212 / 255.0, 136 / 255.0, 32 / 255.0, 1);
-        system_palette[0x28] = new Color(160 / 255.0, 170 / 255.0, 0 / 255.0, 1);
-        system_palette[0x29] = new Color(116 / 255.0, 196 / 255.0, 0 / 255.0, 1);
-        system_palette[0x2A] = new Color(76 / 255.0, 208 / 255.0, 32 / 255.0, 1);
-        system_palette[0x2B] = new Color(56 / 255.0, 204 / 255.0, 108 / 255.0, 1);
-        system_palette[0x2C] = new Color(56 / 255.0, 180 / 255.0, 204 / 255.0, 1);
-        system_palette[0x2D] = new Color(60 / 255.0, 60 / 255.0, 60 / 255.0, 1);
-        system_palette[0x2E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x2F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x30] = new Color(236 / 255.0, 238 / 255.0, 236 / 255.0, 1);
-        system_palette[0x31] = new Color(168 / 255.0, 204 / 255.0, 236 / 255.0, 1);
-        system_palette[0x32] = new Color(188 / 255.0, 188 / 255.0, 236 / 255.0, 1);
-        system_palette[0x33] = new Color(212 / 255.0, 178 / 255.0, 236 / 255.0, 1);
-        system_palette[0x34] = new Color(236 / 255.0, 174 / 255.0, 236 / 255.0, 1);
-        system_palette[0x35] = new Color(236 / 255.0, 174 / 255.0, 212 / 255.0, 1);
-        system_palette[0x36] = new Color(236 / 255.0, 180 / 255.0, 176 / 255.0, 1);
-        system_palette[0x37] = new Color(228 / 255.0, 196 / 255.0, 144 / 255.0, 1);
-        system_palette[0x38] = new Color(204 / 255.0, 210 / 255.0, 120 / 255.0, 1);
-        system_palette[0x39] = new Color(180 / 255.0, 222 / 255.0, 120 / 255.0, 1);
-        system_palette[0x3A] = new Color(168 / 255.0, 226 / 255.0, 144 / 255.0, 1);
-        system_palette[0x3B] = new Color(152 / 255.0, 226 / 255.0, 180 / 255.0, 1);
-        system_palette[0x3C] = new Color(160 / 255.0, 214 / 255.0, 228 / 255.0, 1);
-        system_palette[0x3D] = new Color(160 / 255.0, 162 / 255.0, 160 / 255.0, 1);
-        system_palette[0x3E] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
-        system_palette[0x3F] = new Color(0 / 255.0, 0 / 255.0, 0 / 255.0, 1);
+        //The system palette is stored as ARGB colors
+        system_palette[0x00] = 0xFF545454;
+        system_palette[0x01] = 0xFF001E74;
+        system_palette[0x02] = 0xFF081090;
+        system_palette[0x03] = 0xFF300088;
+        system_palette[0x04] = 0xFF440064;
+        system_palette[0x05] = 0xFF5C0030;
+        system_palette[0x06] = 0xFF540400;
+        system_palette[0x07] = 0xFF3C1800;
+        system_palette[0x08] = 0xFF202A00;
+        system_palette[0x09] = 0xFF083A00;
+        system_palette[0x0A] = 0xFF004000;
+        system_palette[0x0B] = 0xFF003C00;
+        system_palette[0x0C] = 0xFF00323C;
+        system_palette[0x0D] = 0xFF000000;
+        system_palette[0x0E] = 0xFF000000;
+        system_palette[0x0F] = 0xFF000000;
+        system_palette[0x10] = 0xFF989698;
+        system_palette[0x11] = 0xFF084CC4;
+        system_palette[0x12] = 0xFF3032EC;
+        system_palette[0x13] = 0xFF5C1EE4;
+        system_palette[0x14] = 0xFF8814B0;
+        system_palette[0x15] = 0xFFA01464;
+        system_palette[0x16] = 0xFF982220;
+        system_palette[0x17] = 0xFF783C00;
+        system_palette[0x18] = 0xFF545A00;
+        system_palette[0x19] = 0xFF287200;
+        system_palette[0x1A] = 0xFF087C00;
+        system_palette[0x1B] = 0xFF007628;
+        system_palette[0x1C] = 0xFF006678;
+        system_palette[0x1D] = 0xFF000000;
+        system_palette[0x1E] = 0xFF000000;
+        system_palette[0x1F] = 0xFF000000;
+        system_palette[0x20] = 0xFFECEEEC;
+        system_palette[0x21] = 0xFF4C9AEC;
+        system_palette[0x22] = 0xFF787CEC;
+        system_palette[0x23] = 0xFFB062EC;
+        system_palette[0x24] = 0xFFE454EC;
+        system_palette[0x25] = 0xFFEC58B4;
+        system_palette[0x26] = 0xFFEC6A64;
+        system_palette[0x27] = 0xFFD48820;
+        system_palette[0x28] = 0xFFA0AA00;
+        system_palette[0x29] = 0xFF74C400;
+        system_palette[0x2A] = 0xFF4CD020;
+        system_palette[0x2B] = 0xFF38CC6C;
+        system_palette[0x2C] = 0xFF38B4CC;
+        system_palette[0x2D] = 0xFF3C3C3C;
+        system_palette[0x2E] = 0xFF000000;
+        system_palette[0x2F] = 0xFF000000;
+        system_palette[0x30] = 0xFFECEEEC;
+        system_palette[0x31] = 0xFFA8CCEC;
+        system_palette[0x32] = 0xFFBCBCEC;
+        system_palette[0x33] = 0xFFD4B2EC;
+        system_palette[0x34] = 0xFFECAEEC;
+        system_palette[0x35] = 0xFFECAED4;
+        system_palette[0x36] = 0xFFECB4B0;
+        system_palette[0x37] = 0xFFE4C490;
+        system_palette[0x38] = 0xFFCCD278;
+        system_palette[0x39] = 0xFFB4DE78;
+        system_palette[0x3A] = 0xFFA8E290;
+        system_palette[0x3B] = 0xFF98E2B4;
+        system_palette[0x3C] = 0xFFA0D6E4;
+        system_palette[0x3D] = 0xFFA0A2A0;
+        system_palette[0x3E] = 0xFF000000;
+        system_palette[0x3F] = 0xFF000000;
 
         incrementScrollX = () -> {
             //If we are rendering sprites or background
@@ -259,6 +274,10 @@ public class PPU_2C02 {
      */
     public void connectCartridge(Cartridge cartridge) {
         this.cartridge = cartridge;
+        //Only the Mappers with latches (MMC2) are notified of the PPU reads
+        latch_mapper = cartridge.getMapper().hasLatch() ? cartridge.getMapper() : null;
+        ppu_pages.unmap(0x0000, 0x4000);
+        cartridge.connectPPUPages(ppu_pages, nametable_memory);
     }
 
     /**
@@ -418,45 +437,26 @@ public class PPU_2C02 {
      */
     public int ppuRead(int addr, boolean readOnly) {
         addr &= 0x3FFF;
-        //A Wrapper used to store the data gathered by the Cartridge
-        IntegerWrapper data = new IntegerWrapper();
-        //If the address is mapped by the cartridge, let it handle and return read value
-        if (!cartridge.ppuRead(addr, data)) {
-            if (addr <= 0x1FFF) { //Read from pattern table
-                data.value = patterntable_memory[(addr & 0x1000) >> 12][addr & 0x0FFF];
-            } else if (addr <= 0x3EFF) { //Read from nametable
-                addr &= 0x0FFF;
-                if (cartridge.getMirror() == Mirror.VERTICAL) {
-                    if (addr <= 0x03FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0C00)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                } else if (cartridge.getMirror() == Mirror.HORIZONTAL) {
-                    if (addr <= 0x03FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        data.value = nametable_memory[0][addr & 0x03FF];
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                    if (addr >= 0x0C00)
-                        data.value = nametable_memory[1][addr & 0x03FF];
-                }
-            } else { //Read from palette memory
-                addr &= 0x1F;
-                if (addr == 0x0010) addr = 0x0000;
-                if (addr == 0x0014) addr = 0x0004;
-                if (addr == 0x0018) addr = 0x0008;
-                if (addr == 0x001C) addr = 0x000C;
-                data.value = palette_memory[addr] & (mask_register.isGrayscaleSet() ? 0x30 : 0x3F);
+        int data;
+        if (addr <= 0x3EFF) { //Read from pattern tables and nametables using the bank windows
+            data = ppu_pages.read(addr);
+            //If the window isn't mapped, we let the Cartridge handle it or we read from the internal pattern table
+            if (data == PageTable.UNMAPPED) {
+                data = cartridge.ppuRead(addr);
+                if (data == Mapper.UNMAPPED)
+                    data = patterntable_memory[(addr & 0x1000) >> 12][addr & 0x0FFF];
             }
+        } else { //Read from palette memory
+            int palette_addr = addr & 0x1F;
+            if (palette_addr == 0x0010) palette_addr = 0x0000;
+            if (palette_addr == 0x0014) palette_addr = 0x0004;
+            if (palette_addr == 0x0018) palette_addr = 0x0008;
+            if (palette_addr == 0x001C) palette_addr = 0x000C;
+            data = palette_memory[palette_addr] & (mask_register.isGrayscaleSet() ? 0x30 : 0x3F);
         }
-        if (!readOnly)
-            cartridge.getMapper().updateLatch(addr);
-        return data.value & 0xFF;
+        if (!readOnly && latch_mapper != null)
+            latch_mapper.updateLatch(addr);
+        return data & 0xFF;
     }
 
     /**
@@ -468,40 +468,17 @@ public class PPU_2C02 {
     private void ppuWrite(int addr, int data) {
         addr &= 0x3FFF;
         data &= 0xFF;
-        //If the address is mapped by the cartridge, let it handle and return
-        if (!cartridge.ppuWrite(addr, data)) {
-            if (addr <= 0x1FFF) { //Write to pattern table
+        if (addr <= 0x3EFF) { //Write to pattern tables and nametables using the bank windows
+            //If the window isn't writable, we let the Cartridge handle it or we write to the internal pattern table
+            if (!ppu_pages.write(addr, data) && !cartridge.ppuWrite(addr, data))
                 patterntable_memory[(addr & 0x1000) >> 12][addr & 0x0FFF] = (byte) data;
-
-            } else if (addr <= 0x3EFF) { //Write to nametable
-                addr &= 0x0FFF;
-                if (cartridge.getMirror() == Mirror.VERTICAL) {
-                    if (addr <= 0x03FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0C00)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                } else if (cartridge.getMirror() == Mirror.HORIZONTAL) {
-                    if (addr <= 0x03FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0400 && addr <= 0x07FF)
-                        nametable_memory[0][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0800 && addr <= 0x0BFF)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                    if (addr >= 0x0C00)
-                        nametable_memory[1][addr & 0x03FF] = (byte) data;
-                }
-            } else { //Writting to palette memory
-                addr &= 0x001F;
-                if (addr == 0x0010) addr = 0x0000;
-                if (addr == 0x0014) addr = 0x0004;
-                if (addr == 0x0018) addr = 0x0008;
-                if (addr == 0x001C) addr = 0x000C;
-                palette_memory[addr] = (byte) data;
-            }
+        } else { //Writting to palette memory
+            addr &= 0x001F;
+            if (addr == 0x0010) addr = 0x0000;
+            if (addr == 0x0014) addr = 0x0004;
+            if (addr == 0x0018) addr = 0x0008;
+            if (addr == 0x001C) addr = 0x000C;
+            palette_memory[addr] = (byte) data;
         }
     }
 
@@ -529,12 +506,60 @@ public class PPU_2C02 {
      *
      * @param paletteId the palette ID
      * @param pixel     the pixel ID
-     * @return the corresponding Color
+     * @return the corresponding color (ARGB)
      */
-    public Color getColorFromPalette(int paletteId, int pixel) {
+    public int getColorFromPalette(int paletteId, int pixel) {
         return system_palette[ppuRead(0x3F00 + ((paletteId << 2) & 0x00FF) + (pixel & 0x00FF), false)];
     }
 
+    /**
+     * Enable or disable the pixel output
+     * without output, the PPU still computes everything the CPU can observe
+     * (sprite zero hit, sprite overflow, vertical blank, Mapper scanline notifications)
+     * but doesn't compose nor write the pixels, the screen buffer keeps the last produced frame
+     *
+     * @param enabled should the pixels be produced
+     */
+    public void setOutputEnabled(boolean enabled) {
+        output_enabled = enabled;
+    }
+
+    /**
+     * Return whether or not the pixel output is enabled
+     *
+     * @return is the pixel output enabled
+     */
+    public boolean isOutputEnabled() {
+        return output_enabled;
+    }
+
+    /**
+     * Return the number of frames completed since the PPU was created
+     *
+     * @return the number of completed frames
+     */
+    public long getFrameCount() {
+        return frame_count;
+    }
+
+    /**
+     * Return the current scanline, -1 being the pre-render scanline
+     *
+     * @return the current scanline between -1 and 260
+     */
+    public int getScanline() {
+        return scanline;
+    }
+
+    /**
+     * Return the current cycle (dot) of the scanline
+     *
+     * @return the current cycle between 0 and 340
+     */
+    public int getCycle() {
+        return cycle;
+    }
+
     /**
      * Return whether or not a Non Maskable Interrupt should be fired to the CPU
      *
@@ -549,6 +574,39 @@ public class PPU_2C02 {
         return false;
     }
 
+    /**
+     * Return the minimal number of ticks before the PPU can fire a Non Maskable Interrupt,
+     * notify the Mapper of a new scanline or complete a frame
+     * used to know how far the PPU can lag behind the CPU
+     *
+     * @return the minimal number of ticks before the next event
+     */
+    public int ticksBeforeNextEvent() {
+        int ticks = ticksBefore(241, 1);
+        ticks = Math.min(ticks, ticksBefore(260, 340));
+        if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
+            int next_scanline = cycle <= 260 ? scanline : scanline + 1;
+            if (next_scanline >= 240)
+                next_scanline = -1;
+            ticks = Math.min(ticks, ticksBefore(next_scanline, 260));
+        }
+        //The skipped cycle of odd frames can make the event occur one tick earlier
+        return Math.max(0, ticks - 1);
+    }
+
+    /**
+     * Return the number of ticks before the PPU reach a position of the frame
+     *
+     * @param target_scanline the scanline to reach
+     * @param target_cycle    the cycle to reach
+     * @return the number of ticks before the PPU reach the position
+     */
+    private int ticksBefore(int target_scanline, int target_cycle) {
+        int frame_length = 262 * 341;
+        int distance = ((target_scanline + 1) * 341 + target_cycle) - ((scanline + 1) * 341 + cycle);
+        return (distance + frame_length) % frame_length;
+    }
+
     /**
      * Reset the PPU to its default state
      */
@@ -583,8 +641,6 @@ public class PPU_2C02 {
         if (scanline >= -1 && scanline < 240) {
             if (cycle >= 257 && cycle <= 320)
                 oam_addr = 0;
-            if (scanline == -1 && cycle == 0)
-                screen_buffer_tmp.clear();
             //If we are on the top left we increment the cycle count and clear the screen buffer
             if (scanline == 0 && cycle == 0 && odd_frame && (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet())) {
                 cycle = 1;
@@ -748,8 +804,11 @@ public class PPU_2C02 {
         int bg_pixel = 0x00;
         int bg_palette = 0x00;
 
+        //Without output, the pixels are only composed when they could trigger a sprite zero hit
+        boolean compose = output_enabled || spriteZeroHitPossible;
+
         //If background rendering is enabled
-        if (mask_register.isRenderBackgroundSet()) {
+        if (mask_register.isRenderBackgroundSet() && compose) {
             //We select the current pixels offset using the scroll information
             if (mask_register.isRenderBackgroundLeftSet() || cycle >= 9) {
                 int bit_mux = (0x8000 >> fine_x) & 0xFFFF;
@@ -769,7 +828,7 @@ public class PPU_2C02 {
         boolean fg_priority = false;
 
         //If sprite rendering is enabled
-        if (mask_register.isRenderSpritesSet()) {
+        if (mask_register.isRenderSpritesSet() && compose) {
             //The 0th sprite being rendered flag is reset
             if (mask_register.isRenderSpriteLeftSet() || cycle >= 9) {
                 spriteZeroBeingRendered = false;
@@ -834,12 +893,13 @@ public class PPU_2C02 {
             }
         }
 
-        //If we are in the visible area we push a pixel into the screen buffer
-        if (cycle - 1 >= 0 && cycle - 1 < SCREEN_WIDTH && scanline >= 0 && scanline < SCREEN_HEIGHT) {
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getRed() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getGreen() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getBlue() * 255) & 0xFF));
-            screen_buffer_tmp.put((byte) ((int) (getColorFromPalette(palette, pixel).getOpacity() * 255) & 0xFF));
+        //If we are in the visible area we write the pixel into the screen buffer
+        if (output_enabled && cycle - 1 >= 0 && cycle - 1 < SCREEN_WIDTH && scanline >= 0 && scanline < SCREEN_HEIGHT) {
+            int color_index = ppuRead(0x3F00 + ((palette << 2) & 0x00FF) + (pixel & 0x00FF), false);
+            int position = scanline * SCREEN_WIDTH + cycle - 1;
+            //The palette index is kept for the savestates, the color is written to the screen buffer
+            frame_indices[position] = (byte) color_index;
+            writePixel(position, system_palette[color_index]);
         }
 
         if (mask_register.isRenderBackgroundSet() || mask_register.isRenderSpritesSet()) {
@@ -858,16 +918,139 @@ public class PPU_2C02 {
                 //We reset the scanline to the top, set the frameComplete flag and flip the screen buffer to prepare rendering
                 scanline = -1;
                 frame_complete = true;
+                frame_count++;
                 odd_frame = !odd_frame;
                 //We put the content if the tmp buffer to the screen buffer that will be fetched by the UI
-                screen_buffer_tmp.flip();
-                screen_buffer.clear();
-                screen_buffer.put(screen_buffer_tmp);
-                screen_buffer.flip();
+                //without output the screen buffer keeps the last produced frame
+                if (output_enabled) {
+                    screen_buffer_tmp.rewind();
+                    screen_buffer.clear();
+                    screen_buffer.put(screen_buffer_tmp);
+                    screen_buffer.flip();
+                }
             }
         }
     }
 
+    /**
+     * Write a color to the frame being rendered
+     *
+     * @param position the index of the pixel (y * SCREEN_WIDTH + x)
+     * @param color    the color of the pixel (ARGB)
+     */
+    private void writePixel(int position, int color) {
+        //The screen buffer is in RGBA order
+        screen_pixels_tmp.put(position, color << 8 | color >>> 24);
+    }
+
+    /**
+     * Write the state of the PPU to the buffer
+     * the frame being rendered is saved as one palette index per pixel so the next frame is identical after a load
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        for (byte[] nametable : nametable_memory)
+            buffer.put(nametable);
+        for (byte[] patterntable : patterntable_memory)
+            buffer.put(patterntable);
+        buffer.put(palette_memory);
+        mask_register.saveState(buffer);
+        control_register.saveState(buffer);
+        status_register.saveState(buffer);
+        vram_addr.saveState(buffer);
+        tram_addr.saveState(buffer);
+        for (ObjectAttribute oam : oams)
+            oam.saveState(buffer);
+        for (ObjectAttribute visible_oam : visible_oams)
+            visible_oam.saveState(buffer);
+        for (int i = 0; i < 8; i++) {
+            buffer.putInt(sprite_shift_pattern_low[i]);
+            buffer.putInt(sprite_shift_pattern_high[i]);
+        }
+        buffer.put((byte) (frame_complete ? 1 : 0));
+        buffer.putLong(frame_count);
+        buffer.putInt(sprite_count);
+        buffer.putInt(address_latch);
+        buffer.putInt(ppu_data_buffer);
+        buffer.putInt(oam_addr);
+        buffer.putInt(fine_x);
+        buffer.putInt(bg_next_tile_id);
+        buffer.putInt(bg_next_tile_attrib);
+        buffer.putInt(bg_next_tile_lsb);
+        buffer.putInt(bg_next_tile_msb);
+        buffer.putInt(bg_shift_pattern_low);
+        buffer.putInt(bg_shift_pattern_high);
+        buffer.putInt(bg_shift_attrib_low);
+        buffer.putInt(bg_shift_attrib_high);
+        buffer.put((byte) (spriteZeroHitPossible ? 1 : 0));
+        buffer.put((byte) (spriteZeroBeingRendered ? 1 : 0));
+        buffer.putInt(scanline);
+        buffer.putInt(cycle);
+        buffer.put((byte) (odd_frame ? 1 : 0));
+        buffer.put((byte) (nmi ? 1 : 0));
+        buffer.put(frame_indices);
+    }
+
+    /**
+     * Restore the state of the PPU from the buffer
+     * the colors of the restored frame are rebuilt from its palette indices and copied to the screen buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        for (byte[] nametable : nametable_memory)
+            buffer.get(nametable);
+        for (byte[] patterntable : patterntable_memory)
+            buffer.get(patterntable);
+        buffer.get(palette_memory);
+        mask_register.loadState(buffer);
+        control_register.loadState(buffer);
+        status_register.loadState(buffer);
+        vram_addr.loadState(buffer);
+        tram_addr.loadState(buffer);
+        for (ObjectAttribute oam : oams)
+            oam.loadState(buffer);
+        for (ObjectAttribute visible_oam : visible_oams)
+            visible_oam.loadState(buffer);
+        for (int i = 0; i < 8; i++) {
+            sprite_shift_pattern_low[i] = buffer.getInt();
+            sprite_shift_pattern_high[i] = buffer.getInt();
+        }
+        frame_complete = buffer.get() != 0;
+        frame_count = buffer.getLong();
+        sprite_count = buffer.getInt();
+        address_latch = buffer.getInt();
+        ppu_data_buffer = buffer.getInt();
+        oam_addr = buffer.getInt();
+        fine_x = buffer.getInt();
+        bg_next_tile_id = buffer.getInt();
+        bg_next_tile_attrib = buffer.getInt();
+        bg_next_tile_lsb = buffer.getInt();
+        bg_next_tile_msb = buffer.getInt();
+        bg_shift_pattern_low = buffer.getInt();
+        bg_shift_pattern_high = buffer.getInt();
+        bg_shift_attrib_low = buffer.getInt();
+        bg_shift_attrib_high = buffer.getInt();
+        spriteZeroHitPossible = buffer.get() != 0;
+        spriteZeroBeingRendered = buffer.get() != 0;
+        scanline = buffer.getInt();
+        cycle = buffer.getInt();
+        odd_frame = buffer.get() != 0;
+        nmi = buffer.get() != 0;
+        buffer.get(frame_indices);
+        for (int position = 0; position < frame_indices.length; position++) {
+            int color_index = frame_indices[position];
+            writePixel(position, color_index < 0 ? 0x00000000 : system_palette[color_index]);
+        }
+        screen_buffer_tmp.rewind();
+        screen_buffer.clear();
+        screen_buffer.put(screen_buffer_tmp);
+        screen_buffer.flip();
+    }
+
     // ========================================================== Debug Methods ========================================================== //
 
     /**
@@ -880,13 +1063,13 @@ public class PPU_2C02 {
     }
 
     /**
-     * Write a given patternTable to an image rendered with the selected palette
+     * Write a given patternTable to an array of pixels rendered with the selected palette
      *
      * @param i         the pattern table index
      * @param paletteId the paletteId to be used
-     * @param dest      the image where to store the patternTable
+     * @param dest      the array where to store the patternTable (128x128 ARGB pixels)
      */
-    public void getPatternTable(int i, int paletteId, WritableImage dest) {
+    public void getPatternTable(int i, int paletteId, int[] dest) {
         //Create a temporary buffer because the pixels are not calculated in screen order
         //For each row of tiles starting at the top
         for (int tileX = 0; tileX < 16; tileX++) {
@@ -908,7 +1091,7 @@ public class PPU_2C02 {
                         tile_lsb >>= 1;
                         tile_msb >>= 1;
                         //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                        dest.getPixelWriter().setColor(((tileY << 3) | (7 - col)), ((tileX << 3) | row), getColorFromPalette(paletteId, pixel));
+                        dest[((tileX << 3) | row) * 128 + ((tileY << 3) | (7 - col))] = getColorFromPalette(paletteId, pixel);
                     }
                 }
             }
@@ -916,12 +1099,12 @@ public class PPU_2C02 {
     }
 
     /**
-     * Write a given nametable to an image
+     * Write a given nametable to an array of pixels
      *
      * @param i    the pattern table index
-     * @param dest the image where to store the nametable
+     * @param dest the array where to store the nametable (256x240 ARGB pixels)
      */
-    public void getNametable(int i, WritableImage dest) {
+    public void getNametable(int i, int[] dest) {
         //For each row of tiles starting at the top
         for (int y = 0; y < 30; y++) {
             //For each tile starting at the left
@@ -960,7 +1143,7 @@ public class PPU_2C02 {
                         tile_lsb = (tile_lsb << 1) & 0xFFFF;
                         tile_msb = (tile_msb << 1) & 0xFFFF;
                         //We populate the image by getting the right color from the palette using the palette and pixel IDs
-                        dest.getPixelWriter().setColor(((x << 3) | (col)), ((y << 3) | row), getColorFromPalette(pid, pixel));
+                        dest[((y << 3) | row) * 256 + ((x << 3) | (col))] = getColorFromPalette(pid, pixel);
                     }
                 }
             }
@@ -1,10 +1,12 @@
-package gui.lwjgui.windows;
-
-import javafx.scene.paint.Color;
+package core.ppu;
 
+/**
+ * This class represent a Tile of the Pattern Memory as displayed in the PPU Viewer
+ * the colors are stored as ARGB
+ */
 public class Tile {
 
-    public Color[] colors;
+    public int[] colors;
     public int tile = 0x00;
     public int addr = 0x0000;
     public int x = 0x00;
@@ -14,8 +16,8 @@ public class Tile {
 
     public Tile(boolean doubleHeight) {
         if (doubleHeight)
-            colors = new Color[128];
+            colors = new int[128];
         else
-            colors = new Color[64];
+            colors = new int[64];
     }
 }
@@ -1,9 +1,13 @@
 package core.ppu.registers;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represent the Control Register of the 2C02 PPU
  */
-public class ControlRegister {
+public class ControlRegister implements Saveable {
 
     private boolean nametable_x = false;
     private boolean nametable_y = false;
@@ -114,4 +118,24 @@ public class ControlRegister {
     public String toString() {
         return String.format("%02X ", get()) + "[" + Integer.toBinaryString(get()) + "]";
     }
+
+    /**
+     * Write the value of the Register to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) get());
+    }
+
+    /**
+     * Restore the value of the Register from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        set(buffer.get() & 0xFF);
+    }
 }
@@ -1,10 +1,14 @@
 package core.ppu.registers;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represent an abstraction of a PPU address used to render background
  * Credit for this goes to Loopy from the NESDev wiki
  */
-public class LoopyRegister {
+public class LoopyRegister implements Saveable {
 
     private int coarse_x = 0x00;
     private int coarse_y = 0x00;
@@ -135,4 +139,32 @@ public class LoopyRegister {
     public String toString() {
         return String.format("%04X ", get()) + "[" + Integer.toBinaryString(get()) + "]";
     }
+
+    /**
+     * Write the state of the Loopy Register to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.putInt(coarse_x);
+        buffer.putInt(coarse_y);
+        buffer.put((byte) (nametable_x ? 1 : 0));
+        buffer.put((byte) (nametable_y ? 1 : 0));
+        buffer.putInt(fine_y);
+    }
+
+    /**
+     * Restore the state of the Loopy Register from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        coarse_x = buffer.getInt();
+        coarse_y = buffer.getInt();
+        nametable_x = buffer.get() != 0;
+        nametable_y = buffer.get() != 0;
+        fine_y = buffer.getInt();
+    }
 }
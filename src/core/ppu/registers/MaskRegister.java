@@ -1,9 +1,13 @@
 package core.ppu.registers;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represent the Mask Register of the 2C02 PPU
  */
-public class MaskRegister {
+public class MaskRegister implements Saveable {
 
     private boolean grayscale = false;
     private boolean render_background_left = false;
@@ -97,4 +101,24 @@ public class MaskRegister {
     public String toString() {
         return String.format("%02X ", get()) + "[" + Integer.toBinaryString(get()) + "]";
     }
+
+    /**
+     * Write the value of the Register to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) get());
+    }
+
+    /**
+     * Restore the value of the Register from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        set(buffer.get() & 0xFF);
+    }
 }
@@ -1,10 +1,14 @@
 package core.ppu.registers;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represent on Object Attribute Entry
  * is basically represents a sprites
  */
-public class ObjectAttribute {
+public class ObjectAttribute implements Saveable {
 
     private int y = 0x00;
     private int id = 0x00;
@@ -114,4 +118,30 @@ public class ObjectAttribute {
     public void setX(int x) {
         this.x = x & 0xFF;
     }
+
+    /**
+     * Write the state of the Object Attribute to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) y);
+        buffer.put((byte) id);
+        buffer.put((byte) attribute);
+        buffer.put((byte) x);
+    }
+
+    /**
+     * Restore the state of the Object Attribute from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        y = buffer.get() & 0xFF;
+        id = buffer.get() & 0xFF;
+        attribute = buffer.get() & 0xFF;
+        x = buffer.get() & 0xFF;
+    }
 }
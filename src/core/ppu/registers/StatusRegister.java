@@ -1,9 +1,13 @@
 package core.ppu.registers;
 
+import core.Saveable;
+
+import java.nio.ByteBuffer;
+
 /**
  * This class represent the Status Register of the 2C02 PPU
  */
-public class StatusRegister {
+public class StatusRegister implements Saveable {
 
     private boolean sprite_overflow = false;
     private boolean sprite_zero_hit = false;
@@ -64,4 +68,24 @@ public class StatusRegister {
     public String toString() {
         return String.format("%02X ", get()) + "[" + Integer.toBinaryString(get()) + "]";
     }
+
+    /**
+     * Write the value of the Register to the buffer
+     *
+     * @param buffer the buffer to write to
+     */
+    @Override
+    public void saveState(ByteBuffer buffer) {
+        buffer.put((byte) get());
+    }
+
+    /**
+     * Restore the value of the Register from the buffer
+     *
+     * @param buffer the buffer to read from
+     */
+    @Override
+    public void loadState(ByteBuffer buffer) {
+        set(buffer.get() & 0xFF);
+    }
 }
@@ -1,6 +1,10 @@
 package gui.lwjgui;
 
+import core.Movie;
 import core.NES;
+import core.RewindBuffer;
+import core.RunAhead;
+import core.SaveState;
 import core.cartridge.Cartridge;
 import core.ppu.PPU_2C02;
 import exceptions.InvalidFileException;
@@ -19,9 +23,20 @@ import openGL.Quad;
 import openGL.filters.Pipeline;
 import openGL.shader.ShaderProgram;
 import openGL.Texture;
+import utils.AudioRingBuffer;
 import utils.Dialogs;
 import java.io.EOFException;
-
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_BACKSPACE;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_F5;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_F6;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_F7;
+import static org.lwjgl.glfw.GLFW.GLFW_KEY_TAB;
+import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
+import static org.lwjgl.glfw.GLFW.glfwGetKey;
 import static org.lwjgl.opengl.GL11.*;
 
 /**
@@ -30,19 +45,69 @@ import static org.lwjgl.opengl.GL11.*;
  */
 public class NEmuSContext implements Renderer {
 
+    //A NTSC frame last 89341.5 PPU cycles at 5.369318MHz
+    private static final long FRAME_DURATION = (long) (1000000000.0 * 89341.5 / 5369318.0);
+    private static final int AUDIO_BUFFER_SIZE = 4096;
+    private static final double MAX_RATE_DEVIATION = 0.005;
+    //In turbo mode only 1 frame out of TURBO_FRAME_PERIOD is presented
+    private static final int TURBO_FRAME_PERIOD = 8;
+    private static final int TURBO_KEY = GLFW_KEY_TAB;
+    //When the emulation is late, at most MAX_FRAME_SKIP frames in a row aren't presented
+    private static final int MAX_FRAME_SKIP = 4;
+    private static final int SAVE_STATE_KEY = GLFW_KEY_F5;
+    private static final int NEXT_SLOT_KEY = GLFW_KEY_F6;
+    private static final int LOAD_STATE_KEY = GLFW_KEY_F7;
+    //The rewind buffer keeps a snapshot every frame, 64Mb are enough for about 60s
+    private static final int REWIND_KEY = GLFW_KEY_BACKSPACE;
+    private static final long REWIND_MEMORY_BUDGET = 64L * 1024 * 1024;
+    private static final int REWIND_INTERVAL = 1;
+
     private final NES nes;
+    private final long window;
     private final InputMapper inputMapper;
     private final Fbo fbo;
     private final Texture screen_texture;
     private final Quad screen_quad;
     private final AudioContext ac;
+    private final AudioRingBuffer audio_buffer;
+    private final Thread emulation_thread;
+    private final RewindBuffer rewind_buffer;
+    private final RunAhead run_ahead;
+    //The lock is fair so the renderer can't be starved by the emulation thread in turbo mode
+    private final ReentrantLock emulation_lock = new ReentrantLock(true);
 
     private ShaderProgram default_shader;
     private Pipeline pipeline;
     private String requested_rom;
     private boolean load_rom_requested = false;
     private boolean reset_requested = false;
-    private boolean emulation_running = false;
+    private boolean save_state_requested = false;
+    private boolean load_state_requested = false;
+    private String requested_movie;
+    private boolean record_movie_requested = false;
+    private boolean record_from_power_on = false;
+    private boolean play_movie_requested = false;
+    private boolean stop_movie_requested = false;
+    private volatile Movie movie = null;
+    private boolean movie_recording = false;
+    private String movie_file;
+    private final boolean[] state_keys_pressed = new boolean[3];
+    private int state_slot = 0;
+    private int displayed_slot = -1;
+    private int displayed_run_ahead = -1;
+    private long displayed_overhead = -1;
+    private volatile boolean emulation_running = false;
+    private volatile boolean thread_running = true;
+    private volatile boolean frame_ready = false;
+    private volatile boolean turbo_toggled = false;
+    private volatile boolean turbo_held = false;
+    private volatile boolean turbo_muted = false;
+    private volatile boolean rewind_held = false;
+    private int displayed_rewind = -1;
+    private volatile double emulation_speed = 1.0;
+    private int displayed_speed = -1;
+    private double sample_rate;
+    private float last_sample = 0;
     private boolean redraw = false;
     private boolean started = false;
 
@@ -53,6 +118,7 @@ public class NEmuSContext implements Renderer {
      */
     NEmuSContext(long windowHandle) {
         nes = new NES();
+        window = windowHandle;
         inputMapper = new InputMapper(windowHandle);
 
         //We select the 3rd Mixer
@@ -77,27 +143,165 @@ public class NEmuSContext implements Renderer {
             System.exit(-1);
         }
 
-        //We initialize the Audio Engine
-        nes.setSampleFreq((int) ac.getSampleRate());
+        //We initialize the Audio Engine, it drains the samples produced by the emulation thread
+        sample_rate = ac.getSampleRate();
+        audio_buffer = new AudioRingBuffer(AUDIO_BUFFER_SIZE);
+        nes.setSampleFreq(sample_rate);
+        nes.setAudioListener(sample -> {
+            if (!turbo_muted || !isTurboActive())
+                audio_buffer.offer((float) sample);
+        });
         Function function = new Function(new WaveShaper(ac)) {
             public float calculate() {
-                if (emulation_running) {
-                    boolean sample_ready = false;
-                    while (!sample_ready)
-                        sample_ready = nes.clock();
-                }
-                return emulation_running ? (float) nes.final_audio_sample : 0;
+                if (!emulation_running || (turbo_muted && isTurboActive()))
+                    return 0;
+                //On underflow the last sample is repeated to avoid clicks
+                last_sample = audio_buffer.poll(last_sample);
+                return last_sample;
             }
         };
 
         ac.out.addInput(function);
         ac.start();
+
+        //The snapshots are compressed on a background thread
+        rewind_buffer = new RewindBuffer(REWIND_MEMORY_BUDGET, REWIND_INTERVAL);
+        run_ahead = new RunAhead();
+
+        //The emulation runs on its own thread
+        emulation_thread = new Thread(this::emulationLoop, "Emulation Thread");
+        emulation_thread.setDaemon(true);
+        emulation_thread.start();
+    }
+
+    /**
+     * The emulation loop, computing one frame every NES frame duration
+     * the audio and the video are both produced at this pace
+     * and the audio sample rate is slightly adjusted to keep the audio buffer half full
+     * in turbo mode the frames are computed as fast as possible and most of them aren't presented
+     * the frames that won't be presented are computed without pixel output
+     * while the rewind key is held, the snapshots are restored one per frame instead of running the emulation
+     * the presented frames are computed with run-ahead if enabled
+     */
+    private void emulationLoop() {
+        long next_frame = System.nanoTime();
+        long last_frame = next_frame;
+        double frame_duration = FRAME_DURATION;
+        int frame_index = 0;
+        int skipped_frames = 0;
+        boolean late = false;
+        while (thread_running) {
+            if (emulation_running) {
+                //A frame is skipped in turbo mode or if we are late
+                boolean present;
+                //The rewind is disabled while a movie is recorded or played
+                boolean rewinding = rewind_held && movie == null;
+                if (rewinding)
+                    present = true;
+                else if (isTurboActive())
+                    present = frame_index % TURBO_FRAME_PERIOD == 0;
+                else
+                    present = !late || skipped_frames >= MAX_FRAME_SKIP;
+                skipped_frames = present ? 0 : skipped_frames + 1;
+                frame_index++;
+                emulation_lock.lock();
+                try {
+                    if (emulation_running && rewinding) {
+                        present = rewind_buffer.rewind(nes);
+                    } else if (emulation_running) {
+                        updateMovie();
+                        run_ahead.runFrame(nes, present);
+                        rewind_buffer.frameCompleted(nes);
+                    }
+                    //The emulation speed is smoothed over the last frames
+                    long now = System.nanoTime();
+                    frame_duration += ((now - last_frame) - frame_duration) * 0.05;
+                    last_frame = now;
+                    emulation_speed = FRAME_DURATION / frame_duration;
+                    adjustAudioRate();
+                } finally {
+                    emulation_lock.unlock();
+                }
+                if (present)
+                    frame_ready = true;
+            } else {
+                last_frame = System.nanoTime();
+            }
+            //In turbo mode we directly compute the next frame
+            if (isTurboActive() && !rewind_held) {
+                next_frame = System.nanoTime();
+                late = false;
+                continue;
+            }
+            //We wait for the next frame, if we are too late we don't try to catch up
+            next_frame += FRAME_DURATION;
+            long wait = next_frame - System.nanoTime();
+            late = wait < 0;
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+            else if (wait < -FRAME_DURATION)
+                next_frame = System.nanoTime();
+        }
+    }
+
+    /**
+     * Record or play the inputs of the frame about to be computed if a movie is active
+     * must be called with the emulation lock held
+     */
+    private void updateMovie() {
+        if (movie == null)
+            return;
+        if (movie_recording) {
+            movie.recordFrame(nes);
+        } else if (!movie.playFrame(nes)) {
+            movie = null;
+            nes.setBatterySaveEnabled(true);
+        }
+    }
+
+    /**
+     * Stop the current movie, a recorded movie is written to its file
+     * must be called with the emulation lock held
+     */
+    private void stopMovie() {
+        if (movie == null)
+            return;
+        Movie stopped = movie;
+        movie = null;
+        nes.setBatterySaveEnabled(true);
+        if (movie_recording) {
+            String file = movie_file;
+            try {
+                stopped.save(file);
+            } catch (IOException e) {
+                Platform.runLater(() -> Dialogs.showException("Movie Error", "An error occur while saving the movie " + file, e));
+            }
+        }
+    }
+
+    /**
+     * Adjust the sample rate of the NES according to the audio buffer filling
+     * when the buffer is more than half full, less samples are produced and vice versa
+     * the deviation is small enough to not be heard
+     * in turbo mode the sample rate is divided by the emulation speed (the audio is decimated)
+     * must be called with the emulation lock held
+     */
+    private void adjustAudioRate() {
+        double deviation = (audio_buffer.fillRatio() - 0.5) * 2 * MAX_RATE_DEVIATION;
+        double speed = isTurboActive() ? Math.max(emulation_speed, 1.0) : 1.0;
+        nes.adjustSampleFreq(sample_rate / speed * (1 - deviation));
     }
 
     /**
      * Clean up the memory, kill the windows and stop the audio context
      */
     void cleanUp() {
+        thread_running = false;
+        try {
+            emulation_thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
         pipeline.cleanUp();
         default_shader.cleanUp();
         screen_texture.cleanUp();
@@ -110,6 +314,7 @@ public class NEmuSContext implements Renderer {
      */
     private void initEmulator(String rom) throws UnsupportedMapperException, EOFException, InvalidFileException {
         Cartridge cart = new Cartridge(rom);
+        cart.setErrorListener(e -> Platform.runLater(() -> Dialogs.showException("ROM Save Error", "An error occur during ROM Saving", e)));
         //Load the game into the NES
         nes.insertCartridge(cart);
         //Reset the CPU to its default state
@@ -161,40 +366,158 @@ public class NEmuSContext implements Renderer {
         //If a ROM load has been requested
         if (load_rom_requested) {
             load_rom_requested = false;
-            synchronized (nes) {
+            emulation_lock.lock();
+            try {
                 emulation_running = false;
+                stopMovie();
                 try {
                     initEmulator(requested_rom);
+                    rewind_buffer.clear();
                     emulation_running = true;
                     started = true;
                 } catch (EOFException | InvalidFileException | UnsupportedMapperException e) {
                     Platform.runLater(() -> Dialogs.showException("ROM Loading Error", "An error occur during ROM Loading", e));
                 }
+            } finally {
+                emulation_lock.unlock();
             }
         }
 
         //If a Reset has been requested
         if (reset_requested) {
             reset_requested = false;
-            boolean running = emulation_running;
-            emulation_running = false;
-            nes.reset();
-            emulation_running = running;
+            emulation_lock.lock();
+            try {
+                stopMovie();
+                nes.reset();
+            } finally {
+                emulation_lock.unlock();
+            }
         }
 
-        //If we need to render the screen
-        if ((emulation_running && nes.getPpu().frame_complete) || redraw) {
-            nes.getPpu().frame_complete = false;
-            glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
-            InputHandling();
-            screen_texture.load(nes.getPpu().getScreenBuffer());
-            if (redraw)
-                redraw = false;
+        //If a savestate has been requested
+        if (save_state_requested || load_state_requested) {
+            emulation_lock.lock();
+            try {
+                if (save_state_requested) {
+                    SaveState.saveSlot(nes, state_slot);
+                } else {
+                    stopMovie();
+                    SaveState.loadSlot(nes, state_slot);
+                }
+                redraw = true;
+            } catch (IOException | InvalidFileException e) {
+                Platform.runLater(() -> Dialogs.showException("Savestate Error", "An error occur with the savestate of slot " + state_slot, e));
+            } finally {
+                save_state_requested = false;
+                load_state_requested = false;
+                emulation_lock.unlock();
+            }
+        }
+
+        //If a movie action has been requested
+        if (record_movie_requested || play_movie_requested || stop_movie_requested) {
+            emulation_lock.lock();
+            try {
+                stopMovie();
+                if (record_movie_requested) {
+                    movie = record_from_power_on ? Movie.recordFromPowerOn(nes) : Movie.recordFromState(nes);
+                    movie_recording = true;
+                    movie_file = requested_movie;
+                } else if (play_movie_requested) {
+                    Movie loaded = Movie.load(requested_movie);
+                    loaded.startPlayback(nes);
+                    //The real save of the game mustn't be overwritten by the movie
+                    nes.setBatterySaveEnabled(false);
+                    movie_recording = false;
+                    movie = loaded;
+                }
+                redraw = true;
+            } catch (IOException | InvalidFileException e) {
+                Platform.runLater(() -> Dialogs.showException("Movie Error", "An error occur while loading the movie " + requested_movie, e));
+            } finally {
+                record_movie_requested = false;
+                play_movie_requested = false;
+                stop_movie_requested = false;
+                emulation_lock.unlock();
+            }
+        }
+
+        //The turbo key is held to run in turbo mode
+        turbo_held = glfwGetKey(window, TURBO_KEY) == GLFW_PRESS;
+        //The rewind key is held to rewind
+        rewind_held = glfwGetKey(window, REWIND_KEY) == GLFW_PRESS;
+        //The savestate keys are triggered when pressed
+        if (isKeyPressed(SAVE_STATE_KEY, 0))
+            fireSaveStateEvent();
+        if (isKeyPressed(NEXT_SLOT_KEY, 1))
+            nextStateSlot();
+        if (isKeyPressed(LOAD_STATE_KEY, 2))
+            fireLoadStateEvent();
+        if (started)
+            showEmulationSpeed();
+
+        //If we need to render the screen (the screen buffer is only touched by the emulation thread inside a frame)
+        emulation_lock.lock();
+        try {
+            if ((emulation_running && frame_ready) || redraw) {
+                frame_ready = false;
+                nes.getPpu().frame_complete = false;
+                glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+                InputHandling();
+                screen_texture.load(nes.getPpu().getScreenBuffer());
+                if (redraw)
+                    redraw = false;
+            }
+        } finally {
+            emulation_lock.unlock();
         }
         if (started)
             renderGameScreen();
     }
 
+    /**
+     * Display the emulation speed and the savestate slot when they change
+     * while rewinding the statistics of the rewind buffer are displayed instead
+     */
+    private void showEmulationSpeed() {
+        if (rewind_held) {
+            int buffered = rewind_buffer.getBufferedFrames();
+            if (buffered != displayed_rewind) {
+                displayed_rewind = buffered;
+                displayed_speed = -1;
+                NEmuSUnified.getInstance().showRewindStatistics(rewind_buffer.getStatistics());
+            }
+            return;
+        }
+        displayed_rewind = -1;
+        int speed = emulation_running ? (int) Math.round(emulation_speed * 100) : 0;
+        int frames = run_ahead.getFrames();
+        //The run-ahead overhead is displayed in tenth of milliseconds
+        long overhead = frames == 0 ? 0 : run_ahead.getOverhead() / 100000;
+        if (speed != displayed_speed || state_slot != displayed_slot || frames != displayed_run_ahead || overhead != displayed_overhead) {
+            displayed_speed = speed;
+            displayed_slot = state_slot;
+            displayed_run_ahead = frames;
+            displayed_overhead = overhead;
+            NEmuSUnified.getInstance().showEmulationSpeed(speed, state_slot, frames, overhead / 10.0);
+        }
+    }
+
+    /**
+     * Return whether or not a key has just been pressed
+     *
+     * @param key   the GLFW key to check
+     * @param index the index of the key in the pressed keys array
+     * @return has the key been pressed since the last check
+     */
+    private boolean isKeyPressed(int key, int index) {
+        boolean pressed = glfwGetKey(window, key) == GLFW_PRESS;
+        boolean just_pressed = pressed && !state_keys_pressed[index];
+        state_keys_pressed[index] = pressed;
+        return just_pressed;
+    }
+
     /**
      * Render the Game Window
      * the Quad is centered and scale to fit the window without stretching
@@ -228,6 +551,62 @@ public class NEmuSContext implements Renderer {
             reset_requested = true;
     }
 
+    /**
+     * Notify the emulator that it needs to save the current slot on the next game loop
+     */
+    void fireSaveStateEvent() {
+        if (nes.getCartridge() != null)
+            save_state_requested = true;
+    }
+
+    /**
+     * Notify the emulator that it needs to load the current slot on the next game loop
+     */
+    void fireLoadStateEvent() {
+        if (nes.getCartridge() != null)
+            load_state_requested = true;
+    }
+
+    /**
+     * Notify the emulator that it needs to start recording a movie on the next game loop
+     *
+     * @param filename    the file the movie will be written to when stopped
+     * @param fromPowerOn should the console be powered on before recording, otherwise the movie starts from the current state
+     */
+    void fireRecordMovieEvent(String filename, boolean fromPowerOn) {
+        if (nes.getCartridge() != null) {
+            requested_movie = filename;
+            record_from_power_on = fromPowerOn;
+            record_movie_requested = true;
+        }
+    }
+
+    /**
+     * Notify the emulator that it needs to play a movie on the next game loop
+     *
+     * @param filename the file of the movie
+     */
+    void firePlayMovieEvent(String filename) {
+        if (nes.getCartridge() != null) {
+            requested_movie = filename;
+            play_movie_requested = true;
+        }
+    }
+
+    /**
+     * Notify the emulator that it needs to stop the current movie on the next game loop
+     */
+    void fireStopMovieEvent() {
+        stop_movie_requested = true;
+    }
+
+    /**
+     * Select the next savestate slot
+     */
+    void nextStateSlot() {
+        state_slot = (state_slot + 1) % SaveState.NB_SLOTS;
+    }
+
     /**
      * Return the current post processing pipeline
      *
@@ -252,13 +631,19 @@ public class NEmuSContext implements Renderer {
      */
     public void frameStepEvent() {
         if (!emulation_running && started) {
-            do {
-                nes.clock();
-            } while (!nes.getPpu().frame_complete);
-            do {
-                nes.clock();
-            } while (nes.getCpu().complete());
-            nes.getPpu().frame_complete = false;
+            emulation_lock.lock();
+            try {
+                //Stepping would desynchronize the movie from the frames
+                stopMovie();
+                nes.getPpu().setOutputEnabled(true);
+                nes.runFrame();
+                //We stop once the next Instruction has been executed
+                long instruction = nes.getCpu().getInstructionCount();
+                nes.runUntil(() -> nes.getCpu().getInstructionCount() > instruction);
+                nes.getPpu().frame_complete = false;
+            } finally {
+                emulation_lock.unlock();
+            }
             redraw = true;
         }
     }
@@ -268,19 +653,65 @@ public class NEmuSContext implements Renderer {
      */
     public void cpuStepEvent() {
         if (!emulation_running && started) {
-            do {
-                nes.clock();
-            } while (!nes.getCpu().complete());
-            do {
-                nes.clock();
-            } while (nes.getCpu().complete());
-            if (nes.getPpu().frame_complete) {
-                nes.getPpu().frame_complete = false;
+            emulation_lock.lock();
+            try {
+                //Stepping would desynchronize the movie from the frames
+                stopMovie();
+                nes.getPpu().setOutputEnabled(true);
+                long instruction = nes.getCpu().getInstructionCount();
+                nes.runUntil(() -> nes.getCpu().getInstructionCount() > instruction);
+                if (nes.getPpu().frame_complete) {
+                    nes.getPpu().frame_complete = false;
+                }
+            } finally {
+                emulation_lock.unlock();
             }
         }
         redraw = true;
     }
 
+    /**
+     * Toggle the turbo mode, the emulation runs as fast as possible
+     */
+    public void toggleTurbo() {
+        turbo_toggled = !turbo_toggled;
+    }
+
+    /**
+     * Select the next number of frames to run ahead (0 to RunAhead.MAX_FRAMES)
+     * running ahead hides the input lag of the games at the cost of N extra frames computed every frame
+     */
+    public void nextRunAhead() {
+        run_ahead.setFrames((run_ahead.getFrames() + 1) % (RunAhead.MAX_FRAMES + 1));
+    }
+
+    /**
+     * Return whether or not the turbo mode is active (toggled or turbo key held)
+     *
+     * @return is the turbo mode active
+     */
+    public boolean isTurboActive() {
+        return turbo_toggled || turbo_held;
+    }
+
+    /**
+     * Mute the audio in turbo mode instead of decimating it
+     *
+     * @param muted should the audio be muted in turbo mode
+     */
+    public void fireTurboMuteEvent(boolean muted) {
+        turbo_muted = muted;
+    }
+
+    /**
+     * Return whether or not the audio is muted in turbo mode
+     *
+     * @return is the audio muted in turbo mode
+     */
+    public boolean isTurboMuted() {
+        return turbo_muted;
+    }
+
     /**
      * Return whether or not the emulation is currently running
      *
@@ -73,6 +73,45 @@ public class NEmuSUnified extends LWJGUIApplication {
         MenuItem reset = new MenuItem("Reset");
         reset.setOnAction(actionEvent -> emulator.fireResetEvent());
 
+        MenuItem turbo = new MenuItem("Turbo On/Off (hold Tab)");
+        turbo.setOnAction(actionEvent -> emulator.toggleTurbo());
+
+        MenuItem runAhead = new MenuItem("Next Run-Ahead (0 to 3 frames)");
+        runAhead.setOnAction(actionEvent -> emulator.nextRunAhead());
+
+        MenuItem saveState = new MenuItem("Save State (F5)");
+        saveState.setOnAction(actionEvent -> emulator.fireSaveStateEvent());
+
+        MenuItem loadState = new MenuItem("Load State (F7)");
+        loadState.setOnAction(actionEvent -> emulator.fireLoadStateEvent());
+
+        MenuItem nextSlot = new MenuItem("Next State Slot (F6)");
+        nextSlot.setOnAction(actionEvent -> emulator.nextStateSlot());
+
+        MenuItem recordMovie = new MenuItem("Record Movie (Power-On)");
+        recordMovie.setOnAction(actionEvent -> Platform.runLater(() -> {
+            File file = chooseMovieFile(true);
+            if (file != null)
+                emulator.fireRecordMovieEvent(file.getAbsolutePath(), true);
+        }));
+
+        MenuItem recordMovieFromState = new MenuItem("Record Movie (Current State)");
+        recordMovieFromState.setOnAction(actionEvent -> Platform.runLater(() -> {
+            File file = chooseMovieFile(true);
+            if (file != null)
+                emulator.fireRecordMovieEvent(file.getAbsolutePath(), false);
+        }));
+
+        MenuItem playMovie = new MenuItem("Play Movie");
+        playMovie.setOnAction(actionEvent -> Platform.runLater(() -> {
+            File file = chooseMovieFile(false);
+            if (file != null)
+                emulator.firePlayMovieEvent(file.getAbsolutePath());
+        }));
+
+        MenuItem stopMovie = new MenuItem("Stop Movie");
+        stopMovie.setOnAction(actionEvent -> emulator.fireStopMovieEvent());
+
         MenuItem audio = new MenuItem("Audio");
         audio.setOnAction(actionEvent -> {
             if (AudioSettings.hasInstance()) {
@@ -170,8 +209,20 @@ public class NEmuSUnified extends LWJGUIApplication {
         Menu emulation = new Menu("Emulation");
         emulation.getItems().add(pause);
         emulation.getItems().add(reset);
+        emulation.getItems().add(turbo);
+        emulation.getItems().add(runAhead);
+        emulation.getItems().add(saveState);
+        emulation.getItems().add(loadState);
+        emulation.getItems().add(nextSlot);
         menu.getItems().add(emulation);
 
+        Menu movie = new Menu("Movie");
+        movie.getItems().add(recordMovie);
+        movie.getItems().add(recordMovieFromState);
+        movie.getItems().add(playMovie);
+        movie.getItems().add(stopMovie);
+        menu.getItems().add(movie);
+
         Menu settings = new Menu("Settings");
         settings.getItems().add(audio);
         settings.getItems().add(controller);
@@ -200,6 +251,44 @@ public class NEmuSUnified extends LWJGUIApplication {
         });
     }
 
+    /**
+     * Open a FileChooser to select a movie file
+     * must be called from the JavaFX thread
+     *
+     * @param save is the file chosen to be written
+     * @return the chosen file, null if canceled
+     */
+    private File chooseMovieFile(boolean save) {
+        FileChooser movieChooser = new FileChooser();
+        movieChooser.setInitialDirectory(new File(currentDirectory));
+        movieChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("NEmuS movie", "*.nmv"));
+        return save ? movieChooser.showSaveDialog(null) : movieChooser.showOpenDialog(null);
+    }
+
+    /**
+     * Display the emulation speed, the savestate slot and the run-ahead in the window title
+     *
+     * @param speed    the emulation speed in percent of the real NES speed
+     * @param slot     the selected savestate slot
+     * @param runAhead the number of frames to run ahead (0 if disabled)
+     * @param overhead the extra time spent running ahead every frame in milliseconds
+     */
+    public void showEmulationSpeed(int speed, int slot, int runAhead, double overhead) {
+        String title = "NEmuS Unified - " + speed + "% - Slot " + slot;
+        if (runAhead > 0)
+            title += " - Run-Ahead " + runAhead + " (+" + overhead + "ms)";
+        window.setTitle(title);
+    }
+
+    /**
+     * Display the statistics of the rewind buffer in the window title
+     *
+     * @param statistics the statistics of the rewind buffer
+     */
+    public void showRewindStatistics(String statistics) {
+        window.setTitle("NEmuS Unified - Rewind - " + statistics);
+    }
+
     /**
      * Return the current emulator context
      *
@@ -71,6 +71,7 @@ public class APUViewer extends Application implements Initializable {
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         instance = this;
+        emulator.getNes().getApu().enableVisualizer(true);
         pulse_1_canvas.getGraphicsContext2D().fillRect(0, 0, pulse_1_canvas.getWidth(), pulse_1_canvas.getHeight());
         pulse_2_canvas.getGraphicsContext2D().fillRect(0, 0, pulse_2_canvas.getWidth(), pulse_2_canvas.getHeight());
         triangle_canvas.getGraphicsContext2D().fillRect(0, 0, triangle_canvas.getWidth(), triangle_canvas.getHeight());
@@ -82,7 +83,10 @@ public class APUViewer extends Application implements Initializable {
 
     @Override
     public void start(Stage stage) throws Exception {
-        stage.setOnCloseRequest(windowEvent -> instance = null);
+        stage.setOnCloseRequest(windowEvent -> {
+            instance = null;
+            emulator.getNes().getApu().enableVisualizer(false);
+        });
         Scene scene = new Scene(FXMLLoader.load(getClass().getResource("APUViewer.fxml")));
         stage.setScene(scene);
         stage.setTitle("APU Viewer");
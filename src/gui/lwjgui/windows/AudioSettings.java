@@ -48,6 +48,8 @@ public class AudioSettings extends Application implements Initializable {
     private CheckBox dmcCheckbox;
     @FXML
     private CheckBox linearCheck;
+    @FXML
+    private CheckBox turboMuteCheck;
 
     /**
      * Create a new instance of AudioSettings
@@ -90,6 +92,7 @@ public class AudioSettings extends Application implements Initializable {
         noiseCheckbox.setSelected(emulator.isNoiseRendered());
         dmcCheckbox.setSelected(emulator.isDMCRendered());
         linearCheck.setSelected(emulator.isLinear());
+        turboMuteCheck.setSelected(emulator.isTurboMuted());
     }
 
     @Override
@@ -130,6 +133,14 @@ public class AudioSettings extends Application implements Initializable {
         emulator.linearEvent(linearCheck.isSelected());
     }
 
+    /**
+     * Will trigger a turbo mute event to the Emulator
+     */
+    @FXML
+    public void fireTurboMuteEvent() {
+        emulator.fireTurboMuteEvent(turboMuteCheck.isSelected());
+    }
+
     /**
      * Will trigger a pulse 1 channel enable event to the Emulator
      */
@@ -1,6 +1,7 @@
 package gui.lwjgui.windows;
 
 import core.NES;
+import core.ppu.Tile;
 import core.ppu.registers.ObjectAttribute;
 import gui.lwjgui.NEmuSUnified;
 import gui.lwjgui.NEmuSContext;
@@ -15,6 +16,7 @@ import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
 import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.HBox;
@@ -42,6 +44,8 @@ public class PPUViewer extends Application implements Initializable {
     private final Image nametable4_render_target;
     private final Image patterntable1_render_target;
     private final Image patterntable2_render_target;
+    private final int[] nametable_pixels;
+    private final int[] patterntable_pixels;
     private int selected_palette = 0x00;
 
     @FXML
@@ -100,6 +104,8 @@ public class PPUViewer extends Application implements Initializable {
         nametable2_render_target = new WritableImage(256, 240);
         nametable3_render_target = new WritableImage(256, 240);
         nametable4_render_target = new WritableImage(256, 240);
+        nametable_pixels = new int[256 * 240];
+        patterntable_pixels = new int[128 * 128];
     }
 
     /**
@@ -179,8 +185,8 @@ public class PPUViewer extends Application implements Initializable {
                     );
                     tooltip_canvas.setHeight(64);
                     int x = 0, y = 0;
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -209,8 +215,8 @@ public class PPUViewer extends Application implements Initializable {
                     );
                     tooltip_canvas.setHeight(64);
                     int x = 0, y = 0;
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -248,8 +254,8 @@ public class PPUViewer extends Application implements Initializable {
                     );
                     int x = 0, y = 0;
                     tooltip_canvas.setHeight((nes.getPpu().cpuRead(0, true) & 0x20) == 0x20 ? 128 : 64);
-                    for (Color c : tile.colors) {
-                        tooltip_canvas.getGraphicsContext2D().setFill(c);
+                    for (int c : tile.colors) {
+                        tooltip_canvas.getGraphicsContext2D().setFill(toColor(c));
                         tooltip_canvas.getGraphicsContext2D().fillRect(x * 8, y * 8, 8, 8);
                         x++;
                         if (x >= 8) {
@@ -279,6 +285,38 @@ public class PPUViewer extends Application implements Initializable {
         instance.stage = stage;
     }
 
+    /**
+     * Render a nametable into an image
+     *
+     * @param i    the nametable index
+     * @param dest the image to render to
+     */
+    private void drawNametable(int i, WritableImage dest) {
+        nes.getPpu().getNametable(i, nametable_pixels);
+        dest.getPixelWriter().setPixels(0, 0, 256, 240, PixelFormat.getIntArgbInstance(), nametable_pixels, 0, 256);
+    }
+
+    /**
+     * Render a pattern table into an image using the selected palette
+     *
+     * @param i    the pattern table index
+     * @param dest the image to render to
+     */
+    private void drawPatternTable(int i, WritableImage dest) {
+        nes.getPpu().getPatternTable(i, selected_palette, patterntable_pixels);
+        dest.getPixelWriter().setPixels(0, 0, 128, 128, PixelFormat.getIntArgbInstance(), patterntable_pixels, 0, 128);
+    }
+
+    /**
+     * Convert an ARGB color computed by the PPU to a JavaFX Color
+     *
+     * @param argb the color to convert
+     * @return the corresponding Color
+     */
+    private static Color toColor(int argb) {
+        return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+    }
+
     /**
      * The rendering loop of the window
      * run until the window is closed
@@ -290,10 +328,10 @@ public class PPUViewer extends Application implements Initializable {
                     //If the current tab is the nametables one
                     if (nt_tab.isSelected()) {
                         //We retrieve the nametables and draw them
-                        nes.getPpu().getNametable(0, (WritableImage) nametable1_render_target);
-                        nes.getPpu().getNametable(1, (WritableImage) nametable2_render_target);
-                        nes.getPpu().getNametable(2, (WritableImage) nametable3_render_target);
-                        nes.getPpu().getNametable(3, (WritableImage) nametable4_render_target);
+                        drawNametable(0, (WritableImage) nametable1_render_target);
+                        drawNametable(1, (WritableImage) nametable2_render_target);
+                        drawNametable(2, (WritableImage) nametable3_render_target);
+                        drawNametable(3, (WritableImage) nametable4_render_target);
                         nt_1_canvas.getGraphicsContext2D().drawImage(nametable1_render_target, 0, 0);
                         nt_2_canvas.getGraphicsContext2D().drawImage(nametable2_render_target, 0, 0);
                         nt_3_canvas.getGraphicsContext2D().drawImage(nametable3_render_target, 0, 0);
@@ -301,8 +339,8 @@ public class PPUViewer extends Application implements Initializable {
                     //If the selected tab is the pattern tables one
                     } else if (pt_tab.isSelected()) {
                         //We retrieve the pattern tables and draw them
-                        nes.getPpu().getPatternTable(0, selected_palette, (WritableImage) patterntable1_render_target);
-                        nes.getPpu().getPatternTable(1, selected_palette, (WritableImage) patterntable2_render_target);
+                        drawPatternTable(0, (WritableImage) patterntable1_render_target);
+                        drawPatternTable(1, (WritableImage) patterntable2_render_target);
                         pt_1_canvas.getGraphicsContext2D().drawImage(patterntable1_render_target, 0, 0, 256, 256);
                         pt_2_canvas.getGraphicsContext2D().drawImage(patterntable2_render_target, 0, 0, 256, 256);
 
@@ -312,7 +350,7 @@ public class PPUViewer extends Application implements Initializable {
                             GraphicsContext g = palette_images[i].getGraphicsContext2D();
                             //We draw each color
                             for (int j = 0; j < 4; j++) {
-                                g.setFill(nes.getPpu().getColorFromPalette(i, j));
+                                g.setFill(toColor(nes.getPpu().getColorFromPalette(i, j)));
                                 g.fillRect((j & 1) == 0 ? 0 : palette_images[i].getWidth()/2, (j & 2) == 0 ? 0 : palette_images[i].getHeight()/2, palette_images[i].getWidth()/2, palette_images[i].getHeight()/2);
                             }
                             //If this is the selected palette, we highlight it
@@ -350,9 +388,9 @@ public class PPUViewer extends Application implements Initializable {
 
                                     for (int row = 0; row < 8; row++) {
                                         for (int col = 0; col < 8; col++) {
-                                            g.setFill(tile.colors[col | (row << 3)]);
+                                            g.setFill(toColor(tile.colors[col | (row << 3)]));
                                             g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 5) | (row << 2), 4, 4);
-                                            preview.setFill(tile.colors[col | (row << 3)]);
+                                            preview.setFill(toColor(tile.colors[col | (row << 3)]));
                                             preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
                                         }
                                     }
@@ -384,9 +422,9 @@ public class PPUViewer extends Application implements Initializable {
                                     Tile tile = nes.getPpu().getOamTile8x16(i);
                                     for (int row = 0; row < 16; row++) {
                                         for (int col = 0; col < 8; col++) {
-                                            g.setFill(tile.colors[col | (row << 3)]);
+                                            g.setFill(toColor(tile.colors[col | (row << 3)]));
                                             g.fillRect(((i & 0x7) << 5) | (col << 2), ((i >> 3) << 6) | (row << 2), 4, 4);
-                                            preview.setFill(tile.colors[col | (row << 3)]);
+                                            preview.setFill(toColor(tile.colors[col | (row << 3)]));
                                             preview.fillRect(entry.getX() + col, entry.getY() + row, 1, 1);
                                         }
                                     }
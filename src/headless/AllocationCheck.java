@@ -0,0 +1,117 @@
+package headless;
+
+import core.NES;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class checks that the emulation doesn't allocate anything once warmed up
+ * every ROM is run for some frames, then the bytes allocated by the thread over the following frames are measured
+ * (CPU and Bus read/write path, PPU, APU and events), the result must be 0 bytes per frame
+ * in instruction mode and in tick by tick mode (up to 1Kb for the whole run is tolerated)
+ */
+public class AllocationCheck {
+
+    private static final int DEFAULT_WARMUP = 300;
+    private static final int DEFAULT_FRAMES = 600;
+    //A few hundred bytes are sometimes allocated once by the JVM itself (compilation, deoptimization), whatever the number of frames
+    private static final int TOLERANCE = 1024;
+
+    //NROM, MMC1 and MMC3 demos and a stress test
+    private static final String[] DEFAULT_ROMS = {
+            "roms/test/others/RasterDemo.NES",
+            "roms/test/others/8bitpeoples_-_deadline_console_invitro.nes",
+            "roms/test/others/BladeBuster.nes",
+            "roms/test/others/stress/NEStress.NES"
+    };
+
+    private final int warmup_frames;
+    private final int nb_frames;
+
+    /**
+     * Create a new check
+     *
+     * @param warmup the number of frames run before measuring
+     * @param frames the number of frames measured
+     */
+    public AllocationCheck(int warmup, int frames) {
+        this.warmup_frames = warmup;
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int warmup = DEFAULT_WARMUP;
+        int frames = DEFAULT_FRAMES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (warmup < 0 || frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : AllocationCheck [rom...] [--warmup <n>] [--frames <n>]");
+            System.exit(2);
+        }
+        if (roms.isEmpty())
+            roms.addAll(Arrays.asList(DEFAULT_ROMS));
+        if (MacroBenchmark.allocatedBytes() < 0) {
+            System.err.println("Error : the JVM can't measure the allocations of a thread");
+            System.exit(2);
+        }
+
+        AllocationCheck check = new AllocationCheck(warmup, frames);
+        int failures = 0;
+        try {
+            for (String rom : roms) {
+                failures += check.check(rom, false);
+                failures += check.check(rom, true);
+            }
+        } catch (InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Measure the bytes allocated per frame by a ROM after its warm-up
+     * the cost of the measure itself is measured over an empty run and subtracted
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the ROM be run tick by tick instead of instruction by instruction
+     * @return 1 if the frames allocate more than the tolerance, 0 otherwise
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String rom, boolean accurate) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, accurate);
+        for (int i = 0; i < warmup_frames; i++)
+            nes.runFrame();
+        long start = MacroBenchmark.allocatedBytes();
+        long overhead = MacroBenchmark.allocatedBytes() - start;
+        start = MacroBenchmark.allocatedBytes();
+        for (int i = 0; i < nb_frames; i++)
+            nes.runFrame();
+        long allocated = MacroBenchmark.allocatedBytes() - start - overhead;
+        double per_frame = Math.max(0, allocated) / (double) nb_frames;
+        System.out.printf("%-60s %-11s %s (%.1f bytes per frame)%n", rom, accurate ? "tick" : "instruction", allocated > TOLERANCE ? "ALLOCATES" : "OK", per_frame);
+        return allocated > TOLERANCE ? 1 : 0;
+    }
+}
@@ -0,0 +1,575 @@
+package headless;
+
+import core.NES;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * This class runs every test ROM of a directory headless and collects their results
+ * the ROMs report their results through the Cartridge RAM (blargg protocol) :
+ * 0x6000 : status (0x80 running, 0x81 reset requested, below 0x80 result code, 0 for success)
+ * 0x6001 - 0x6003 : signature (DE B0 61) telling that the protocol is used
+ * 0x6004 - ... : result text terminated by 0
+ * the ROMs are run in parallel, one console per ROM, and the results are written as Markdown and JSON
+ * the ROMs not using the protocol (demos, older blargg ROMs reporting at $F0 or on screen) take the verdict
+ * checked by hand in status.txt, whose notes are carried over to every result
+ * a verdict holds the CRC32 of the frame it was checked on, the ROM is run up to this frame
+ * and the verdict is only kept if the frame is unchanged, otherwise it must be checked again
+ * the regressions are reported against the JSON of the previous run, the changed frames are regressions too
+ */
+public class ConformanceRunner {
+
+    private static final int FRAMES_PER_SECOND = 60;
+    //The protocol must be detected within the first seconds, otherwise the ROM doesn't use it (demos)
+    private static final int SIGNATURE_TIMEOUT = 2 * FRAMES_PER_SECOND;
+    //The reset must be delayed by at least 100ms after being requested
+    private static final int RESET_DELAY = 6;
+    private static final int DEFAULT_TIMEOUT = 60;
+
+    private static final Pattern JSON_ROM = Pattern.compile("\"rom\": \"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern JSON_STATUS = Pattern.compile("\"status\": \"(\\w+)\"");
+    //A line of the manual verdicts : | PASS, FAIL or ???? | ROM path | checked frame (frame:CRC32) or empty | notes |
+    private static final Pattern MANUAL_LINE = Pattern.compile("^\\|\\s*(PASS|FAIL|\\?{4})\\s*\\|\\s*([^|]*?)\\s*\\|\\s*(?:(\\d+):([0-9a-fA-F]{8}))?\\s*\\|\\s*(.*?)\\s*\\|\\s*$");
+
+    /**
+     * The outcome of a test ROM
+     */
+    public enum Status {
+        PASS, //The ROM reported a success
+        FAIL, //The ROM reported an error code
+        TIMEOUT, //The ROM was still running when the timeout was reached
+        NONE, //The ROM doesn't report its results through the protocol, it must be checked visually
+        CHANGED, //The frame the manual verdict was checked on has changed, the verdict must be checked again
+        ERROR //The ROM couldn't be loaded
+    }
+
+    /**
+     * The verdict of a test ROM checked by hand
+     */
+    public static class Verdict {
+
+        public final String rom;
+        public final Status status;
+        public final int frame;
+        public final long crc;
+        public final String note;
+
+        /**
+         * Create a new verdict
+         *
+         * @param rom    the path of the ROM relative to the test directory, as written in the file
+         * @param status PASS or FAIL, null if the ROM couldn't be checked
+         * @param frame  the frame the verdict was checked on (from 1), -1 if none
+         * @param crc    the CRC32 of the checked frame, -1 if none
+         * @param note   the note of the verdict, empty if none
+         */
+        Verdict(String rom, Status status, int frame, long crc, String note) {
+            this.rom = rom;
+            this.status = status;
+            this.frame = frame;
+            this.crc = crc;
+            this.note = note;
+        }
+    }
+
+    /**
+     * The result of a test ROM
+     */
+    public static class Result {
+
+        public final String rom;
+        public final Status status;
+        public final int code;
+        public final int frames;
+        public final long crc;
+        public final String message;
+        public final boolean manual;
+        public final String note;
+
+        /**
+         * Create a new result reported by the ROM or by the runner
+         *
+         * @param rom     the path of the ROM relative to the test directory
+         * @param status  the outcome of the test
+         * @param code    the result code reported by the ROM, -1 if none
+         * @param frames  the number of frames the ROM was run for
+         * @param message the result text reported by the ROM, or the reason of the outcome
+         */
+        Result(String rom, Status status, int code, int frames, String message) {
+            this(rom, status, code, frames, -1, message, false, "");
+        }
+
+        /**
+         * Create a new result
+         *
+         * @param rom     the path of the ROM relative to the test directory
+         * @param status  the outcome of the test
+         * @param code    the result code reported by the ROM, -1 if none
+         * @param frames  the number of frames the ROM was run for
+         * @param crc     the CRC32 of the last frame, -1 if it wasn't computed
+         * @param message the result text reported by the ROM, or the reason of the outcome
+         * @param manual  is the status the verdict checked by hand
+         * @param note    the note of the manual verdict, empty if none
+         */
+        Result(String rom, Status status, int code, int frames, long crc, String message, boolean manual, String note) {
+            this.rom = rom;
+            this.status = status;
+            this.code = code;
+            this.frames = frames;
+            this.crc = crc;
+            this.message = message;
+            this.manual = manual;
+            this.note = note;
+        }
+
+        /**
+         * Merge the verdict checked by hand into the result
+         * the verdict replaces the status only if the ROM doesn't report its result and the ROM was run up to
+         * the checked frame with the same CRC32, otherwise the result is CHANGED, its note is always kept
+         * and a verdict contradicting the reported result is added to the note
+         *
+         * @param verdict the verdict of the ROM, null if none
+         * @return the merged result
+         */
+        Result merge(Verdict verdict) {
+            if (verdict == null)
+                return this;
+            if (status == Status.NONE && verdict.status != null) {
+                if (verdict.frame < 0)
+                    return new Result(rom, Status.CHANGED, code, frames, crc, "No checked frame for the manual verdict " + verdict.status, false, verdict.note);
+                if (frames != verdict.frame || crc != verdict.crc)
+                    return new Result(rom, Status.CHANGED, code, frames, crc, String.format("Frame %d is %08x instead of %08x for the manual verdict %s", verdict.frame, crc, verdict.crc, verdict.status), false, verdict.note);
+                return new Result(rom, verdict.status, code, frames, crc, String.format("Frame %d checked by hand (%08x)", frames, crc), true, verdict.note);
+            }
+            String note = verdict.note;
+            if (verdict.status != null && verdict.status != status && (status == Status.PASS || status == Status.FAIL))
+                note = (note.isEmpty() ? "" : note + " ") + "(manual verdict : " + verdict.status + ")";
+            return new Result(rom, status, code, frames, crc, message, false, note);
+        }
+    }
+
+    private final Path directory;
+    private final int timeout_frames;
+    private final int nb_threads;
+    private final Map<String, Verdict> verdicts;
+
+    /**
+     * Create a new runner
+     *
+     * @param directory the directory containing the test ROMs (searched recursively)
+     * @param timeout   the maximum emulated time per ROM in seconds
+     * @param threads   the number of ROMs run in parallel
+     * @param verdicts  the verdicts checked by hand indexed by normalized path, used to run the ROMs up to their checked frame
+     */
+    public ConformanceRunner(Path directory, int timeout, int threads, Map<String, Verdict> verdicts) {
+        this.directory = directory;
+        this.timeout_frames = timeout * FRAMES_PER_SECOND;
+        this.nb_threads = threads;
+        this.verdicts = verdicts;
+    }
+
+    public static void main(String[] args) {
+        Path directory = Paths.get("roms/test");
+        Path markdown = null;
+        Path json = null;
+        Path manual = null;
+        int timeout = DEFAULT_TIMEOUT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--md":
+                        markdown = Paths.get(args[++i]);
+                        break;
+                    case "--json":
+                        json = Paths.get(args[++i]);
+                        break;
+                    case "--manual":
+                        manual = Paths.get(args[++i]);
+                        break;
+                    case "--timeout":
+                        timeout = Integer.parseInt(args[++i]);
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        directory = Paths.get(args[i]);
+                }
+            }
+            if (timeout <= 0 || threads <= 0)
+                throw new IllegalArgumentException("The timeout and the number of threads must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : ConformanceRunner [directory] [--md <file>] [--json <file>] [--manual <file>] [--timeout <seconds>] [--threads <n>]");
+            System.exit(2);
+        }
+        if (markdown == null)
+            markdown = directory.resolve("status.md");
+        if (json == null)
+            json = directory.resolve("status.json");
+        if (manual == null)
+            manual = directory.resolve("status.txt");
+
+        try {
+            Map<String, Status> previous = readJSON(json);
+            Map<String, Verdict> verdicts = readManual(manual);
+            long start = System.nanoTime();
+            List<Result> results = new ConformanceRunner(directory, timeout, threads, verdicts).runAll();
+            double seconds = (System.nanoTime() - start) / 1000000000.0;
+            results = merge(results, verdicts, System.out);
+            writeMarkdown(results, markdown);
+            writeJSON(results, json);
+            int regressions = printSummary(results, previous, seconds, System.out);
+            System.exit(regressions > 0 ? 1 : 0);
+        } catch (IOException | InterruptedException | ExecutionException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Run every test ROM of the directory in parallel
+     *
+     * @return the results sorted by ROM path
+     * @throws IOException          if the directory can't be read
+     * @throws InterruptedException if the runner is interrupted
+     * @throws ExecutionException   if a ROM crashes the emulator
+     */
+    public List<Result> runAll() throws IOException, InterruptedException, ExecutionException {
+        List<Path> roms;
+        try (Stream<Path> files = Files.walk(directory)) {
+            roms = files.filter(path -> path.getFileName().toString().toLowerCase().endsWith(".nes"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nb_threads);
+        try {
+            List<Future<Result>> futures = new ArrayList<>();
+            for (Path rom : roms)
+                futures.add(executor.submit(() -> run(rom)));
+            List<Result> results = new ArrayList<>();
+            for (Future<Result> future : futures)
+                results.add(future.get());
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run a test ROM until it reports its result or the timeout is reached
+     *
+     * @param rom the path of the ROM
+     * @return the result of the ROM
+     */
+    public Result run(Path rom) {
+        String name = directory.relativize(rom).toString().replace('\\', '/');
+        NES nes;
+        try {
+            nes = NEmuSHeadless.boot(rom.toString(), false);
+        } catch (InvalidFileException | UnsupportedMapperException e) {
+            return new Result(name, Status.ERROR, -1, 0, e.getMessage());
+        }
+        try {
+            return run(name, nes);
+        } catch (RuntimeException e) {
+            return new Result(name, Status.ERROR, -1, 0, "Emulator crash : " + e);
+        }
+    }
+
+    /**
+     * Run a console until its ROM reports its result or the timeout is reached
+     * a reset is performed when requested by the ROM
+     * a ROM not using the protocol is run up to the frame its manual verdict was checked on
+     *
+     * @param name the name of the ROM
+     * @param nes  the console running the ROM
+     * @return the result of the ROM
+     */
+    private Result run(String name, NES nes) {
+        boolean running = false;
+        boolean reset_armed = true;
+        int reset_frame = -1;
+        int frame = 0;
+        while (frame < timeout_frames) {
+            nes.runFrame();
+            frame++;
+            boolean signature = nes.cpuRead(0x6001, true) == 0xDE && nes.cpuRead(0x6002, true) == 0xB0 && nes.cpuRead(0x6003, true) == 0x61;
+            int status = nes.cpuRead(0x6000, true);
+            if (!signature) {
+                if (!running && frame >= SIGNATURE_TIMEOUT)
+                    return runToCheckedFrame(name, nes, frame);
+                continue;
+            }
+            //The result is only trusted once the ROM has started, the RAM can hold the result of a previous run
+            if (status == 0x80) {
+                running = true;
+                reset_armed = true;
+            } else if (status == 0x81) {
+                running = true;
+                if (reset_armed && reset_frame < 0)
+                    reset_frame = frame;
+                if (reset_frame >= 0 && frame - reset_frame >= RESET_DELAY) {
+                    nes.reset();
+                    reset_frame = -1;
+                    reset_armed = false;
+                }
+            } else if (running && status < 0x80) {
+                return new Result(name, status == 0 ? Status.PASS : Status.FAIL, status, frame, readMessage(nes));
+            }
+        }
+        return running ? new Result(name, Status.TIMEOUT, -1, frame, readMessage(nes)) : runToCheckedFrame(name, nes, frame);
+    }
+
+    /**
+     * Run a console whose ROM doesn't use the protocol up to the frame its manual verdict was checked on
+     * and compute the CRC32 of this frame
+     *
+     * @param name  the name of the ROM
+     * @param nes   the console running the ROM
+     * @param frame the number of frames already run
+     * @return the result of the ROM, to be merged with its manual verdict
+     */
+    private Result runToCheckedFrame(String name, NES nes, int frame) {
+        Verdict verdict = verdicts.get(name.toLowerCase(Locale.ROOT));
+        while (verdict != null && frame < verdict.frame) {
+            nes.runFrame();
+            frame++;
+        }
+        CRC32 crc = new CRC32();
+        ByteBuffer screen = nes.getPpu().getScreenBuffer().duplicate();
+        screen.clear();
+        crc.update(screen);
+        return new Result(name, Status.NONE, -1, frame, crc.getValue(), "No result protocol", false, "");
+    }
+
+    /**
+     * Read the result text written by the ROM at 0x6004
+     *
+     * @param nes the console running the ROM
+     * @return the result text, trimmed
+     */
+    private static String readMessage(NES nes) {
+        StringBuilder message = new StringBuilder();
+        for (int addr = 0x6004; addr <= 0x7FFF; addr++) {
+            int c = nes.cpuRead(addr, true);
+            if (c == 0)
+                break;
+            message.append((char) c);
+        }
+        return message.toString().trim();
+    }
+
+    /**
+     * Read the verdicts checked by hand from a table of the form | PASS, FAIL or ???? | ROM path | frame:CRC32 | notes |
+     * the paths can use \\ or / and are compared without case, the checked frame can be empty
+     *
+     * @param file the file to read
+     * @return the verdicts indexed by normalized path, empty if the file doesn't exist
+     * @throws IOException if the file can't be read
+     */
+    public static Map<String, Verdict> readManual(Path file) throws IOException {
+        Map<String, Verdict> verdicts = new LinkedHashMap<>();
+        if (!Files.exists(file))
+            return verdicts;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher matcher = MANUAL_LINE.matcher(line);
+            if (!matcher.find())
+                continue;
+            Status status = matcher.group(1).equals("????") ? null : Status.valueOf(matcher.group(1));
+            String rom = matcher.group(2).replace('\\', '/');
+            int frame = matcher.group(3) == null ? -1 : Integer.parseInt(matcher.group(3));
+            long crc = matcher.group(4) == null ? -1 : Long.parseLong(matcher.group(4), 16);
+            verdicts.put(rom.toLowerCase(Locale.ROOT), new Verdict(rom, status, frame, crc, matcher.group(5)));
+        }
+        return verdicts;
+    }
+
+    /**
+     * Merge the verdicts checked by hand into the results
+     * the verdicts of ROMs that weren't found are printed so they aren't silently lost
+     *
+     * @param results  the results of the run
+     * @param verdicts the verdicts indexed by normalized path
+     * @param out      the stream to print the unmatched verdicts to
+     * @return the merged results
+     */
+    public static List<Result> merge(List<Result> results, Map<String, Verdict> verdicts, PrintStream out) {
+        Map<String, Verdict> unmatched = new LinkedHashMap<>(verdicts);
+        List<Result> merged = new ArrayList<>();
+        for (Result result : results) {
+            String key = result.rom.toLowerCase(Locale.ROOT);
+            merged.add(result.merge(verdicts.get(key)));
+            unmatched.remove(key);
+        }
+        for (Verdict verdict : unmatched.values())
+            out.println("No ROM for the manual verdict of " + verdict.rom);
+        return merged;
+    }
+
+    /**
+     * Write the results as a Markdown table
+     *
+     * @param results the results to write
+     * @param file    the file to write to
+     * @throws IOException if the file can't be written
+     */
+    public static void writeMarkdown(List<Result> results, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("| Status | Source | ROM Path | Code | Frames | Message | Notes |\n");
+            writer.write("|--------|--------|----------|------|--------|---------|-------|\n");
+            for (Result result : results) {
+                String message = result.message.replaceAll("\\s+", " ").replace("|", "\\|");
+                String note = result.note.replace("|", "\\|");
+                writer.write("| " + result.status + " | " + (result.manual ? "manual" : "runner") + " | " + result.rom + " | " + (result.code >= 0 ? result.code : "")
+                        + " | " + result.frames + " | " + message + " | " + note + " |\n");
+            }
+        }
+    }
+
+    /**
+     * Write the results as a JSON array, one result per line
+     *
+     * @param results the results to write
+     * @param file    the file to write to
+     * @throws IOException if the file can't be written
+     */
+    public static void writeJSON(List<Result> results, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                Result result = results.get(i);
+                writer.write("  {\"rom\": \"" + escape(result.rom) + "\", \"status\": \"" + result.status + "\", \"code\": " + result.code
+                        + ", \"frames\": " + result.frames + ", \"message\": \"" + escape(result.message) + "\", \"source\": \"" + (result.manual ? "manual" : "runner")
+                        + "\", \"note\": \"" + escape(result.note) + "\"}" + (i < results.size() - 1 ? "," : "") + "\n");
+            }
+            writer.write("]\n");
+        }
+    }
+
+    /**
+     * Read the status of every ROM from a JSON file written by writeJSON()
+     *
+     * @param file the file to read
+     * @return the status of every ROM, empty if the file doesn't exist
+     * @throws IOException if the file can't be read
+     */
+    public static Map<String, Status> readJSON(Path file) throws IOException {
+        Map<String, Status> statuses = new HashMap<>();
+        if (!Files.exists(file))
+            return statuses;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher rom = JSON_ROM.matcher(line);
+            Matcher status = JSON_STATUS.matcher(line);
+            if (rom.find() && status.find())
+                statuses.put(unescape(rom.group(1)), Status.valueOf(status.group(1)));
+        }
+        return statuses;
+    }
+
+    /**
+     * Print the number of ROMs per status and the changes since the previous run
+     *
+     * @param results  the results of the run
+     * @param previous the status of every ROM at the previous run
+     * @param seconds  the duration of the run
+     * @param out      the stream to print to
+     * @return the number of regressions (ROMs that passed and don't anymore, and ROMs whose checked frame has changed)
+     */
+    public static int printSummary(List<Result> results, Map<String, Status> previous, double seconds, PrintStream out) {
+        int[] counts = new int[Status.values().length];
+        int regressions = 0;
+        for (Result result : results) {
+            counts[result.status.ordinal()]++;
+            Status last = previous.get(result.rom);
+            if (result.status == Status.CHANGED) {
+                out.println("CHANGED    " + result.rom + " : " + result.message);
+                regressions++;
+            } else if (last == Status.PASS && result.status != Status.PASS) {
+                out.println("REGRESSION " + result.rom + " : " + result.status + " " + result.message.replaceAll("\\s+", " "));
+                regressions++;
+            } else if (last != null && last != Status.PASS && result.status == Status.PASS) {
+                out.println("FIXED      " + result.rom);
+            }
+        }
+        StringBuilder summary = new StringBuilder();
+        for (Status status : Status.values())
+            summary.append(status).append(' ').append(counts[status.ordinal()]).append("  ");
+        out.println(summary.toString().trim());
+        out.printf("%d ROMs in %.1f s, %d regression(s)%n", results.size(), seconds, regressions);
+        return regressions;
+    }
+
+    /**
+     * Escape a string to be written in a JSON string
+     *
+     * @param value the string to escape
+     * @return the escaped string
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\')
+                escaped.append('\\').append(c);
+            else if (c == '\n')
+                escaped.append("\\n");
+            else if (c < 0x20 || c >= 0x7F)
+                escaped.append(String.format("\\u%04x", (int) c));
+            else
+                escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Unescape a JSON string written by escape()
+     *
+     * @param value the string to unescape
+     * @return the unescaped string
+     */
+    private static String unescape(String value) {
+        StringBuilder unescaped = new StringBuilder();
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                if (next == 'n')
+                    unescaped.append('\n');
+                else if (next == 'u' && i + 4 < value.length()) {
+                    unescaped.append((char) Integer.parseInt(value.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } else
+                    unescaped.append(next);
+            } else
+                unescaped.append(c);
+        }
+        return unescaped.toString();
+    }
+}
@@ -0,0 +1,454 @@
+package headless;
+
+import core.Movie;
+import core.NES;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class is the end-to-end benchmark of the emulator
+ * a fixed corpus of ROMs is run headless for a fixed number of frames after a JIT warm-up,
+ * followed by recorded movies replaying the inputs of a player, so the game code is measured too, not only the attract modes
+ * the speed (fps and ns per emulated CPU cycle), the allocation rate and the GC pauses are measured
+ * every run is appended to a history file (one JSON object per ROM and per line)
+ * and can be compared against a stored baseline
+ */
+public class MacroBenchmark {
+
+    private static final int DEFAULT_WARMUP = 600;
+    private static final int DEFAULT_FRAMES = 1800;
+    //A difference of speed below this ratio is considered as noise
+    private static final double THRESHOLD = 0.05;
+
+    //The ROMs of the corpus, relative to roms/test : demos on NROM, UxROM, CNROM, MMC1 and MMC3 and a stress test
+    private static final String[] CORPUS = {
+            "others/RasterDemo.NES",
+            "others/SPRITE.NES",
+            "others/PCM.demo.wgraphics.nes",
+            "others/stress/NEStress.NES",
+            "others/8bitpeoples_-_deadline_console_invitro.nes",
+            "others/CMC80s.NES",
+            "others/BladeBuster.nes"
+    };
+
+    //The movies of the corpus and their ROM, relative to roms/test, recorded with MovieCheck --record
+    //a movie keeps its last inputs once over, it must be re-recorded if the savestate format changes
+    private static final String[][] MOVIES = {
+            {"others/BladeBuster.nes", "others/BladeBuster.nmv"}
+    };
+
+    private static final Pattern JSON_RUN = Pattern.compile("\"run\": \"([^\"]*)\"");
+    private static final Pattern JSON_ROM = Pattern.compile("\"rom\": \"([^\"]*)\"");
+    private static final Pattern JSON_MODE = Pattern.compile("\"mode\": \"(\\w+)\"");
+    private static final Pattern JSON_FPS = Pattern.compile("\"fps\": ([0-9.]+)");
+    private static final Pattern JSON_NS_PER_CYCLE = Pattern.compile("\"ns_per_cycle\": ([0-9.]+)");
+
+    /**
+     * The measures of a ROM
+     */
+    public static class Result {
+
+        public final String run;
+        public final String rom;
+        public final String mode;
+        public final double fps;
+        public final double ns_per_cycle;
+        public final double alloc_rate;
+        public final double idle_ratio;
+        public final long gc_count;
+        public final long gc_time;
+
+        /**
+         * Create a new result
+         *
+         * @param run          the date of the run
+         * @param rom          the path of the ROM relative to the ROM directory
+         * @param mode         the emulation mode ("instruction", "jit" or "tick", suffixed by "_idle" if the idle loops are skipped and "_icache" if the instruction cache is enabled)
+         * @param fps          the number of emulated frames per second
+         * @param ns_per_cycle the time taken per emulated CPU cycle in nanoseconds
+         * @param alloc_rate   the allocation rate in Mb/s, -1 if it can't be measured
+         * @param idle_ratio   the ratio of the emulated CPU cycles skipped in idle loops
+         * @param gc_count     the number of garbage collections during the measure
+         * @param gc_time      the total time of the garbage collections in milliseconds
+         */
+        Result(String run, String rom, String mode, double fps, double ns_per_cycle, double alloc_rate, double idle_ratio, long gc_count, long gc_time) {
+            this.run = run;
+            this.rom = rom;
+            this.mode = mode;
+            this.fps = fps;
+            this.ns_per_cycle = ns_per_cycle;
+            this.alloc_rate = alloc_rate;
+            this.idle_ratio = idle_ratio;
+            this.gc_count = gc_count;
+            this.gc_time = gc_time;
+        }
+    }
+
+    private final Path directory;
+    private final int warmup_frames;
+    private final int nb_frames;
+    private final boolean accurate;
+    private boolean recompiler = false;
+    private boolean idle_skipping = false;
+    private boolean instruction_cache = false;
+
+    /**
+     * Create a new benchmark
+     *
+     * @param directory the directory containing the corpus
+     * @param warmup    the number of frames run before measuring
+     * @param frames    the number of frames measured
+     * @param accurate  should the ROMs be run tick by tick instead of instruction by instruction with catch-up
+     */
+    public MacroBenchmark(Path directory, int warmup, int frames, boolean accurate) {
+        this.directory = directory;
+        this.warmup_frames = warmup;
+        this.nb_frames = frames;
+        this.accurate = accurate;
+    }
+
+    /**
+     * Enable or disable the recompiler of the CPU during the runs (instruction mode only)
+     *
+     * @param enabled should the recompiler be enabled
+     */
+    public void enableRecompiler(boolean enabled) {
+        recompiler = enabled;
+    }
+
+    /**
+     * Enable or disable the skipping of the idle loops during the runs (instruction mode only)
+     *
+     * @param enabled should the idle loops be skipped
+     */
+    public void enableIdleSkipping(boolean enabled) {
+        idle_skipping = enabled;
+    }
+
+    /**
+     * Enable or disable the cache of the Instructions decoded from PRG ROM during the runs
+     *
+     * @param enabled should the instruction cache be enabled
+     */
+    public void enableInstructionCache(boolean enabled) {
+        instruction_cache = enabled;
+    }
+
+    public static void main(String[] args) {
+        Path directory = Paths.get("roms/test");
+        Path history = Paths.get("bench/results/history.jsonl");
+        Path baseline = null;
+        boolean compare_only = false;
+        int warmup = DEFAULT_WARMUP;
+        int frames = DEFAULT_FRAMES;
+        boolean accurate = false;
+        boolean jit = false;
+        boolean skip_idle = false;
+        boolean icache = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--benchmark":
+                        break;
+                    case "--compare":
+                        compare_only = true;
+                        baseline = Paths.get(args[++i]);
+                        break;
+                    case "--baseline":
+                        baseline = Paths.get(args[++i]);
+                        break;
+                    case "--history":
+                        history = Paths.get(args[++i]);
+                        break;
+                    case "--roms":
+                        directory = Paths.get(args[++i]);
+                        break;
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    case "--accurate":
+                        accurate = true;
+                        break;
+                    case "--jit":
+                        jit = true;
+                        break;
+                    case "--skip-idle":
+                        skip_idle = true;
+                        break;
+                    case "--icache":
+                        icache = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                }
+            }
+            if (warmup < 0 || frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : NEmuSHeadless --benchmark [--frames <n>] [--warmup <n>] [--accurate] [--jit] [--skip-idle] [--icache] [--roms <dir>] [--history <file>] [--baseline <file>]");
+            System.err.println("        NEmuSHeadless --compare <baseline> [--history <file>]");
+            System.exit(2);
+        }
+
+        try {
+            List<Result> results;
+            if (compare_only) {
+                results = lastRun(readHistory(history));
+                if (results.isEmpty())
+                    throw new IOException("No run in " + history);
+            } else {
+                MacroBenchmark benchmark = new MacroBenchmark(directory, warmup, frames, accurate);
+                benchmark.enableRecompiler(jit);
+                benchmark.enableIdleSkipping(skip_idle);
+                benchmark.enableInstructionCache(icache);
+                results = benchmark.runAll(System.out);
+                appendHistory(results, history);
+            }
+            if (baseline != null) {
+                int regressions = compare(results, lastRun(readHistory(baseline)), System.out);
+                System.exit(regressions > 0 ? 1 : 0);
+            }
+        } catch (IOException | InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Run every ROM of the corpus one after the other and print their measures
+     *
+     * @param out the stream to print to
+     * @return the measures of every ROM
+     * @throws IOException                if a movie can't be read
+     * @throws InvalidFileException       if a ROM or a movie is invalid
+     * @throws UnsupportedMapperException if the Mapper of a ROM isn't supported
+     */
+    public List<Result> runAll(PrintStream out) throws IOException, InvalidFileException, UnsupportedMapperException {
+        String run = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"));
+        List<Result> results = new ArrayList<>();
+        out.printf("%-50s %10s %12s %12s %8s %8s %10s%n", "ROM", "fps", "ns/cycle", "alloc Mb/s", "idle %", "GCs", "GC ms");
+        for (String rom : CORPUS)
+            results.add(print(out, run(run, rom, null)));
+        for (String[] movie : MOVIES)
+            results.add(print(out, run(run, movie[0], movie[1])));
+        return results;
+    }
+
+    /**
+     * Print the measures of a ROM
+     *
+     * @param out    the stream to print to
+     * @param result the measures of the ROM
+     * @return the measures
+     */
+    private static Result print(PrintStream out, Result result) {
+        out.printf("%-50s %10.1f %12.3f %12.2f %8.1f %8d %10d%n", result.rom, result.fps, result.ns_per_cycle, result.alloc_rate, result.idle_ratio * 100, result.gc_count, result.gc_time);
+        return result;
+    }
+
+    /**
+     * Run a ROM of the corpus, warm it up and measure it
+     *
+     * @param run   the date of the run
+     * @param rom   the path of the ROM relative to the ROM directory
+     * @param movie the path of the movie replayed during the warm-up and the measure relative to the ROM directory, null to run without input
+     * @return the measures of the ROM, named after the movie if any
+     * @throws IOException                if the movie can't be read
+     * @throws InvalidFileException       if the ROM or the movie is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    public Result run(String run, String rom, String movie) throws IOException, InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(directory.resolve(rom).toString(), accurate);
+        nes.enableRecompiler(recompiler, false);
+        nes.enableIdleSkipping(idle_skipping);
+        nes.enableInstructionCache(instruction_cache);
+        Movie playback = null;
+        if (movie != null) {
+            playback = Movie.load(directory.resolve(movie).toString());
+            playback.startPlayback(nes);
+        }
+        for (int i = 0; i < warmup_frames; i++) {
+            if (playback != null)
+                playback.playFrame(nes);
+            nes.runFrame();
+        }
+
+        long start_cycles = nes.getCpu().getClockCount();
+        long start_skipped = nes.getCpu().getSkippedCycles();
+        long start_allocated = allocatedBytes();
+        long start_gc_count = 0, start_gc_time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            start_gc_count += Math.max(0, gc.getCollectionCount());
+            start_gc_time += Math.max(0, gc.getCollectionTime());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < nb_frames; i++) {
+            if (playback != null)
+                playback.playFrame(nes);
+            nes.runFrame();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBytes() - start_allocated;
+        long gc_count = -start_gc_count, gc_time = -start_gc_time;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gc_count += Math.max(0, gc.getCollectionCount());
+            gc_time += Math.max(0, gc.getCollectionTime());
+        }
+        long cycles = nes.getCpu().getClockCount() - start_cycles;
+        long skipped = nes.getCpu().getSkippedCycles() - start_skipped;
+
+        double seconds = elapsed / 1000000000.0;
+        double alloc_rate = start_allocated < 0 ? -1 : allocated / seconds / (1024 * 1024);
+        return new Result(run, movie != null ? movie : rom, mode(), nb_frames / seconds, (double) elapsed / cycles, alloc_rate, (double) skipped / cycles, gc_count, gc_time);
+    }
+
+    /**
+     * Return the name of the emulation mode of the runs
+     *
+     * @return "tick", "jit" or "instruction", suffixed by "_idle" if the idle loops are skipped and "_icache" if the instruction cache is enabled
+     */
+    private String mode() {
+        if (accurate)
+            return "tick" + (instruction_cache ? "_icache" : "");
+        return (recompiler ? "jit" : "instruction") + (idle_skipping ? "_idle" : "") + (instruction_cache ? "_icache" : "");
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread
+     *
+     * @return the number of bytes allocated, -1 if the JVM can't measure it
+     */
+    static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sun_threads = (com.sun.management.ThreadMXBean) threads;
+            if (sun_threads.isThreadAllocatedMemorySupported() && sun_threads.isThreadAllocatedMemoryEnabled())
+                return sun_threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Append the measures of a run to a history file, one JSON object per ROM and per line
+     *
+     * @param results the measures of the run
+     * @param file    the history file, created if needed
+     * @throws IOException if the file can't be written
+     */
+    public static void appendHistory(List<Result> results, Path file) throws IOException {
+        if (file.getParent() != null)
+            Files.createDirectories(file.getParent());
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (Result result : results) {
+                writer.write(String.format(Locale.ROOT,
+                        "{\"run\": \"%s\", \"rom\": \"%s\", \"mode\": \"%s\", \"fps\": %.2f, \"ns_per_cycle\": %.4f, \"alloc_mb_per_s\": %.2f, \"idle_pct\": %.1f, \"gc_count\": %d, \"gc_ms\": %d}%n",
+                        result.run, result.rom, result.mode, result.fps, result.ns_per_cycle, result.alloc_rate, result.idle_ratio * 100, result.gc_count, result.gc_time));
+            }
+        }
+    }
+
+    /**
+     * Read every measure of a history file written by appendHistory()
+     *
+     * @param file the file to read
+     * @return the measures in the order of the file, empty if the file doesn't exist
+     * @throws IOException if the file can't be read
+     */
+    public static List<Result> readHistory(Path file) throws IOException {
+        List<Result> results = new ArrayList<>();
+        if (!Files.exists(file))
+            return results;
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            Matcher run = JSON_RUN.matcher(line);
+            Matcher rom = JSON_ROM.matcher(line);
+            Matcher mode = JSON_MODE.matcher(line);
+            Matcher fps = JSON_FPS.matcher(line);
+            Matcher ns_per_cycle = JSON_NS_PER_CYCLE.matcher(line);
+            if (run.find() && rom.find() && mode.find() && fps.find() && ns_per_cycle.find())
+                results.add(new Result(run.group(1), rom.group(1), mode.group(1), Double.parseDouble(fps.group(1)), Double.parseDouble(ns_per_cycle.group(1)), -1, 0, 0, 0));
+        }
+        return results;
+    }
+
+    /**
+     * Return the measures of the last run of a history
+     *
+     * @param history the measures of every run
+     * @return the measures of the last run
+     */
+    public static List<Result> lastRun(List<Result> history) {
+        List<Result> results = new ArrayList<>();
+        if (history.isEmpty())
+            return results;
+        String last = history.get(history.size() - 1).run;
+        for (Result result : history)
+            if (result.run.equals(last))
+                results.add(result);
+        return results;
+    }
+
+    /**
+     * Print the speedup of every ROM against a baseline
+     * only the ROMs measured in the same mode in both runs are compared
+     *
+     * @param results  the measures to compare
+     * @param baseline the measures of the baseline
+     * @param out      the stream to print to
+     * @return the number of regressions (ROMs slower than the baseline beyond the noise threshold)
+     */
+    public static int compare(List<Result> results, List<Result> baseline, PrintStream out) {
+        Map<String, Result> reference = new LinkedHashMap<>();
+        for (Result result : baseline)
+            reference.put(result.mode + " " + result.rom, result);
+        int regressions = 0;
+        double log_sum = 0;
+        int compared = 0;
+        out.printf("%-50s %10s %10s %9s%n", "ROM", "base fps", "fps", "speedup");
+        for (Result result : results) {
+            Result base = reference.get(result.mode + " " + result.rom);
+            if (base == null) {
+                out.printf("%-50s %10s %10.1f %9s%n", result.rom, "-", result.fps, "-");
+                continue;
+            }
+            double speedup = result.fps / base.fps;
+            String verdict = "";
+            if (speedup < 1 - THRESHOLD) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (speedup > 1 + THRESHOLD) {
+                verdict = "FASTER";
+            }
+            out.println(String.format("%-50s %10.1f %10.1f %8.2fx %s", result.rom, base.fps, result.fps, speedup, verdict).trim());
+            log_sum += Math.log(speedup);
+            compared++;
+        }
+        if (compared > 0)
+            out.printf("Geometric mean speedup : %.2fx over %d ROM(s), %d regression(s)%n", Math.exp(log_sum / compared), compared, regressions);
+        return regressions;
+    }
+}
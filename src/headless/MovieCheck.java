@@ -0,0 +1,202 @@
+package headless;
+
+import core.Movie;
+import core.NES;
+import core.SaveState;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+/**
+ * This class checks that the input movies replay the emulation frame accurately
+ * every ROM is recorded from power-on with scripted inputs (held for a random number of frames, fixed seed),
+ * the movie is saved and loaded back, then replayed on a new console, which must show the same frames and end in the same state,
+ * and replayed in tick by tick mode, which must show the same frames and end with the same RAM
+ * (the savestates of both modes differ by the timestamps of the catch-up, so they aren't compared)
+ */
+public class MovieCheck {
+
+    private static final int DEFAULT_FRAMES = 600;
+    private static final long SEED = 0x4E4D534DL;
+    private static final int MIN_HOLD = 8;
+    private static final int MAX_HOLD = 40;
+
+    //Demos reacting to the inputs : MMC3 shooter, NROM puzzle and physics demo
+    private static final String[] DEFAULT_ROMS = {
+            "roms/test/others/BladeBuster.nes",
+            "roms/test/others/nes15-NTSC.nes",
+            "roms/test/others/physics.0.1.nes"
+    };
+
+    private final int nb_frames;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Create a new check
+     *
+     * @param frames the number of frames recorded
+     */
+    public MovieCheck(int frames) {
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int frames = DEFAULT_FRAMES;
+        String record_file = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    case "--record":
+                        record_file = args[++i];
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+            if (record_file != null && roms.size() != 1)
+                throw new IllegalArgumentException("--record needs a single ROM");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : MovieCheck [rom...] [--frames <n>] [--record <file>]");
+            System.exit(2);
+        }
+        if (roms.isEmpty())
+            roms.addAll(Arrays.asList(DEFAULT_ROMS));
+
+        MovieCheck check = new MovieCheck(frames);
+        int failures = 0;
+        try {
+            for (String rom : roms)
+                failures += check.check(rom, record_file);
+        } catch (IOException | InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Record a movie of a ROM, save and load it, then replay it in instruction and tick by tick mode
+     * and compare the frames and the final state to the recording
+     *
+     * @param rom         the path to the ROM
+     * @param record_file the file the movie is kept in, null to use a temporary file
+     * @return the number of replays that differ from the recording
+     * @throws IOException                if the movie can't be written or read
+     * @throws InvalidFileException       if the ROM or the written movie is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String rom, String record_file) throws IOException, InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, false);
+        Movie movie = Movie.recordFromPowerOn(nes);
+        //The same inputs are scripted for every ROM
+        Random random = new Random(SEED);
+        long[] expected = new long[nb_frames];
+        int hold = 0;
+        for (int i = 0; i < nb_frames; i++) {
+            if (hold-- <= 0) {
+                nes.controller[0] = random.nextInt(0x100);
+                hold = MIN_HOLD + random.nextInt(MAX_HOLD - MIN_HOLD);
+            }
+            movie.recordFrame(nes);
+            nes.runFrame();
+            expected[i] = hashFrame(nes);
+        }
+        byte[] expected_end = SaveState.save(nes);
+        byte[] expected_ram = readRAM(nes);
+
+        File file = record_file != null ? new File(record_file) : File.createTempFile("nemus", ".nmv");
+        int failures = 0;
+        try {
+            movie.save(file.getPath());
+            Movie loaded = Movie.load(file.getPath());
+            String result = loaded.getChecksum() != movie.getChecksum() || loaded.getFrameCount() != nb_frames ? "DIFF in the loaded movie" : replay(rom, loaded, false, expected, expected_end, expected_ram);
+            System.out.printf("%-60s %-11s %s (%d frames, %d bytes)%n", rom, "instruction", result, nb_frames, file.length());
+            if (!result.equals("OK"))
+                failures++;
+            result = replay(rom, loaded, true, expected, expected_end, expected_ram);
+            System.out.printf("%-60s %-11s %s (%d frames, %d bytes)%n", rom, "tick", result, nb_frames, file.length());
+            if (!result.equals("OK"))
+                failures++;
+        } finally {
+            if (record_file == null && !file.delete())
+                file.deleteOnExit();
+        }
+        return failures;
+    }
+
+    /**
+     * Replay a movie on a new console and compare it to the recording
+     *
+     * @param rom          the path to the ROM
+     * @param movie        the movie to replay
+     * @param accurate     should the movie be replayed tick by tick instead of instruction by instruction
+     * @param expected     the CRC32 of every recorded frame
+     * @param expected_end the state at the end of the recording (instruction mode), compared in instruction mode only
+     * @param expected_ram the RAM and PRG RAM at the end of the recording
+     * @return "OK" or the description of the first difference
+     * @throws InvalidFileException       if the ROM or the start state of the movie is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private String replay(String rom, Movie movie, boolean accurate, long[] expected, byte[] expected_end, byte[] expected_ram) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, accurate);
+        movie.startPlayback(nes);
+        for (int i = 0; i < expected.length; i++) {
+            movie.playFrame(nes);
+            nes.runFrame();
+            if (hashFrame(nes) != expected[i])
+                return "DIFF at frame " + (i + 1);
+        }
+        if (!accurate && !Arrays.equals(SaveState.save(nes), expected_end))
+            return "DIFF in the final state";
+        if (!Arrays.equals(readRAM(nes), expected_ram))
+            return "DIFF in the final RAM";
+        return "OK";
+    }
+
+    /**
+     * Read the RAM and the PRG RAM of a console without side effect
+     *
+     * @param nes the console
+     * @return the content of 0x0000 - 0x07FF followed by 0x6000 - 0x7FFF
+     */
+    private static byte[] readRAM(NES nes) {
+        byte[] ram = new byte[0x0800 + 0x2000];
+        for (int addr = 0x0000; addr < 0x0800; addr++)
+            ram[addr] = (byte) nes.cpuRead(addr, true);
+        for (int addr = 0x6000; addr < 0x8000; addr++)
+            ram[0x0800 + addr - 0x6000] = (byte) nes.cpuRead(addr, true);
+        return ram;
+    }
+
+    /**
+     * Compute the CRC32 of the frame on the screen
+     *
+     * @param nes the console
+     * @return the CRC32 of the frame
+     */
+    private long hashFrame(NES nes) {
+        ByteBuffer screen = nes.getPpu().getScreenBuffer();
+        int position = screen.position();
+        crc.reset();
+        crc.update(screen);
+        screen.position(position);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,426 @@
+package headless;
+
+import core.Movie;
+import core.NES;
+import core.cartridge.Cartridge;
+import core.cpu.InstructionCache;
+import core.cpu.Recompiler;
+import core.ppu.PPU_2C02;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * This class is a command line runner of the emulator, it doesn't need any window, GPU or audio device
+ * a ROM is run unthrottled for a number of frames, optionally with an input movie
+ * the CRC32 of every frame is printed, and selected frames (PNG) and the audio (WAV) can be written
+ * the hashes can be checked against a reference file, the run fails at the first frame that differs
+ */
+public class NEmuSHeadless {
+
+    private static final int DEFAULT_FRAMES = 600;
+    private static final int DEFAULT_SAMPLE_RATE = 44100;
+
+    private String rom;
+    private String movie_file;
+    private String png_directory = ".";
+    private String wav_file;
+    private String expect_file;
+    private int nb_frames = -1;
+    private int sample_rate = DEFAULT_SAMPLE_RATE;
+    private boolean print_hashes = true;
+    private boolean accurate = false;
+    private boolean jit = false;
+    private boolean jit_check = false;
+    private boolean skip_idle = false;
+    private boolean icache = false;
+    private final Set<Integer> png_frames = new HashSet<>();
+
+    private final CRC32 crc = new CRC32();
+    private long[] expected_hashes;
+    private short[] audio_samples = new short[0];
+    private int nb_samples = 0;
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        //The benchmark mode runs its own corpus instead of a single ROM
+        for (String arg : args) {
+            if (arg.equals("--benchmark") || arg.equals("--compare")) {
+                MacroBenchmark.main(args);
+                return;
+            }
+        }
+        NEmuSHeadless runner = new NEmuSHeadless();
+        try {
+            runner.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            printUsage(System.err);
+            System.exit(2);
+        }
+        try {
+            if (!runner.run(System.out))
+                System.exit(1);
+        } catch (IOException | InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Print the command line usage
+     *
+     * @param out the stream to print to
+     */
+    private static void printUsage(PrintStream out) {
+        out.println("Usage : NEmuSHeadless <rom> [options]");
+        out.println("        NEmuSHeadless --benchmark [--frames <n>] [--warmup <n>] [--accurate] [--jit] [--skip-idle] [--icache] [--history <file>] [--baseline <file>]");
+        out.println("        NEmuSHeadless --compare <baseline> [--history <file>]");
+        out.println("  --frames <n>          number of frames to run (default " + DEFAULT_FRAMES + ", or the length of the movie)");
+        out.println("  --movie <file>        play an input movie (.nmv), the movie starts from its own savestate");
+        out.println("  --png <f1,f2,...>     write the selected frames as PNG (frames are numbered from 1)");
+        out.println("  --png-dir <dir>       directory of the PNG files (default .)");
+        out.println("  --wav <file>          write the audio as a 16bit mono WAV file");
+        out.println("  --sample-rate <hz>    sample rate of the WAV file (default " + DEFAULT_SAMPLE_RATE + ")");
+        out.println("  --accurate            run tick by tick instead of instruction by instruction with catch-up");
+        out.println("  --jit                 recompile the hot blocks of PRG ROM to JVM bytecode (instruction mode only)");
+        out.println("  --jit-check           recompile and check every block against the interpreter");
+        out.println("  --skip-idle           skip the iterations of the idle loops until the next event (instruction mode only)");
+        out.println("  --icache              decode the Instructions of PRG ROM once (instruction cache, disabled by default)");
+        out.println("  --no-hash             don't print the hash of every frame, only the summary");
+        out.println("  --expect <file>       check the hash of the frames against a reference file (\"<frame> <crc>\" lines), fail at the first mismatch");
+    }
+
+    /**
+     * Read the command line arguments
+     *
+     * @param args the command line arguments
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    private void parseArguments(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--frames":
+                    nb_frames = parseInt(args, ++i);
+                    break;
+                case "--movie":
+                    movie_file = value(args, ++i);
+                    break;
+                case "--png":
+                    for (String frame : value(args, ++i).split(","))
+                        png_frames.add(Integer.parseInt(frame.trim()));
+                    break;
+                case "--png-dir":
+                    png_directory = value(args, ++i);
+                    break;
+                case "--wav":
+                    wav_file = value(args, ++i);
+                    break;
+                case "--sample-rate":
+                    sample_rate = parseInt(args, ++i);
+                    break;
+                case "--accurate":
+                    accurate = true;
+                    break;
+                case "--jit":
+                    jit = true;
+                    break;
+                case "--jit-check":
+                    jit = true;
+                    jit_check = true;
+                    break;
+                case "--skip-idle":
+                    skip_idle = true;
+                    break;
+                case "--icache":
+                    icache = true;
+                    break;
+                case "--no-hash":
+                    print_hashes = false;
+                    break;
+                case "--expect":
+                    expect_file = value(args, ++i);
+                    break;
+                default:
+                    if (args[i].startsWith("--") || rom != null)
+                        throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                    rom = args[i];
+            }
+        }
+        if (rom == null)
+            throw new IllegalArgumentException("No ROM specified");
+        if (sample_rate <= 0)
+            throw new IllegalArgumentException("Invalid sample rate : " + sample_rate);
+    }
+
+    /**
+     * Return the value of an option
+     *
+     * @param args  the command line arguments
+     * @param index the index of the value
+     * @return the value of the option
+     */
+    private static String value(String[] args, int index) {
+        if (index >= args.length)
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        return args[index];
+    }
+
+    /**
+     * Return the value of an option as an integer
+     *
+     * @param args  the command line arguments
+     * @param index the index of the value
+     * @return the value of the option
+     */
+    private static int parseInt(String[] args, int index) {
+        try {
+            return Integer.parseInt(value(args, index));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + args[index - 1] + " : " + args[index]);
+        }
+    }
+
+    /**
+     * Run the ROM and print the hash of every frame and the emulation speed
+     * if a reference file is given, the run stops at the first frame whose hash differs
+     *
+     * @param out the stream to print the results to
+     * @return false if a frame differs from the reference file, true otherwise
+     * @throws IOException                if a movie, PNG, WAV or reference file can't be read or written
+     * @throws InvalidFileException       if the ROM, the movie or the reference file is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    public boolean run(PrintStream out) throws IOException, InvalidFileException, UnsupportedMapperException {
+        if (expect_file != null)
+            expected_hashes = readExpectedHashes(new File(expect_file));
+        NES nes = boot(rom, accurate);
+        nes.enableRecompiler(jit, jit_check);
+        nes.enableIdleSkipping(skip_idle);
+        nes.enableInstructionCache(icache);
+        Cartridge cartridge = nes.getCartridge();
+
+        Movie movie = null;
+        if (movie_file != null) {
+            movie = Movie.load(movie_file);
+            if (movie.getChecksum() != cartridge.getChecksum())
+                throw new InvalidFileException("The movie is from another game");
+            movie.startPlayback(nes);
+            if (nb_frames < 0)
+                nb_frames = movie.getFrameCount();
+        }
+        //The reference file covers the whole run
+        if (nb_frames < 0 && expected_hashes != null)
+            nb_frames = expected_hashes.length - 1;
+        if (nb_frames < 0)
+            nb_frames = DEFAULT_FRAMES;
+
+        //The audio is only rendered if it is written
+        if (wav_file != null) {
+            nes.setSampleFreq(sample_rate);
+            nes.enableSoundRendering(true);
+            audio_samples = new short[(int) (sample_rate * (nb_frames / 60.0 + 1))];
+            nes.setAudioListener(this::storeSample);
+        }
+
+        long start = System.nanoTime();
+        long render_time = 0;
+        int checked = 0;
+        for (int frame = 1; frame <= nb_frames; frame++) {
+            //Once the movie is over, the last inputs are kept
+            if (movie != null)
+                movie.playFrame(nes);
+            nes.runFrame();
+            long render_start = System.nanoTime();
+            long expected = expected_hashes != null && frame < expected_hashes.length ? expected_hashes[frame] : -1;
+            if (print_hashes || expected >= 0) {
+                long hash = hashFrame(nes.getPpu().getScreenBuffer());
+                if (print_hashes)
+                    out.printf("%d %08x%n", frame, hash);
+                if (expected >= 0) {
+                    if (hash != expected) {
+                        out.printf("Frame %d differs from %s : %08x instead of %08x%n", frame, expect_file, hash, expected);
+                        return false;
+                    }
+                    checked++;
+                }
+            }
+            if (png_frames.contains(frame))
+                writePNG(nes.getPpu().getScreenBuffer(), new File(png_directory, String.format("frame_%05d.png", frame)));
+            render_time += System.nanoTime() - render_start;
+        }
+        long elapsed = System.nanoTime() - start - render_time;
+
+        if (wav_file != null)
+            writeWAV(new File(wav_file));
+        double seconds = elapsed / 1000000000.0;
+        out.printf("%d frames in %.3f s : %.1f fps (%.2fx real time)%n", nb_frames, seconds, nb_frames / seconds, nb_frames / seconds / 60.0988);
+        InstructionCache cache = nes.getCpu().getInstructionCache();
+        if (cache != null)
+            out.printf("Instruction cache : %.1f%% hits (%d decoded, %d bypassed)%n", cache.getHitRate() * 100, cache.getDecodes(), cache.getBypasses());
+        Recompiler recompiler = nes.getCpu().getRecompiler();
+        if (recompiler != null)
+            out.printf("Recompiler : %d blocks of %.1f Instructions, %.1f%% of the Instructions executed in blocks%n", recompiler.getCompiledBlocks(), recompiler.getAverageBlockLength(),
+                    recompiler.getExecutedInstructions() * 100.0 / Math.max(1, nes.getCpu().getInstructionCount()));
+        if (skip_idle)
+            out.printf("Idle loops : %.1f%% of the cycles skipped%n", nes.getCpu().getSkippedCycles() * 100.0 / Math.max(1, nes.getCpu().getClockCount()));
+        if (expected_hashes != null)
+            out.printf("%d frames identical to %s%n", checked, expect_file);
+        return true;
+    }
+
+    /**
+     * Read a reference file of frame hashes
+     * every line holds a frame number (from 1) and the CRC32 of the frame in hexadecimal,
+     * the empty lines and the lines starting with # are ignored, the frames not listed aren't checked
+     *
+     * @param file the reference file
+     * @return the expected hash indexed by frame number, -1 for the frames not listed
+     * @throws IOException          if the file can't be read
+     * @throws InvalidFileException if a line is malformed
+     */
+    private static long[] readExpectedHashes(File file) throws IOException, InvalidFileException {
+        long[] hashes = new long[0];
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            int line_number = 0;
+            while ((line = reader.readLine()) != null) {
+                line_number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split("\\s+");
+                try {
+                    if (fields.length != 2)
+                        throw new NumberFormatException();
+                    int frame = Integer.parseInt(fields[0]);
+                    long hash = Long.parseLong(fields[1], 16);
+                    if (frame <= 0 || hash < 0 || hash > 0xFFFFFFFFL)
+                        throw new NumberFormatException();
+                    if (frame >= hashes.length) {
+                        int length = hashes.length;
+                        hashes = Arrays.copyOf(hashes, Math.max(frame + 1, length * 2));
+                        Arrays.fill(hashes, length, hashes.length, -1);
+                    }
+                    hashes[frame] = hash;
+                } catch (NumberFormatException e) {
+                    throw new InvalidFileException(file + " line " + line_number + " : expected \"<frame> <crc>\" but found \"" + line + "\"");
+                }
+            }
+        }
+        //The array is trimmed to the last listed frame, its length gives the default number of frames
+        int last = hashes.length - 1;
+        while (last > 0 && hashes[last] < 0)
+            last--;
+        if (last <= 0)
+            throw new InvalidFileException(file + " doesn't contain any frame hash");
+        return Arrays.copyOf(hashes, last + 1);
+    }
+
+    /**
+     * Create a console ready to run a ROM without any output device
+     * the battery save and the audio rendering are disabled
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the console run tick by tick instead of instruction by instruction with catch-up
+     * @return the console, powered on
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    public static NES boot(String rom, boolean accurate) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = new NES();
+        try {
+            nes.insertCartridge(new Cartridge(rom));
+        } catch (EOFException e) {
+            throw new InvalidFileException("The ROM \"" + rom + "\" is truncated");
+        }
+        //The real save of the game mustn't be touched by a headless run
+        nes.setBatterySaveEnabled(false);
+        nes.enableSoundRendering(false);
+        nes.setSampleFreq(DEFAULT_SAMPLE_RATE);
+        nes.enableCatchUp(!accurate);
+        nes.enableInstructionStepping(!accurate);
+        nes.startup();
+        return nes;
+    }
+
+    /**
+     * Compute the CRC32 of a frame
+     *
+     * @param screen the screen buffer of the PPU
+     * @return the CRC32 of the frame
+     */
+    private long hashFrame(ByteBuffer screen) {
+        crc.reset();
+        int position = screen.position();
+        crc.update(screen);
+        screen.position(position);
+        return crc.getValue();
+    }
+
+    /**
+     * Store an audio sample as a 16bit value
+     *
+     * @param sample the sample as a value between -1 and 1
+     */
+    private void storeSample(double sample) {
+        if (nb_samples >= audio_samples.length)
+            audio_samples = Arrays.copyOf(audio_samples, audio_samples.length * 2 + 1);
+        audio_samples[nb_samples++] = (short) (Math.max(-1.0, Math.min(1.0, sample)) * Short.MAX_VALUE);
+    }
+
+    /**
+     * Write a frame to a PNG file
+     *
+     * @param screen the screen buffer of the PPU (RGBA)
+     * @param file   the file to write to
+     * @throws IOException if the file can't be written
+     */
+    private static void writePNG(ByteBuffer screen, File file) throws IOException {
+        BufferedImage image = new BufferedImage(PPU_2C02.SCREEN_WIDTH, PPU_2C02.SCREEN_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < PPU_2C02.SCREEN_HEIGHT; y++) {
+            for (int x = 0; x < PPU_2C02.SCREEN_WIDTH; x++) {
+                int index = (y * PPU_2C02.SCREEN_WIDTH + x) * 4;
+                image.setRGB(x, y, (screen.get(index) & 0xFF) << 16 | (screen.get(index + 1) & 0xFF) << 8 | (screen.get(index + 2) & 0xFF));
+            }
+        }
+        if (!ImageIO.write(image, "png", file))
+            throw new IOException("No PNG writer available");
+    }
+
+    /**
+     * Write the stored audio samples to a 16bit mono WAV file
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can't be written
+     */
+    private void writeWAV(File file) throws IOException {
+        byte[] data = new byte[nb_samples * 2];
+        for (int i = 0; i < nb_samples; i++) {
+            data[2 * i] = (byte) audio_samples[i];
+            data[2 * i + 1] = (byte) (audio_samples[i] >> 8);
+        }
+        AudioFormat format = new AudioFormat(sample_rate, 16, 1, true, false);
+        try (AudioInputStream stream = new AudioInputStream(new ByteArrayInputStream(data), format, nb_samples)) {
+            AudioSystem.write(stream, AudioFileFormat.Type.WAVE, file);
+        }
+    }
+}
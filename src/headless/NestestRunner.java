@@ -0,0 +1,394 @@
+package headless;
+
+import core.NES;
+import core.cpu.CPU_6502;
+import core.cpu.TraceWriter;
+import core.ppu.PPU_2C02;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class runs nestest in automation mode (from 0xC000, no PPU needed) and traces every Instruction
+ * the trace is written in the Nintendulator format and/or compared line by line to a golden log (nestest.log)
+ * the comparison is done as a stream and stops at the first divergence
+ * the counters start like in the golden log, 7 cycles (21 dots) after power-on, the time of the reset sequence
+ * the golden log is the public nestest.log (roms/test/cpu/nestest.log by default), without it the trace is compared to the reference trace
+ * of this emulator (roms/test/cpu/nestest_nemus.log.gz), which catches any change of the CPU timing or behavior
+ * the result codes written by nestest at $02 and $03 at the end of the test must be 0 in both cases
+ * the self-check runs the comparison on altered copies of the golden log, which must fail at the altered line or at the missing lines
+ */
+public class NestestRunner {
+
+    private static final String DEFAULT_LOG = "roms/test/cpu/nestest.log";
+    private static final String REFERENCE_LOG = "roms/test/cpu/nestest_nemus.log.gz";
+    private static final int ALTERED_LINE = 4321;
+    private static final int TRUNCATED_LINES = 5000;
+    private static final int ENTRY_POINT = 0xC000;
+    private static final int START_CYCLE = 7;
+    private static final int GOLDEN_LINES = 8991;
+    private static final int DOTS_PER_SCANLINE = 341;
+    private static final int SCANLINES_PER_FRAME = 262;
+
+    private final NES nes;
+    private final CPU_6502 cpu;
+    private final PPU_2C02 ppu;
+    private final TraceWriter trace;
+    private final InputStream golden;
+    private final OutputStream output;
+    private final boolean registers_only;
+    private final int max_lines;
+    private final byte[] expected = new byte[256];
+    private final byte[] previous = new byte[256];
+
+    private int expected_length;
+    private int previous_length = 0;
+    private int line_number = 0;
+    private boolean done = false;
+    private boolean diverged = false;
+    private long start_cycle;
+    private long ppu_dots = START_CYCLE * 3;
+    private int last_ppu_position = -1;
+    private IOException error;
+
+    /**
+     * Create a new runner
+     *
+     * @param rom           the path to nestest.nes
+     * @param golden        the golden log to compare to, null to only write the trace
+     * @param output        the stream the trace is written to, null to only compare
+     * @param registersOnly should the disassembly be ignored in the comparison
+     * @param maxLines      the number of Instructions to trace if there is no golden log
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    public NestestRunner(String rom, InputStream golden, OutputStream output, boolean registersOnly, int maxLines) throws InvalidFileException, UnsupportedMapperException {
+        //The PPU position is read at each Instruction, it must not lag behind the CPU
+        this.nes = NEmuSHeadless.boot(rom, true);
+        this.cpu = nes.getCpu();
+        this.ppu = nes.getPpu();
+        this.trace = new TraceWriter(nes);
+        this.golden = golden;
+        this.output = output;
+        this.registers_only = registersOnly;
+        this.max_lines = maxLines;
+    }
+
+    public static void main(String[] args) {
+        String rom = "roms/test/cpu/nestest.nes";
+        String log = null;
+        String out = null;
+        boolean registers_only = false;
+        boolean self_check = false;
+        int lines = GOLDEN_LINES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--log":
+                        log = args[++i];
+                        break;
+                    case "--out":
+                        out = args[++i];
+                        break;
+                    case "--lines":
+                        lines = Integer.parseInt(args[++i]);
+                        break;
+                    case "--registers-only":
+                        registers_only = true;
+                        break;
+                    case "--self-check":
+                        self_check = true;
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        rom = args[i];
+                }
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : NestestRunner [nestest.nes] [--log <nestest.log>] [--out <trace file>] [--lines <n>] [--registers-only] [--self-check]");
+            System.exit(2);
+        }
+        if (log == null && Files.exists(Paths.get(DEFAULT_LOG)))
+            log = DEFAULT_LOG;
+        if (log == null && Files.exists(Paths.get(REFERENCE_LOG))) {
+            log = REFERENCE_LOG;
+            System.out.println("No public golden log (" + DEFAULT_LOG + "), the trace is compared to the reference trace " + REFERENCE_LOG);
+        }
+        if (log == null)
+            System.out.println("No golden log (" + DEFAULT_LOG + "), only the result codes of nestest are checked");
+
+        boolean success = false;
+        try {
+            if (self_check) {
+                if (log == null)
+                    throw new IOException("The self-check needs a golden log");
+                success = selfCheck(rom, readLog(log));
+            } else {
+                try (InputStream golden = log != null ? openLog(log) : null;
+                     OutputStream output = out != null ? new BufferedOutputStream(new FileOutputStream(out), 65536) : null) {
+                    NestestRunner runner = new NestestRunner(rom, golden, output, registers_only, lines);
+                    long start = System.nanoTime();
+                    success = runner.run();
+                    double ms = (System.nanoTime() - start) / 1000000.0;
+                    System.out.printf("%d lines traced in %.1f ms%n", runner.line_number, ms);
+                    int official = runner.nes.cpuRead(0x02, true);
+                    int unofficial = runner.nes.cpuRead(0x03, true);
+                    System.out.printf("nestest result codes : $02=%02X $03=%02X%n", official, unofficial);
+                    //The codes are final once the whole test has run
+                    if (golden == null)
+                        success = runner.line_number >= GOLDEN_LINES && official == 0 && unofficial == 0;
+                    //A truncated or foreign log would end the comparison early, only the whole log is a pass
+                    else if (success && runner.line_number != GOLDEN_LINES) {
+                        System.out.println("The golden log has " + runner.line_number + " lines instead of " + GOLDEN_LINES);
+                        success = false;
+                    } else if (success) {
+                        System.out.println("Identical to the golden log " + log);
+                        success = official == 0 && unofficial == 0;
+                    }
+                }
+            }
+        } catch (IOException | InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(success ? 0 : 1);
+    }
+
+    /**
+     * Check that the comparison reports the differences : the golden log must match,
+     * a copy with an altered line must diverge at this line and a truncated copy must fail on its number of lines
+     *
+     * @param rom the path to nestest.nes
+     * @param log the content of the golden log
+     * @return true if the three comparisons give the expected result
+     * @throws IOException                if the golden log can't be read
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private static boolean selfCheck(String rom, byte[] log) throws IOException, InvalidFileException, UnsupportedMapperException {
+        int altered_start = lineStart(log, ALTERED_LINE);
+        int truncated_end = lineStart(log, TRUNCATED_LINES + 1);
+        if (altered_start < 0 || truncated_end < 0)
+            throw new IOException("The golden log has less than " + (TRUNCATED_LINES + 1) + " lines");
+        //The first hexadecimal digit of the address is changed, the rest of the line is kept
+        byte[] altered = log.clone();
+        altered[altered_start] = (byte) (altered[altered_start] == 'F' ? '0' : 'F');
+        byte[] truncated = new byte[truncated_end];
+        System.arraycopy(log, 0, truncated, 0, truncated_end);
+
+        boolean success = true;
+        NestestRunner runner = new NestestRunner(rom, new ByteArrayInputStream(log), null, false, GOLDEN_LINES);
+        boolean matched = runner.run();
+        String result = matched && runner.line_number == GOLDEN_LINES ? "OK" : "DIFF at line " + runner.line_number;
+        System.out.printf("%-16s %s%n", "golden log", result);
+        success &= result.equals("OK");
+
+        runner = new NestestRunner(rom, new ByteArrayInputStream(altered), null, false, GOLDEN_LINES);
+        matched = runner.run();
+        result = !matched && runner.line_number == ALTERED_LINE ? "OK" : (matched ? "DIFF not reported" : "DIFF reported at line " + runner.line_number) + " instead of line " + ALTERED_LINE;
+        System.out.printf("%-16s %s%n", "altered line", result);
+        success &= result.equals("OK");
+
+        runner = new NestestRunner(rom, new ByteArrayInputStream(truncated), null, false, GOLDEN_LINES);
+        matched = runner.run();
+        result = matched && runner.line_number == TRUNCATED_LINES ? "OK" : "DIFF " + runner.line_number + " lines compared instead of " + TRUNCATED_LINES;
+        System.out.printf("%-16s %s (%d lines, rejected as not the whole log)%n", "truncated log", result, runner.line_number);
+        success &= result.equals("OK");
+        return success;
+    }
+
+    /**
+     * Open a golden log, decompressed if its name ends with .gz
+     *
+     * @param log the path of the golden log
+     * @return the stream of the golden log
+     * @throws IOException if the golden log can't be opened
+     */
+    private static InputStream openLog(String log) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(log), 65536);
+        return log.endsWith(".gz") ? new BufferedInputStream(new GZIPInputStream(in), 65536) : in;
+    }
+
+    /**
+     * Read a whole golden log, decompressed if its name ends with .gz
+     *
+     * @param log the path of the golden log
+     * @return the content of the golden log
+     * @throws IOException if the golden log can't be read
+     */
+    private static byte[] readLog(String log) throws IOException {
+        try (InputStream in = openLog(log)) {
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Return the position of the start of a line
+     *
+     * @param log  the content of the log
+     * @param line the number of the line (from 1)
+     * @return the position of the first character of the line, -1 if the log is shorter
+     */
+    private static int lineStart(byte[] log, int line) {
+        int position = 0;
+        for (int i = 1; i < line; i++) {
+            while (position < log.length && log[position] != '\n')
+                position++;
+            position++;
+        }
+        return position < log.length ? position : -1;
+    }
+
+    /**
+     * Run nestest from its automation entry point until the end of the golden log
+     * or the maximum number of lines if there is no golden log
+     *
+     * @return true if the trace matches the golden log (always true without golden log)
+     * @throws IOException if the golden log can't be read or the trace can't be written
+     */
+    public boolean run() throws IOException {
+        cpu.setProgramCounter(ENTRY_POINT);
+        start_cycle = cpu.getClockCount();
+        cpu.setInstructionListener(this::traceInstruction);
+        try {
+            nes.runUntil(() -> done);
+        } finally {
+            cpu.setInstructionListener(null);
+        }
+        if (error != null)
+            throw error;
+        return !diverged;
+    }
+
+    /**
+     * Trace the Instruction about to be executed, called by the CPU
+     */
+    private void traceInstruction() {
+        if (done)
+            return;
+        try {
+            if (golden != null) {
+                expected_length = readLine(golden, expected);
+                if (expected_length <= 0) {
+                    done = true;
+                    return;
+                }
+            } else if (line_number >= max_lines) {
+                done = true;
+                return;
+            }
+            line_number++;
+            //The PPU dots are accumulated from its position so the skipped dots are accounted for
+            //the first Instruction is the origin, in tick by tick mode the PPU is clocked before the CPU
+            int position = ppuPosition();
+            if (last_ppu_position < 0)
+                last_ppu_position = position;
+            ppu_dots += (position - last_ppu_position + SCANLINES_PER_FRAME * DOTS_PER_SCANLINE) % (SCANLINES_PER_FRAME * DOTS_PER_SCANLINE);
+            last_ppu_position = position;
+            int length = trace.format((int) (ppu_dots / DOTS_PER_SCANLINE % SCANLINES_PER_FRAME), (int) (ppu_dots % DOTS_PER_SCANLINE), cpu.getClockCount() - start_cycle + START_CYCLE);
+            byte[] line = trace.getLine();
+            if (output != null) {
+                output.write(line, 0, length);
+                output.write('\n');
+            }
+            if (golden != null && !matches(line, length)) {
+                System.out.println("Divergence at line " + line_number);
+                if (previous_length > 0)
+                    System.out.println("  previous : " + new String(previous, 0, previous_length, StandardCharsets.US_ASCII));
+                System.out.println("  expected : " + new String(expected, 0, expected_length, StandardCharsets.US_ASCII));
+                System.out.println("  actual   : " + new String(line, 0, length, StandardCharsets.US_ASCII));
+                diverged = true;
+                done = true;
+            }
+            System.arraycopy(line, 0, previous, 0, length);
+            previous_length = length;
+        } catch (IOException e) {
+            error = e;
+            done = true;
+        }
+    }
+
+    /**
+     * Compare the traced line to the expected one
+     * the disassembly (between the opcode bytes and the registers) can be ignored
+     *
+     * @param line   the traced line
+     * @param length the length of the traced line
+     * @return does the line match the expected one
+     */
+    private boolean matches(byte[] line, int length) {
+        if (!registers_only)
+            return equals(line, 0, length, expected, 0, expected_length);
+        int registers = TraceWriter.REGISTERS_COLUMN;
+        return length > registers && expected_length > registers
+                && equals(line, 0, 15, expected, 0, 15)
+                && equals(line, registers, length, expected, registers, expected_length);
+    }
+
+    /**
+     * Compare two byte ranges
+     *
+     * @param a     the first array
+     * @param fromA the start of the first range (inclusive)
+     * @param toA   the end of the first range (exclusive)
+     * @param b     the second array
+     * @param fromB the start of the second range (inclusive)
+     * @param toB   the end of the second range (exclusive)
+     * @return are the ranges equal
+     */
+    private static boolean equals(byte[] a, int fromA, int toA, byte[] b, int fromB, int toB) {
+        if (toA - fromA != toB - fromB)
+            return false;
+        for (int i = 0; i < toA - fromA; i++)
+            if (a[fromA + i] != b[fromB + i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Return the position of the PPU in its frame in dots, the pre-render scanline being the first
+     *
+     * @return the position of the PPU
+     */
+    private int ppuPosition() {
+        return (ppu.getScanline() + 1) * DOTS_PER_SCANLINE + ppu.getCycle();
+    }
+
+    /**
+     * Read a line of the golden log into a buffer, the line terminator (LF or CRLF) is dropped
+     * the characters beyond the size of the buffer are ignored
+     *
+     * @param in     the stream to read from
+     * @param buffer the buffer to read into
+     * @return the length of the line, -1 at the end of the stream
+     * @throws IOException if the stream can't be read
+     */
+    private static int readLine(InputStream in, byte[] buffer) throws IOException {
+        int length = 0;
+        int c = in.read();
+        if (c < 0)
+            return -1;
+        while (c >= 0 && c != '\n') {
+            if (length < buffer.length)
+                buffer[length++] = (byte) c;
+            c = in.read();
+        }
+        if (length > 0 && buffer[length - 1] == '\r')
+            length--;
+        return length;
+    }
+}
@@ -0,0 +1,247 @@
+package headless;
+
+import core.NES;
+import core.SaveState;
+import core.cpu.Recompiler;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class checks that the recompiler doesn't change the emulation
+ * every ROM is run in instruction mode with the interpreter, with the recompiler (--jit)
+ * and with the recompiler checked against the interpreter (--jit-check), the savestates of the three runs must be identical
+ * besides the ROMs given on the command line, small generated programs loop on the accesses a block must leave
+ * to the interpreter (indexed accesses to the PPU and to the Mapper), each access must happen exactly once
+ */
+public class RecompilerCheck {
+
+    private static final int DEFAULT_FRAMES = 120;
+    private static final int PRG_BANK_SIZE = 16384;
+
+    private final int nb_frames;
+
+    /**
+     * Create a new check
+     *
+     * @param frames the number of frames to run each ROM for
+     */
+    public RecompilerCheck(int frames) {
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int frames = DEFAULT_FRAMES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : RecompilerCheck [rom...] [--frames <n>]");
+            System.exit(2);
+        }
+
+        RecompilerCheck check = new RecompilerCheck(frames);
+        int failures = 0;
+        try {
+            failures += check.checkProgram("PPU data STA $2007,X", 0, ppuDataProgram());
+            failures += check.checkProgram("PPU status LDA $2002,X", 0, ppuStatusProgram());
+            failures += check.checkProgram("MMC1 STA $8000,Y", 1, mapperProgram());
+            failures += check.checkProgram("RAM ADC/STA abs,X", 0, ramProgram());
+            for (String rom : roms)
+                failures += check.check(rom, rom);
+        } catch (IOException | InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Write a generated program as a temporary ROM and check it
+     *
+     * @param name    the name of the program
+     * @param mapper  the Mapper of the ROM (0 or 1)
+     * @param program the code of the program, located at $8000
+     * @return 1 if the check failed, 0 otherwise
+     * @throws IOException                if the temporary ROM can't be written
+     * @throws InvalidFileException       if the generated ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper isn't supported
+     */
+    private int checkProgram(String name, int mapper, byte[] program) throws IOException, InvalidFileException, UnsupportedMapperException {
+        Path rom = Files.createTempFile("nemus_jit", ".nes");
+        try {
+            Files.write(rom, buildROM(mapper, program));
+            return check(name, rom.toString());
+        } finally {
+            Files.deleteIfExists(rom);
+        }
+    }
+
+    /**
+     * Run a ROM with the interpreter, the recompiler and the checked recompiler and compare the final states
+     *
+     * @param name the name printed in the report
+     * @param rom  the path to the ROM
+     * @return 1 if the states differ or if no block was executed, 0 otherwise
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String name, String rom) throws InvalidFileException, UnsupportedMapperException {
+        byte[] interpreted = run(rom, false, false, null);
+        long[] executed = new long[1];
+        byte[] compiled = run(rom, true, false, executed);
+        String result;
+        try {
+            byte[] checked = run(rom, true, true, null);
+            if (!Arrays.equals(interpreted, compiled))
+                result = "DIFF --jit";
+            else if (!Arrays.equals(interpreted, checked))
+                result = "DIFF --jit-check";
+            else if (executed[0] == 0)
+                result = "NO BLOCK";
+            else
+                result = "OK";
+        } catch (IllegalStateException e) {
+            result = "DIFF --jit-check (" + e.getMessage() + ")";
+        }
+        System.out.printf("%-50s %s (%d Instructions in blocks)%n", name, result, executed[0]);
+        return result.equals("OK") ? 0 : 1;
+    }
+
+    /**
+     * Run a ROM in instruction mode and return its final savestate
+     *
+     * @param rom          the path to the ROM
+     * @param jit          should the recompiler be enabled
+     * @param differential should the blocks be checked against the interpreter
+     * @param executed     where to store the number of Instructions executed in blocks, can be null
+     * @return the savestate after the last frame
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private byte[] run(String rom, boolean jit, boolean differential, long[] executed) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, false);
+        nes.enableRecompiler(jit, differential);
+        for (int i = 0; i < nb_frames; i++)
+            nes.runFrame();
+        Recompiler recompiler = nes.getCpu().getRecompiler();
+        if (executed != null && recompiler != null)
+            executed[0] = recompiler.getExecutedInstructions();
+        return SaveState.save(nes);
+    }
+
+    /**
+     * Build an iNES ROM around a program, with 8Kb of CHR ROM
+     * the program is at $8000 and is also the NMI and IRQ handler, a Mapper 1 ROM has 32Kb of PRG ROM
+     *
+     * @param mapper  the Mapper of the ROM
+     * @param program the code of the program
+     * @return the content of the ROM file
+     */
+    private static byte[] buildROM(int mapper, byte[] program) {
+        int prg_banks = mapper == 1 ? 2 : 1;
+        byte[] rom = new byte[16 + prg_banks * PRG_BANK_SIZE + 8192];
+        rom[0] = 'N';
+        rom[1] = 'E';
+        rom[2] = 'S';
+        rom[3] = 0x1A;
+        rom[4] = (byte) prg_banks;
+        rom[5] = 1;
+        rom[6] = (byte) (mapper << 4);
+        System.arraycopy(program, 0, rom, 16, program.length);
+        //The vectors are at the end of the last bank, fixed at $C000 by both Mappers
+        int vectors = 16 + prg_banks * PRG_BANK_SIZE - 6;
+        for (int i = 0; i < 6; i += 2) {
+            rom[vectors + i] = 0x00;
+            rom[vectors + i + 1] = (byte) 0x80;
+        }
+        return rom;
+    }
+
+    /**
+     * Return a program writing to the PPU data register with an indexed store
+     * the store starts its own entry point, so its block exits before the first Instruction
+     *
+     * @return the code of the program
+     */
+    private static byte[] ppuDataProgram() {
+        return new byte[]{
+                (byte) 0xA9, 0x20,                      //$8000 LDA #$20
+                (byte) 0x8D, 0x06, 0x20,                //$8002 STA $2006
+                (byte) 0xA9, 0x00,                      //$8005 LDA #$00
+                (byte) 0x8D, 0x06, 0x20,                //$8007 STA $2006
+                (byte) 0xA2, 0x00,                      //$800A LDX #$00
+                (byte) 0xC8,                            //$800C INY
+                (byte) 0x98,                            //$800D TYA
+                (byte) 0x9D, 0x07, 0x20,                //$800E STA $2007,X
+                (byte) 0x4C, 0x0A, (byte) 0x80          //$8011 JMP $800A
+        };
+    }
+
+    /**
+     * Return a program reading the PPU status register with an indexed load
+     *
+     * @return the code of the program
+     */
+    private static byte[] ppuStatusProgram() {
+        return new byte[]{
+                (byte) 0xA2, 0x00,                      //$8000 LDX #$00
+                (byte) 0xBD, 0x02, 0x20,                //$8002 LDA $2002,X
+                (byte) 0x85, 0x10,                      //$8005 STA $10
+                (byte) 0xE6, 0x11,                      //$8007 INC $11
+                (byte) 0x4C, 0x00, (byte) 0x80          //$8009 JMP $8000
+        };
+    }
+
+    /**
+     * Return a program writing to the serial port of MMC1 with an indexed store
+     * the written value is 0, the control register ends up selecting the same 32Kb of PRG ROM
+     *
+     * @return the code of the program
+     */
+    private static byte[] mapperProgram() {
+        return new byte[]{
+                (byte) 0xA0, 0x00,                      //$8000 LDY #$00
+                (byte) 0xA9, 0x00,                      //$8002 LDA #$00
+                (byte) 0x99, 0x00, (byte) 0x80,         //$8004 STA $8000,Y
+                (byte) 0xE6, 0x12,                      //$8007 INC $12
+                (byte) 0x4C, 0x00, (byte) 0x80          //$8009 JMP $8000
+        };
+    }
+
+    /**
+     * Return a program only accessing the RAM, executed almost entirely in blocks
+     *
+     * @return the code of the program
+     */
+    private static byte[] ramProgram() {
+        return new byte[]{
+                (byte) 0xA2, 0x10,                      //$8000 LDX #$10
+                (byte) 0xBD, 0x00, 0x03,                //$8002 LDA $0300,X
+                0x69, 0x07,                             //$8005 ADC #$07
+                (byte) 0x9D, 0x00, 0x03,                //$8007 STA $0300,X
+                (byte) 0xCA,                            //$800A DEX
+                (byte) 0xD0, (byte) 0xF5,               //$800B BNE $8002
+                (byte) 0x4C, 0x00, (byte) 0x80          //$800D JMP $8000
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package headless;
+
+import core.NES;
+import core.RewindBuffer;
+import core.SaveState;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This class checks that the rewind buffer restores its snapshots bit-identically
+ * every ROM is run with a snapshot every frame, the state of the console is saved after every snapshot taken,
+ * then every snapshot is rewound and the restored state must be the saved one, from the latest to the oldest
+ * the ROMs are run once with a budget keeping every snapshot and once with a budget small enough to drop the oldest ones,
+ * which must still leave the latest snapshots restorable and the memory within the budget
+ * this is done in instruction mode and in tick by tick mode
+ */
+public class RewindCheck {
+
+    private static final int DEFAULT_FRAMES = 300;
+    private static final long FULL_BUDGET = 64 * 1024 * 1024;
+    private static final long SMALL_BUDGET = 256 * 1024;
+
+    //NROM, MMC1 and MMC3 demos
+    private static final String[] DEFAULT_ROMS = {
+            "roms/test/others/RasterDemo.NES",
+            "roms/test/others/8bitpeoples_-_deadline_console_invitro.nes",
+            "roms/test/others/BladeBuster.nes"
+    };
+
+    private final int nb_frames;
+
+    /**
+     * Create a new check
+     *
+     * @param frames the number of frames run with a snapshot every frame
+     */
+    public RewindCheck(int frames) {
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int frames = DEFAULT_FRAMES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : RewindCheck [rom...] [--frames <n>]");
+            System.exit(2);
+        }
+        if (roms.isEmpty())
+            roms.addAll(Arrays.asList(DEFAULT_ROMS));
+
+        RewindCheck check = new RewindCheck(frames);
+        int failures = 0;
+        try {
+            for (String rom : roms) {
+                for (boolean accurate : new boolean[]{false, true}) {
+                    failures += check.check(rom, accurate, FULL_BUDGET);
+                    failures += check.check(rom, accurate, SMALL_BUDGET);
+                }
+            }
+        } catch (InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Run a ROM with a snapshot every frame, then rewind every snapshot and compare the restored states to the saved ones
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the ROM be run tick by tick instead of instruction by instruction
+     * @param budget   the memory budget of the rewind buffer in bytes
+     * @return 1 if a restored state differs or the snapshots kept don't match the budget, 0 otherwise
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String rom, boolean accurate, long budget) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, accurate);
+        RewindBuffer rewind_buffer = new RewindBuffer(budget, 1);
+        //A snapshot is dropped without being taken if the compression thread is late, only the taken ones are expected
+        List<byte[]> expected = new ArrayList<>();
+        for (int i = 0; i < nb_frames; i++) {
+            nes.runFrame();
+            long taken = rewind_buffer.getTakenCount();
+            rewind_buffer.frameCompleted(nes);
+            if (rewind_buffer.getTakenCount() > taken)
+                expected.add(SaveState.save(nes));
+        }
+
+        String result = "OK";
+        //Rewinding waits for the pending snapshots, the buffer is complete after the first one
+        int restored = 0;
+        long memory = 0;
+        int kept = 0;
+        while (rewind_buffer.rewind(nes)) {
+            if (restored == 0) {
+                kept = rewind_buffer.getSnapshotCount() + 1;
+                memory = rewind_buffer.getMemoryUsage();
+            }
+            restored++;
+            byte[] state = restored <= expected.size() ? expected.get(expected.size() - restored) : null;
+            if (state == null || !Arrays.equals(SaveState.save(nes), state)) {
+                result = "DIFF at the snapshot " + restored + " before the last";
+                break;
+            }
+        }
+        if (result.equals("OK")) {
+            if (restored != kept)
+                result = "DIFF " + restored + " snapshots restored instead of " + kept;
+            else if (budget == FULL_BUDGET && restored != expected.size())
+                result = "DIFF " + restored + " snapshots restored instead of " + expected.size() + " within the budget";
+            else if (budget == SMALL_BUDGET && restored >= expected.size())
+                result = "DIFF no snapshot dropped with a budget of " + budget / 1024 + " Kb";
+            else if (memory > budget)
+                result = "DIFF " + memory + " bytes used for a budget of " + budget;
+        }
+        System.out.printf("%-60s %-11s %-8s %s (%d snapshots taken, %d restored, %.0f Kb used)%n", rom, accurate ? "tick" : "instruction",
+                budget / 1024 + " Kb", result, expected.size(), restored, memory / 1024.0);
+        return result.equals("OK") ? 0 : 1;
+    }
+}
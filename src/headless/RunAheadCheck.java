@@ -0,0 +1,182 @@
+package headless;
+
+import core.NES;
+import core.RunAhead;
+import core.SaveState;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class checks that run-ahead presents the frames ahead without changing the emulation
+ * every ROM is run without run-ahead, then with run-ahead of 1 to RunAhead.MAX_FRAMES frames on a new console,
+ * each presented frame must be the frame N ahead of the plain run, and the audio and the final state must be
+ * bit-identical to the plain run (the frames ahead are silent and the console is restored after them)
+ * this is done in instruction mode and in tick by tick mode, without any input
+ */
+public class RunAheadCheck {
+
+    private static final int DEFAULT_FRAMES = 300;
+    private static final int SAMPLE_RATE = 44100;
+
+    //NROM, MMC1 and MMC3 demos
+    private static final String[] DEFAULT_ROMS = {
+            "roms/test/others/RasterDemo.NES",
+            "roms/test/others/8bitpeoples_-_deadline_console_invitro.nes",
+            "roms/test/others/BladeBuster.nes"
+    };
+
+    private final int nb_frames;
+    private final CRC32 crc = new CRC32();
+    private double[] samples = new double[0];
+    private int nb_samples = 0;
+
+    /**
+     * Create a new check
+     *
+     * @param frames the number of frames run with run-ahead
+     */
+    public RunAheadCheck(int frames) {
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int frames = DEFAULT_FRAMES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : RunAheadCheck [rom...] [--frames <n>]");
+            System.exit(2);
+        }
+        if (roms.isEmpty())
+            roms.addAll(Arrays.asList(DEFAULT_ROMS));
+
+        RunAheadCheck check = new RunAheadCheck(frames);
+        int failures = 0;
+        try {
+            for (String rom : roms) {
+                failures += check.check(rom, false);
+                failures += check.check(rom, true);
+            }
+        } catch (InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Run a ROM without run-ahead, then with every number of frames ahead, and compare the presented frames,
+     * the audio and the final state to the plain run
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the ROM be run tick by tick instead of instruction by instruction
+     * @return the number of run-ahead settings whose results differ
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String rom, boolean accurate) throws InvalidFileException, UnsupportedMapperException {
+        //The plain run goes far enough to give the frame ahead of the last one
+        NES nes = boot(rom, accurate);
+        long[] expected = new long[nb_frames + RunAhead.MAX_FRAMES];
+        byte[] expected_end = null;
+        for (int i = 0; i < expected.length; i++) {
+            nes.runFrame();
+            expected[i] = hashFrame(nes);
+            if (i == nb_frames - 1)
+                expected_end = SaveState.save(nes);
+        }
+        double[] expected_audio = Arrays.copyOf(samples, nb_samples);
+        int expected_samples = nb_samples;
+        int failures = 0;
+
+        for (int frames = 1; frames <= RunAhead.MAX_FRAMES; frames++) {
+            nes = boot(rom, accurate);
+            RunAhead run_ahead = new RunAhead();
+            run_ahead.setFrames(frames);
+            String result = "OK";
+            for (int i = 0; i < nb_frames; i++) {
+                run_ahead.runFrame(nes, true);
+                if (hashFrame(nes) != expected[i + frames]) {
+                    result = "DIFF at frame " + (i + 1) + " : the presented frame isn't the frame " + (i + 1 + frames);
+                    break;
+                }
+            }
+            if (result.equals("OK")) {
+                //The plain run has more frames, its audio is compared up to the samples of the run-ahead
+                if (nb_samples > expected_samples || !Arrays.equals(Arrays.copyOf(samples, nb_samples), Arrays.copyOf(expected_audio, nb_samples)))
+                    result = "DIFF in the audio (" + nb_samples + " samples)";
+                else if (!Arrays.equals(SaveState.save(nes), expected_end))
+                    result = "DIFF in the final state";
+            }
+            System.out.printf("%-60s %-11s %d frame(s) ahead %s (%d samples, overhead %.2f ms per frame)%n", rom, accurate ? "tick" : "instruction", frames, result,
+                    nb_samples, run_ahead.getOverhead() / 1000000.0);
+            if (!result.equals("OK"))
+                failures++;
+        }
+        return failures;
+    }
+
+    /**
+     * Boot a ROM with the audio rendered to the samples of the check
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the ROM be run tick by tick instead of instruction by instruction
+     * @return the console, powered on
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private NES boot(String rom, boolean accurate) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, accurate);
+        nb_samples = 0;
+        nes.setSampleFreq(SAMPLE_RATE);
+        nes.enableSoundRendering(true);
+        nes.setAudioListener(this::storeSample);
+        return nes;
+    }
+
+    /**
+     * Store an audio sample
+     *
+     * @param sample the sample as a value between -1 and 1
+     */
+    private void storeSample(double sample) {
+        if (nb_samples >= samples.length)
+            samples = Arrays.copyOf(samples, samples.length * 2 + 1);
+        samples[nb_samples++] = sample;
+    }
+
+    /**
+     * Compute the CRC32 of the frame on the screen
+     *
+     * @param nes the console
+     * @return the CRC32 of the frame
+     */
+    private long hashFrame(NES nes) {
+        ByteBuffer screen = nes.getPpu().getScreenBuffer();
+        int position = screen.position();
+        crc.reset();
+        crc.update(screen);
+        screen.position(position);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,175 @@
+package headless;
+
+import core.NES;
+import core.SaveState;
+import exceptions.InvalidFileException;
+import exceptions.UnsupportedMapperException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * This class checks that the savestates restore the emulation bit-identically
+ * every ROM is run for some frames and saved, then the following frames are hashed, and the savestate is loaded
+ * on the same console and on a freshly booted one, which must compute the same frames and end in the same state
+ * this is done in instruction mode and in tick by tick mode, and the size and the save and load times are measured
+ */
+public class StateCheck {
+
+    private static final int DEFAULT_WARMUP = 120;
+    private static final int DEFAULT_FRAMES = 120;
+    private static final int TIMED_RUNS = 200;
+
+    //NROM, MMC1 and MMC3 demos
+    private static final String[] DEFAULT_ROMS = {
+            "roms/test/others/RasterDemo.NES",
+            "roms/test/others/8bitpeoples_-_deadline_console_invitro.nes",
+            "roms/test/others/BladeBuster.nes"
+    };
+
+    private final int warmup_frames;
+    private final int nb_frames;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Create a new check
+     *
+     * @param warmup the number of frames run before saving
+     * @param frames the number of frames compared after the savestate
+     */
+    public StateCheck(int warmup, int frames) {
+        this.warmup_frames = warmup;
+        this.nb_frames = frames;
+    }
+
+    public static void main(String[] args) {
+        List<String> roms = new ArrayList<>();
+        int warmup = DEFAULT_WARMUP;
+        int frames = DEFAULT_FRAMES;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--warmup":
+                        warmup = Integer.parseInt(args[++i]);
+                        break;
+                    case "--frames":
+                        frames = Integer.parseInt(args[++i]);
+                        break;
+                    default:
+                        if (args[i].startsWith("--"))
+                            throw new IllegalArgumentException("Unknown argument : " + args[i]);
+                        roms.add(args[i]);
+                }
+            }
+            if (warmup < 0 || frames <= 0)
+                throw new IllegalArgumentException("The number of frames must be positive");
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IndexOutOfBoundsException ? "Missing value for " + args[args.length - 1] : e.getMessage());
+            System.err.println("Usage : StateCheck [rom...] [--warmup <n>] [--frames <n>]");
+            System.exit(2);
+        }
+        if (roms.isEmpty())
+            roms.addAll(Arrays.asList(DEFAULT_ROMS));
+
+        StateCheck check = new StateCheck(warmup, frames);
+        int failures = 0;
+        try {
+            for (String rom : roms) {
+                failures += check.check(rom, false);
+                failures += check.check(rom, true);
+            }
+        } catch (InvalidFileException | UnsupportedMapperException e) {
+            System.err.println("Error : " + e.getMessage());
+            System.exit(2);
+        }
+        System.exit(failures > 0 ? 1 : 0);
+    }
+
+    /**
+     * Save a ROM after the warm-up, then compare the frames and the final state computed after loading it
+     * on the same console and on a new one to the ones computed after saving
+     *
+     * @param rom      the path to the ROM
+     * @param accurate should the ROM be run tick by tick instead of instruction by instruction
+     * @return 1 if a frame or the final state differs, 0 otherwise
+     * @throws InvalidFileException       if the ROM is invalid
+     * @throws UnsupportedMapperException if the Mapper of the ROM isn't supported
+     */
+    private int check(String rom, boolean accurate) throws InvalidFileException, UnsupportedMapperException {
+        NES nes = NEmuSHeadless.boot(rom, accurate);
+        for (int i = 0; i < warmup_frames; i++)
+            nes.runFrame();
+        byte[] state = SaveState.save(nes);
+        long[] expected = runFrames(nes);
+        byte[] expected_end = SaveState.save(nes);
+
+        String result = "OK";
+        try {
+            SaveState.load(nes, state);
+            if (!Arrays.equals(runFrames(nes), expected) || !Arrays.equals(SaveState.save(nes), expected_end))
+                result = "DIFF after loading on the same console";
+            NES fresh = NEmuSHeadless.boot(rom, accurate);
+            SaveState.load(fresh, state);
+            if (!Arrays.equals(runFrames(fresh), expected) || !Arrays.equals(SaveState.save(fresh), expected_end))
+                result = "DIFF after loading on a new console";
+        } catch (InvalidFileException e) {
+            result = "ERROR " + e.getMessage();
+        }
+        System.out.printf("%-60s %-11s %s (%s)%n", rom, accurate ? "tick" : "instruction", result, measure(nes));
+        return result.equals("OK") ? 0 : 1;
+    }
+
+    /**
+     * Run the frames compared after the savestate and hash them
+     *
+     * @param nes the console to run
+     * @return the CRC32 of every frame
+     */
+    private long[] runFrames(NES nes) {
+        long[] hashes = new long[nb_frames];
+        for (int i = 0; i < nb_frames; i++) {
+            nes.runFrame();
+            ByteBuffer screen = nes.getPpu().getScreenBuffer();
+            int position = screen.position();
+            crc.reset();
+            crc.update(screen);
+            screen.position(position);
+            hashes[i] = crc.getValue();
+        }
+        return hashes;
+    }
+
+    /**
+     * Measure the size of a savestate and the median time to save and load it
+     * the state is written to a preallocated buffer, like the rewind and the run-ahead do
+     *
+     * @param nes the console to measure
+     * @return the measures as text
+     */
+    private static String measure(NES nes) {
+        ByteBuffer buffer = ByteBuffer.allocate(SaveState.MAX_SIZE);
+        long[] save_times = new long[TIMED_RUNS];
+        long[] load_times = new long[TIMED_RUNS];
+        int size = 0;
+        try {
+            for (int i = 0; i < TIMED_RUNS; i++) {
+                buffer.clear();
+                long start = System.nanoTime();
+                size = SaveState.write(nes, buffer);
+                save_times[i] = System.nanoTime() - start;
+                buffer.flip();
+                start = System.nanoTime();
+                SaveState.read(nes, buffer);
+                load_times[i] = System.nanoTime() - start;
+            }
+        } catch (InvalidFileException e) {
+            return "can't be measured : " + e.getMessage();
+        }
+        Arrays.sort(save_times);
+        Arrays.sort(load_times);
+        return String.format("%d bytes, save %.0f us, load %.0f us", size, save_times[TIMED_RUNS / 2] / 1000.0, load_times[TIMED_RUNS / 2] / 1000.0);
+    }
+}
@@ -0,0 +1,91 @@
+package utils;
+
+/**
+ * This class represent a lock-free ring buffer of audio samples
+ * it is safe to use as long as there is only one producer thread (the emulation)
+ * and one consumer thread (the audio backend)
+ */
+public class AudioRingBuffer {
+
+    private final float[] samples;
+    private final int mask;
+
+    //Each index is only written by one side, publishing it makes the samples visible to the other side
+    private volatile long write_index = 0;
+    private volatile long read_index = 0;
+
+    /**
+     * Create a new empty ring buffer
+     *
+     * @param capacity the maximum number of buffered samples, rounded up to a power of 2
+     */
+    public AudioRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        samples = new float[size];
+        mask = size - 1;
+    }
+
+    /**
+     * Add a sample to the buffer (producer side)
+     *
+     * @param sample the sample to add
+     * @return was the sample added, false if the buffer is full
+     */
+    public boolean offer(float sample) {
+        long index = write_index;
+        if (index - read_index >= samples.length)
+            return false;
+        samples[(int) index & mask] = sample;
+        write_index = index + 1;
+        return true;
+    }
+
+    /**
+     * Remove the oldest sample from the buffer (consumer side)
+     *
+     * @param defaultValue the value to return if the buffer is empty
+     * @return the oldest sample, the default value if the buffer is empty
+     */
+    public float poll(float defaultValue) {
+        long index = read_index;
+        if (index == write_index)
+            return defaultValue;
+        float sample = samples[(int) index & mask];
+        read_index = index + 1;
+        return sample;
+    }
+
+    /**
+     * Drop every buffered sample (consumer side)
+     */
+    public void clear() {
+        read_index = write_index;
+    }
+
+    /**
+     * Return the number of buffered samples
+     *
+     * @return the number of buffered samples
+     */
+    public int size() {
+        return (int) (write_index - read_index);
+    }
+
+    /**
+     * Return the maximum number of buffered samples
+     *
+     * @return the capacity of the buffer
+     */
+    public int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * Return the filling ratio of the buffer
+     *
+     * @return the filling ratio between 0 (empty) and 1 (full)
+     */
+    public double fillRatio() {
+        return size() / (double) samples.length;
+    }
+}